@@ -247,6 +247,26 @@ public class CBIDrivenMultiCurveModel implements MultivariateCalibrableProcessIn
 	}
 	
 	
+	/**
+	 * This provides the deterministic function c fitting the spread of the t-th tenor to the initial curves at time (0 <= t <= getDimension()-1).
+	 * @param time
+	 * @param t
+	 * @return
+	 */
+	public double getFunctionC(double time, int t) {
+		return this.functionsC[t].applyAsDouble(time);
+	}
+	
+	/**
+	 * This provides the integral over [firstTime, lastTime] of the deterministic function l fitting the model to the initial discount curve.
+	 * @param firstTime
+	 * @param lastTime
+	 * @return
+	 */
+	public double getIntegralOfFunctionL(double firstTime, double lastTime) {
+		return this.integralOfFunctionL.applyAsDouble(firstTime, lastTime);
+	}
+	
 	/**
 	 * This computes the CF of the model at some maturity for the tenor corresponding to underlying.
 	 * @param maturity
@@ -144,22 +144,45 @@ public class QuantizableBlackScholesModel implements Quantizable1DProcessInterfa
 			double[][] d = new double[this.level][this.level]; // This will stand for the Jacobian matrix of the distortion function.
 			double[] g = new double[this.level]; // The gradient of the distortion function
 			
-			g[0] = (2.0 / Math.PI)*v[0]*mc.integrate(u -> ((((((Complex.I).negate()).multiply(u*Math.log(w[0]))).exp()).multiply( ((model.apply(maturity)).apply(new Complex(u,0))).multiply(Math.exp(maturity*getRiskFreeRate())) )).multiply( ComplexSpecialFunctions.beta(new Complex(0,-u), new Complex (2,0)).subtract(ComplexSpecialFunctions.beta(new Complex(-1,u), new Complex(2,0)).subtract(ComplexSpecialFunctions.incompleteBeta(2*w[0] / (w[0]+w[1]), new Complex(-1,u), new Complex(2,0))  )) )).getReal()   );
-			g[this.level-1] = (2.0 / Math.PI)*v[this.level-1]*mc.integrate(u -> ((((((Complex.I).negate()).multiply(u*Math.log(w[level-1]))).exp()).multiply( ((model.apply(maturity)).apply(new Complex(u,0))).multiply( Math.exp(maturity*getRiskFreeRate())))).multiply( (ComplexSpecialFunctions.beta(new Complex(0,-u), new Complex(2,0)).subtract(ComplexSpecialFunctions.incompleteBeta((w[level-2]+w[level-1]) / 2*w[level-1],new Complex(0,-u), new Complex(2,0)))).subtract(ComplexSpecialFunctions.beta(new Complex(-1,u), new Complex(2,0)))     ) ).getReal()   );
-		
-			d[0][0] = (2.0 / Math.PI)*mc.integrate(u -> ((((((Complex.I).negate()).multiply(u*Math.log(w[0]))).exp()).multiply( ((model.apply(maturity)).apply(new Complex(u,0))).multiply( Math.exp(maturity*getRiskFreeRate())))).multiply( ComplexSpecialFunctions.beta(new Complex(0,-u), new Complex(1,0)).add( ComplexSpecialFunctions.beta(new Complex(0,u), new Complex(1,0)).subtract(ComplexSpecialFunctions.incompleteBeta(2*w[0] / (w[1]+w[0]), new Complex(0,u), new Complex(1,0)))      )) ).getReal()   ) + (-2.0 / ((v[0]+v[1])*Math.PI))*(v[1]-v[0])*0.5*mc.integrate(u -> ((((Complex.I).negate()).multiply(u*Math.log((w[0]+w[1])*0.5)).exp()).multiply( ((model.apply(maturity)).apply(new Complex(u,0))).multiply( Math.exp(maturity*getRiskFreeRate())))).getReal()   );
-			d[this.level-1][this.level-1] = (2.0 / Math.PI)*mc.integrate(u -> ((((((Complex.I).negate()).multiply(u*Math.log(w[level-1]))).exp()).multiply( ((model.apply(maturity)).apply(new Complex(u,0))).multiply( Math.exp(maturity*getRiskFreeRate())))).multiply( (ComplexSpecialFunctions.beta(new Complex(0,-u), new Complex(1,0)).subtract(ComplexSpecialFunctions.incompleteBeta((w[level-2]+w[level-1]) / 2*w[level-1], new Complex(0,-u), new Complex(1,0))) ).add(ComplexSpecialFunctions.beta(new Complex(0,u), new Complex(1,0)) )) ).getReal()   ) + (-2.0 / ((v[level-2]+v[level-1])*Math.PI))*(v[level-1]-v[level-2])*0.5*mc.integrate(u -> ((((Complex.I).negate()).multiply(u*Math.log((w[level-2]+w[level-1])*0.5)).exp()).multiply( ((model.apply(maturity)).apply(new Complex(u,0))).multiply( Math.exp(maturity*getRiskFreeRate())))).getReal()   );
-			d[0][1] = (-2.0 / ((v[0]+v[1])*Math.PI))*(v[1]-v[0])*0.5*mc.integrate(u -> ((((Complex.I).negate()).multiply(u*Math.log((w[0]+w[1])*0.5)).exp()).multiply( ((model.apply(maturity)).apply(new Complex(u,0))).multiply( Math.exp(maturity*getRiskFreeRate())))).getReal()   );
-			d[this.level-1][this.level-2] = (-2.0 / ((v[this.level-2]+v[this.level-1])*Math.PI))*(v[this.level-1]-v[this.level-2])*0.5*mc.integrate(u -> ((((Complex.I).negate()).multiply(u*Math.log((w[level-2]+w[level-1])*0.5)).exp()).multiply( ((model.apply(maturity)).apply(new Complex(u,0))).multiply( Math.exp(maturity*getRiskFreeRate())))).getReal()   );
-	
-			for(int i = 1; i < this.level-1; i++) {
-				
-				int j = i;
-				g[j] = (2.0 / Math.PI)*v[j]*mc.integrate(u -> ((((((Complex.I).negate()).multiply(u*Math.log(w[j]))).exp()).multiply( ((model.apply(maturity)).apply(new Complex(u,0))).multiply( Math.exp(maturity*getRiskFreeRate())))).multiply( (ComplexSpecialFunctions.beta(new Complex(0,-u), new Complex(2,0)).subtract(ComplexSpecialFunctions.incompleteBeta((w[j]+w[j-1])/2*w[j], new Complex(0,-u), new Complex(2,0)))  ).subtract(ComplexSpecialFunctions.beta(new Complex(-1,u), new Complex(2,0)).subtract(ComplexSpecialFunctions.incompleteBeta(2*w[j] / (w[j]+w[j+1]), new Complex(-1,u), new Complex(2,0))) ) )).getReal()   );
-				d[j][j-1] = (-2.0 / ((v[j]+v[j-1])*Math.PI))*(v[j]-v[j-1])*0.5*mc.integrate(u -> ((((Complex.I).negate()).multiply(u*Math.log((w[j-1]+w[j])*0.5)).exp()).multiply( ((model.apply(maturity)).apply(new Complex(u,0))).multiply( Math.exp(maturity*getRiskFreeRate())))).getReal()   );
-				d[j][j+1] = (-2.0 / ((v[j+1]+v[j])*Math.PI))*(v[j+1]-v[j])*0.5*mc.integrate(u -> ((((Complex.I).negate()).multiply(u*Math.log((w[j+1]+w[j])*0.5)).exp()).multiply( ((model.apply(maturity)).apply(new Complex(u,0))).multiply( Math.exp(maturity*getRiskFreeRate())))).getReal()   );
-				d[j][j] = (2.0 / Math.PI)*mc.integrate(u -> ((((((Complex.I).negate()).multiply(u*Math.log(w[j]))).exp()).multiply( ((model.apply(maturity)).apply(new Complex(u,0))).multiply( Math.exp(maturity*getRiskFreeRate())))).multiply( (ComplexSpecialFunctions.beta(new Complex(0,-u), new Complex(1,0)).subtract(ComplexSpecialFunctions.incompleteBeta((w[j-1]+w[j]) / 2*w[j], new Complex(0,-u), new Complex(1,0))) ).add(ComplexSpecialFunctions.beta(new Complex(0,u), new Complex(1,0)).subtract(ComplexSpecialFunctions.incompleteBeta(2*w[j] / (w[j+1]+w[j]), new Complex(0,u), new Complex(1,0)))      )) ).getReal()  ) + d[j][j+1] + d[j][j-1];	
-				
+			/*
+			 * All the integrals of the iteration are computed in a single pass over the integration points, sharing the characteristic function:
+			 * the integrals of the gradient (index j), of the diagonal of the Jacobian (index level+j)
+			 * and of the density at the mid points (index 2*level+j, between w[j] and w[j+1]).
+			 */
+			double[] integrals = mc.integrate(u -> {
+				Complex characteristicFunction = ((model.apply(maturity)).apply(new Complex(u,0))).multiply(Math.exp(maturity*getRiskFreeRate()));
+				Complex betaGradient1 = ComplexSpecialFunctions.beta(new Complex(0,-u), new Complex(2,0));
+				Complex betaGradient2 = ComplexSpecialFunctions.beta(new Complex(-1,u), new Complex(2,0));
+				Complex betaJacobian1 = ComplexSpecialFunctions.beta(new Complex(0,-u), new Complex(1,0));
+				Complex betaJacobian2 = ComplexSpecialFunctions.beta(new Complex(0,u), new Complex(1,0));
+
+				double[] values = new double[3*level-1];
+				for(int j = 0; j < level; j++) {
+					Complex transform = ((((Complex.I).negate()).multiply(u*Math.log(w[j]))).exp()).multiply(characteristicFunction);
+					Complex lowerGradient = j == 0 ? betaGradient1 : betaGradient1.subtract(ComplexSpecialFunctions.incompleteBeta((w[j-1]+w[j]) / 2*w[j], new Complex(0,-u), new Complex(2,0)));
+					Complex lowerJacobian = j == 0 ? betaJacobian1 : betaJacobian1.subtract(ComplexSpecialFunctions.incompleteBeta((w[j-1]+w[j]) / 2*w[j], new Complex(0,-u), new Complex(1,0)));
+					Complex upperGradient = j == level-1 ? betaGradient2 : betaGradient2.subtract(ComplexSpecialFunctions.incompleteBeta(2*w[j] / (w[j]+w[j+1]), new Complex(-1,u), new Complex(2,0)));
+					Complex upperJacobian = j == level-1 ? betaJacobian2 : betaJacobian2.subtract(ComplexSpecialFunctions.incompleteBeta(2*w[j] / (w[j]+w[j+1]), new Complex(0,u), new Complex(1,0)));
+					values[j] = transform.multiply(lowerGradient.subtract(upperGradient)).getReal();
+					values[level+j] = transform.multiply(lowerJacobian.add(upperJacobian)).getReal();
+					if(j < level-1) {
+						values[2*level+j] = ((((Complex.I).negate()).multiply(u*Math.log((w[j]+w[j+1])*0.5)).exp()).multiply(characteristicFunction)).getReal();
+					}
+				}
+				return values;
+			}, 3*this.level-1);
+
+			for(int j = 0; j < this.level; j++) {
+				g[j] = (2.0 / Math.PI)*v[j]*integrals[j];
+			}
+			for(int j = 0; j < this.level-1; j++) {
+				d[j][j+1] = (-2.0 / ((v[j]+v[j+1])*Math.PI))*(v[j+1]-v[j])*0.5*integrals[2*this.level+j];
+				d[j+1][j] = d[j][j+1];
+			}
+			d[0][0] = (2.0 / Math.PI)*integrals[this.level] + d[0][1];
+			d[this.level-1][this.level-1] = (2.0 / Math.PI)*integrals[2*this.level-1] + d[this.level-1][this.level-2];
+			for(int j = 1; j < this.level-1; j++) {
+				d[j][j] = (2.0 / Math.PI)*integrals[this.level+j] + d[j][j+1] + d[j][j-1];
 			}
 			
 			/* Computation of the determinant of the Jacobi tridiagonal matrix d : */
@@ -247,15 +270,24 @@ public class QuantizableBlackScholesModel implements Quantizable1DProcessInterfa
 		TrapezoidalRealIntegrator mc = new TrapezoidalRealIntegrator(0.01, 100, 50);
 		double sum = 0;
 		
-		this.companionWeights[0] = Math.abs(0.5-((1.0 / Math.PI)*mc.integrate(u -> (((((Complex.I).negate()).multiply(u*Math.log((quantizer[0]+quantizer[1])*0.5)).exp()).multiply( ((model.apply(maturity)).apply(new Complex(u,0))).multiply( Math.exp(maturity*getRiskFreeRate())))).divide(new Complex(0,u))).getReal()   )));
-		this.companionWeights[this.level-1] = Math.abs(0.5+((1.0 / Math.PI)*mc.integrate(u -> (((((Complex.I).negate()).multiply(u*Math.log((quantizer[level-1]+quantizer[level-2])*0.5)).exp()).multiply( ((model.apply(maturity)).apply(new Complex(u,0))).multiply( Math.exp(maturity*getRiskFreeRate())))).divide(new Complex(0,u))).getReal()  )));
+		/* The cumulative distribution function at the mid points (index j, between quantizer[j] and quantizer[j+1]), computed in a single pass. */
+		double[] integrals = mc.integrate(u -> {
+			Complex characteristicFunction = ((model.apply(maturity)).apply(new Complex(u,0))).multiply(Math.exp(maturity*getRiskFreeRate()));
+			double[] values = new double[level-1];
+			for(int j = 0; j < level-1; j++) {
+				values[j] = (((((Complex.I).negate()).multiply(u*Math.log((quantizer[j]+quantizer[j+1])*0.5)).exp()).multiply(characteristicFunction)).divide(new Complex(0,u))).getReal();
+			}
+			return values;
+		}, this.level-1);
+
+		this.companionWeights[0] = Math.abs(0.5-((1.0 / Math.PI)*integrals[0]));
+		this.companionWeights[this.level-1] = Math.abs(0.5+((1.0 / Math.PI)*integrals[this.level-2]));
 		sum = this.companionWeights[0];
 		
 		/* Use of the Cumulative distribution function of the variable to quantize in order to compute the companion weights. */
-		for(int j = 1; j < this.level-1; j++) {
+		for(int i = 1; i < this.level-1; i++) {
 			
-			int i = j;
-			this.companionWeights[i] = Math.abs((mc.integrate(u -> (((((Complex.I).negate()).multiply(u*Math.log((quantizer[i]+quantizer[i-1])*0.5)).exp()).multiply( ((model.apply(maturity)).apply(new Complex(u,0))).multiply( Math.exp(maturity*getRiskFreeRate())))).divide(new Complex(0,u))).getReal() ) - mc.integrate(u -> (((((Complex.I).negate()).multiply(u*Math.log((this.quantizer[i]+this.quantizer[i+1])*0.5)).exp()).multiply( ((model.apply(maturity)).apply(new Complex(u,0))).multiply( Math.exp(maturity*getRiskFreeRate())))).divide(new Complex(0,u))).getReal()   )) / Math.PI);
+			this.companionWeights[i] = Math.abs((integrals[i-1] - integrals[i]) / Math.PI);
 			sum = sum + this.companionWeights[i];
 			
 		}
@@ -33,6 +33,7 @@ public class QuantizableCBIDrivenMultiCurveModel implements QuantizableMultiDimP
 	private double lowerThreshold = 0.001;
 	private double[] quantizer;
 	private double[] companionWeights;
+	private int numberOfIterations;
 
 	/**
 	 * Full constructor, creates an instance of the QuantizableCBIDrivenMultiCurveModel class, 
@@ -49,14 +50,33 @@ public class QuantizableCBIDrivenMultiCurveModel implements QuantizableMultiDimP
 	 * @param tenor
 	 */
 	public QuantizableCBIDrivenMultiCurveModel(double maturity, int level, CBIDrivenMultiCurveModel model, MultiCurveTenor tenor) throws IllegalArgumentException {
+		this(maturity, level, model, tenor, null);
+	}
+	
+	/**
+	 * Creates an instance of the QuantizableCBIDrivenMultiCurveModel class whose Newton-Raphson algorithm is started from the given grid,
+	 * typically the converged quantization grid of a neighbouring maturity (warm start).
+	 * The uniform grid around the expectation of the state variable is still used to substitute abnormal components during the iterations.
+	 * If initialGuess is null, the algorithm starts from this uniform grid, as for the full constructor.
+	 * 
+	 * @param maturity
+	 * @param level
+	 * @param model
+	 * @param tenor
+	 * @param initialGuess Sorted grid of size level used as starting point of the Newton-Raphson algorithm (may be null).
+	 */
+	public QuantizableCBIDrivenMultiCurveModel(double maturity, int level, CBIDrivenMultiCurveModel model, MultiCurveTenor tenor, double[] initialGuess) throws IllegalArgumentException {
 		if(maturity + tenor.getTenorLength() <= model.getTimeHorizon()) {
+			if(initialGuess != null && initialGuess.length != level) {
+				throw new IllegalArgumentException("The initial guess for the quantization grid must have as many components as the level of quantization.");
+			}
 			this.maturity = maturity;
 			this.level = level;
 			this.model = model;
 			this.tenor = tenor;
 			this.quantizer = new double[level];
 			this.companionWeights = new double[level];
-			generateQuantizer();
+			generateQuantizer(initialGuess);
 			generateCompanionWeights();
 		} else {
 			throw new IllegalArgumentException("The time at which the variate to quantize is considered must be inside the validity domain of the CBI process.");
@@ -102,6 +122,14 @@ public class QuantizableCBIDrivenMultiCurveModel implements QuantizableMultiDimP
 		return this.model;
 	}
 
+	/**
+	 * Returns the number of Newton-Raphson iterations that were required to obtain the quantization grid.
+	 * @return the number of iterations (at most the maximum number of iterations of the algorithm).
+	 */
+	public int getNumberOfIterations() {
+		return this.numberOfIterations;
+	}
+
 	@Override
 	public double[] getQuantizationGrid() {
 		return this.quantizer;
@@ -122,7 +150,7 @@ public class QuantizableCBIDrivenMultiCurveModel implements QuantizableMultiDimP
 		return new QuantizableCBIDrivenMultiCurveModel(this.maturity, this.level, (this.model).getCloneForModifiedParameters(parameters), this.tenor);
 	}
 	
-	private void generateQuantizer() {
+	private void generateQuantizer(double[] initialGuess) {
 		
 		TrapezoidalRealIntegrator mc = new TrapezoidalRealIntegrator(0.01, 100, 15);
 		
@@ -144,11 +172,12 @@ public class QuantizableCBIDrivenMultiCurveModel implements QuantizableMultiDimP
                 x0[j] = e - this.getTenorLength()*Math.sqrt(e) + j*h;
             }
         }
-		double[] v = x0;
+		double[] v = (initialGuess != null) ? initialGuess.clone() : x0;
 		
 		/* Start of the Newton-Raphson algorithm. */
 		int maxIterations = 10;
 		double xTolerance = 0.01;
+		this.numberOfIterations = maxIterations;
 		for(int l = 0; l < maxIterations; l++) {
 					
 			double[] w = v;
@@ -156,21 +185,45 @@ public class QuantizableCBIDrivenMultiCurveModel implements QuantizableMultiDimP
 			double[][] d = new double[this.level][this.level];
 			double[] g = new double[this.level];
 		
-			g[0] = (2.0 / Math.PI)*v[0]*mc.integrate(u -> ((((((Complex.I).negate()).multiply(u*Math.log(w[0]))).exp()).multiply( ((model.apply(maturity, tenor.getTenorName())).apply(new Complex(u,0.001)))  )).multiply( (ComplexSpecialFunctions.beta(new Complex(0.001,-u), new Complex(2,0.001)).multiply(new Complex(1,0).subtract(new Complex(lowerThreshold / w[0],0).pow(new Complex(0,-u))).subtract(new Complex(lowerThreshold / w[0],0).pow(new Complex(0,-u)).multiply(new Complex(1-(lowerThreshold / w[0]),0)).divide(ComplexSpecialFunctions.beta(new Complex(0.001,-u), new Complex(1,0.001))))    )  ).subtract(ComplexSpecialFunctions.beta(new Complex(-1,u), new Complex(2,0.001)).multiply(new Complex(1,0).subtract(new Complex(2*w[0] / (w[0]+w[1]),0).pow(new Complex(-1,u))).subtract(new Complex(2*w[0] / (w[0]+w[1]),0).pow(new Complex(-1,u)).multiply(new Complex(1-(2*w[0] / (w[0]+w[1])),0)).divide(ComplexSpecialFunctions.beta(new Complex(-1,u), new Complex(1,0.001))))    )          )) ).getReal()   );
-			g[this.level-1] = (2.0 / Math.PI)*v[this.level-1]*mc.integrate(u -> ((((((Complex.I).negate()).multiply(u*Math.log(w[level-1]))).exp()).multiply( ((model.apply(maturity, tenor.getTenorName())).apply(new Complex(u,0.001)))  )).multiply( (ComplexSpecialFunctions.beta(new Complex(0.001,-u), new Complex(2,0.001)).multiply(new Complex(1,0).subtract(new Complex((w[level-2]+w[level-1]) / 2*w[level-1],0).pow(new Complex(0,-u))).subtract(new Complex((w[level-2]+w[level-1]) / 2*w[level-1],0).pow(new Complex(0,-u)).multiply(new Complex(1-((w[level-2]+w[level-1]) / 2*w[level-1]),0)).divide(ComplexSpecialFunctions.beta(new Complex(0.001,-u), new Complex(1,0.001))))    )  ).subtract(ComplexSpecialFunctions.beta(new Complex(-1,u), new Complex(2,0.001)).multiply(new Complex(1,0).subtract(new Complex(w[level-1] / upperThreshold,0).pow(new Complex(-1,u))).subtract(new Complex(w[level-1] / upperThreshold,0).pow(new Complex(-1,u)).multiply(new Complex(1-(w[level-1] / upperThreshold),0)).divide(ComplexSpecialFunctions.beta(new Complex(-1,u), new Complex(2,0.001))))    ) )) ).getReal()   );
+			/*
+			 * All the integrals of the iteration are computed in a single pass over the integration points, sharing the evaluation of the characteristic function:
+			 * first the integrals of the boundary points, then four integrals per inner point j.
+			 */
+			double[] integrals = mc.integrate(u -> {
+				Complex characteristicFunction = (model.apply(maturity, tenor.getTenorName())).apply(new Complex(u,0.001));
+				double[] values = new double[8+4*(level-2)];
+				values[0] = ((((((Complex.I).negate()).multiply(u*Math.log(w[0]))).exp()).multiply( characteristicFunction  )).multiply( (ComplexSpecialFunctions.beta(new Complex(0.001,-u), new Complex(2,0.001)).multiply(new Complex(1,0).subtract(new Complex(lowerThreshold / w[0],0).pow(new Complex(0,-u))).subtract(new Complex(lowerThreshold / w[0],0).pow(new Complex(0,-u)).multiply(new Complex(1-(lowerThreshold / w[0]),0)).divide(ComplexSpecialFunctions.beta(new Complex(0.001,-u), new Complex(1,0.001))))    )  ).subtract(ComplexSpecialFunctions.beta(new Complex(-1,u), new Complex(2,0.001)).multiply(new Complex(1,0).subtract(new Complex(2*w[0] / (w[0]+w[1]),0).pow(new Complex(-1,u))).subtract(new Complex(2*w[0] / (w[0]+w[1]),0).pow(new Complex(-1,u)).multiply(new Complex(1-(2*w[0] / (w[0]+w[1])),0)).divide(ComplexSpecialFunctions.beta(new Complex(-1,u), new Complex(1,0.001))))    )          )) ).getReal();
+				values[1] = ((((((Complex.I).negate()).multiply(u*Math.log(w[level-1]))).exp()).multiply( characteristicFunction  )).multiply( (ComplexSpecialFunctions.beta(new Complex(0.001,-u), new Complex(2,0.001)).multiply(new Complex(1,0).subtract(new Complex((w[level-2]+w[level-1]) / 2*w[level-1],0).pow(new Complex(0,-u))).subtract(new Complex((w[level-2]+w[level-1]) / 2*w[level-1],0).pow(new Complex(0,-u)).multiply(new Complex(1-((w[level-2]+w[level-1]) / 2*w[level-1]),0)).divide(ComplexSpecialFunctions.beta(new Complex(0.001,-u), new Complex(1,0.001))))    )  ).subtract(ComplexSpecialFunctions.beta(new Complex(-1,u), new Complex(2,0.001)).multiply(new Complex(1,0).subtract(new Complex(w[level-1] / upperThreshold,0).pow(new Complex(-1,u))).subtract(new Complex(w[level-1] / upperThreshold,0).pow(new Complex(-1,u)).multiply(new Complex(1-(w[level-1] / upperThreshold),0)).divide(ComplexSpecialFunctions.beta(new Complex(-1,u), new Complex(2,0.001))))    ) )) ).getReal();
+				values[2] = ((((((Complex.I).negate()).multiply(u*Math.log(w[0]))).exp()).multiply( characteristicFunction  )).multiply( (ComplexSpecialFunctions.beta(new Complex(0.001,-u), new Complex(1,0.001)).multiply(new Complex(1,0).subtract(new Complex(lowerThreshold / w[0],0).pow(new Complex(0,-u)))   ) ).add( ComplexSpecialFunctions.beta(new Complex(0.001,u), new Complex(1,0.001)).multiply(new Complex(1,0).subtract(new Complex(2*w[0] / (w[1]+w[0]),0).pow(new Complex(0,u)))   )      )) ).getReal();
+				values[3] = ((((Complex.I).negate()).multiply(u*Math.log((w[0]+w[1])*0.5)).exp()).multiply( characteristicFunction  )).getReal();
+				values[4] = ((((((Complex.I).negate()).multiply(u*Math.log(w[level-1]))).exp()).multiply( characteristicFunction  )).multiply( (ComplexSpecialFunctions.beta(new Complex(0.001,-u), new Complex(1,0.001)).multiply(new Complex(1,0).subtract(new Complex((w[level-2]+w[level-1]) / 2*w[level-1],0).pow(new Complex(0,-u)))   ) ).add(ComplexSpecialFunctions.beta(new Complex(0.001,u), new Complex(1,0.001)).multiply(new Complex(1,0).subtract(new Complex(w[level-1] / upperThreshold,0).pow(new Complex(0,u)))   )      )) ).getReal();
+				values[5] = ((((Complex.I).negate()).multiply(u*Math.log((w[level-2]+w[level-1])*0.5)).exp()).multiply( characteristicFunction )).getReal();
+				values[6] = ((((Complex.I).negate()).multiply(u*Math.log((w[0]+w[1])*0.5)).exp()).multiply( characteristicFunction  )).getReal();
+				values[7] = ((((Complex.I).negate()).multiply(u*Math.log((w[level-2]+w[level-1])*0.5)).exp()).multiply( characteristicFunction  )).getReal();
+				for(int j = 1; j < level-1; j++) {
+					values[8+4*(j-1)] = ((((((Complex.I).negate()).multiply(u*Math.log(w[j]))).exp()).multiply(characteristicFunction  )).multiply( (ComplexSpecialFunctions.beta(new Complex(0.001,-u), new Complex(2,0.001)).multiply(new Complex(1,0).subtract(new Complex((w[j]+w[j-1])/2*w[j],0).pow(new Complex(0,-u))).subtract(new Complex((w[j]+w[j-1])/2*w[j],0).pow(new Complex(0,-u)).multiply(new Complex(1-((w[j]+w[j-1])/2*w[j]),0)).divide(ComplexSpecialFunctions.beta(new Complex(0.001,-u), new Complex(1,0.001))))    )  ).subtract(ComplexSpecialFunctions.beta(new Complex(-1,u), new Complex(2,0.001)).multiply(new Complex(1,0).subtract(new Complex(2*w[j] / (w[j]+w[j+1]),0).pow(new Complex(-1,u))).subtract(new Complex(2*w[j] / (w[j]+w[j+1]),0).pow(new Complex(-1,u)).multiply(new Complex(1-(2*w[j] / (w[j]+w[j+1])),0)).divide(ComplexSpecialFunctions.beta(new Complex(-1,u), new Complex(2,0.001))))    ) ) )).getReal();
+					values[8+4*(j-1)+1] = ((((Complex.I).negate()).multiply(u*Math.log((w[j-1]+w[j])*0.5)).exp()).multiply(characteristicFunction  )).getReal();
+					values[8+4*(j-1)+2] = ((((Complex.I).negate()).multiply(u*Math.log((w[j+1]+w[j])*0.5)).exp()).multiply(characteristicFunction  )).getReal();
+					values[8+4*(j-1)+3] = ((((((Complex.I).negate()).multiply(u*Math.log(w[j]))).exp()).multiply(characteristicFunction )).multiply( (ComplexSpecialFunctions.beta(new Complex(0.001,-u), new Complex(1,0.001)).multiply(new Complex(1,0).subtract(new Complex((w[j-1]+w[j]) / 2*w[j],0).pow(new Complex(0,-u)))   ) ).add(ComplexSpecialFunctions.beta(new Complex(0.001,u), new Complex(1,0.001)).multiply(new Complex(1,0).subtract(new Complex(2*w[j] / (w[j+1]+w[j]),0).pow(new Complex(0,u)))   )      )) ).getReal();
+				}
+				return values;
+			}, 8+4*(this.level-2));
+
+			g[0] = (2.0 / Math.PI)*v[0]*integrals[0];
+			g[this.level-1] = (2.0 / Math.PI)*v[this.level-1]*integrals[1];
 	
-			d[0][0] = (2.0 / Math.PI)*mc.integrate(u -> ((((((Complex.I).negate()).multiply(u*Math.log(w[0]))).exp()).multiply( ((model.apply(maturity, tenor.getTenorName())).apply(new Complex(u,0.001)))  )).multiply( (ComplexSpecialFunctions.beta(new Complex(0.001,-u), new Complex(1,0.001)).multiply(new Complex(1,0).subtract(new Complex(lowerThreshold / w[0],0).pow(new Complex(0,-u)))   ) ).add( ComplexSpecialFunctions.beta(new Complex(0.001,u), new Complex(1,0.001)).multiply(new Complex(1,0).subtract(new Complex(2*w[0] / (w[1]+w[0]),0).pow(new Complex(0,u)))   )      )) ).getReal()   ) + (-2.0 / ((v[0]+v[1])*Math.PI))*(v[1]-v[0])*0.5*mc.integrate(u -> ((((Complex.I).negate()).multiply(u*Math.log((w[0]+w[1])*0.5)).exp()).multiply( ((model.apply(maturity, tenor.getTenorName())).apply(new Complex(u,0.001)))  )).getReal()   );
-			d[this.level-1][this.level-1] = (2.0 / Math.PI)*mc.integrate(u -> ((((((Complex.I).negate()).multiply(u*Math.log(w[level-1]))).exp()).multiply( ((model.apply(maturity, tenor.getTenorName())).apply(new Complex(u,0.001)))  )).multiply( (ComplexSpecialFunctions.beta(new Complex(0.001,-u), new Complex(1,0.001)).multiply(new Complex(1,0).subtract(new Complex((w[level-2]+w[level-1]) / 2*w[level-1],0).pow(new Complex(0,-u)))   ) ).add(ComplexSpecialFunctions.beta(new Complex(0.001,u), new Complex(1,0.001)).multiply(new Complex(1,0).subtract(new Complex(w[level-1] / upperThreshold,0).pow(new Complex(0,u)))   )      )) ).getReal()   ) + (-2.0 / ((v[level-2]+v[level-1])*Math.PI))*(v[level-1]-v[level-2])*0.5*mc.integrate(u -> ((((Complex.I).negate()).multiply(u*Math.log((w[level-2]+w[level-1])*0.5)).exp()).multiply( ((model.apply(maturity, tenor.getTenorName())).apply(new Complex(u,0.001))) )).getReal()   );
-			d[0][1] = (-2.0 / ((v[0]+v[1])*Math.PI))*(v[1]-v[0])*0.5*mc.integrate(u -> ((((Complex.I).negate()).multiply(u*Math.log((w[0]+w[1])*0.5)).exp()).multiply( ((model.apply(maturity, tenor.getTenorName())).apply(new Complex(u,0.001)))  )).getReal()   );
-			d[this.level-1][this.level-2] = (-2.0 / ((v[this.level-2]+v[this.level-1])*Math.PI))*(v[this.level-1]-v[this.level-2])*0.5*mc.integrate(u -> ((((Complex.I).negate()).multiply(u*Math.log((w[level-2]+w[level-1])*0.5)).exp()).multiply( ((model.apply(maturity, tenor.getTenorName())).apply(new Complex(u,0.001)))  )).getReal()   );
+			d[0][0] = (2.0 / Math.PI)*integrals[2] + (-2.0 / ((v[0]+v[1])*Math.PI))*(v[1]-v[0])*0.5*integrals[3];
+			d[this.level-1][this.level-1] = (2.0 / Math.PI)*integrals[4] + (-2.0 / ((v[level-2]+v[level-1])*Math.PI))*(v[level-1]-v[level-2])*0.5*integrals[5];
+			d[0][1] = (-2.0 / ((v[0]+v[1])*Math.PI))*(v[1]-v[0])*0.5*integrals[6];
+			d[this.level-1][this.level-2] = (-2.0 / ((v[this.level-2]+v[this.level-1])*Math.PI))*(v[this.level-1]-v[this.level-2])*0.5*integrals[7];
 			
 			for(int i = 1; i < this.level-1; i++) {
 				
 				int j = i;
-				g[j] = (2.0 / Math.PI)*v[j]*mc.integrate(u -> ((((((Complex.I).negate()).multiply(u*Math.log(w[j]))).exp()).multiply(((model.apply(maturity, tenor.getTenorName())).apply(new Complex(u,0.001)))  )).multiply( (ComplexSpecialFunctions.beta(new Complex(0.001,-u), new Complex(2,0.001)).multiply(new Complex(1,0).subtract(new Complex((w[j]+w[j-1])/2*w[j],0).pow(new Complex(0,-u))).subtract(new Complex((w[j]+w[j-1])/2*w[j],0).pow(new Complex(0,-u)).multiply(new Complex(1-((w[j]+w[j-1])/2*w[j]),0)).divide(ComplexSpecialFunctions.beta(new Complex(0.001,-u), new Complex(1,0.001))))    )  ).subtract(ComplexSpecialFunctions.beta(new Complex(-1,u), new Complex(2,0.001)).multiply(new Complex(1,0).subtract(new Complex(2*w[j] / (w[j]+w[j+1]),0).pow(new Complex(-1,u))).subtract(new Complex(2*w[j] / (w[j]+w[j+1]),0).pow(new Complex(-1,u)).multiply(new Complex(1-(2*w[j] / (w[j]+w[j+1])),0)).divide(ComplexSpecialFunctions.beta(new Complex(-1,u), new Complex(2,0.001))))    ) ) )).getReal()   );
-				d[j][j-1] = (-2.0 / ((v[j]+v[j-1])*Math.PI))*(v[j]-v[j-1])*0.5*mc.integrate(u -> ((((Complex.I).negate()).multiply(u*Math.log((w[j-1]+w[j])*0.5)).exp()).multiply(((model.apply(maturity, tenor.getTenorName())).apply(new Complex(u,0.001)))  )).getReal()   );
-				d[j][j+1] = (-2.0 / ((v[j+1]+v[j])*Math.PI))*(v[j+1]-v[j])*0.5*mc.integrate(u -> ((((Complex.I).negate()).multiply(u*Math.log((w[j+1]+w[j])*0.5)).exp()).multiply(((model.apply(maturity, tenor.getTenorName())).apply(new Complex(u,0.001)))  )).getReal()   );
-				d[j][j] = (2.0 / Math.PI)*mc.integrate(u -> ((((((Complex.I).negate()).multiply(u*Math.log(w[j]))).exp()).multiply(((model.apply(maturity, tenor.getTenorName())).apply(new Complex(u,0.001))) )).multiply( (ComplexSpecialFunctions.beta(new Complex(0.001,-u), new Complex(1,0.001)).multiply(new Complex(1,0).subtract(new Complex((w[j-1]+w[j]) / 2*w[j],0).pow(new Complex(0,-u)))   ) ).add(ComplexSpecialFunctions.beta(new Complex(0.001,u), new Complex(1,0.001)).multiply(new Complex(1,0).subtract(new Complex(2*w[j] / (w[j+1]+w[j]),0).pow(new Complex(0,u)))   )      )) ).getReal()  ) + d[j][j+1] + d[j][j-1];
+				g[j] = (2.0 / Math.PI)*v[j]*integrals[8+4*(j-1)];
+				d[j][j-1] = (-2.0 / ((v[j]+v[j-1])*Math.PI))*(v[j]-v[j-1])*0.5*integrals[8+4*(j-1)+1];
+				d[j][j+1] = (-2.0 / ((v[j+1]+v[j])*Math.PI))*(v[j+1]-v[j])*0.5*integrals[8+4*(j-1)+2];
+				d[j][j] = (2.0 / Math.PI)*integrals[8+4*(j-1)+3] + d[j][j+1] + d[j][j-1];
 				
 			}
 			
@@ -249,7 +302,8 @@ public class QuantizableCBIDrivenMultiCurveModel implements QuantizableMultiDimP
 			v = r;
 
 			if(distance < xTolerance) {
-			break;
+				this.numberOfIterations = l+1;
+				break;
 			}
 				
 		} 
@@ -263,15 +317,28 @@ public class QuantizableCBIDrivenMultiCurveModel implements QuantizableMultiDimP
 		TrapezoidalRealIntegrator mc = new TrapezoidalRealIntegrator(0.01, 100, 30);
 		double sum = 0;
 		
-		this.companionWeights[0] = (1.0 / (this.getDiscountCurve()).getDiscountFactor(this.maturity+this.getTenorLength()))*Math.abs((this.getDiscountCurve()).getDiscountFactor(this.maturity+this.getTenorLength())*0.5-((1.0 / Math.PI)*mc.integrate(u -> (((((Complex.I).negate()).multiply(u*Math.log((quantizer[0]+quantizer[1])*0.5)).exp()).multiply( ((model.apply(maturity, tenor.getTenorName())).apply(new Complex(u,0.001)))  )).divide(new Complex(0,u))).getReal()   )));
-		this.companionWeights[this.level-1] = (1.0 / (this.getDiscountCurve()).getDiscountFactor(this.maturity+this.getTenorLength()))*Math.abs((this.getDiscountCurve()).getDiscountFactor(this.maturity+this.getTenorLength())*0.5+((1.0 / Math.PI)*mc.integrate(u -> (((((Complex.I).negate()).multiply(u*Math.log((quantizer[level-1]+quantizer[level-2])*0.5)).exp()).multiply( ((model.apply(maturity, tenor.getTenorName())).apply(new Complex(u,0.001))) )).divide(new Complex(0,u))).getReal()  )));
+		/* All the integrals are computed in a single pass over the integration points, sharing the evaluation of the characteristic function. */
+		double[] integrals = mc.integrate(u -> {
+			Complex characteristicFunction = (model.apply(maturity, tenor.getTenorName())).apply(new Complex(u,0.001));
+			double[] values = new double[2+2*(level-2)];
+			values[0] = (((((Complex.I).negate()).multiply(u*Math.log((quantizer[0]+quantizer[1])*0.5)).exp()).multiply( characteristicFunction  )).divide(new Complex(0,u))).getReal();
+			values[1] = (((((Complex.I).negate()).multiply(u*Math.log((quantizer[level-1]+quantizer[level-2])*0.5)).exp()).multiply( characteristicFunction )).divide(new Complex(0,u))).getReal();
+			for(int i = 1; i < level-1; i++) {
+				values[2+2*(i-1)] = (((((Complex.I).negate()).multiply(u*Math.log((quantizer[i]+quantizer[i-1])*0.5)).exp()).multiply( characteristicFunction )).divide(new Complex(0,u))).getReal();
+				values[2+2*(i-1)+1] = (((((Complex.I).negate()).multiply(u*Math.log((this.quantizer[i]+this.quantizer[i+1])*0.5)).exp()).multiply( characteristicFunction   )).divide(new Complex(0,u))).getReal();
+			}
+			return values;
+		}, 2+2*(this.level-2));
+
+		this.companionWeights[0] = (1.0 / (this.getDiscountCurve()).getDiscountFactor(this.maturity+this.getTenorLength()))*Math.abs((this.getDiscountCurve()).getDiscountFactor(this.maturity+this.getTenorLength())*0.5-((1.0 / Math.PI)*integrals[0]));
+		this.companionWeights[this.level-1] = (1.0 / (this.getDiscountCurve()).getDiscountFactor(this.maturity+this.getTenorLength()))*Math.abs((this.getDiscountCurve()).getDiscountFactor(this.maturity+this.getTenorLength())*0.5+((1.0 / Math.PI)*integrals[1]));
 		sum = this.companionWeights[0];
 		
 		/* Use of the Cumulative distribution function of the variable to quantize in order to compute the companion weights. */
 		for(int j = 1; j < this.level-1; j++) {
 			
 			int i = j;
-			this.companionWeights[i] = Math.abs(mc.integrate(u -> (((((Complex.I).negate()).multiply(u*Math.log((quantizer[i]+quantizer[i-1])*0.5)).exp()).multiply( ((model.apply(maturity, tenor.getTenorName())).apply(new Complex(u,0.001))) )).divide(new Complex(0,u))).getReal() ) - mc.integrate(u -> (((((Complex.I).negate()).multiply(u*Math.log((this.quantizer[i]+this.quantizer[i+1])*0.5)).exp()).multiply( ((model.apply(maturity, tenor.getTenorName())).apply(new Complex(u,0.001)))   )).divide(new Complex(0,u))).getReal()   ))*(1.0 / Math.PI )*(1.0 / (this.getDiscountCurve()).getDiscountFactor(this.maturity+this.getTenorLength()));
+			this.companionWeights[i] = Math.abs(integrals[2+2*(i-1)] - integrals[2+2*(i-1)+1])*(1.0 / Math.PI )*(1.0 / (this.getDiscountCurve()).getDiscountFactor(this.maturity+this.getTenorLength()));
 			sum = sum + this.companionWeights[i];
 			
 		}
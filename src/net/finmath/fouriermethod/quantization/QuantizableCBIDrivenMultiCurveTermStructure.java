@@ -0,0 +1,157 @@
+package net.finmath.fouriermethod.quantization;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import net.finmath.fouriermethod.calibration.models.CBIDrivenMultiCurveModel;
+import net.finmath.stochastic.MultiCurveTenor;
+
+/**
+ * This class gathers the quantizations (QuantizableCBIDrivenMultiCurveModel) of the CBIDrivenMultiCurveModel model
+ * for a whole ladder of maturities and a single tenor, all of them at the same level.
+ * If warm-starting is enabled, the maturities are quantized in increasing order and the Newton-Raphson algorithm of each maturity
+ * is started from the converged quantization grid of the previous one, which usually requires fewer iterations than the uniform initial guess.
+ * Otherwise, the maturities are independent from each other and they are quantized in parallel.
+ * The number of iterations required for each maturity along with the overall calculation time are available for diagnostics.
+ *
+ * @author Szulda Guillaume
+ */
+public class QuantizableCBIDrivenMultiCurveTermStructure {
+
+	private final CBIDrivenMultiCurveModel model;
+	private final MultiCurveTenor tenor;
+	private final int level;
+	private final double[] maturities;
+	private final boolean isWarmStarted;
+	private final QuantizableCBIDrivenMultiCurveModel[] quantizedModels;
+	private double calculationTime;
+
+	/**
+	 * Creates the quantizations of the CBIDrivenMultiCurveModel model at level for every maturity and the tenor.
+	 *
+	 * @param maturities The maturities at which the underlying is quantized (they are sorted in increasing order).
+	 * @param level
+	 * @param model
+	 * @param tenor
+	 * @param isWarmStarted If true, each maturity is seeded with the quantization grid of the previous one, otherwise the maturities are quantized in parallel.
+	 * @throws IllegalArgumentException
+	 */
+	public QuantizableCBIDrivenMultiCurveTermStructure(double[] maturities, int level, CBIDrivenMultiCurveModel model, MultiCurveTenor tenor, boolean isWarmStarted) throws IllegalArgumentException {
+		if(maturities.length == 0) {
+			throw new IllegalArgumentException("At least one maturity is required.");
+		} else {
+			this.maturities = maturities.clone();
+			Arrays.sort(this.maturities);
+			this.level = level;
+			this.model = model;
+			this.tenor = tenor;
+			this.isWarmStarted = isWarmStarted;
+			this.quantizedModels = new QuantizableCBIDrivenMultiCurveModel[this.maturities.length];
+			generateQuantizations();
+		}
+	}
+
+	/**
+	 * Creates the quantizations of the CBIDrivenMultiCurveModel model at level for every maturity and the tenor, using warm-starting.
+	 *
+	 * @param maturities
+	 * @param level
+	 * @param model
+	 * @param tenor
+	 * @throws IllegalArgumentException
+	 */
+	public QuantizableCBIDrivenMultiCurveTermStructure(double[] maturities, int level, CBIDrivenMultiCurveModel model, MultiCurveTenor tenor) throws IllegalArgumentException {
+		this(maturities, level, model, tenor, true);
+	}
+
+	public CBIDrivenMultiCurveModel getUnderlyingModel() {
+		return this.model;
+	}
+
+	public MultiCurveTenor getTenor() {
+		return this.tenor;
+	}
+
+	public int getLevel() {
+		return this.level;
+	}
+
+	public double[] getMaturities() {
+		return this.maturities.clone();
+	}
+
+	public int getNumberOfMaturities() {
+		return this.maturities.length;
+	}
+
+	public boolean isWarmStarted() {
+		return this.isWarmStarted;
+	}
+
+	/**
+	 * Returns the quantization of the underlying model at the maturity of index maturityIndex.
+	 * @param maturityIndex
+	 * @return the quantized model.
+	 */
+	public QuantizableCBIDrivenMultiCurveModel getQuantizedModel(int maturityIndex) {
+		return this.quantizedModels[maturityIndex];
+	}
+
+	/**
+	 * Returns the quantization of the underlying model at the given maturity, which has to be one of the maturities of the ladder.
+	 * @param maturity
+	 * @return the quantized model.
+	 * @throws IllegalArgumentException
+	 */
+	public QuantizableCBIDrivenMultiCurveModel getQuantizedModel(double maturity) throws IllegalArgumentException {
+		int maturityIndex = Arrays.binarySearch(this.maturities, maturity);
+		if(maturityIndex < 0) {
+			throw new IllegalArgumentException("The maturity " + maturity + " does not belong to the quantized term structure.");
+		}
+		return this.quantizedModels[maturityIndex];
+	}
+
+	/**
+	 * Returns the number of Newton-Raphson iterations required for each maturity (in increasing order of maturities).
+	 * @return the numbers of iterations.
+	 */
+	public int[] getNumberOfIterations() {
+		int[] numberOfIterations = new int[this.quantizedModels.length];
+		for(int i = 0; i < numberOfIterations.length; i++) {
+			numberOfIterations[i] = this.quantizedModels[i].getNumberOfIterations();
+		}
+		return numberOfIterations;
+	}
+
+	/**
+	 * Returns the wall time required to quantize the whole ladder of maturities.
+	 * @return the calculation time in seconds.
+	 */
+	public double getCalculationTime() {
+		return this.calculationTime;
+	}
+
+	private void generateQuantizations() {
+
+		long startMillis = System.currentTimeMillis();
+
+		if(this.isWarmStarted) {
+			/* Each maturity is seeded with the converged grid of the previous one. */
+			double[] initialGuess = null;
+			for(int i = 0; i < this.maturities.length; i++) {
+				this.quantizedModels[i] = new QuantizableCBIDrivenMultiCurveModel(this.maturities[i], this.level, this.model, this.tenor, initialGuess);
+				initialGuess = this.quantizedModels[i].getQuantizationGrid();
+			}
+		} else {
+			/* Without warm-starting the maturities are independent, hence they can be quantized in parallel. */
+			IntStream.range(0, this.maturities.length).parallel().forEach(i ->
+			this.quantizedModels[i] = new QuantizableCBIDrivenMultiCurveModel(this.maturities[i], this.level, this.model, this.tenor)
+					);
+		}
+
+		long endMillis = System.currentTimeMillis();
+		this.calculationTime = (endMillis-startMillis)/1000.0;
+
+	}
+
+}
@@ -0,0 +1,372 @@
+package net.finmath.fouriermethod.quantization;
+
+import java.util.Arrays;
+import java.util.function.UnaryOperator;
+
+import org.apache.commons.math3.complex.Complex;
+
+import net.finmath.fouriermethod.calibration.models.CBIDrivenMultiCurveModel;
+import net.finmath.functions.NormalDistribution;
+import net.finmath.modelling.ModelInterface;
+import net.finmath.stochastic.CBIProcessInterface;
+import net.finmath.time.TimeDiscretizationInterface;
+
+/**
+ * This class deals with the recursive (Markovian) product quantization of the multi-dimensional CBI process driving a CBIDrivenMultiCurveModel,
+ * along some time discretization.
+ * The components of the flow being independent, each of them is quantized by recursive marginal quantization of its Euler scheme,
+ * whose transition is approximated by a Gaussian one matching the first two conditional moments of the CBI process:
+ * given X(t_k) = x and b = psi'(0), c = psi''(0), psi standing for the (complex) branching mechanism entering the characteristic function of the model,
+ * X(t_{k+1}) has mean x e^{-b dt} + beta (1 - e^{-b dt}) / b and variance c x (e^{-b dt} - e^{-2b dt}) / b + c beta (1 - e^{-b dt})^2 / (2b^2),
+ * the factor (1 - e^{-b dt}) / b tending to dt for b tending to 0 (no mean reversion), hence the mean x + beta dt and the variance c x dt + c beta dt^2 / 2.
+ * The points of the grids are not floored at 0, so that the conditional mean stays affine in the state (the variance being floored at 0 instead),
+ * since flooring them shifts the mean of the quantization upwards at every time step whenever the Gaussian transitions put some mass on the negative half-line.
+ * At every time step, the quantization grid of a component is obtained by Lloyd's algorithm for the Gaussian mixture stemming from the grid of the previous time:
+ * its points are the conditional means of the cells from which they are computed at the last iteration, and the transition weights are the probabilities of these cells,
+ * so that the quantization is stationary and preserves the mean of the mixture even when the algorithm stops before convergence.
+ * The transition weights between both grids are stored as a SparseTransitionMatrix.
+ * The quantization of the whole vector is then the product of the quantizations of its components,
+ * which allows for pricing products depending on several dates by backward induction on the product grids.
+ *
+ * @author Szulda Guillaume
+ */
+public class RecursiveQuantizableCBIDrivenMultiCurveModel implements ModelInterface {
+
+	private final CBIDrivenMultiCurveModel model;
+	private final TimeDiscretizationInterface timeDiscretization;
+	private final int level;
+	private final double threshold;
+	private double[][][] quantizers;
+	private double[][][] companionWeights;
+	private SparseTransitionMatrix[][] transitionMatrices;
+
+	private final int maxIterations = 100;
+	private final double xTolerance = 1E-10;
+
+	/**
+	 * Full constructor, creates the recursive product quantization at level of the CBI process of model along the time discretization.
+	 * Transition weights lower than threshold times the largest weight of their row are considered negligible.
+	 *
+	 * @param timeDiscretization The time discretization, starting at 0, on which the CBI process is quantized.
+	 * @param level The size of the quantization grid of each component at every positive time.
+	 * @param model
+	 * @param threshold
+	 * @throws IllegalArgumentException
+	 */
+	public RecursiveQuantizableCBIDrivenMultiCurveModel(TimeDiscretizationInterface timeDiscretization, int level, CBIDrivenMultiCurveModel model, double threshold) throws IllegalArgumentException {
+		if(timeDiscretization.getTime(0) != 0.0 || timeDiscretization.getTime(timeDiscretization.getNumberOfTimeSteps()) > model.getTimeHorizon()) {
+			throw new IllegalArgumentException("The time discretization must start at 0 and be inside the validity domain of the CBI process.");
+		} else {
+			this.timeDiscretization = timeDiscretization;
+			this.level = level;
+			this.model = model;
+			this.threshold = threshold;
+			generateQuantizers();
+		}
+	}
+
+	/**
+	 * Creates the recursive product quantization at level of the CBI process of model along the time discretization,
+	 * transition weights lower than 1E-10 times the largest weight of their row being considered negligible.
+	 *
+	 * @param timeDiscretization
+	 * @param level
+	 * @param model
+	 * @throws IllegalArgumentException
+	 */
+	public RecursiveQuantizableCBIDrivenMultiCurveModel(TimeDiscretizationInterface timeDiscretization, int level, CBIDrivenMultiCurveModel model) throws IllegalArgumentException {
+		this(timeDiscretization, level, model, 1E-10);
+	}
+
+	public CBIDrivenMultiCurveModel getUnderlyingModel() {
+		return this.model;
+	}
+
+	public TimeDiscretizationInterface getTimeDiscretization() {
+		return this.timeDiscretization;
+	}
+
+	public int getLevel() {
+		return this.level;
+	}
+
+	public int getDimension() {
+		return this.model.getDimension();
+	}
+
+	/**
+	 * Returns the quantization grid of the given component at the given time index (a single point at time 0).
+	 * @param timeIndex
+	 * @param component
+	 * @return the quantization grid.
+	 */
+	public double[] getQuantizationGrid(int timeIndex, int component) {
+		return this.quantizers[timeIndex][component];
+	}
+
+	/**
+	 * Returns the companion weights (the law) of the quantization of the given component at the given time index.
+	 * @param timeIndex
+	 * @param component
+	 * @return the companion weights.
+	 */
+	public double[] getCompanionWeights(int timeIndex, int component) {
+		return this.companionWeights[timeIndex][component];
+	}
+
+	/**
+	 * Returns the transition weights of the given component from the time index timeIndex to timeIndex+1.
+	 * @param timeIndex
+	 * @param component
+	 * @return the sparse matrix of transition weights.
+	 */
+	public SparseTransitionMatrix getTransitionMatrix(int timeIndex, int component) {
+		return this.transitionMatrices[timeIndex][component];
+	}
+
+	/**
+	 * Returns the number of states of the product grid at the given time index.
+	 * The states are numbered in row-major order, the last component varying fastest.
+	 * @param timeIndex
+	 * @return the number of states of the product grid.
+	 */
+	public int getNumberOfStates(int timeIndex) {
+		int numberOfStates = 1;
+		for(int component = 0; component < this.getDimension(); component++) {
+			numberOfStates = numberOfStates*this.quantizers[timeIndex][component].length;
+		}
+		return numberOfStates;
+	}
+
+	/**
+	 * Returns the values of the given component on the product grid at the given time index.
+	 * @param timeIndex
+	 * @param component
+	 * @return the values of the component for every state of the product grid.
+	 */
+	public double[] getProductGridValues(int timeIndex, int component) {
+		double[] grid = this.quantizers[timeIndex][component];
+		int stride = getStride(timeIndex, component);
+		double[] values = new double[getNumberOfStates(timeIndex)];
+		for(int state = 0; state < values.length; state++) {
+			values[state] = grid[(state / stride) % grid.length];
+		}
+		return values;
+	}
+
+	/**
+	 * Computes the conditional expectation at the time index timeIndex of a function of the state at timeIndex+1, both given on the product grids,
+	 * by applying the transition matrices of the components one after the other.
+	 *
+	 * @param timeIndex
+	 * @param valuesAtNextTime The values of the function on the product grid of timeIndex+1.
+	 * @return The values of the conditional expectation on the product grid of timeIndex.
+	 */
+	public double[] getConditionalExpectation(int timeIndex, double[] valuesAtNextTime) {
+		int[] sizes = new int[this.getDimension()];
+		for(int component = 0; component < this.getDimension(); component++) {
+			sizes[component] = this.quantizers[timeIndex+1][component].length;
+		}
+		double[] values = valuesAtNextTime;
+		for(int component = 0; component < this.getDimension(); component++) {
+			SparseTransitionMatrix transition = this.transitionMatrices[timeIndex][component];
+			int stride = 1;
+			for(int other = component+1; other < this.getDimension(); other++) {
+				stride = stride*sizes[other];
+			}
+			int numberOfOuterStates = 1;
+			for(int other = 0; other < component; other++) {
+				numberOfOuterStates = numberOfOuterStates*sizes[other];
+			}
+			/* The component is now contracted from the size of the grid at timeIndex+1 to the size of the grid at timeIndex. */
+			sizes[component] = transition.getNumberOfRows();
+			double[] result = new double[numberOfOuterStates*sizes[component]*stride];
+			for(int outer = 0; outer < numberOfOuterStates; outer++) {
+				for(int inner = 0; inner < stride; inner++) {
+					transition.getConditionalExpectation(values, outer*transition.getNumberOfColumns()*stride + inner, stride, result, outer*transition.getNumberOfRows()*stride + inner, stride);
+				}
+			}
+			values = result;
+		}
+		return values;
+	}
+
+	private int getStride(int timeIndex, int component) {
+		int stride = 1;
+		for(int other = component+1; other < this.getDimension(); other++) {
+			stride = stride*this.quantizers[timeIndex][other].length;
+		}
+		return stride;
+	}
+
+	private void generateQuantizers() {
+
+		CBIProcessInterface cbiProcess = this.model.getCBIProcess();
+		int numberOfTimes = this.timeDiscretization.getNumberOfTimes();
+
+		/* First and second derivatives at 0 of the branching mechanism used by the characteristic function, the same one as for the Fourier pricing. */
+		UnaryOperator<Complex> psi = cbiProcess.getComplexBranchingMechanism();
+		double h = 1E-4;
+		double psiPrime = (psi.apply(new Complex(h, 0)).getReal() - psi.apply(new Complex(-h, 0)).getReal()) / (2*h);
+		double psiSecond = (psi.apply(new Complex(h, 0)).getReal() - 2.0*psi.apply(Complex.ZERO).getReal() + psi.apply(new Complex(-h, 0)).getReal()) / (h*h);
+
+		this.quantizers = new double[numberOfTimes][this.getDimension()][];
+		this.companionWeights = new double[numberOfTimes][this.getDimension()][];
+		this.transitionMatrices = new SparseTransitionMatrix[numberOfTimes-1][this.getDimension()];
+
+		for(int component = 0; component < this.getDimension(); component++) {
+
+			double immigrationRate = cbiProcess.getImmigrationRates()[component];
+
+			this.quantizers[0][component] = new double[] { cbiProcess.getInitialValues()[component] };
+			this.companionWeights[0][component] = new double[] { 1.0 };
+
+			for(int timeIndex = 0; timeIndex < numberOfTimes-1; timeIndex++) {
+
+				double dt = this.timeDiscretization.getTimeStep(timeIndex);
+				double decay = Math.exp(-psiPrime*dt);
+				double integratedDecay = getIntegratedDecay(psiPrime, dt);
+				double[] grid = this.quantizers[timeIndex][component];
+				double[] weights = this.companionWeights[timeIndex][component];
+
+				/* Moments of the Gaussian transitions starting from every point of the current grid. */
+				double[] means = new double[grid.length];
+				double[] standardDeviations = new double[grid.length];
+				for(int j = 0; j < grid.length; j++) {
+					double x = grid[j];
+					means[j] = x*decay + immigrationRate*integratedDecay;
+					double variance = psiSecond*x*decay*integratedDecay + 0.5*psiSecond*immigrationRate*integratedDecay*integratedDecay;
+					standardDeviations[j] = Math.sqrt(Math.max(variance, 0.0));
+				}
+
+				double[] boundaries = new double[this.level-1];
+				double[] nextGrid = generateQuantizer(means, standardDeviations, weights, boundaries);
+				double[][] transitionWeights = new double[grid.length][];
+				for(int j = 0; j < grid.length; j++) {
+					transitionWeights[j] = getCellProbabilities(boundaries, means[j], standardDeviations[j]);
+				}
+
+				this.transitionMatrices[timeIndex][component] = new SparseTransitionMatrix(transitionWeights, this.threshold);
+				this.quantizers[timeIndex+1][component] = nextGrid;
+				this.companionWeights[timeIndex+1][component] = this.transitionMatrices[timeIndex][component].getPropagatedWeights(weights);
+			}
+		}
+	}
+
+	/**
+	 * Returns (1 - e^{-b dt}) / b, the integral of e^{-b s} from 0 to dt, without cancellation for small b and with its limit dt for b = 0.
+	 */
+	private static double getIntegratedDecay(double b, double dt) {
+		if(Math.abs(b*dt) < 1E-8) {
+			return dt*(1 - 0.5*b*dt);
+		}
+		return -Math.expm1(-b*dt) / b;
+	}
+
+	/**
+	 * Lloyd's algorithm for the Gaussian mixture with the given means, standard deviations and weights.
+	 * Returns the conditional means of the cells of the last iteration, whose boundaries are written to boundaries.
+	 */
+	private double[] generateQuantizer(double[] means, double[] standardDeviations, double[] weights, double[] boundaries) {
+
+		/* Initial guess: the mixture is replaced by the Gaussian law with the same first two moments. */
+		double mean = 0;
+		double secondMoment = 0;
+		for(int j = 0; j < means.length; j++) {
+			mean = mean + weights[j]*means[j];
+			secondMoment = secondMoment + weights[j]*(standardDeviations[j]*standardDeviations[j] + means[j]*means[j]);
+		}
+		double standardDeviation = Math.sqrt(Math.max(secondMoment - mean*mean, 0.0));
+
+		double[] v = new double[this.level];
+		for(int i = 0; i < this.level; i++) {
+			v[i] = mean + standardDeviation*NormalDistribution.inverseCumulativeDistribution((i + 0.5) / this.level);
+		}
+
+		double[] r = v;
+		for(int l = 0; l < this.maxIterations; l++) {
+
+			for(int i = 0; i < this.level-1; i++) {
+				boundaries[i] = 0.5*(v[i] + v[i+1]);
+			}
+
+			double[] mass = new double[this.level];
+			double[] firstMoment = new double[this.level];
+
+			for(int j = 0; j < means.length; j++) {
+				double previousCdf = 0.0;
+				double previousDensity = 0.0;
+				double previousIndicator = 0.0;
+				for(int i = 0; i < this.level; i++) {
+					double cdf, density, indicator;
+					if(i == this.level-1) {
+						cdf = 1.0;
+						density = 0.0;
+						indicator = 1.0;
+					} else {
+						double boundary = boundaries[i];
+						if(standardDeviations[j] > 0) {
+							double z = (boundary - means[j]) / standardDeviations[j];
+							cdf = NormalDistribution.cumulativeDistribution(z);
+							density = NormalDistribution.density(z);
+						} else {
+							cdf = means[j] <= boundary ? 1.0 : 0.0;
+							density = 0.0;
+						}
+						indicator = means[j] <= boundary ? 1.0 : 0.0;
+					}
+					double probability = cdf - previousCdf;
+					mass[i] = mass[i] + weights[j]*probability;
+					if(standardDeviations[j] > 0) {
+						firstMoment[i] = firstMoment[i] + weights[j]*(means[j]*probability + standardDeviations[j]*(previousDensity - density));
+					} else {
+						firstMoment[i] = firstMoment[i] + weights[j]*means[j]*(indicator - previousIndicator);
+					}
+					previousCdf = cdf;
+					previousDensity = density;
+					previousIndicator = indicator;
+				}
+			}
+
+			double distance = 0;
+			r = new double[this.level];
+			for(int i = 0; i < this.level; i++) {
+				/* Cells with no mass keep their point. */
+				r[i] = mass[i] > 0 ? firstMoment[i] / mass[i] : v[i];
+				distance = Math.max(distance, Math.abs(r[i] - v[i]));
+			}
+
+			if(distance < this.xTolerance) {
+				break;
+			}
+			v = r.clone();
+			Arrays.sort(v);
+		}
+
+		return r;
+	}
+
+	/**
+	 * Probabilities of the cells with the given (increasing) boundaries for the Gaussian law with the given mean and standard deviation.
+	 */
+	private static double[] getCellProbabilities(double[] boundaries, double mean, double standardDeviation) {
+		double[] probabilities = new double[boundaries.length+1];
+		double previousCdf = 0.0;
+		for(int i = 0; i < probabilities.length; i++) {
+			double cdf;
+			if(i == boundaries.length) {
+				cdf = 1.0;
+			} else {
+				if(standardDeviation > 0) {
+					cdf = NormalDistribution.cumulativeDistribution((boundaries[i] - mean) / standardDeviation);
+				} else {
+					cdf = mean <= boundaries[i] ? 1.0 : 0.0;
+				}
+			}
+			probabilities[i] = cdf - previousCdf;
+			previousCdf = cdf;
+		}
+		return probabilities;
+	}
+
+}
@@ -0,0 +1,150 @@
+package net.finmath.fouriermethod.quantization;
+
+import net.finmath.fouriermethod.calibration.models.CBIDrivenMultiCurveModel;
+import net.finmath.modelling.ModelInterface;
+import net.finmath.modelling.ProductInterface;
+import net.finmath.stochastic.CBIProcessInterface;
+
+/**
+ * Multi curve pricer of a strip of caplets based on the recursive product quantization (RecursiveQuantizableCBIDrivenMultiCurveModel) of the driving CBI process.
+ * The time-0 prices of all the caplets, which may have different strikes and maturities, are obtained by a single backward induction along the time discretization of the quantization,
+ * the numeraire being taken into account by discounting the values with the quantized short rate at every time step.
+ * The maturities are mapped to the nearest time of the time discretization which is less or equal, as in the Monte Carlo simulation.
+ *
+ * @author Szulda Guillaume
+ */
+public class RecursiveQuantizationMultiCurveCapletStripPricer implements ProductInterface {
+
+	private final double[] strikes;
+	private final double[] maturities;
+	private final String tenorName;
+
+	/**
+	 * Creates the strip of caplets of the given strikes and maturities (strikes[i] being the strike of the caplet of maturity maturities[i]) on the tenor tenorName.
+	 * @param strikes
+	 * @param maturities
+	 * @param tenorName
+	 * @throws IllegalArgumentException
+	 */
+	public RecursiveQuantizationMultiCurveCapletStripPricer(double[] strikes, double[] maturities, String tenorName) throws IllegalArgumentException {
+		if(strikes.length != maturities.length) {
+			throw new IllegalArgumentException("There must be as many strikes as maturities.");
+		} else {
+			this.strikes = strikes;
+			this.maturities = maturities;
+			this.tenorName = tenorName;
+		}
+	}
+
+	@Override
+	public double[] getValue(ModelInterface model) throws IllegalArgumentException {
+		if(model instanceof RecursiveQuantizableCBIDrivenMultiCurveModel) {
+			return getValue((RecursiveQuantizableCBIDrivenMultiCurveModel)model);
+		}
+		else {
+			throw new IllegalArgumentException("The product " + this.getClass()
+			+ " cannot be valued against a model " + model.getClass() + "."
+			+ "It requires a model of type " + RecursiveQuantizableCBIDrivenMultiCurveModel.class + ".");
+		}
+	}
+
+	/**
+	 * This method provides the time-0 prices of the caplets of the strip, computed by backward induction on the product quantization grids.
+	 * @param model
+	 * @return The prices of the caplets, in the order of the strikes and maturities.
+	 */
+	public double[] getValue(RecursiveQuantizableCBIDrivenMultiCurveModel model) {
+
+		CBIDrivenMultiCurveModel underlying = model.getUnderlyingModel();
+		CBIProcessInterface cbiProcess = underlying.getCBIProcess();
+		int tenor;
+
+		if(this.tenorName.equals("forward-EUR-3M")) {
+			tenor = 0;
+		}else if(this.tenorName.equals("forward-EUR-6M")){
+			tenor = 1;
+		}else {
+			throw new IllegalArgumentException("The curve is not available");
+		}
+
+		double tenorLength = underlying.getTenorLength(tenor);
+		int numberOfCaplets = this.maturities.length;
+		int[] maturityIndices = new int[numberOfCaplets];
+		int lastTimeIndex = 0;
+		for(int p = 0; p < numberOfCaplets; p++) {
+			if(this.maturities[p] + tenorLength > underlying.getTimeHorizon() || this.maturities[p] < 0) {
+				throw new IllegalArgumentException("The maturity and the tenor of the caplet must be inside the validity domain of the CBI process.");
+			}
+			maturityIndices[p] = model.getTimeDiscretization().getTimeIndexNearestLessOrEqual(this.maturities[p]);
+			lastTimeIndex = Math.max(lastTimeIndex, maturityIndices[p]);
+		}
+
+		/* values[p] stands for the (discounted) value of the p-th caplet on the product grid of the current time. */
+		double[][] values = new double[numberOfCaplets][];
+
+		for(int timeIndex = lastTimeIndex; timeIndex >= 0; timeIndex--) {
+
+			int numberOfStates = model.getNumberOfStates(timeIndex);
+			double[][] componentValues = new double[model.getDimension()][];
+			for(int component = 0; component < model.getDimension(); component++) {
+				componentValues[component] = model.getProductGridValues(timeIndex, component);
+			}
+
+			/* Step back and discount by the quantized short rate, sum_i lambda_i X_i, at the left point of the time step. */
+			if(timeIndex < lastTimeIndex) {
+				double dt = model.getTimeDiscretization().getTimeStep(timeIndex);
+				double[] discount = new double[numberOfStates];
+				for(int state = 0; state < numberOfStates; state++) {
+					double rate = 0;
+					for(int component = 0; component < model.getDimension(); component++) {
+						rate = rate + cbiProcess.getLambda()[component]*componentValues[component][state];
+					}
+					discount[state] = Math.exp(-rate*dt);
+				}
+				for(int p = 0; p < numberOfCaplets; p++) {
+					if(values[p] != null) {
+						values[p] = model.getConditionalExpectation(timeIndex, values[p]);
+						for(int state = 0; state < numberOfStates; state++) {
+							values[p][state] = values[p][state]*discount[state];
+						}
+					}
+				}
+			}
+
+			/* Payoffs of the caplets whose maturity is mapped to the current time. */
+			for(int p = 0; p < numberOfCaplets; p++) {
+				if(maturityIndices[p] == timeIndex) {
+					double maturity = this.maturities[p];
+					double spreadShift = underlying.getFunctionC(maturity, tenor);
+					double bondShift = underlying.getIntegralOfFunctionL(maturity, maturity + tenorLength);
+					for(int component = 0; component < model.getDimension(); component++) {
+						bondShift = bondShift + cbiProcess.getImmigrationRates()[component]*cbiProcess.getFunctionsVZero()[component].getIntegral(0, tenorLength);
+					}
+					double numeraire = Math.exp(underlying.getIntegralOfFunctionL(0, maturity));
+					values[p] = new double[numberOfStates];
+					for(int state = 0; state < numberOfStates; state++) {
+						double spreadExponent = spreadShift;
+						double bondExponent = -bondShift;
+						for(int component = 0; component < model.getDimension(); component++) {
+							double x = componentValues[component][state];
+							if(component <= tenor) {
+								spreadExponent = spreadExponent + x;
+							}
+							bondExponent = bondExponent - x*cbiProcess.getFunctionsVZero()[component].getValue(tenorLength);
+						}
+						double payoff = Math.exp(spreadExponent) - Math.exp(bondExponent)*(1 + this.strikes[p]*tenorLength);
+						values[p][state] = Math.max(payoff, 0.0) / numeraire;
+					}
+				}
+			}
+		}
+
+		/* The grid at time 0 consists of the initial values only. */
+		double[] prices = new double[numberOfCaplets];
+		for(int p = 0; p < numberOfCaplets; p++) {
+			prices[p] = values[p][0];
+		}
+		return prices;
+	}
+
+}
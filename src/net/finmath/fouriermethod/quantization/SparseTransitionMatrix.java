@@ -0,0 +1,148 @@
+package net.finmath.fouriermethod.quantization;
+
+/**
+ * This class stands for the matrix of transition weights between two consecutive quantization grids of a recursive quantization,
+ * that is the probability for the quantized process to move from the i-th point of the grid at some time to the j-th point of the grid at the next time.
+ * The matrix is stored in the compressed sparse row format by means of primitive arrays:
+ * the non-negligible weights of the i-th row are values[rowPointers[i]], ..., values[rowPointers[i+1]-1],
+ * their column indices being stored in columnIndices at the same positions.
+ * Weights below a given threshold are dropped, the remaining ones being renormalized so that every row still sums up to one.
+ *
+ * @author Szulda Guillaume
+ */
+public class SparseTransitionMatrix {
+
+	private final int numberOfRows;
+	private final int numberOfColumns;
+	private final int[] rowPointers;
+	private final int[] columnIndices;
+	private final double[] values;
+
+	/**
+	 * Creates the sparse representation of the dense matrix of transition weights.
+	 * The weights of a row lower than threshold times the largest weight of this row are dropped and the row is renormalized.
+	 *
+	 * @param transitionWeights The dense matrix, transitionWeights[i][j] being the weight of the transition from i to j.
+	 * @param threshold Relative threshold under which a weight is considered negligible.
+	 */
+	public SparseTransitionMatrix(double[][] transitionWeights, double threshold) {
+		this.numberOfRows = transitionWeights.length;
+		this.numberOfColumns = this.numberOfRows > 0 ? transitionWeights[0].length : 0;
+		this.rowPointers = new int[this.numberOfRows+1];
+
+		int numberOfNonZeros = 0;
+		for(int i = 0; i < this.numberOfRows; i++) {
+			double cutOff = threshold*getMax(transitionWeights[i]);
+			for(int j = 0; j < this.numberOfColumns; j++) {
+				if(transitionWeights[i][j] > cutOff) {
+					numberOfNonZeros++;
+				}
+			}
+		}
+
+		this.columnIndices = new int[numberOfNonZeros];
+		this.values = new double[numberOfNonZeros];
+
+		int position = 0;
+		for(int i = 0; i < this.numberOfRows; i++) {
+			this.rowPointers[i] = position;
+			double cutOff = threshold*getMax(transitionWeights[i]);
+			double sum = 0;
+			for(int j = 0; j < this.numberOfColumns; j++) {
+				if(transitionWeights[i][j] > cutOff) {
+					this.columnIndices[position] = j;
+					this.values[position] = transitionWeights[i][j];
+					sum = sum + transitionWeights[i][j];
+					position++;
+				}
+			}
+			for(int k = this.rowPointers[i]; k < position; k++) {
+				this.values[k] = this.values[k] / sum;
+			}
+		}
+		this.rowPointers[this.numberOfRows] = position;
+	}
+
+	public int getNumberOfRows() {
+		return this.numberOfRows;
+	}
+
+	public int getNumberOfColumns() {
+		return this.numberOfColumns;
+	}
+
+	public int getNumberOfNonZeros() {
+		return this.values.length;
+	}
+
+	/**
+	 * Returns the transition weight from the state row to the state column (zero if negligible).
+	 * @param row
+	 * @param column
+	 * @return the transition weight.
+	 */
+	public double get(int row, int column) {
+		int index = java.util.Arrays.binarySearch(this.columnIndices, this.rowPointers[row], this.rowPointers[row+1], column);
+		return index >= 0 ? this.values[index] : 0.0;
+	}
+
+	/**
+	 * Computes the conditional expectation of a function of the state at the next time, given the state at the current time,
+	 * that is result[i] = sum_j weight(i,j) * valuesAtNextTime[j].
+	 *
+	 * @param valuesAtNextTime The values of the function on the grid of the next time.
+	 * @return The values of the conditional expectation on the grid of the current time.
+	 */
+	public double[] getConditionalExpectation(double[] valuesAtNextTime) {
+		double[] result = new double[this.numberOfRows];
+		getConditionalExpectation(valuesAtNextTime, 0, 1, result, 0, 1);
+		return result;
+	}
+
+	/**
+	 * Computes the conditional expectation along one dimension of a product grid stored as a flat array,
+	 * that is result[resultOffset + i*resultStride] = sum_j weight(i,j) * valuesAtNextTime[offset + j*stride].
+	 *
+	 * @param valuesAtNextTime The flat array containing the values at the next time.
+	 * @param offset The position of the first value of the fiber.
+	 * @param stride The distance between two consecutive values of the fiber.
+	 * @param result The flat array receiving the conditional expectations.
+	 * @param resultOffset The position of the first result of the fiber.
+	 * @param resultStride The distance between two consecutive results of the fiber.
+	 */
+	public void getConditionalExpectation(double[] valuesAtNextTime, int offset, int stride, double[] result, int resultOffset, int resultStride) {
+		for(int i = 0; i < this.numberOfRows; i++) {
+			double sum = 0;
+			for(int k = this.rowPointers[i]; k < this.rowPointers[i+1]; k++) {
+				sum = sum + this.values[k]*valuesAtNextTime[offset + this.columnIndices[k]*stride];
+			}
+			result[resultOffset + i*resultStride] = sum;
+		}
+	}
+
+	/**
+	 * Propagates the law of the quantized process forward in time,
+	 * that is result[j] = sum_i weights[i] * weight(i,j).
+	 *
+	 * @param weights The companion weights of the grid at the current time.
+	 * @return The companion weights of the grid at the next time.
+	 */
+	public double[] getPropagatedWeights(double[] weights) {
+		double[] result = new double[this.numberOfColumns];
+		for(int i = 0; i < this.numberOfRows; i++) {
+			for(int k = this.rowPointers[i]; k < this.rowPointers[i+1]; k++) {
+				result[this.columnIndices[k]] += weights[i]*this.values[k];
+			}
+		}
+		return result;
+	}
+
+	private static double getMax(double[] row) {
+		double max = 0;
+		for(int j = 0; j < row.length; j++) {
+			max = Math.max(max, row[j]);
+		}
+		return max;
+	}
+
+}
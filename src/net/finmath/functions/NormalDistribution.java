@@ -45,6 +45,79 @@ public class NormalDistribution {
 //        return normalDistribution.inverseCumulativeProbability(p);
     }
 
+    /**
+     * Inverse of the cumulative distribution function of the standard normal distribution applied to an array of probabilities,
+     * quantiles[i] being inverseCumulativeDistribution(probabilities[i]) for i = offset, ..., offset+length-1.
+     * The arrays may be the same, in which case the probabilities are replaced by the quantiles.
+     *
+     * @param probabilities The probabilities.
+     * @param quantiles The array receiving the quantiles.
+     * @param offset The index of the first probability.
+     * @param length The number of probabilities.
+     */
+    public static void inverseCumulativeDistribution(double[] probabilities, double[] quantiles, int offset, int length) {
+        if(offset < 0 || length < 0 || offset > probabilities.length - length || offset > quantiles.length - length) {
+            throw new IllegalArgumentException("The range must lie inside the arrays.");
+        }
+        for(int i = offset; i < offset + length; i++) {
+            quantiles[i] = inverseCumulativeNormalDistribution_Wichura(probabilities[i]);
+        }
+    }
+
+    /**
+     * Inverse of the cumulative distribution function of the standard normal distribution
+     * using the rational approximations of P. J. Acklam (2003), with a relative error below 1.15e-9,
+     * which is cheaper than the algorithm of Wichura (lower degrees) when this accuracy is sufficient, e.g. for the inversion of uniform random numbers.
+     *
+     * @param p The probablity (quantile).
+     * @return The argument of the cumulative distribution function being assigned to p.
+     */
+    public static double inverseCumulativeNormalDistribution_Acklam(double p) {
+        final double pLow = 0.02425;
+
+        if(p < pLow) {
+            if(!(p > 0)) {
+                return p == 0 ? Double.NEGATIVE_INFINITY : Double.NaN;
+            }
+            double q = Math.sqrt(-2 * Math.log(p));
+            return (((((-7.784894002430293e-03 * q - 3.223964580411365e-01) * q - 2.400758277161838e+00) * q - 2.549732539343734e+00) * q + 4.374664141464968e+00) * q + 2.938163982698783e+00)
+                    / ((((7.784695709041462e-03 * q + 3.224671290700398e-01) * q + 2.445134137142996e+00) * q + 3.754408661907416e+00) * q + 1);
+        }
+        else if(p <= 1 - pLow) {
+            double q = p - 0.5;
+            double r = q * q;
+            return (((((-3.969683028665376e+01 * r + 2.209460984245205e+02) * r - 2.759285104469687e+02) * r + 1.383577518672690e+02) * r - 3.066479806614716e+01) * r + 2.506628277459239e+00) * q
+                    / (((((-5.447609879822406e+01 * r + 1.615858368580409e+02) * r - 1.556989798598866e+02) * r + 6.680131188771972e+01) * r - 1.328068155288572e+01) * r + 1);
+        }
+        else {
+            if(!(p < 1)) {
+                return p == 1 ? Double.POSITIVE_INFINITY : Double.NaN;
+            }
+            double q = Math.sqrt(-2 * Math.log(1 - p));
+            return -(((((-7.784894002430293e-03 * q - 3.223964580411365e-01) * q - 2.400758277161838e+00) * q - 2.549732539343734e+00) * q + 4.374664141464968e+00) * q + 2.938163982698783e+00)
+                    / ((((7.784695709041462e-03 * q + 3.224671290700398e-01) * q + 2.445134137142996e+00) * q + 3.754408661907416e+00) * q + 1);
+        }
+    }
+
+    /**
+     * Inverse of the cumulative distribution function of the standard normal distribution using the approximation of Acklam applied to an array of probabilities,
+     * quantiles[i] being inverseCumulativeNormalDistribution_Acklam(probabilities[i]) for i = offset, ..., offset+length-1.
+     * The arrays may be the same, in which case the probabilities are replaced by the quantiles.
+     *
+     * @param probabilities The probabilities.
+     * @param quantiles The array receiving the quantiles.
+     * @param offset The index of the first probability.
+     * @param length The number of probabilities.
+     */
+    public static void inverseCumulativeNormalDistribution_Acklam(double[] probabilities, double[] quantiles, int offset, int length) {
+        if(offset < 0 || length < 0 || offset > probabilities.length - length || offset > quantiles.length - length) {
+            throw new IllegalArgumentException("The range must lie inside the arrays.");
+        }
+        for(int i = offset; i < offset + length; i++) {
+            quantiles[i] = inverseCumulativeNormalDistribution_Acklam(probabilities[i]);
+        }
+    }
+
     /**
      * Inverse of the cumulative distribution function of the standard normal distribution
      * 
@@ -7,14 +7,58 @@
 package net.finmath.functions;
 
 /**
+ * The Poisson distribution with parameter lambda.
+ *
+ * The inverse of the cumulative distribution function of an instance is table driven: the cumulative probabilities are computed once,
+ * by the same recursion as the sequential search, along with a guide table (C. Chen and K. Asau, 1974) giving for every interval [j/n, (j+1)/n)
+ * the first candidate of the search, so that the inversion costs a constant expected number of comparisons for any lambda, with the same result as the sequential search.
+ * The table is used for lambda up to MAXIMUM_LAMBDA_OF_TABLE (beyond which exp(-lambda) approaches the underflow), the sequential search otherwise.
+ *
  * @author Christian Fries
  */
 public class PoissonDistribution {
+
+	private static final double MAXIMUM_LAMBDA_OF_TABLE = 700.0;
+
 	final double lambda;
 
+	/* The cumulative probabilities P(N &le; k), up to the first k where they stop increasing, and the guide table. */
+	private final double[] cumulativeProbabilities;
+	private final int[] guideTable;
+
 	public PoissonDistribution(double lambda) {
 		super();
 		this.lambda = lambda;
+
+		if(lambda > 0 && lambda <= MAXIMUM_LAMBDA_OF_TABLE) {
+			double[] cumulative = new double[(int)(lambda + 12 * Math.sqrt(lambda) + 40)];
+			double p = Math.exp(-lambda);
+			double dp = p;
+			int k = 0;
+			cumulative[0] = p;
+			while(k < cumulative.length - 1 && dp > 0) {
+				k++;
+				dp *= lambda / k;
+				p += dp;
+				cumulative[k] = p;
+			}
+			cumulativeProbabilities = java.util.Arrays.copyOf(cumulative, k + 1);
+
+			int numberOfIntervals = cumulativeProbabilities.length;
+			guideTable = new int[numberOfIntervals];
+			int candidate = 0;
+			for(int j = 0; j < numberOfIntervals; j++) {
+				/* First k with P(N <= k) >= j / n. */
+				while(candidate < cumulativeProbabilities.length - 1 && cumulativeProbabilities[candidate] < (double)j / numberOfIntervals) {
+					candidate++;
+				}
+				guideTable[j] = candidate;
+			}
+		}
+		else {
+			cumulativeProbabilities = null;
+			guideTable = null;
+		}
 	}
 
 	/**
@@ -24,6 +68,9 @@ public class PoissonDistribution {
 	 * @return Inverse cumulative distribution function at x.
 	 */
 	public double inverseCumulativeDistribution(double x) {
+		if(cumulativeProbabilities != null) {
+			return inverseCumulativeDistributionFromTable(x);
+		}
 		double p = Math.exp(-lambda);
 		double dp = p;
 		int k = 0;
@@ -34,4 +81,103 @@ public class PoissonDistribution {
 		}
 		return k;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Return the inverse cumulative distribution function applied to an array of arguments,
+	 * values[i] being inverseCumulativeDistribution(x[i]) for i = offset, ..., offset+length-1.
+	 *
+	 * @param x The arguments.
+	 * @param values The array receiving the values.
+	 * @param offset The index of the first argument.
+	 * @param length The number of arguments.
+	 */
+	public void inverseCumulativeDistribution(double[] x, int[] values, int offset, int length) {
+		if(offset < 0 || length < 0 || offset > x.length - length || offset > values.length - length) {
+			throw new IllegalArgumentException("The range must lie inside the arrays.");
+		}
+		for(int i = offset; i < offset + length; i++) {
+			values[i] = (int)inverseCumulativeDistribution(x[i]);
+		}
+	}
+
+	private int inverseCumulativeDistributionFromTable(double x) {
+		int numberOfIntervals = guideTable.length;
+		int interval = (int)(x * numberOfIntervals);
+		int k = guideTable[Math.max(Math.min(interval, numberOfIntervals - 1), 0)];
+		int lastIndex = cumulativeProbabilities.length - 1;
+		while(k < lastIndex && x > cumulativeProbabilities[k]) {
+			k++;
+		}
+		return k;
+	}
+
+	/**
+	 * Return the inverse cumulative distribution function at x of the Poisson distribution with parameter lambda, without any allocation.
+	 * This is the sampling method to be used with quasi random numbers, since it consumes exactly one uniform.
+	 * 
+	 * @param lambda The parameter of the distribution (a non-positive value gives 0).
+	 * @param x Argument
+	 * @return Inverse cumulative distribution function at x.
+	 */
+	public static int inverseCumulativeDistribution(double lambda, double x) {
+		if(!(lambda > 0)) {
+			return 0;
+		}
+		/*
+		 * Since exp(-lambda) > 1 - lambda, x below 1 - lambda gives 0 without computing the exponential (the margin of 2^-52 covering the rounding of both sides),
+		 * which is the most frequent case for the small intensities of the jumps over a time step.
+		 */
+		if(x <= 1.0 - lambda - 0x1.0p-52) {
+			return 0;
+		}
+		double p = Math.exp(-lambda);
+		double dp = p;
+		int k = 0;
+		while(x > p && dp > 0) {
+			k++;
+			dp *= lambda / k;
+			p += dp;
+		}
+		return k;
+	}
+
+	/**
+	 * Draws a sample of the Poisson distribution with parameter lambda from the given stream of uniform random numbers, without any allocation.
+	 * For lambda lower than 10 the sample is obtained by inversion (sequential search), consuming one uniform,
+	 * otherwise by the transformed rejection method with squeeze (PTRS) of W. H&ouml;rmann (1993), consuming two uniforms per trial.
+	 * 
+	 * @param lambda The parameter of the distribution (a non-positive value gives 0).
+	 * @param uniforms The stream of uniform random numbers.
+	 * @return A sample of the Poisson distribution.
+	 */
+	public static int sample(double lambda, org.apache.commons.math3.random.RandomGenerator uniforms) {
+		if(!(lambda > 0)) {
+			return 0;
+		}
+		else if(lambda < 10) {
+			return inverseCumulativeDistribution(lambda, uniforms.nextDouble());
+		}
+		else {
+			double logLambda = Math.log(lambda);
+			double b = 0.931 + 2.53 * Math.sqrt(lambda);
+			double a = -0.059 + 0.02483 * b;
+			double inverseAlpha = 1.1239 + 1.1328 / (b - 3.4);
+			double vR = 0.9277 - 3.6224 / (b - 2);
+			while(true) {
+				double u = uniforms.nextDouble() - 0.5;
+				double v = uniforms.nextDouble();
+				double us = 0.5 - Math.abs(u);
+				double k = Math.floor((2 * a / us + b) * u + lambda + 0.43);
+				if(us >= 0.07 && v <= vR) {
+					return (int)k;
+				}
+				if(k < 0 || (us < 0.013 && v > us)) {
+					continue;
+				}
+				if(Math.log(v * inverseAlpha / (a / (us * us) + b)) <= -lambda + k * logLambda - org.apache.commons.math3.special.Gamma.logGamma(k + 1)) {
+					return (int)k;
+				}
+			}
+		}
+	}
+}
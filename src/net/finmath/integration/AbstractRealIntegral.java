@@ -6,7 +6,11 @@
 
 package net.finmath.integration;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.DoubleFunction;
 import java.util.function.DoubleUnaryOperator;
+import java.util.stream.IntStream;
 
 /**
  * A real integral with lower and upper integration bounds.
@@ -50,6 +54,89 @@ public abstract class AbstractRealIntegral implements RealIntegralInterface {
 		return upperBound;
 	}
 
+	/**
+	 * Integrates several integrands at once, given as the components of a vector valued integrand.
+	 * This allows to share the evaluation of an expensive kernel among integrands differing by their weight functions:
+	 * the integrand evaluates the kernel once at the given point and returns the values of all the integrands.
+	 * 
+	 * The default implementation integrates every component with {@link #integrate(DoubleUnaryOperator)},
+	 * the vectors being cached per evaluation point, such that the integrand is evaluated only once per point for rules
+	 * using the same points for every integrand (that is, all rules except adaptive ones).
+	 * Rules with fixed points may override it by a single pass over the points.
+	 * In any case, every component of the result is equal to the result of {@link #integrate(DoubleUnaryOperator)} for this component.
+	 * 
+	 * @param integrand The vector valued integrand, returning arrays of length <code>numberOfIntegrands</code>.
+	 * @param numberOfIntegrands The number of integrands.
+	 * @return The vector of the integrals.
+	 */
+	public double[] integrate(DoubleFunction<double[]> integrand, int numberOfIntegrands) {
+		Map<Double, double[]> cache = new ConcurrentHashMap<Double, double[]>();
+		DoubleFunction<double[]> cachedIntegrand = x -> cache.computeIfAbsent(x, point -> getValues(integrand, point, numberOfIntegrands));
+
+		double[] integrals = new double[numberOfIntegrands];
+		for(int i=0; i<numberOfIntegrands; i++) {
+			int component = i;
+			integrals[i] = integrate(x -> cachedIntegrand.apply(x)[component]);
+		}
+		return integrals;
+	}
+
+	/**
+	 * Integrates the products of a kernel with several weight functions, evaluating the kernel once per evaluation point.
+	 * 
+	 * @param kernel The kernel shared by the integrands.
+	 * @param weightFunctions The weight functions: the integrand i is kernel times weightFunctions[i].
+	 * @return The vector of the integrals.
+	 */
+	public double[] integrate(DoubleUnaryOperator kernel, DoubleUnaryOperator[] weightFunctions) {
+		return integrate(x -> {
+			double kernelValue = kernel.applyAsDouble(x);
+			double[] values = new double[weightFunctions.length];
+			for(int i=0; i<weightFunctions.length; i++) {
+				values[i] = kernelValue * weightFunctions[i].applyAsDouble(x);
+			}
+			return values;
+		}, weightFunctions.length);
+	}
+
+	/**
+	 * Evaluates the vector valued integrand at the given points, see {@link #evaluate(DoubleUnaryOperator, double[], double[], boolean)}.
+	 * 
+	 * @param integrand The vector valued integrand.
+	 * @param points The evaluation points.
+	 * @param values The array receiving the vectors of values of the integrand, of the length of points.
+	 * @param numberOfIntegrands The required length of the vectors.
+	 * @param useParallelEvaluation If true, the integrand is evaluated in parallel.
+	 */
+	protected static void evaluate(DoubleFunction<double[]> integrand, double[] points, double[][] values, int numberOfIntegrands, boolean useParallelEvaluation) {
+		IntStream indices = IntStream.range(0, points.length);
+		if(useParallelEvaluation) indices = indices.parallel();
+		indices.forEach(i -> values[i] = getValues(integrand, points[i], numberOfIntegrands));
+	}
+
+	private static double[] getValues(DoubleFunction<double[]> integrand, double point, int numberOfIntegrands) {
+		double[] values = integrand.apply(point);
+		if(values.length != numberOfIntegrands) throw new IllegalArgumentException("The integrand has to return " + numberOfIntegrands + " values.");
+		return values;
+	}
+
+	/**
+	 * Evaluates the integrand at the given points. If <code>useParallelEvaluation</code> is true,
+	 * the points are distributed among the threads of the common ForkJoinPool (using a parallel stream),
+	 * hence the integrand has to be thread-safe. The values do not depend on the mode, such that an integration rule
+	 * summing them in a fixed order gives the same result with and without parallel evaluation.
+	 * 
+	 * @param integrand The integrand.
+	 * @param points The evaluation points.
+	 * @param values The array receiving the values of the integrand, of the length of points.
+	 * @param useParallelEvaluation If true, the integrand is evaluated in parallel.
+	 */
+	protected static void evaluate(DoubleUnaryOperator integrand, double[] points, double[] values, boolean useParallelEvaluation) {
+		IntStream indices = IntStream.range(0, points.length);
+		if(useParallelEvaluation) indices = indices.parallel();
+		indices.forEach(i -> values[i] = integrand.applyAsDouble(points[i]));
+	}
+
 	/* (non-Javadoc)
 	 * @see net.finmath.integration.RealIntegralInterface#integrate(java.util.function.DoubleUnaryOperator)
 	 */
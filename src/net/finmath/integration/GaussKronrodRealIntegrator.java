@@ -0,0 +1,201 @@
+package net.finmath.integration;
+
+import java.util.PriorityQueue;
+import java.util.function.DoubleUnaryOperator;
+
+import org.apache.commons.math3.exception.TooManyEvaluationsException;
+
+/**
+ * An adaptive integrator using the 15 point Gauss-Kronrod rule (the Kronrod extension of the 7 point Gauss rule).
+ *
+ * The integral over an interval is approximated by the Kronrod rule and its error by the difference to the Gauss rule,
+ * which uses every second node of the Kronrod rule, such that an interval costs 15 evaluations of the integrand.
+ * Starting from the whole interval, the interval with the largest error estimate is bisected, until the sum of the error estimates
+ * is below the absolute accuracy or below the relative accuracy times the absolute value of the integral (global adaptive strategy, as in QUADPACK's QAG).
+ * Hence, the integrand is evaluated densely only where it is hard to integrate, which makes the integrator suited to expensive integrands.
+ *
+ * The nodes and weights are tabulated once for the reference interval [-1,1] and mapped to every interval.
+ *
+ * The constructor has an optional argument to allow
+ * parallel function evaluation. In that case, the 30 points of the two halves of a bisected interval
+ * are evaluated using Java 8 parallel streams, before the values are summed in a fixed order,
+ * such that the result does not depend on the evaluation mode.
+ *
+ * @author Szulda Guillaume
+ */
+public class GaussKronrodRealIntegrator extends AbstractRealIntegral {
+
+	/* The non-negative nodes of the Kronrod rule, the nodes with odd index (and 0) being the ones of the Gauss rule. */
+	private static final double[] kronrodNodes = {
+			0.991455371120812639206854697526329,
+			0.949107912342758524526189684047851,
+			0.864864423359769072789712788640926,
+			0.741531185599394439863864773280788,
+			0.586087235467691130294144845693013,
+			0.405845151377397166906606412076961,
+			0.207784955007898467600689403773245,
+			0.000000000000000000000000000000000
+	};
+
+	private static final double[] kronrodWeights = {
+			0.022935322010529224963732008058970,
+			0.063092092629978553290700663189204,
+			0.104790010322250183839876322541518,
+			0.140653259715525918745189590510238,
+			0.169004726639267902826583426598550,
+			0.190350578064785409913256402421014,
+			0.204432940075298892414161999234649,
+			0.209482141084727828012999174891714
+	};
+
+	/* The weights of the Gauss rule for the nodes kronrodNodes[1], kronrodNodes[3], kronrodNodes[5] and kronrodNodes[7]. */
+	private static final double[] gaussWeights = {
+			0.129484966168869693270611432679082,
+			0.279705391489276667901467771423780,
+			0.381830050505118944950369775488975,
+			0.417959183673469387755102040816327
+	};
+
+	private static final int	numberOfNodes	= 15;
+
+	private double	absoluteAccuracy;
+	private double	relativeAccuracy;
+	private int		maximumNumberOfEvaluations;
+	private boolean	useParallelEvaluation = false;
+
+	/**
+	 * An interval with its integral and error estimate, ordered by decreasing error.
+	 */
+	private static class Interval implements Comparable<Interval> {
+		private final double lowerBound;
+		private final double upperBound;
+		private final double integral;
+		private final double error;
+
+		private Interval(double lowerBound, double upperBound, double integral, double error) {
+			this.lowerBound = lowerBound;
+			this.upperBound = upperBound;
+			this.integral = integral;
+			this.error = error;
+		}
+
+		@Override
+		public int compareTo(Interval interval) {
+			return Double.compare(interval.error, error);
+		}
+	}
+
+	/**
+	 * Create an adaptive Gauss-Kronrod integrator.
+	 *
+	 * @param lowerBound Lower bound of the integral.
+	 * @param upperBound Upper bound of the integral.
+	 * @param absoluteAccuracy The absolute accuracy: the integration stops if the estimated error is below.
+	 * @param relativeAccuracy The relative accuracy: the integration stops if the estimated error divided by the absolute value of the integral is below.
+	 * @param maximumNumberOfEvaluations Maximum number of evaluation points to be used, must be greater or equal to 15.
+	 * @param useParallelEvaluation If true, the integration rule will perform parallel evaluation of the integrand.
+	 */
+	public GaussKronrodRealIntegrator(double lowerBound, double upperBound, double absoluteAccuracy, double relativeAccuracy, int maximumNumberOfEvaluations, boolean useParallelEvaluation) {
+		super(lowerBound, upperBound);
+		if(Double.isInfinite(lowerBound) || Double.isInfinite(upperBound)) throw new IllegalArgumentException("The bounds of the integral must be finite.");
+		if(!(absoluteAccuracy > 0) && !(relativeAccuracy > 0)) throw new IllegalArgumentException("Either the absolute or the relative accuracy must be positive.");
+		if(maximumNumberOfEvaluations < numberOfNodes) throw new IllegalArgumentException("Invalid maximumNumberOfEvaluations (minumum admissible value is 15).");
+		this.absoluteAccuracy = absoluteAccuracy;
+		this.relativeAccuracy = relativeAccuracy;
+		this.maximumNumberOfEvaluations = maximumNumberOfEvaluations;
+		this.useParallelEvaluation = useParallelEvaluation;
+	}
+
+	/**
+	 * Create an adaptive Gauss-Kronrod integrator, using the given accuracy as absolute and as relative accuracy and at most 100000 evaluation points.
+	 *
+	 * @param lowerBound Lower bound of the integral.
+	 * @param upperBound Upper bound of the integral.
+	 * @param accuracy The absolute and relative accuracy.
+	 */
+	public GaussKronrodRealIntegrator(double lowerBound, double upperBound, double accuracy) {
+		this(lowerBound, upperBound, accuracy, accuracy, 100000, false);
+	}
+
+	/* (non-Javadoc)
+	 * @see net.finmath.integration.AbstractRealIntegral#integrate(java.util.function.DoubleUnaryOperator)
+	 */
+	@Override
+	public double integrate(DoubleUnaryOperator integrand) {
+		double	lowerBound			= getLowerBound();
+		double	upperBound			= getUpperBound();
+		if(lowerBound == upperBound) return 0.0;
+
+		double[] points = new double[numberOfNodes];
+		double[] values = new double[numberOfNodes];
+		setNodes(lowerBound, upperBound, points, 0);
+		evaluate(integrand, points, values, useParallelEvaluation);
+		Interval interval = getInterval(lowerBound, upperBound, values, 0);
+		int numberOfEvaluations = numberOfNodes;
+
+		PriorityQueue<Interval> intervals = new PriorityQueue<Interval>();
+		intervals.add(interval);
+		double integral	= interval.integral;
+		double error	= interval.error;
+
+		points = new double[2 * numberOfNodes];
+		values = new double[2 * numberOfNodes];
+		while(error > absoluteAccuracy && error > relativeAccuracy * Math.abs(integral)) {
+			interval = intervals.peek();
+			double middle = 0.5 * (interval.lowerBound + interval.upperBound);
+			if(middle <= Math.min(interval.lowerBound, interval.upperBound) || middle >= Math.max(interval.lowerBound, interval.upperBound)) {
+				// The interval cannot be bisected any more: the accuracy is limited by the floating point numbers
+				break;
+			}
+			if(numberOfEvaluations > maximumNumberOfEvaluations - 2 * numberOfNodes) throw new TooManyEvaluationsException(maximumNumberOfEvaluations);
+
+			setNodes(interval.lowerBound, middle, points, 0);
+			setNodes(middle, interval.upperBound, points, numberOfNodes);
+			evaluate(integrand, points, values, useParallelEvaluation);
+			numberOfEvaluations += 2 * numberOfNodes;
+
+			Interval left	= getInterval(interval.lowerBound, middle, values, 0);
+			Interval right	= getInterval(middle, interval.upperBound, values, numberOfNodes);
+			intervals.poll();
+			intervals.add(left);
+			intervals.add(right);
+
+			// Sums over all intervals, avoiding the accumulation of rounding errors of running updates
+			integral	= 0.0;
+			error		= 0.0;
+			for(Interval subInterval : intervals) {
+				integral	+= subInterval.integral;
+				error		+= subInterval.error;
+			}
+		}
+
+		return integral;
+	}
+
+	/**
+	 * Maps the nodes of the reference interval to the given interval: the point 2*i is the node -x_i and the point 2*i+1 the node x_i (i &lt; 7), the point 14 the center.
+	 */
+	private static void setNodes(double lowerBound, double upperBound, double[] points, int offset) {
+		double center		= 0.5 * (lowerBound + upperBound);
+		double halfLength	= 0.5 * (upperBound - lowerBound);
+		for(int i=0; i<kronrodNodes.length-1; i++) {
+			points[offset + 2*i]		= center - halfLength * kronrodNodes[i];
+			points[offset + 2*i + 1]	= center + halfLength * kronrodNodes[i];
+		}
+		points[offset + numberOfNodes - 1] = center;
+	}
+
+	private static Interval getInterval(double lowerBound, double upperBound, double[] values, int offset) {
+		double halfLength = 0.5 * (upperBound - lowerBound);
+
+		double kronrod	= kronrodWeights[kronrodNodes.length-1] * values[offset + numberOfNodes - 1];
+		double gauss	= gaussWeights[gaussWeights.length-1] * values[offset + numberOfNodes - 1];
+		for(int i=0; i<kronrodNodes.length-1; i++) {
+			double sum = values[offset + 2*i] + values[offset + 2*i + 1];
+			kronrod += kronrodWeights[i] * sum;
+			if(i % 2 == 1) gauss += gaussWeights[i / 2] * sum;
+		}
+
+		return new Interval(lowerBound, upperBound, kronrod * halfLength, Math.abs((kronrod - gauss) * halfLength));
+	}
+}
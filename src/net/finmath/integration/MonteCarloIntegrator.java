@@ -2,8 +2,8 @@ package net.finmath.integration;
 
 import java.util.function.DoubleUnaryOperator;
 import java.util.stream.DoubleStream;
-import java.util.stream.IntStream;
 
+import net.finmath.randomnumbers.HaltonSequence;
 import net.finmath.randomnumbers.MersenneTwister;
 
 
@@ -12,7 +12,12 @@ import net.finmath.randomnumbers.MersenneTwister;
  * 
  * The constructor has an optional argument to allow
  * parallel function evaluation. In that case, the integration rule
- * uses Java 8 parallel streams to evaluate.
+ * uses Java 8 parallel streams to evaluate. The random numbers are drawn
+ * sequentially and the values are summed in a fixed order, such that the result
+ * does not depend on the evaluation mode.
+ * 
+ * Optionally, the evaluation points are quasi random numbers: the points of a
+ * (randomized) Halton sequence of base 2, generated in blocks.
  * 
  * @author Christian Fries
  */
@@ -20,6 +25,10 @@ public class MonteCarloIntegrator extends AbstractRealIntegral{
 
 	private int		numberOfEvaluationPoints;
 	private int		seed = 3141;
+	private boolean	useParallelEvaluation = false;
+	private boolean	isQuasiMonteCarlo = false;
+
+	private static final int	blockSize = 1024;
 
 	/**
 	 * Create an integrator using Simpson's rule.
@@ -33,6 +42,21 @@ public class MonteCarloIntegrator extends AbstractRealIntegral{
 		super(lowerBound, upperBound);
 		if(numberOfEvaluationPoints < 3) throw new IllegalArgumentException("Invalid numberOfEvaluationPoints.");
 		this.numberOfEvaluationPoints = numberOfEvaluationPoints;
+		this.useParallelEvaluation = useParallelEvaluation;
+	}
+
+	/**
+	 * Create an integrator using Monte-Carlo or quasi Monte-Carlo integration.
+	 * 
+	 * @param lowerBound Lower bound of the integral.
+	 * @param upperBound Upper bound of the integral.
+	 * @param numberOfEvaluationPoints Maximum number of evaluation points to be used, must be greater or equal to 3.
+	 * @param useParallelEvaluation If true, the integration rule will perform parallel evaluation of the integrand.
+	 * @param isQuasiMonteCarlo If true, the evaluation points are given by a randomized Halton sequence of base 2, otherwise by a Mersenne Twister.
+	 */
+	public MonteCarloIntegrator(double lowerBound, double upperBound, int numberOfEvaluationPoints, boolean useParallelEvaluation, boolean isQuasiMonteCarlo) {
+		this(lowerBound, upperBound, numberOfEvaluationPoints, useParallelEvaluation);
+		this.isQuasiMonteCarlo = isQuasiMonteCarlo;
 	}
 
 	/**
@@ -54,12 +78,35 @@ public class MonteCarloIntegrator extends AbstractRealIntegral{
 		double	lowerBound			= getLowerBound();
 		double	upperBound			= getUpperBound();
 		double	range				= upperBound-lowerBound;
-		
-		// Create random number sequence generator (we use MersenneTwister)
-		MersenneTwister		mersenneTwister		= new MersenneTwister(seed);
 
-		DoubleStream randomNumberSequence = IntStream.range(0, numberOfEvaluationPoints).sequential().mapToDouble(i -> mersenneTwister.nextDouble());
+		// The evaluation points
+		double[] points = new double[numberOfEvaluationPoints];
+		if(isQuasiMonteCarlo) {
+			// Randomized Halton sequence (van der Corput sequence of base 2), generated in blocks
+			HaltonSequence		haltonSequence		= new HaltonSequence(new int[] { 2 }, seed);
+			double[][]			block				= new double[blockSize][1];
+			for(int blockStart = 0; blockStart < numberOfEvaluationPoints; blockStart += blockSize) {
+				int numberOfPointsInBlock = Math.min(blockSize, numberOfEvaluationPoints - blockStart);
+				if(numberOfPointsInBlock < blockSize) block = new double[numberOfPointsInBlock][1];
+				haltonSequence.fill(block);
+				for(int i = 0; i < numberOfPointsInBlock; i++) {
+					points[blockStart + i] = block[i][0];
+				}
+			}
+		}
+		else {
+			// Create random number sequence generator (we use MersenneTwister)
+			MersenneTwister		mersenneTwister		= new MersenneTwister(seed);
+			mersenneTwister.nextDoubles(points, 0, numberOfEvaluationPoints);
+		}
+		for(int i = 0; i < numberOfEvaluationPoints; i++) {
+			points[i] = lowerBound + points[i] * range;
+		}
+
+		// The values are summed in the order of the points, independent of the evaluation mode
+		double[] values = new double[numberOfEvaluationPoints];
+		evaluate(integrand, points, values, useParallelEvaluation);
 
-		return randomNumberSequence.map(x -> (integrand.applyAsDouble(lowerBound + x * range))).sum() * range / numberOfEvaluationPoints;
+		return DoubleStream.of(values).sum() * range / numberOfEvaluationPoints;
 	}
 }
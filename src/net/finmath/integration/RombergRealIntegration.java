@@ -8,30 +8,57 @@ package net.finmath.integration;
 
 import java.util.function.DoubleUnaryOperator;
 
-import org.apache.commons.math3.analysis.UnivariateFunction;
-import org.apache.commons.math3.analysis.integration.RombergIntegrator;
+import org.apache.commons.math3.exception.MaxCountExceededException;
+import org.apache.commons.math3.exception.NumberIsTooLargeException;
+import org.apache.commons.math3.exception.TooManyEvaluationsException;
 
 /**
  * Implements a Romberg integrator.
  * 
- * The class is actually a wrapper to the Romberg integrator in commons-math.
+ * The algorithm is the one of the Romberg integrator in commons-math (with its default accuracies and iteration counts),
+ * and gives the same results: the trapezoidal rule with successively halved step sizes, improved by Richardson extrapolation,
+ * until the relative accuracy 1E-6 or the absolute accuracy 1E-15 is reached.
+ * 
+ * The constructor has an optional argument to allow
+ * parallel function evaluation. In that case, the new points of every halving of the step size
+ * are evaluated using Java 8 parallel streams, before the values are summed in a fixed order,
+ * such that the result does not depend on the evaluation mode.
  * 
  * @author Christian Fries
  */
 public class RombergRealIntegration extends AbstractRealIntegral {
 
+	private static final double	relativeAccuracy		= 1.0e-6;
+	private static final double	absoluteAccuracy		= 1.0e-15;
+	private static final int	minimalIterationCount	= 3;
+	private static final int	maximalIterationCount	= 32;
+
 	private int numberOfEvaluationPoints;
-	
+	private boolean	useParallelEvaluation = false;
+
 	/**
 	 * Create a Romberg integrator.
 	 * 
 	 * @param lowerBound Lower bound of the integral.
 	 * @param upperBound Upper bound of the integral.
 	 * @param numberOfEvaluationPoints Maximum number of evaluation points to be used.
+	 * @param useParallelEvaluation If true, the integration rule will perform parallel evaluation of the integrand.
 	 */
-	public RombergRealIntegration(double lowerBound, double upperBound, int numberOfEvaluationPoints) {
+	public RombergRealIntegration(double lowerBound, double upperBound, int numberOfEvaluationPoints, boolean useParallelEvaluation) {
 		super(lowerBound, upperBound);
 		this.numberOfEvaluationPoints = numberOfEvaluationPoints;
+		this.useParallelEvaluation = useParallelEvaluation;
+	}
+
+	/**
+	 * Create a Romberg integrator.
+	 * 
+	 * @param lowerBound Lower bound of the integral.
+	 * @param upperBound Upper bound of the integral.
+	 * @param numberOfEvaluationPoints Maximum number of evaluation points to be used.
+	 */
+	public RombergRealIntegration(double lowerBound, double upperBound, int numberOfEvaluationPoints) {
+		this(lowerBound, upperBound, numberOfEvaluationPoints, false);
 	}
 
 	/* (non-Javadoc)
@@ -39,13 +66,63 @@ public class RombergRealIntegration extends AbstractRealIntegral {
 	 */
 	@Override
 	public double integrate(DoubleUnaryOperator integrand) {
-		
-		// We use commons-math RombergIntegrator
-		return new RombergIntegrator().integrate(numberOfEvaluationPoints, new UnivariateFunction() {
-			public double value(double argument) {
-				return integrand.applyAsDouble(argument);
+		double	lowerBound			= getLowerBound();
+		double	upperBound			= getUpperBound();
+		if(lowerBound >= upperBound) throw new NumberIsTooLargeException(lowerBound, upperBound, false);
+
+		double[] previousRow	= new double[maximalIterationCount + 1];
+		double[] currentRow		= new double[maximalIterationCount + 1];
+
+		// Trapezoidal rule on the whole interval
+		if(numberOfEvaluationPoints < 2) throw new TooManyEvaluationsException(numberOfEvaluationPoints);
+		int numberOfEvaluations = 2;
+		double[] values = new double[2];
+		evaluate(integrand, new double[] { lowerBound, upperBound }, values, useParallelEvaluation);
+		double trapezoidalSum = 0.5 * (upperBound - lowerBound) * (values[0] + values[1]);
+
+		currentRow[0] = trapezoidalSum;
+		double olds = currentRow[0];
+		for(int iteration = 1; ; iteration++) {
+			// Trapezoidal rule with half the step size: evaluation at the mid points
+			if((1L << (iteration - 1)) > numberOfEvaluationPoints - numberOfEvaluations) throw new TooManyEvaluationsException(numberOfEvaluationPoints);
+			if(iteration >= maximalIterationCount) throw new MaxCountExceededException(maximalIterationCount);
+			int numberOfPoints = 1 << (iteration - 1);
+			numberOfEvaluations += numberOfPoints;
+
+			double spacing = (upperBound - lowerBound) / numberOfPoints;
+			double[] points = new double[numberOfPoints];
+			double x = lowerBound + 0.5 * spacing;
+			for(int i = 0; i < numberOfPoints; i++) {
+				points[i] = x;
+				x += spacing;
+			}
+			values = new double[numberOfPoints];
+			evaluate(integrand, points, values, useParallelEvaluation);
+			double sum = 0.0;
+			for(int i = 0; i < numberOfPoints; i++) {
+				sum += values[i];
+			}
+			trapezoidalSum = 0.5 * (trapezoidalSum + sum * spacing);
+
+			// Richardson extrapolation
+			double[] row = previousRow;
+			previousRow = currentRow;
+			currentRow = row;
+			currentRow[0] = trapezoidalSum;
+			for(int j = 1; j <= iteration; j++) {
+				double r = (1L << (2 * j)) - 1;
+				currentRow[j] = currentRow[j - 1] + (currentRow[j - 1] - previousRow[j - 1]) / r;
 			}
-		}, getLowerBound(), getUpperBound());
-	}
 
+			double s = currentRow[iteration];
+			if(iteration >= minimalIterationCount) {
+				double delta = Math.abs(s - olds);
+				double relativeLimit = relativeAccuracy * (Math.abs(olds) + Math.abs(s)) * 0.5;
+				if(delta <= relativeLimit || delta <= absoluteAccuracy) {
+					return s;
+				}
+			}
+			olds = s;
+		}
+	}
 }
@@ -5,17 +5,24 @@
  */
 package net.finmath.integration;
 
+import java.util.function.DoubleFunction;
 import java.util.function.DoubleUnaryOperator;
 
 /**
  * A simple integrator using the trapezoidal rule.
  * 
+ * The constructors have an optional argument to allow
+ * parallel function evaluation. In that case, the integrand is evaluated
+ * at all points using Java 8 parallel streams, before the values are summed in a fixed order,
+ * such that the result does not depend on the evaluation mode.
+ * 
  * @author Christian Fries
  */
 public class TrapezoidalRealIntegrator extends AbstractRealIntegral{
 
 	private int			numberOfEvaluationPoints;
 	private double[]	evaluationPoints;
+	private boolean		useParallelEvaluation = false;
 
 	/**
 	 * Create an integrator using the trapezoidal rule.
@@ -23,10 +30,23 @@ public class TrapezoidalRealIntegrator extends AbstractRealIntegral{
 	 * @param lowerBound Lower bound of the integral.
 	 * @param upperBound Upper bound of the integral.
 	 * @param evaluationPoints An ordered array of the inner evaluation points to use.
+	 * @param useParallelEvaluation If true, the integration rule will perform parallel evaluation of the integrand.
 	 */
-	public TrapezoidalRealIntegrator(double lowerBound, double upperBound, double[] evaluationPoints) {
+	public TrapezoidalRealIntegrator(double lowerBound, double upperBound, double[] evaluationPoints, boolean useParallelEvaluation) {
 		super(lowerBound, upperBound);
 		this.evaluationPoints = evaluationPoints;
+		this.useParallelEvaluation = useParallelEvaluation;
+	}
+
+	/**
+	 * Create an integrator using the trapezoidal rule.
+	 * 
+	 * @param lowerBound Lower bound of the integral.
+	 * @param upperBound Upper bound of the integral.
+	 * @param evaluationPoints An ordered array of the inner evaluation points to use.
+	 */
+	public TrapezoidalRealIntegrator(double lowerBound, double upperBound, double[] evaluationPoints) {
+		this(lowerBound, upperBound, evaluationPoints, false);
 	}
 
 	/**
@@ -38,42 +58,105 @@ public class TrapezoidalRealIntegrator extends AbstractRealIntegral{
 	 * @param lowerBound Lower bound of the integral.
 	 * @param upperBound Upper bound of the integral.
 	 * @param numberOfEvaluationPoints Number of evaluation points (that is calls to the applyAsDouble of integrand). Has to be &gt; 2;
+	 * @param useParallelEvaluation If true, the integration rule will perform parallel evaluation of the integrand.
 	 */
-	public TrapezoidalRealIntegrator(double lowerBound, double upperBound, int numberOfEvaluationPoints) {
+	public TrapezoidalRealIntegrator(double lowerBound, double upperBound, int numberOfEvaluationPoints, boolean useParallelEvaluation) {
 		super(lowerBound, upperBound);
 		this.numberOfEvaluationPoints = numberOfEvaluationPoints;
+		this.useParallelEvaluation = useParallelEvaluation;
 		if(numberOfEvaluationPoints < 2) throw new IllegalArgumentException("Invalid numberOfEvaluationPoints (minumum admissible value is 2).");
 	}
 
+	/**
+	 * Create an integrator using the trapezoidal rule and an equi-distant grid of evaluation points.
+	 * The minimum number of evaluation points (<code>numberOfEvaluationPoints</code>) is 2, since the
+	 * trapezoidal rule operates on intervals. That is, lowerBound and upperBound are always evaluated. For
+	 * <code>numberOfEvaluationPoints &gt; 2</code> additional inner points will be evaluated.
+	 * 
+	 * @param lowerBound Lower bound of the integral.
+	 * @param upperBound Upper bound of the integral.
+	 * @param numberOfEvaluationPoints Number of evaluation points (that is calls to the applyAsDouble of integrand). Has to be &gt; 2;
+	 */
+	public TrapezoidalRealIntegrator(double lowerBound, double upperBound, int numberOfEvaluationPoints) {
+		this(lowerBound, upperBound, numberOfEvaluationPoints, false);
+	}
+
 	@Override
 	public double integrate(DoubleUnaryOperator integrand) {
+		double[] points = getPoints();
+		double[] values = new double[points.length];
+		evaluate(integrand, points, values, useParallelEvaluation);
+
+		return getIntegral(points, values);
+	}
+
+	/**
+	 * Integrates several integrands at once in a single pass over the evaluation points,
+	 * every component of the result being equal to the result of {@link #integrate(DoubleUnaryOperator)} for this component.
+	 * 
+	 * @param integrand The vector valued integrand, returning arrays of length <code>numberOfIntegrands</code>.
+	 * @param numberOfIntegrands The number of integrands.
+	 * @return The vector of the integrals.
+	 */
+	@Override
+	public double[] integrate(DoubleFunction<double[]> integrand, int numberOfIntegrands) {
+		double[] points = getPoints();
+		double[][] vectorValues = new double[points.length][];
+		evaluate(integrand, points, vectorValues, numberOfIntegrands, useParallelEvaluation);
+
+		double[] integrals = new double[numberOfIntegrands];
+		double[] values = new double[points.length];
+		for(int component=0; component<numberOfIntegrands; component++) {
+			for(int i=0; i<points.length; i++) {
+				values[i] = vectorValues[i][component];
+			}
+			integrals[component] = getIntegral(points, values);
+		}
+		return integrals;
+	}
+
+	/**
+	 * Returns the evaluation points: on a grid lowerBound, the inner points, upperBound,
+	 * on the equi-distant grid the inner points, lowerBound, upperBound.
+	 */
+	private double[] getPoints() {
 		double	lowerBound			= getLowerBound();
 		double	upperBound			= getUpperBound();
 
+		double[] points;
+		if(evaluationPoints != null) {
+			int firstInnerPoint = 0;
+			while(firstInnerPoint<evaluationPoints.length && evaluationPoints[firstInnerPoint] < lowerBound) firstInnerPoint++;
+			int endOfInnerPoints = firstInnerPoint;
+			while(endOfInnerPoints<evaluationPoints.length && evaluationPoints[endOfInnerPoints] < upperBound) endOfInnerPoints++;
+
+			points = new double[endOfInnerPoints - firstInnerPoint + 2];
+			points[0] = lowerBound;
+			System.arraycopy(evaluationPoints, firstInnerPoint, points, 1, endOfInnerPoints - firstInnerPoint);
+			points[points.length-1] = upperBound;
+		}
+		else {
+			double intervall = (upperBound-lowerBound) / (numberOfEvaluationPoints-1);
+
+			points = new double[numberOfEvaluationPoints];
+			for(int i=1; i<numberOfEvaluationPoints-1; i++) {
+				points[i-1] = lowerBound + i * intervall;
+			}
+			points[numberOfEvaluationPoints-2] = lowerBound;
+			points[numberOfEvaluationPoints-1] = upperBound;
+		}
+		return points;
+	}
+
+	private double getIntegral(double[] points, double[] values) {
 		double sum = 0.0;
 		if(evaluationPoints != null) {
 			/*
 			 * Trapezoidal integration on a possibly non-equi-distant grid. 
 			 */
-			int i = 0;
-			while(i<evaluationPoints.length && evaluationPoints[i] < lowerBound) i++;
-
-			double pointLeft = lowerBound;
-			double valueLeft = integrand.applyAsDouble(lowerBound);
-
-			for(;i<evaluationPoints.length && evaluationPoints[i]<upperBound; i++) {
-				double pointRight = evaluationPoints[i];
-				double valueRight = integrand.applyAsDouble(pointRight);
-
-				sum += (valueRight + valueLeft) * (pointRight - pointLeft);
-
-				pointLeft = pointRight;
-				valueLeft = valueRight;
+			for(int i=1; i<points.length; i++) {
+				sum += (values[i] + values[i-1]) * (points[i] - points[i-1]);
 			}
-			double pointRight = upperBound;
-			double valueRight = integrand.applyAsDouble(pointRight);
-
-			sum += (valueRight + valueLeft) * (pointRight - pointLeft);
 
 			sum /= 2.0;
 		}
@@ -81,16 +164,14 @@ public class TrapezoidalRealIntegrator extends AbstractRealIntegral{
 			/*
 			 * Trapezoidal integration on an equi-distant grid. 
 			 */
+			double intervall = (getUpperBound()-getLowerBound()) / (numberOfEvaluationPoints-1);
 
-			double intervall = (upperBound-lowerBound) / (numberOfEvaluationPoints-1);
 			// Sum of inner points
-			for(int i=1; i<numberOfEvaluationPoints-1; i++) {
-				double point = lowerBound + i * intervall;
-				sum += integrand.applyAsDouble(point) * intervall;
+			for(int i=0; i<numberOfEvaluationPoints-2; i++) {
+				sum += values[i] * intervall;
 			}
 			// Sum of boundary points
-			sum += (integrand.applyAsDouble(lowerBound) + integrand.applyAsDouble(upperBound)) / 2.0 * intervall;
-
+			sum += (values[numberOfEvaluationPoints-2] + values[numberOfEvaluationPoints-1]) / 2.0 * intervall;
 		}
 		return sum;
 	}
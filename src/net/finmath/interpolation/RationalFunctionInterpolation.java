@@ -5,7 +5,6 @@
  */
 package net.finmath.interpolation;
 
-import java.io.IOException;
 import java.io.Serializable;
 import java.util.Arrays;
 import java.util.function.DoubleUnaryOperator;
@@ -29,12 +28,16 @@ import net.finmath.functions.LinearAlgebra;
  * This setup comprises linear interpolation (for which the function is C<sup>0</sup>) and
  * cubic spline interpolation (for which the function is C<sup>1</sup>).
  * 
+ * The interpolating functions are created in the constructor and their coefficients are stored in a single flat array
+ * (a fixed number of coefficients per interval), such that the object is immutable after construction
+ * and may be used by concurrent threads without synchronization.
+ * 
  * @author Christian Fries
  * @version 1.3
  */
 public class RationalFunctionInterpolation implements DoubleUnaryOperator, Serializable {
 
-	private static final long serialVersionUID = -3214160594013393575L;
+	private static final long serialVersionUID = 6138208521709405519L;
 
 	public enum InterpolationMethod {
 		/** Constant interpolation. Synonym of PIECEWISE_CONSTANT_LEFTPOINT. **/
@@ -71,71 +74,12 @@ public class RationalFunctionInterpolation implements DoubleUnaryOperator, Seria
 	private final double[]	points;
 	private final double[]	values;
 	
-	private InterpolationMethod	interpolationMethod = InterpolationMethod.LINEAR;
-	private ExtrapolationMethod	extrapolationMethod = ExtrapolationMethod.DEFAULT;
-	
-	private class RationalFunction implements Serializable {
-		
-		private static final long serialVersionUID = -1596026703859403853L;
-
-		public final double[] coefficientsNumerator;
-		public final double[] coefficientsDenominator;
-
-		/**
-		 * Create a rational interpolation function.
-		 * 
-		 * @param coefficientsNumerator The coefficients of the polynomial of the numerator, in increasing order.
-		 * @param coefficientsDenominator The coefficients of the polynomial of the denominator, in increasing order.
-		 */
-		public RationalFunction(double[] coefficientsNumerator, double[] coefficientsDenominator) {
-			super();
-			this.coefficientsNumerator = coefficientsNumerator;
-			this.coefficientsDenominator = coefficientsDenominator;
-		}
-        
-		/**
-		 * Create a polynomial interpolation function.
-		 * 
-		 * @param coefficients The coefficients of the polynomial, in increasing order.
-		 */
-		public RationalFunction(double[] coefficients) {
-			super();
-			this.coefficientsNumerator = coefficients;
-			this.coefficientsDenominator = null;
-		}
-
-		/**
-		 * Returns the value for a given arguments.
-		 * 
-		 * @param x Given argument.
-		 * @return Returns the value for the given argument.
-		 */
-		public double getValue(double x)
-		{
-			double valueNumerator	= 0.0;
-			double valueDenominator	= 0.0;
-			double powerOfX	= 1.0;
-
-			for (double polynomialCoefficient : coefficientsNumerator) {
-				valueNumerator += polynomialCoefficient * powerOfX;
-				powerOfX *= x;
-			}
-
-			if(coefficientsDenominator == null) return valueNumerator;
-
-			powerOfX	= 1.0;
-			for (double polynomialCoefficient : coefficientsDenominator) {
-				valueDenominator += polynomialCoefficient * powerOfX;
-				powerOfX *= x;
-			}
-
-			return valueNumerator/valueDenominator;
-		}
-	}
+	private final InterpolationMethod	interpolationMethod;
+	private final ExtrapolationMethod	extrapolationMethod;
 	
-	// The interpolated curve - a rational function for each interval (one less than number of points)
-	private RationalFunction[]	interpolatingRationalFunctions;
-	private transient Object		interpolatingRationalFunctionsLazyInitLock = new Object();
+	// The interpolated curve - a polynomial for each interval (one less than number of points), given by its coefficients in increasing order
+	private final int		numberOfCoefficients;
+	private final double[]	coefficients;
 
 	/**
 	 * Generate a rational function interpolation from a given set of points.
@@ -144,9 +88,7 @@ public class RationalFunctionInterpolation implements DoubleUnaryOperator, Seria
 	 * @param values The corresponding array of the y<sub>i</sub> sample values to the sample points x<sub>i</sub>.
 	 */
 	public RationalFunctionInterpolation(double[] points, double[] values) {
-		super();
-		this.points = points;
-		this.values = values;
+		this(points, values, InterpolationMethod.LINEAR, ExtrapolationMethod.DEFAULT);
 	}
 	
 	/**
@@ -160,10 +102,32 @@ public class RationalFunctionInterpolation implements DoubleUnaryOperator, Seria
 	 */
 	public RationalFunctionInterpolation(double[] points, double[] values,  InterpolationMethod interpolationMethod, ExtrapolationMethod extrapolationMethod) {
 		super();
-		this.points = points;
-		this.values = values;
+		this.points = points.clone();
+		this.values = values.clone();
 		this.interpolationMethod = interpolationMethod;
 		this.extrapolationMethod = extrapolationMethod;
+
+		switch(interpolationMethod)
+		{
+		case PIECEWISE_CONSTANT:
+		case PIECEWISE_CONSTANT_LEFTPOINT:
+		case PIECEWISE_CONSTANT_RIGHTPOINT:
+			numberOfCoefficients = 1;
+			break;
+		case LINEAR:
+		default:
+			numberOfCoefficients = 2;
+			break;
+		case CUBIC_SPLINE:
+		case AKIMA:
+		case AKIMA_CONTINUOUS:
+		case HARMONIC_SPLINE:
+		case HARMONIC_SPLINE_WITH_MONOTONIC_FILTERING:
+			numberOfCoefficients = 4;
+			break;
+		}
+		coefficients = new double[Math.max(this.points.length-1, 0) * numberOfCoefficients];
+		doCreateRationalFunctions();
 	}
 
 	/**
@@ -183,16 +147,46 @@ public class RationalFunctionInterpolation implements DoubleUnaryOperator, Seria
 	 */
 	public double getValue(double x)
 	{
-		synchronized(interpolatingRationalFunctionsLazyInitLock) {
-			if(interpolatingRationalFunctions == null) doCreateRationalFunctions();
-		}
-
 		// Get interpolating rational function for the given point x
 		int pointIndex = java.util.Arrays.binarySearch(points, x);
 		if(pointIndex >= 0) return values[pointIndex];
 		
-		int intervallIndex = -pointIndex-2;
-		
+		return getValue(x, -pointIndex-2);
+	}
+
+	/**
+	 * Get the interpolated values for given arguments. If the arguments are sorted in increasing order,
+	 * the intervals are found in a single pass over the arguments and the sample points (instead of a binary search per argument).
+	 * The values are equal to those of {@link #getValue(double)}.
+	 * 
+	 * @param x The abscissas at which the interpolation should be performed.
+	 * @param values The array receiving the interpolated values (ordinates), of the length of x.
+	 */
+	public void getValues(double[] x, double[] values)
+	{
+		if(values.length != x.length) throw new IllegalArgumentException("The length of the array of values must be the length of the array of arguments.");
+
+		boolean isSorted = true;
+		for(int i=1; i<x.length && isSorted; i++) isSorted = Double.compare(x[i-1], x[i]) <= 0;
+		if(!isSorted) {
+			for(int i=0; i<x.length; i++) values[i] = getValue(x[i]);
+			return;
+		}
+
+		// Merge of the sorted arguments with the sample points, using the order of Arrays.binarySearch
+		int pointIndex = 0;
+		for(int i=0; i<x.length; i++) {
+			while(pointIndex < points.length && Double.compare(points[pointIndex], x[i]) < 0) pointIndex++;
+			if(pointIndex < points.length && Double.compare(points[pointIndex], x[i]) == 0)	values[i] = this.values[pointIndex];
+			else																				values[i] = getValue(x[i], pointIndex-1);
+		}
+	}
+
+	/**
+	 * Get an interpolated value for a given argument x different from the sample points, lying in the interval starting at the point intervallIndex.
+	 */
+	private double getValue(double x, int intervallIndex)
+	{
 		// Check for extrapolation
 		if(intervallIndex < 0) {
 			// Extrapolation
@@ -207,10 +201,15 @@ public class RationalFunctionInterpolation implements DoubleUnaryOperator, Seria
 			else intervallIndex = points.length-2;
 		}
 		
-		RationalFunction rationalFunction = interpolatingRationalFunctions[intervallIndex];
-		
 		// Calculate interpolating value
-		return rationalFunction.getValue(x-points[intervallIndex]);
+		double argument	= x-points[intervallIndex];
+		double value	= 0.0;
+		double powerOfX	= 1.0;
+		for(int coefficientIndex = intervallIndex * numberOfCoefficients; coefficientIndex < (intervallIndex+1) * numberOfCoefficients; coefficientIndex++) {
+			value += coefficients[coefficientIndex] * powerOfX;
+			powerOfX *= argument;
+		}
+		return value;
 	}
 	
 	private void doCreateRationalFunctions()
@@ -249,14 +248,10 @@ public class RationalFunctionInterpolation implements DoubleUnaryOperator, Seria
 		/*
 		 * Generate a rational function for each given interval
 		 */
-		interpolatingRationalFunctions = new RationalFunction[points.length-1];
-		
 		// create numerator polynomials (constant)
 		for(int pointIndex = 0; pointIndex < points.length-1; pointIndex++ ) {
-			double[] numeratorPolynomCoeff;
-			if (interpolationMethod == InterpolationMethod.PIECEWISE_CONSTANT_RIGHTPOINT)	numeratorPolynomCoeff = new double[] {values[pointIndex+1]};
-			else																			numeratorPolynomCoeff = new double[] {values[pointIndex]};
-			interpolatingRationalFunctions[pointIndex] = new RationalFunction(numeratorPolynomCoeff);			
+			if (interpolationMethod == InterpolationMethod.PIECEWISE_CONSTANT_RIGHTPOINT)	coefficients[pointIndex] = values[pointIndex+1];
+			else																			coefficients[pointIndex] = values[pointIndex];
 		}
 	}
 	
@@ -265,22 +260,16 @@ public class RationalFunctionInterpolation implements DoubleUnaryOperator, Seria
 		/*
 		 * Generate a rational function for each given interval
 		 */
-		interpolatingRationalFunctions = new RationalFunction[points.length-1];
-		
 		// create numerator polynomials (linear)
 		for(int pointIndex = 0; pointIndex < points.length-1; pointIndex++ ) {
-			double[] numeratorPolynomCoeff		= new double[2];
-			
 			double xl = points[pointIndex];
 			double xr = points[pointIndex+1];
 
 			double fl = values[pointIndex];
 			double fr = values[pointIndex+1];
 			
-			numeratorPolynomCoeff[1] = (fr-fl) / (xr-xl);
-			numeratorPolynomCoeff[0] = fl;
-			
-			interpolatingRationalFunctions[pointIndex] = new RationalFunction(numeratorPolynomCoeff);			
+			coefficients[2*pointIndex+1] = (fr-fl) / (xr-xl);
+			coefficients[2*pointIndex+0] = fl;
 		}
 	}
 		
@@ -327,18 +316,12 @@ public class RationalFunctionInterpolation implements DoubleUnaryOperator, Seria
 		/*
 		 * Generate a rational function for each given interval
 		 */
-		interpolatingRationalFunctions = new RationalFunction[numberOfPoints-1];
-
 		// create numerator polynomials (third order polynomial)
 		for(int i = 0; i < numberOfPoints-1; i++ ) {
-			double[] numeratortorPolynomCoeff		= new double[4];
-
-			numeratortorPolynomCoeff[0] = values[i];
-			numeratortorPolynomCoeff[1] = (values[i+1] - values[i])/step[i] - (secondDerivativeVector[i+1] + 2*secondDerivativeVector[i])*step[i]/6;
-			numeratortorPolynomCoeff[2] = secondDerivativeVector[i] / 2;
-			numeratortorPolynomCoeff[3] = (secondDerivativeVector[i+1] - secondDerivativeVector[i]) / (6*step[i]);
-			
-			interpolatingRationalFunctions[i] = new RationalFunction(numeratortorPolynomCoeff);			
+			coefficients[4*i+0] = values[i];
+			coefficients[4*i+1] = (values[i+1] - values[i])/step[i] - (secondDerivativeVector[i+1] + 2*secondDerivativeVector[i])*step[i]/6;
+			coefficients[4*i+2] = secondDerivativeVector[i] / 2;
+			coefficients[4*i+3] = (secondDerivativeVector[i+1] - secondDerivativeVector[i]) / (6*step[i]);
 		}
 	}
 
@@ -414,18 +397,12 @@ public class RationalFunctionInterpolation implements DoubleUnaryOperator, Seria
 			/*
 			 * Generate a rational function for each given interval
 			 */
-			interpolatingRationalFunctions = new RationalFunction[numberOfPoints-1];
-			
 			// create numerator polynomials (third order polynomial)
 			for(int i = 0; i < numberOfPoints-1; i++ ) {
-				double[] numeratorPolynomCoeff		= new double[4];
-
-				numeratorPolynomCoeff[0] = values[i];
-				numeratorPolynomCoeff[1] = derivative[i];
-				numeratorPolynomCoeff[2] = (3*slope[i] - 2*derivative[i] - derivative[i+1]) / step[i];
-				numeratorPolynomCoeff[3] = (derivative[i] + derivative[i+1] - 2*slope[i]) / (step[i] * step[i]);
-
-				interpolatingRationalFunctions[i] = new RationalFunction(numeratorPolynomCoeff);			
+				coefficients[4*i+0] = values[i];
+				coefficients[4*i+1] = derivative[i];
+				coefficients[4*i+2] = (3*slope[i] - 2*derivative[i] - derivative[i+1]) / step[i];
+				coefficients[4*i+3] = (derivative[i] + derivative[i+1] - 2*slope[i]) / (step[i] * step[i]);
 			}
 		}
 	}
@@ -487,18 +464,12 @@ public class RationalFunctionInterpolation implements DoubleUnaryOperator, Seria
 		/*
 		 * Generate a rational function for each given interval
 		 */
-		interpolatingRationalFunctions = new RationalFunction[numberOfPoints-1];
-		
 		// create numerator polynomials (third order polynomial)
 		for(int i = 0; i < numberOfPoints-1; i++ ) {
-			double[] numeratortorPolynomCoeff		= new double[4];
-
-			numeratortorPolynomCoeff[0] = values[i];
-			numeratortorPolynomCoeff[1] = derivative[i];
-			numeratortorPolynomCoeff[2] = (3*slope[i] - 2*derivative[i] - derivative[i+1]) / step[i];
-			numeratortorPolynomCoeff[3] = (derivative[i] + derivative[i+1] - 2*slope[i]) / (step[i] * step[i]);
-
-			interpolatingRationalFunctions[i] = new RationalFunction(numeratortorPolynomCoeff);			
+			coefficients[4*i+0] = values[i];
+			coefficients[4*i+1] = derivative[i];
+			coefficients[4*i+2] = (3*slope[i] - 2*derivative[i] - derivative[i+1]) / step[i];
+			coefficients[4*i+3] = (derivative[i] + derivative[i+1] - 2*slope[i]) / (step[i] * step[i]);
 		}
 			
 	}
@@ -579,10 +550,4 @@ public class RationalFunctionInterpolation implements DoubleUnaryOperator, Seria
 	public double applyAsDouble(double operand) {
 		return getValue(operand);
 	}
-
-	private void readObject(java.io.ObjectInputStream in) throws ClassNotFoundException, IOException {
-		in.defaultReadObject();
-		// initialization of transients
-		interpolatingRationalFunctionsLazyInitLock = new Object();
-	}
 }
@@ -7,15 +7,12 @@ package net.finmath.marketdata.model.curves;
 
 import java.io.IOException;
 import java.io.Serializable;
-import java.lang.ref.SoftReference;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Locale;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 import net.finmath.interpolation.RationalFunctionInterpolation;
 import net.finmath.marketdata.model.AnalyticModelInterface;
@@ -236,9 +233,9 @@ public class Curve extends AbstractCurve implements Serializable, Cloneable {
 	private ExtrapolationMethod	extrapolationMethod = ExtrapolationMethod.CONSTANT;
 	private InterpolationEntity interpolationEntity = InterpolationEntity.LOG_OF_VALUE;
 
-	private RationalFunctionInterpolation	rationalFunctionInterpolation =  null;
+	private volatile RationalFunctionInterpolation	rationalFunctionInterpolation =  null;
 	private transient Object					rationalFunctionInterpolationLazyInitLock = new Object();
-	private transient SoftReference<Map<Double, Double>> curveCacheReference = null;
+	private transient volatile CurveValueCache	valueCache = null;
 
 	private static final long serialVersionUID = -4126228588123963885L;
 	static NumberFormat	formatterReal = NumberFormat.getInstance(Locale.US);
@@ -303,41 +300,75 @@ public class Curve extends AbstractCurve implements Serializable, Cloneable {
 	@Override
 	public double getValue(AnalyticModelInterface model, double time)
 	{
-		Map<Double, Double> curveCache = curveCacheReference != null ? curveCacheReference.get() : null;
-		if(curveCache == null) {
-			curveCache = new ConcurrentHashMap<>();
-			curveCacheReference = new SoftReference<>(curveCache);
+		CurveValueCache cache = getValueCache();
+		double value = cache.get(time);
+		if(Double.isNaN(value)) {
+			value = valueFromInterpolationEntity(getInterpolationEntityValue(time), time);
+			cache.put(time, value);
 		}
-		Double valueFromCache = curveCache.get(time);
-		if(valueFromCache != null) {
-			return valueFromCache.doubleValue();
+		return value;
+	}
+
+	/**
+	 * Returns the cache of the values of this curve, e.g., to inspect its number of hits, misses and evictions.
+	 * If no cache has been set, a hashed cache with the default capacity is created.
+	 * A change of the points of the curve replaces the cache by an empty cache with the same configuration.
+	 *
+	 * @return The cache of the values of this curve.
+	 */
+	public CurveValueCache getValueCache() {
+		CurveValueCache cache = valueCache;
+		if(cache == null) {
+			// A concurrent initialization only results in an additional empty cache being discarded
+			cache = new CurveValueCache();
+			valueCache = cache;
 		}
+		return cache;
+	}
 
-		double value = valueFromInterpolationEntity(getInterpolationEntityValue(time), time);
-		curveCache.put(time, value);
-		return value;
+	/**
+	 * Sets the cache of the values of this curve, replacing the current one (and its entries).
+	 * For example, new CurveValueCache(0, 1) disables the cache and new CurveValueCache(gridStart, gridStep, numberOfGridPoints)
+	 * caches only the times of a uniform grid, without hashing, if the curve is evaluated on a time discretization.
+	 *
+	 * The cache is not part of the state of the curve: clones get an empty cache with the same configuration,
+	 * a deserialized curve gets the default cache.
+	 *
+	 * @param valueCache The cache to be used (it should not be shared with another curve), or null for the default cache.
+	 */
+	public void setValueCache(CurveValueCache valueCache) {
+		this.valueCache = valueCache;
 	}
 
 	private double getInterpolationEntityValue(double time)
 	{
-		synchronized(rationalFunctionInterpolationLazyInitLock) {
-			// Lazy initialization of interpolation function
-			if(rationalFunctionInterpolation == null) {
-				double[] pointsArray = new double[points.size()];
-				double[] valuesArray = new double[points.size()];
-				for(int i=0; i<points.size(); i++) {
-					pointsArray[i] = points.get(i).time;
-					valuesArray[i] = points.get(i).value;
+		/*
+		 * The interpolation function is immutable: once published (volatile), it is read without lock.
+		 * The lock is only taken for its lazy initialization.
+		 */
+		RationalFunctionInterpolation interpolation = rationalFunctionInterpolation;
+		if(interpolation == null) {
+			synchronized(rationalFunctionInterpolationLazyInitLock) {
+				// Lazy initialization of interpolation function
+				interpolation = rationalFunctionInterpolation;
+				if(interpolation == null) {
+					double[] pointsArray = new double[points.size()];
+					double[] valuesArray = new double[points.size()];
+					for(int i=0; i<points.size(); i++) {
+						pointsArray[i] = points.get(i).time;
+						valuesArray[i] = points.get(i).value;
+					}
+					interpolation = new RationalFunctionInterpolation(
+							pointsArray,
+							valuesArray,
+							RationalFunctionInterpolation.InterpolationMethod.valueOf(this.interpolationMethod.toString()),
+							RationalFunctionInterpolation.ExtrapolationMethod.valueOf(this.extrapolationMethod.toString())
+							);
+					rationalFunctionInterpolation = interpolation;
 				}
-				rationalFunctionInterpolation = new RationalFunctionInterpolation(
-						pointsArray,
-						valuesArray,
-						RationalFunctionInterpolation.InterpolationMethod.valueOf(this.interpolationMethod.toString()),
-						RationalFunctionInterpolation.ExtrapolationMethod.valueOf(this.extrapolationMethod.toString())
-						);
 			}
 		}
-		return rationalFunctionInterpolation.getValue(time);
+		return interpolation.getValue(time);
 	}
 
 
@@ -386,7 +417,7 @@ public class Curve extends AbstractCurve implements Serializable, Cloneable {
 				}
 			}
 			this.rationalFunctionInterpolation = null;
-			this.curveCacheReference = null;
+			resetValueCache();
 		}
 	}
 
@@ -446,7 +477,18 @@ public class Curve extends AbstractCurve implements Serializable, Cloneable {
 			pointsBeingParameters.get(i).value = interpolationEntityFromValue(parameter[i], pointsBeingParameters.get(i).time);
 		}
 		this.rationalFunctionInterpolation = null;
-		this.curveCacheReference = null;
+		resetValueCache();
+	}
+
+	/*
+	 * Publishes an empty cache instead of clearing the current one in place: a concurrent getValue which computed its value
+	 * from the previous interpolation may still write it, but only into the cache which is no longer read.
+	 */
+	private void resetValueCache() {
+		CurveValueCache cache = valueCache;
+		if(cache != null) {
+			valueCache = cache.getEmptyCopy();
+		}
 	}
 
 	private double interpolationEntityFromValue(double value, double time) {
@@ -484,7 +526,7 @@ public class Curve extends AbstractCurve implements Serializable, Cloneable {
 		newCurve.points					= new ArrayList<>();
 		newCurve.pointsBeingParameters	= new ArrayList<>();
 		newCurve.rationalFunctionInterpolation = null;
-		newCurve.curveCacheReference = null;
+		newCurve.valueCache = valueCache != null ? valueCache.getEmptyCopy() : null;
 		for(Point point : points) {
 			Point newPoint = (Point) point.clone();
 			newCurve.points.add(newPoint);
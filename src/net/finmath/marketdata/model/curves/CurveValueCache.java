@@ -0,0 +1,389 @@
+package net.finmath.marketdata.model.curves;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of the values of a curve, mapping a time (double) to a value (double) without boxing.
+ *
+ * The entries are stored in a fixed table of primitive slots (a stamp, the bits of the time and the bits of the value),
+ * hence the memory used by the cache does not depend on the number of distinct times requested.
+ * Reads are lock-free: a reader validates the slot by reading its stamp before and after the entry (like a sequence lock) and treats a torn read as a miss.
+ * Writers claim a slot by a compare-and-set on its stamp and never wait: if the slot is being written by another thread, the value is simply not cached.
+ *
+ * The cache has three modes:
+ * <ul>
+ * 	<li>{@link Mode#HASHED}: open addressing with a table of the given capacity (rounded up to a power of two).
+ * 		A time is searched in a window of at most maximumProbeLength consecutive slots starting at its hash. If the window is full,
+ * 		a new entry evicts a randomly chosen entry of the window.</li>
+ * 	<li>{@link Mode#UNIFORM_GRID}: the times of the uniform grid gridStart + i * gridStep, i = 0, ..., numberOfGridPoints-1, are mapped directly to the slot i,
+ * 		such that they never collide and no hash is computed. Times which are not on the grid bypass the cache (they are not stored).</li>
+ * 	<li>{@link Mode#DISABLED}: every time bypasses the cache.</li>
+ * </ul>
+ *
+ * Since NaN is returned for a time which is not in the cache, NaN values are not stored.
+ * The cache keeps the number of hits, misses, bypasses and evictions.
+ *
+ * @author Szulda Guillaume
+ */
+public class CurveValueCache {
+
+	public enum Mode {
+		/** Open addressing with a bounded probe window. */
+		HASHED,
+		/** Direct mapping of the times of a uniform grid, other times bypass the cache. */
+		UNIFORM_GRID,
+		/** No caching. */
+		DISABLED
+	}
+
+	/** The default capacity of a hashed cache. */
+	public static final int DEFAULT_CAPACITY				= 1024;
+	/** The default maximum probe length of a hashed cache. */
+	public static final int DEFAULT_MAXIMUM_PROBE_LENGTH	= 8;
+
+	private static final int	MAXIMUM_CAPACITY	= 1 << 28;
+	private static final int	SLOT_SIZE			= 3;
+	/* The bits of the key of an empty slot (NaN is never stored as a key). */
+	private static final long	EMPTY				= Double.doubleToLongBits(Double.NaN);
+	/* Relative distance (in grid steps) up to which a time is considered to be on the grid. */
+	private static final double	GRID_TOLERANCE		= 1E-8;
+	private static final long	GOLDEN_RATIO		= 0x9E3779B97F4A7C15L;
+
+	private final Mode		mode;
+	private final int		capacity;
+	private final int		maximumProbeLength;
+	private final int		slotMask;
+	private final int		hashShift;
+	private final double	gridStart;
+	private final double	gridStep;
+
+	/* The slots: stamp (odd while being written), bits of the time, bits of the value. */
+	private final AtomicLongArray	table;
+
+	private final LongAdder	numberOfHits		= new LongAdder();
+	private final LongAdder	numberOfMisses		= new LongAdder();
+	private final LongAdder	numberOfBypasses	= new LongAdder();
+	private final LongAdder	numberOfEvictions	= new LongAdder();
+
+	/**
+	 * Create a hashed cache with the given capacity. A capacity of 0 disables the cache.
+	 *
+	 * @param capacity The maximum number of entries, rounded up to a power of two, or 0 to disable the cache.
+	 * @param maximumProbeLength The number of slots searched for a time, i.e., the associativity of the cache (at most the capacity).
+	 */
+	public CurveValueCache(int capacity, int maximumProbeLength) {
+		if(capacity < 0 || capacity > MAXIMUM_CAPACITY) {
+			throw new IllegalArgumentException("The capacity must be between 0 and " + MAXIMUM_CAPACITY + ".");
+		}
+		if(maximumProbeLength < 1) {
+			throw new IllegalArgumentException("The maximum probe length must be positive.");
+		}
+
+		gridStart	= Double.NaN;
+		gridStep	= Double.NaN;
+		if(capacity == 0) {
+			mode					= Mode.DISABLED;
+			this.capacity			= 0;
+			this.maximumProbeLength	= 0;
+			slotMask				= 0;
+			hashShift				= 0;
+			table					= null;
+		}
+		else {
+			int numberOfBits = Math.max(32 - Integer.numberOfLeadingZeros(capacity - 1), 1);
+			mode					= Mode.HASHED;
+			this.capacity			= 1 << numberOfBits;
+			this.maximumProbeLength	= Math.min(maximumProbeLength, this.capacity);
+			slotMask				= this.capacity - 1;
+			hashShift				= 64 - numberOfBits;
+			table					= createTable(this.capacity);
+		}
+	}
+
+	/**
+	 * Create a hashed cache with the default capacity and maximum probe length.
+	 */
+	public CurveValueCache() {
+		this(DEFAULT_CAPACITY, DEFAULT_MAXIMUM_PROBE_LENGTH);
+	}
+
+	/**
+	 * Create a cache for the times of the uniform grid gridStart + i * gridStep, i = 0, ..., numberOfGridPoints-1.
+	 * Every time of the grid has its own slot, other times bypass the cache.
+	 *
+	 * @param gridStart The first time of the grid.
+	 * @param gridStep The step of the grid, positive.
+	 * @param numberOfGridPoints The number of times of the grid, positive.
+	 */
+	public CurveValueCache(double gridStart, double gridStep, int numberOfGridPoints) {
+		if(Double.isNaN(gridStart) || Double.isInfinite(gridStart)) {
+			throw new IllegalArgumentException("The start of the grid must be finite.");
+		}
+		if(!(gridStep > 0) || Double.isInfinite(gridStep)) {
+			throw new IllegalArgumentException("The step of the grid must be positive.");
+		}
+		if(numberOfGridPoints < 1 || numberOfGridPoints > MAXIMUM_CAPACITY) {
+			throw new IllegalArgumentException("The number of grid points must be between 1 and " + MAXIMUM_CAPACITY + ".");
+		}
+
+		mode					= Mode.UNIFORM_GRID;
+		capacity				= numberOfGridPoints;
+		maximumProbeLength		= 1;
+		slotMask				= -1;
+		hashShift				= 0;
+		this.gridStart			= gridStart;
+		this.gridStep			= gridStep;
+		table					= createTable(capacity);
+	}
+
+	/**
+	 * Returns an empty cache with the same configuration (mode, capacity, probe length and grid) as this one.
+	 *
+	 * @return An empty cache with the same configuration.
+	 */
+	public CurveValueCache getEmptyCopy() {
+		switch(mode) {
+		case UNIFORM_GRID:
+			return new CurveValueCache(gridStart, gridStep, capacity);
+		case HASHED:
+			return new CurveValueCache(capacity, maximumProbeLength);
+		case DISABLED:
+		default:
+			return new CurveValueCache(0, 1);
+		}
+	}
+
+	/**
+	 * Returns the cached value for the given time, or NaN if the time is not in the cache.
+	 *
+	 * @param time The time.
+	 * @return The cached value or NaN.
+	 */
+	public double get(double time) {
+		long key = Double.doubleToLongBits(time);
+		int slot = getFirstSlot(time, key);
+		if(slot < 0) {
+			numberOfBypasses.increment();
+			return Double.NaN;
+		}
+
+		for(int probe = 0; probe < maximumProbeLength; probe++) {
+			int offset = SLOT_SIZE * ((slot + probe) & slotMask);
+			long stamp = table.get(offset);
+			long keyInSlot = table.get(offset + 1);
+			if(keyInSlot == EMPTY) {
+				break;
+			}
+			if(keyInSlot == key) {
+				long value = table.get(offset + 2);
+				if((stamp & 1) == 0 && table.get(offset) == stamp) {
+					numberOfHits.increment();
+					return Double.longBitsToDouble(value);
+				}
+				// The slot is being written: treated as a miss
+				break;
+			}
+		}
+
+		numberOfMisses.increment();
+		return Double.NaN;
+	}
+
+	/**
+	 * Stores the value for the given time. NaN values and times bypassing the cache are ignored.
+	 *
+	 * @param time The time.
+	 * @param value The value.
+	 */
+	public void put(double time, double value) {
+		if(Double.isNaN(value)) {
+			return;
+		}
+		long key = Double.doubleToLongBits(time);
+		int slot = getFirstSlot(time, key);
+		if(slot < 0) {
+			return;
+		}
+
+		if(mode == Mode.UNIFORM_GRID) {
+			write(SLOT_SIZE * slot, key, value);
+			return;
+		}
+
+		for(int probe = 0; probe < maximumProbeLength; probe++) {
+			int offset = SLOT_SIZE * ((slot + probe) & slotMask);
+			long keyInSlot = table.get(offset + 1);
+			if(keyInSlot == key) {
+				return;
+			}
+			if(keyInSlot == EMPTY) {
+				write(offset, key, value);
+				return;
+			}
+		}
+
+		// The window is full: evict a random entry of the window
+		int probe = maximumProbeLength > 1 ? ThreadLocalRandom.current().nextInt(maximumProbeLength) : 0;
+		write(SLOT_SIZE * ((slot + probe) & slotMask), key, value);
+	}
+
+	/**
+	 * Removes all entries. The metrics are kept.
+	 * This method should not be called concurrently with put.
+	 */
+	public void clear() {
+		for(int offset = 0; offset < SLOT_SIZE * capacity; offset += SLOT_SIZE) {
+			if(table.get(offset + 1) == EMPTY) {
+				continue;
+			}
+			long stamp = table.get(offset) | 1;
+			table.set(offset, stamp);
+			table.set(offset + 1, EMPTY);
+			table.set(offset, stamp + 1);
+		}
+	}
+
+	public Mode getMode() {
+		return mode;
+	}
+
+	/**
+	 * Returns the maximum number of entries of the cache (the number of grid points in mode UNIFORM_GRID).
+	 *
+	 * @return The maximum number of entries.
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public int getMaximumProbeLength() {
+		return maximumProbeLength;
+	}
+
+	/**
+	 * Returns the number of entries of the cache. The slots are counted, hence the cost is proportional to the capacity.
+	 *
+	 * @return The number of entries.
+	 */
+	public int getNumberOfEntries() {
+		int numberOfEntries = 0;
+		for(int offset = 0; offset < SLOT_SIZE * capacity; offset += SLOT_SIZE) {
+			if(table.get(offset + 1) != EMPTY) {
+				numberOfEntries++;
+			}
+		}
+		return numberOfEntries;
+	}
+
+	/**
+	 * Returns the number of calls of get which found the time in the cache.
+	 *
+	 * @return The number of hits.
+	 */
+	public long getNumberOfHits() {
+		return numberOfHits.sum();
+	}
+
+	/**
+	 * Returns the number of calls of get which did not find the time in the cache.
+	 *
+	 * @return The number of misses.
+	 */
+	public long getNumberOfMisses() {
+		return numberOfMisses.sum();
+	}
+
+	/**
+	 * Returns the number of calls of get for times which are not cached by this cache (the cache being disabled or the time not being on the grid).
+	 *
+	 * @return The number of bypasses.
+	 */
+	public long getNumberOfBypasses() {
+		return numberOfBypasses.sum();
+	}
+
+	/**
+	 * Returns the number of entries which have been replaced by an entry for another time.
+	 *
+	 * @return The number of evictions.
+	 */
+	public long getNumberOfEvictions() {
+		return numberOfEvictions.sum();
+	}
+
+	/**
+	 * Returns the ratio of hits to the number of calls of get which did not bypass the cache.
+	 *
+	 * @return The hit ratio, NaN if there was no such call.
+	 */
+	public double getHitRatio() {
+		long hits = getNumberOfHits();
+		long misses = getNumberOfMisses();
+		return hits + misses > 0 ? (double)hits / (hits + misses) : Double.NaN;
+	}
+
+	/**
+	 * Sets the number of hits, misses, bypasses and evictions to zero.
+	 */
+	public void resetMetrics() {
+		numberOfHits.reset();
+		numberOfMisses.reset();
+		numberOfBypasses.reset();
+		numberOfEvictions.reset();
+	}
+
+	@Override
+	public String toString() {
+		return "CurveValueCache [mode=" + mode + ", capacity=" + capacity + ", maximumProbeLength=" + maximumProbeLength
+				+ (mode == Mode.UNIFORM_GRID ? ", gridStart=" + gridStart + ", gridStep=" + gridStep : "")
+				+ ", numberOfHits=" + getNumberOfHits() + ", numberOfMisses=" + getNumberOfMisses()
+				+ ", numberOfBypasses=" + getNumberOfBypasses() + ", numberOfEvictions=" + getNumberOfEvictions() + "]";
+	}
+
+	private static AtomicLongArray createTable(int capacity) {
+		AtomicLongArray table = new AtomicLongArray(SLOT_SIZE * capacity);
+		for(int offset = 0; offset < SLOT_SIZE * capacity; offset += SLOT_SIZE) {
+			table.set(offset + 1, EMPTY);
+		}
+		return table;
+	}
+
+	/**
+	 * Returns the first slot to be searched for the given time, or -1 if the time bypasses the cache.
+	 */
+	private int getFirstSlot(double time, long key) {
+		switch(mode) {
+		case HASHED:
+			return key == EMPTY ? -1 : (int)((key * GOLDEN_RATIO) >>> hashShift);
+		case UNIFORM_GRID:
+			double gridPosition = (time - gridStart) / gridStep;
+			double gridIndex = Math.rint(gridPosition);
+			if(!(gridIndex >= 0 && gridIndex < capacity) || Math.abs(gridPosition - gridIndex) > GRID_TOLERANCE) {
+				return -1;
+			}
+			return (int)gridIndex;
+		case DISABLED:
+		default:
+			return -1;
+		}
+	}
+
+	/**
+	 * Writes the entry to the slot at the given offset, unless the slot is being written by another thread.
+	 */
+	private void write(int offset, long key, double value) {
+		long stamp = table.get(offset);
+		if((stamp & 1) != 0 || !table.compareAndSet(offset, stamp, stamp + 1)) {
+			return;
+		}
+		long previousKey = table.get(offset + 1);
+		table.lazySet(offset + 1, key);
+		table.lazySet(offset + 2, Double.doubleToRawLongBits(value));
+		table.lazySet(offset, stamp + 2);
+		if(previousKey != EMPTY && previousKey != key) {
+			numberOfEvictions.increment();
+		}
+	}
+}
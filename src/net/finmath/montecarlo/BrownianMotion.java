@@ -150,13 +150,17 @@ public class BrownianMotion implements BrownianMotionInterface, Serializable {
 		 * MersenneTwister is known to generate "independent" increments in 623 dimensions.
 		 * Since we want to generate independent streams (paths), the loop over path is the outer loop.
 		 */
+		int numberOfIncrementsOfPath = timeDiscretization.getNumberOfTimeSteps() * numberOfFactors;
+		double[] normalsOfPath = new double[numberOfIncrementsOfPath];
 		for(int path=0; path<numberOfPaths; path++) {
+			// Generate the uniforms of the path in the order (time, factor) and invert them in bulk
+			mersenneTwister.nextDoubles(normalsOfPath, 0, numberOfIncrementsOfPath);
+			net.finmath.functions.NormalDistribution.inverseCumulativeDistribution(normalsOfPath, normalsOfPath, 0, numberOfIncrementsOfPath);
 			for(int timeIndex=0; timeIndex<timeDiscretization.getNumberOfTimeSteps(); timeIndex++) {
 				double sqrtDeltaT = sqrtOfTimeStep[timeIndex];
 				// Generate uncorrelated Brownian increment
 				for(int factor=0; factor<numberOfFactors; factor++) {
-					double uniformIncrement = mersenneTwister.nextDouble();
-					brownianIncrementsArray[timeIndex][factor][path] = net.finmath.functions.NormalDistribution.inverseCumulativeDistribution(uniformIncrement) * sqrtDeltaT;
+					brownianIncrementsArray[timeIndex][factor][path] = normalsOfPath[timeIndex*numberOfFactors + factor] * sqrtDeltaT;
 				}
 			}
 		}
@@ -0,0 +1,285 @@
+package net.finmath.montecarlo;
+
+/**
+ * Selection and sorting of arrays of realizations, optionally carrying a parallel array of weights, used by the quantiles of
+ * <code>RandomVariable</code> and by <code>QuantileSketch</code>.
+ *
+ * The selection is a quickselect with a median of three pivot and a three-way partition (hence linear in the expected case, also for many equal values),
+ * falling back to sorting if the partitions do not shrink fast enough. The sort is an introsort (quicksort falling back to heapsort).
+ * The values are compared by <code>Double.compare</code>, as by <code>java.util.Arrays.sort</code>: -0.0 is ordered before 0.0
+ * and NaN values are ordered after all other values.
+ * All methods reorder the given arrays.
+ *
+ * @author Szulda Guillaume
+ */
+final class OrderStatistics {
+
+	private static final int INSERTION_SORT_THRESHOLD = 16;
+
+	private OrderStatistics() {
+	}
+
+	/**
+	 * Returns the k-th smallest value (k starting at 0) of the array, reordering it.
+	 *
+	 * @param values The values (will be reordered).
+	 * @param k The index of the value in the sorted array.
+	 * @return The k-th smallest value.
+	 */
+	static double select(double[] values, int k) {
+		int numberOfNumbers = moveNaNsToEnd(values, null);
+		if(k >= numberOfNumbers) {
+			return Double.NaN;
+		}
+
+		int lo = 0;
+		int hi = numberOfNumbers - 1;
+		int depthLimit = 2 * (32 - Integer.numberOfLeadingZeros(numberOfNumbers));
+		while(hi - lo > INSERTION_SORT_THRESHOLD) {
+			if(depthLimit-- == 0) {
+				sort(values, null, lo, hi + 1);
+				return values[k];
+			}
+			double pivot = medianOfThree(values[lo], values[(lo + hi) >>> 1], values[hi]);
+
+			/* Three-way partition: [lo, lt) < pivot, [lt, gt] == pivot, (gt, hi] > pivot */
+			int lt = lo;
+			int gt = hi;
+			int i = lo;
+			while(i <= gt) {
+				int comparison = Double.compare(values[i], pivot);
+				if(comparison < 0) {
+					swap(values, null, lt++, i++);
+				}
+				else if(comparison > 0) {
+					swap(values, null, i, gt--);
+				}
+				else {
+					i++;
+				}
+			}
+
+			if(k < lt) {
+				hi = lt - 1;
+			}
+			else if(k > gt) {
+				lo = gt + 1;
+			}
+			else {
+				return pivot;
+			}
+		}
+		insertionSort(values, null, lo, hi + 1);
+		return values[k];
+	}
+
+	/**
+	 * Returns the smallest value x such that the weight of the values less or equal to x is at least quantile times the total weight,
+	 * reordering both arrays.
+	 *
+	 * @param values The values (will be reordered).
+	 * @param weights The non-negative weights of the values (will be reordered along with the values).
+	 * @param quantile The quantile level.
+	 * @return The weighted quantile.
+	 */
+	static double selectWeighted(double[] values, double[] weights, double quantile) {
+		int numberOfNumbers = moveNaNsToEnd(values, weights);
+		if(numberOfNumbers == 0) {
+			return Double.NaN;
+		}
+
+		double weightOfNumbers = sum(weights, 0, numberOfNumbers);
+		double totalWeight = weightOfNumbers + sum(weights, numberOfNumbers, values.length);
+		double target = quantile * totalWeight;
+		if(target > weightOfNumbers) {
+			return Double.NaN;
+		}
+
+		double weightBefore = 0.0;
+		int lo = 0;
+		int hi = numberOfNumbers - 1;
+		int depthLimit = 2 * (32 - Integer.numberOfLeadingZeros(numberOfNumbers));
+		while(hi - lo > INSERTION_SORT_THRESHOLD && depthLimit-- > 0) {
+			double pivot = medianOfThree(values[lo], values[(lo + hi) >>> 1], values[hi]);
+
+			int lt = lo;
+			int gt = hi;
+			int i = lo;
+			while(i <= gt) {
+				int comparison = Double.compare(values[i], pivot);
+				if(comparison < 0) {
+					swap(values, weights, lt++, i++);
+				}
+				else if(comparison > 0) {
+					swap(values, weights, i, gt--);
+				}
+				else {
+					i++;
+				}
+			}
+
+			double weightLess = sum(weights, lo, lt);
+			double weightEqual = sum(weights, lt, gt + 1);
+			if(lt > lo && weightBefore + weightLess >= target) {
+				hi = lt - 1;
+			}
+			else if(weightBefore + weightLess + weightEqual >= target || gt == hi) {
+				return pivot;
+			}
+			else {
+				weightBefore += weightLess + weightEqual;
+				lo = gt + 1;
+			}
+		}
+
+		sort(values, weights, lo, hi + 1);
+		for(int i = lo; i <= hi; i++) {
+			weightBefore += weights[i];
+			if(weightBefore >= target) {
+				return values[i];
+			}
+		}
+		/* Only reached by rounding of the partial sums of the weights. */
+		return values[hi];
+	}
+
+	/**
+	 * Sorts the values in [from, to) in ascending order, reordering the weights (if not null) along with the values.
+	 *
+	 * @param values The values.
+	 * @param weights The weights, or null.
+	 * @param from The first index (inclusive).
+	 * @param to The last index (exclusive).
+	 */
+	static void sort(double[] values, double[] weights, int from, int to) {
+		if(weights == null) {
+			java.util.Arrays.sort(values, from, to);
+			return;
+		}
+		int numberOfNumbers = from + moveNaNsToEnd(values, weights, from, to);
+		introSort(values, weights, from, numberOfNumbers, 2 * (32 - Integer.numberOfLeadingZeros(numberOfNumbers - from + 1)));
+	}
+
+	private static void introSort(double[] values, double[] weights, int from, int to, int depthLimit) {
+		while(to - from > INSERTION_SORT_THRESHOLD) {
+			if(depthLimit-- == 0) {
+				heapSort(values, weights, from, to);
+				return;
+			}
+			double pivot = medianOfThree(values[from], values[(from + to - 1) >>> 1], values[to - 1]);
+			int lt = from;
+			int gt = to - 1;
+			int i = from;
+			while(i <= gt) {
+				int comparison = Double.compare(values[i], pivot);
+				if(comparison < 0) {
+					swap(values, weights, lt++, i++);
+				}
+				else if(comparison > 0) {
+					swap(values, weights, i, gt--);
+				}
+				else {
+					i++;
+				}
+			}
+			/* Recursion on the smaller part bounds the depth of the stack. */
+			if(lt - from < to - gt - 1) {
+				introSort(values, weights, from, lt, depthLimit);
+				from = gt + 1;
+			}
+			else {
+				introSort(values, weights, gt + 1, to, depthLimit);
+				to = lt;
+			}
+		}
+		insertionSort(values, weights, from, to);
+	}
+
+	private static void heapSort(double[] values, double[] weights, int from, int to) {
+		int length = to - from;
+		for(int i = length / 2 - 1; i >= 0; i--) {
+			siftDown(values, weights, from, i, length);
+		}
+		for(int end = length - 1; end > 0; end--) {
+			swap(values, weights, from, from + end);
+			siftDown(values, weights, from, 0, end);
+		}
+	}
+
+	private static void siftDown(double[] values, double[] weights, int offset, int node, int length) {
+		while(2 * node + 1 < length) {
+			int child = 2 * node + 1;
+			if(child + 1 < length && Double.compare(values[offset + child + 1], values[offset + child]) > 0) {
+				child++;
+			}
+			if(Double.compare(values[offset + node], values[offset + child]) >= 0) {
+				return;
+			}
+			swap(values, weights, offset + node, offset + child);
+			node = child;
+		}
+	}
+
+	private static void insertionSort(double[] values, double[] weights, int from, int to) {
+		for(int i = from + 1; i < to; i++) {
+			double value = values[i];
+			double weight = weights != null ? weights[i] : 0.0;
+			int j = i - 1;
+			while(j >= from && Double.compare(values[j], value) > 0) {
+				values[j + 1] = values[j];
+				if(weights != null) {
+					weights[j + 1] = weights[j];
+				}
+				j--;
+			}
+			values[j + 1] = value;
+			if(weights != null) {
+				weights[j + 1] = weight;
+			}
+		}
+	}
+
+	private static int moveNaNsToEnd(double[] values, double[] weights) {
+		return moveNaNsToEnd(values, weights, 0, values.length);
+	}
+
+	/**
+	 * Moves the NaN values in [from, to) to the end of the range and returns the number of other values.
+	 */
+	private static int moveNaNsToEnd(double[] values, double[] weights, int from, int to) {
+		int end = to;
+		int i = from;
+		while(i < end) {
+			if(Double.isNaN(values[i])) {
+				swap(values, weights, i, --end);
+			}
+			else {
+				i++;
+			}
+		}
+		return end - from;
+	}
+
+	private static double medianOfThree(double a, double b, double c) {
+		return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+	}
+
+	private static double sum(double[] values, int from, int to) {
+		double sum = 0.0;
+		for(int i = from; i < to; i++) {
+			sum += values[i];
+		}
+		return sum;
+	}
+
+	private static void swap(double[] values, double[] weights, int i, int j) {
+		double value = values[i];
+		values[i] = values[j];
+		values[j] = value;
+		if(weights != null) {
+			double weight = weights[i];
+			weights[i] = weights[j];
+			weights[j] = weight;
+		}
+	}
+}
@@ -0,0 +1,326 @@
+package net.finmath.montecarlo;
+
+import java.io.Serializable;
+
+import net.finmath.stochastic.RandomVariableInterface;
+
+/**
+ * A one-pass, mergeable approximation of the distribution of a stream of (weighted) values, allowing to estimate quantiles and quantile expectations
+ * without storing the values, e.g., when the paths of a Monte Carlo simulation are generated and discarded block by block.
+ *
+ * The implementation is a merging t-digest (T. Dunning, O. Ertl, Computing extremely accurate quantiles using t-digests, 2019):
+ * the distribution is represented by a sorted list of centroids (mean and weight), whose weights are bounded by the scale function
+ * k(q) = compression / Z(n) log(q / (1-q)), Z(n) = 4 log(n / compression) + 24, n being the total weight,
+ * such that the centroids are small in the tails (down to single values at the extremes), where the quantiles are accurate.
+ * Added values are buffered and merged into the centroids in one sorted pass when the buffer is full.
+ * The number of centroids is of the order of half the compression.
+ *
+ * Sketches of disjoint parts of a stream can be merged. Merging the sketches in a fixed order gives a result which does not depend on the
+ * order in which the parts were processed, e.g. by several threads.
+ *
+ * The class is not thread safe.
+ *
+ * @author Szulda Guillaume
+ */
+public class QuantileSketch implements Serializable {
+
+	private static final long serialVersionUID = 8132519475038563207L;
+
+	private static final double DEFAULT_COMPRESSION = 200.0;
+
+	private final double compression;
+
+	private double[] means;
+	private double[] weights;
+	private int numberOfCentroids;
+
+	/* Buffer of the values not yet merged into the centroids, allocated on demand and released by compress. */
+	private double[] bufferMeans;
+	private double[] bufferWeights;
+	private int bufferSize;
+
+	private double totalWeight;
+	private double min = Double.POSITIVE_INFINITY;
+	private double max = Double.NEGATIVE_INFINITY;
+
+	/**
+	 * Create an empty sketch with the given compression.
+	 *
+	 * @param compression The compression, the number of centroids being of the order of half the compression (e.g., 200).
+	 */
+	public QuantileSketch(double compression) {
+		super();
+		if(!(compression >= 10)) {
+			throw new IllegalArgumentException("The compression must be at least 10.");
+		}
+		this.compression = compression;
+		this.means = new double[getBufferLength() / 5];
+		this.weights = new double[getBufferLength() / 5];
+	}
+
+	/**
+	 * Create an empty sketch with a compression of 200.
+	 */
+	public QuantileSketch() {
+		this(DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * Adds a value with weight one.
+	 *
+	 * @param value The value.
+	 */
+	public void add(double value) {
+		add(value, 1.0);
+	}
+
+	/**
+	 * Adds a value with the given weight.
+	 *
+	 * @param value The value (not NaN).
+	 * @param weight The weight (positive).
+	 */
+	public void add(double value, double weight) {
+		if(Double.isNaN(value)) {
+			throw new IllegalArgumentException("The value must not be NaN.");
+		}
+		if(!(weight > 0)) {
+			throw new IllegalArgumentException("The weight must be positive.");
+		}
+		addToBuffer(value, weight);
+		totalWeight += weight;
+		min = Math.min(min, value);
+		max = Math.max(max, value);
+	}
+
+	private void addToBuffer(double value, double weight) {
+		if(bufferMeans == null) {
+			bufferMeans = new double[getBufferLength()];
+			bufferWeights = new double[getBufferLength()];
+		}
+		else if(bufferSize == bufferMeans.length) {
+			compress();
+			bufferMeans = new double[getBufferLength()];
+			bufferWeights = new double[getBufferLength()];
+		}
+		bufferMeans[bufferSize] = value;
+		bufferWeights[bufferSize] = weight;
+		bufferSize++;
+	}
+
+	private int getBufferLength() {
+		return 5 * (2 * (int)Math.ceil(compression) + 10);
+	}
+
+	/**
+	 * Adds all realizations of a random variable with weight one.
+	 *
+	 * @param randomVariable The random variable.
+	 */
+	public void add(RandomVariableInterface randomVariable) {
+		for(int i = 0; i < randomVariable.size(); i++) {
+			add(randomVariable.get(i));
+		}
+	}
+
+	/**
+	 * Adds the values of another sketch to this sketch: its centroids and its buffered values are added to the buffer of this sketch.
+	 * The other sketch is not modified (it is only read, hence it may be merged into several sketches, but it must not be modified concurrently).
+	 *
+	 * @param other The sketch to add.
+	 */
+	public void merge(QuantileSketch other) {
+		if(other == this) {
+			throw new IllegalArgumentException("A sketch cannot be merged with itself.");
+		}
+		for(int i = 0; i < other.numberOfCentroids; i++) {
+			addToBuffer(other.means[i], other.weights[i]);
+		}
+		for(int i = 0; i < other.bufferSize; i++) {
+			addToBuffer(other.bufferMeans[i], other.bufferWeights[i]);
+		}
+		totalWeight += other.totalWeight;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+	}
+
+	/**
+	 * Returns the total weight of the values added.
+	 *
+	 * @return The total weight.
+	 */
+	public double getTotalWeight() {
+		return totalWeight;
+	}
+
+	public double getMin() {
+		return totalWeight > 0 ? min : Double.NaN;
+	}
+
+	public double getMax() {
+		return totalWeight > 0 ? max : Double.NaN;
+	}
+
+	/**
+	 * Returns the number of centroids representing the distribution.
+	 *
+	 * @return The number of centroids.
+	 */
+	public int getNumberOfCentroids() {
+		compress();
+		return numberOfCentroids;
+	}
+
+	/**
+	 * Returns an approximation of the quantile value, i.e., of the value x such that the weight of the values less than x is quantile times the total weight.
+	 * getQuantile(0) returns the smallest and getQuantile(1) the largest value added.
+	 *
+	 * @param quantile The quantile level.
+	 * @return The approximate quantile value.
+	 */
+	public double getQuantile(double quantile) {
+		compress();
+		if(numberOfCentroids == 0) {
+			return Double.NaN;
+		}
+		if(numberOfCentroids == 1) {
+			return means[0];
+		}
+
+		double index = quantile * totalWeight;
+		if(index <= 0) {
+			return min;
+		}
+		if(index >= totalWeight) {
+			return max;
+		}
+
+		/* The centroid i is located at the cumulated weight of the previous centroids plus half its weight. */
+		if(index < weights[0] / 2) {
+			return min + (means[0] - min) * index / (weights[0] / 2);
+		}
+		double weightBefore = 0.0;
+		for(int i = 0; i < numberOfCentroids - 1; i++) {
+			double center = weightBefore + weights[i] / 2;
+			double nextCenter = weightBefore + weights[i] + weights[i + 1] / 2;
+			if(index < nextCenter) {
+				return means[i] + (means[i + 1] - means[i]) * (index - center) / (nextCenter - center);
+			}
+			weightBefore += weights[i];
+		}
+		double lastWeight = weights[numberOfCentroids - 1];
+		double lastCenter = totalWeight - lastWeight / 2;
+		return means[numberOfCentroids - 1] + (max - means[numberOfCentroids - 1]) * (index - lastCenter) / (lastWeight / 2);
+	}
+
+	/**
+	 * Returns an approximation of the expectation of the values between two quantile levels, e.g., the expected shortfall,
+	 * every centroid contributing its mean with the part of its weight lying between the two levels.
+	 *
+	 * @param quantileStart Lower quantile level.
+	 * @param quantileEnd Upper quantile level.
+	 * @return The approximate (conditional) expectation of the values between the two quantile levels.
+	 */
+	public double getQuantileExpectation(double quantileStart, double quantileEnd) {
+		if(quantileStart > quantileEnd) {
+			return getQuantileExpectation(quantileEnd, quantileStart);
+		}
+		compress();
+		if(numberOfCentroids == 0) {
+			return Double.NaN;
+		}
+		if(quantileStart == quantileEnd) {
+			return getQuantile(quantileStart);
+		}
+
+		double lower = quantileStart * totalWeight;
+		double upper = quantileEnd * totalWeight;
+		double sum = 0.0;
+		double weightBefore = 0.0;
+		for(int i = 0; i < numberOfCentroids; i++) {
+			double overlap = Math.min(upper, weightBefore + weights[i]) - Math.max(lower, weightBefore);
+			if(overlap > 0) {
+				sum += means[i] * overlap;
+			}
+			weightBefore += weights[i];
+		}
+		return sum / (upper - lower);
+	}
+
+	/**
+	 * Merges the buffered values into the centroids and releases the buffer, e.g., before storing the sketch.
+	 * The centroids and the buffer are sorted by mean and neighbours are merged as long as the weight of the merged centroid
+	 * is within the bound given by the scale function.
+	 */
+	public void compress() {
+		if(bufferSize == 0) {
+			return;
+		}
+		int numberOfPoints = numberOfCentroids + bufferSize;
+		double[] pointMeans = new double[numberOfPoints];
+		double[] pointWeights = new double[numberOfPoints];
+		System.arraycopy(means, 0, pointMeans, 0, numberOfCentroids);
+		System.arraycopy(weights, 0, pointWeights, 0, numberOfCentroids);
+		System.arraycopy(bufferMeans, 0, pointMeans, numberOfCentroids, bufferSize);
+		System.arraycopy(bufferWeights, 0, pointWeights, numberOfCentroids, bufferSize);
+		OrderStatistics.sort(pointMeans, pointWeights, 0, numberOfPoints);
+
+		double weight = 0.0;
+		for(int i = 0; i < numberOfPoints; i++) {
+			weight += pointWeights[i];
+		}
+
+		int count = 0;
+		double currentMean = pointMeans[0];
+		double currentWeight = pointWeights[0];
+		double weightBefore = 0.0;
+		double normalizer = compression / (4 * Math.log(Math.max(weight, compression) / compression) + 24);
+		double weightLimit = weight * getInverseScale(getScale(0.0, normalizer) + 1.0, normalizer);
+		for(int i = 1; i < numberOfPoints; i++) {
+			if(weightBefore + currentWeight + pointWeights[i] <= weightLimit) {
+				currentWeight += pointWeights[i];
+				currentMean += (pointMeans[i] - currentMean) * pointWeights[i] / currentWeight;
+			}
+			else {
+				count = addCentroid(count, currentMean, currentWeight);
+				weightBefore += currentWeight;
+				weightLimit = weight * getInverseScale(getScale(weightBefore / weight, normalizer) + 1.0, normalizer);
+				currentMean = pointMeans[i];
+				currentWeight = pointWeights[i];
+			}
+		}
+		count = addCentroid(count, currentMean, currentWeight);
+
+		numberOfCentroids = count;
+		bufferSize = 0;
+		bufferMeans = null;
+		bufferWeights = null;
+	}
+
+	private int addCentroid(int index, double mean, double weight) {
+		if(index == means.length) {
+			means = java.util.Arrays.copyOf(means, 2 * means.length);
+			weights = java.util.Arrays.copyOf(weights, 2 * weights.length);
+		}
+		means[index] = mean;
+		weights[index] = weight;
+		return index + 1;
+	}
+
+	private static double getScale(double quantile, double normalizer) {
+		return normalizer * Math.log(quantile / (1 - quantile));
+	}
+
+	private static double getInverseScale(double scale, double normalizer) {
+		return 1.0 / (1.0 + Math.exp(-scale / normalizer));
+	}
+
+	@Override
+	public String toString() {
+		return super.toString()
+				+ "\n" + "compression: " + compression
+				+ "\n" + "total weight: " + totalWeight
+				+ "\n" + "number of centroids: " + numberOfCentroids
+				+ "\n" + "number of buffered values: " + bufferSize;
+	}
+}
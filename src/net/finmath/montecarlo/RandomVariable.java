@@ -40,6 +40,13 @@ public class RandomVariable implements RandomVariableInterface {
 
 	private static final long serialVersionUID = -1352953450936857742L;
 
+	/*
+	 * Reductions (averages and variances) of at least MINIMUM_SIZE_FOR_PARALLEL_REDUCTION realizations are split into chunks of
+	 * REDUCTION_CHUNK_SIZE realizations, summed in parallel. The chunks being fixed, the result does not depend on the number of threads.
+	 */
+	private static final int REDUCTION_CHUNK_SIZE = 16384;
+	private static final int MINIMUM_SIZE_FOR_PARALLEL_REDUCTION = 131072;
+
 	private final double      time;	                // Time (filtration)
 
 	// Data model for the stochastic case (otherwise null)
@@ -48,6 +55,10 @@ public class RandomVariable implements RandomVariableInterface {
 	// Data model for the non-stochastic case (if realizations==null)
 	private final double      valueIfNonStochastic;
 
+	// Sorted realizations, shared by the order statistics once more than one has been requested
+	private transient volatile double[] realizationsSorted = null;
+	private transient volatile boolean  isOrderStatisticRequested = false;
+
 	/**
 	 * Create a random variable from a given other implementation of <code>RandomVariableInterface</code>.
 	 *
@@ -231,18 +242,7 @@ public class RandomVariable implements RandomVariableInterface {
 			return Double.NaN;
 		}
 
-		/*
-		 * Kahan summation on realizations[i]
-		 */
-		double sum = 0.0;								// Running sum
-		double error = 0.0;								// Running error compensation
-		for(int i=0; i<realizations.length; i++)  {
-			double value = realizations[i] - error;		// Error corrected value
-			double newSum = sum + value;				// New sum
-			error = (newSum - sum) - value;				// New numerical error
-			sum	= newSum;
-		}
-		return sum/realizations.length;
+		return getSum(null, 1.0, false, 0.0)/realizations.length;
 	}
 
 	@Override
@@ -254,18 +254,7 @@ public class RandomVariable implements RandomVariableInterface {
 			return Double.NaN;
 		}
 
-		/*
-		 * Kahan summation on (realizations[i] * probabilities.get(i))
-		 */
-		double sum = 0.0;
-		double error = 0.0;														// Running error compensation
-		for(int i=0; i<realizations.length; i++)  {
-			double value = realizations[i] * probabilities.get(i) - error;		// Error corrected value
-			double newSum = sum + value;				// New sum
-			error = (newSum - sum) - value;				// New numerical error
-			sum	= newSum;
-		}
-		return sum / realizations.length;
+		return getSum(getRealizationsArray(probabilities), probabilities.get(0), false, 0.0) / realizations.length;
 	}
 
 	@Override
@@ -279,18 +268,7 @@ public class RandomVariable implements RandomVariableInterface {
 
 		double average = getAverage();
 
-		/*
-		 * Kahan summation on (realizations[i] - average)^2
-		 */
-		double sum = 0.0;
-		double errorOfSum	= 0.0;
-		for(int i=0; i<realizations.length; i++) {
-			double value	= (realizations[i] - average)*(realizations[i] - average) - errorOfSum;
-			double newSum	= sum + value;
-			errorOfSum		= (newSum - sum) - value;
-			sum				= newSum;
-		}
-		return sum/realizations.length;
+		return getSum(null, 1.0, true, average)/realizations.length;
 	}
 
 	@Override
@@ -304,20 +282,99 @@ public class RandomVariable implements RandomVariableInterface {
 
 		double average = getAverage(probabilities);
 
+		return getSum(getRealizationsArray(probabilities), probabilities.get(0), true, average);
+	}
+
+	/**
+	 * Returns the realizations of a stochastic random variable (without copy if it is a RandomVariable) or null for a deterministic one.
+	 */
+	private static double[] getRealizationsArray(RandomVariableInterface randomVariable) {
+		if(randomVariable.isDeterministic()) {
+			return null;
+		}
+		if(randomVariable instanceof RandomVariable) {
+			return ((RandomVariable)randomVariable).realizations;
+		}
+		return randomVariable.getRealizations();
+	}
+
+	/**
+	 * Returns the Kahan sum of the terms x[i] * w[i] or, if isSquaredDeviation is true, (x[i] - average)^2 * w[i],
+	 * where x are the realizations and w the weights (the constant weight if weights is null).
+	 *
+	 * For at least MINIMUM_SIZE_FOR_PARALLEL_REDUCTION realizations, the chunks of REDUCTION_CHUNK_SIZE terms are summed in parallel,
+	 * each by a Kahan summation, and the sums of the chunks (with their compensations) are added in the order of the chunks.
+	 * Below, the sum is the plain Kahan summation of the terms.
+	 */
+	private double getSum(double[] weights, double weight, boolean isSquaredDeviation, double average) {
+		if(realizations.length < MINIMUM_SIZE_FOR_PARALLEL_REDUCTION) {
+			double[] sumAndError = new double[2];
+			getSum(weights, weight, isSquaredDeviation, average, 0, realizations.length, sumAndError);
+			return sumAndError[0];
+		}
+
+		int numberOfChunks = (realizations.length + REDUCTION_CHUNK_SIZE - 1) / REDUCTION_CHUNK_SIZE;
+		double[][] sumsAndErrors = new double[numberOfChunks][2];
+		IntStream.range(0, numberOfChunks).parallel().forEach(chunk ->
+		getSum(weights, weight, isSquaredDeviation, average, chunk * REDUCTION_CHUNK_SIZE, Math.min((chunk + 1) * REDUCTION_CHUNK_SIZE, realizations.length), sumsAndErrors[chunk])
+				);
+
 		/*
-		 * Kahan summation on (realizations[i] - average)^2 * probabilities.get(i)
+		 * Kahan summation of the sums of the chunks, also compensating their errors
 		 */
 		double sum = 0.0;
-		double errorOfSum	= 0.0;
-		for(int i=0; i<realizations.length; i++) {
-			double value	= (realizations[i] - average) * (realizations[i] - average) * probabilities.get(i) - errorOfSum;
-			double newSum	= sum + value;
-			errorOfSum		= (newSum - sum) - value;
-			sum				= newSum;
+		double error = 0.0;
+		for(int chunk = 0; chunk < numberOfChunks; chunk++) {
+			double value = sumsAndErrors[chunk][0] - (error + sumsAndErrors[chunk][1]);
+			double newSum = sum + value;
+			error = (newSum - sum) - value;
+			sum = newSum;
 		}
 		return sum;
 	}
 
+	private void getSum(double[] weights, double weight, boolean isSquaredDeviation, double average, int from, int to, double[] sumAndError) {
+		/*
+		 * Kahan summation on the terms
+		 */
+		double sum = 0.0;								// Running sum
+		double error = 0.0;								// Running error compensation
+		if(!isSquaredDeviation && weights == null && weight == 1.0) {
+			for(int i=from; i<to; i++)  {
+				double value = realizations[i] - error;		// Error corrected value
+				double newSum = sum + value;				// New sum
+				error = (newSum - sum) - value;				// New numerical error
+				sum	= newSum;
+			}
+		}
+		else if(!isSquaredDeviation) {
+			for(int i=from; i<to; i++)  {
+				double value = realizations[i] * (weights != null ? weights[i] : weight) - error;
+				double newSum = sum + value;
+				error = (newSum - sum) - value;
+				sum	= newSum;
+			}
+		}
+		else if(weights == null && weight == 1.0) {
+			for(int i=from; i<to; i++) {
+				double value	= (realizations[i] - average)*(realizations[i] - average) - error;
+				double newSum	= sum + value;
+				error			= (newSum - sum) - value;
+				sum				= newSum;
+			}
+		}
+		else {
+			for(int i=from; i<to; i++) {
+				double value	= (realizations[i] - average) * (realizations[i] - average) * (weights != null ? weights[i] : weight) - error;
+				double newSum	= sum + value;
+				error			= (newSum - sum) - value;
+				sum				= newSum;
+			}
+		}
+		sumAndError[0] = sum;
+		sumAndError[1] = error;
+	}
+
 	@Override
 	public double getSampleVariance() {
 		if(isDeterministic() || size() == 1) {
@@ -381,8 +438,14 @@ public class RandomVariable implements RandomVariableInterface {
 		return getStandardDeviation(probabilities)/Math.sqrt(size());
 	}
 
-	/* (non-Javadoc)
-	 * @see net.finmath.stochastic.RandomVariableInterface#getQuantile()
+	/**
+	 * Returns the quantile value, see {@link RandomVariableInterface#getQuantile(double)}.
+	 *
+	 * The first order statistic requested from a random variable is computed by selection, in linear expected time.
+	 * Subsequent requests (quantiles or quantile expectations) sort the realizations once and then read the sorted realizations.
+	 *
+	 * @param quantile The quantile level.
+	 * @return The quantile value assuming equi-distribution.
 	 */
 	@Override
 	public double getQuantile(double quantile) {
@@ -393,16 +456,28 @@ public class RandomVariable implements RandomVariableInterface {
 			return Double.NaN;
 		}
 
-		double[] realizationsSorted = realizations.clone();
-		java.util.Arrays.sort(realizationsSorted);
-
 		int indexOfQuantileValue = Math.min(Math.max((int)Math.round((size()+1) * quantile - 1), 0), size()-1);
 
-		return realizationsSorted[indexOfQuantileValue];
+		double[] realizationsSorted = getRealizationsSortedOnRepeatedRequest();
+		if(realizationsSorted != null) {
+			return realizationsSorted[indexOfQuantileValue];
+		}
+
+		return OrderStatistics.select(realizations.clone(), indexOfQuantileValue);
 	}
 
-	/* (non-Javadoc)
-	 * @see net.finmath.stochastic.RandomVariableInterface#getQuantile(net.finmath.stochastic.RandomVariableInterface)
+	/**
+	 * Returns the quantile value assuming the given probability weights, i.e., the smallest realization x such that
+	 * the sum of the weights of the realizations less or equal to x is at least quantile times the sum of all weights.
+	 * The weights are normalized by their sum and have to be non-negative. NaN realizations are ordered after all other realizations.
+	 * For equal weights this is the realization of index ceil(quantile * n) - 1 in the sorted realizations,
+	 * while {@link #getQuantile(double)} uses the index round((n+1) * quantile - 1).
+	 *
+	 * The value is computed by a weighted selection, in linear expected time.
+	 *
+	 * @param quantile The quantile level.
+	 * @param probabilities The probability weights.
+	 * @return The quantile value assuming the given probability weights.
 	 */
 	@Override
 	public double getQuantile(double quantile, RandomVariableInterface probabilities) {
@@ -413,11 +488,27 @@ public class RandomVariable implements RandomVariableInterface {
 			return Double.NaN;
 		}
 
-		throw new RuntimeException("Method not implemented.");
+		double[] weights;
+		if(probabilities.isDeterministic()) {
+			weights = new double[size()];
+			java.util.Arrays.fill(weights, probabilities.get(0));
+		}
+		else {
+			weights = probabilities.getRealizations();
+		}
+
+		return OrderStatistics.selectWeighted(realizations.clone(), weights, quantile);
 	}
 
-	/* (non-Javadoc)
-	 * @see net.finmath.stochastic.RandomVariableInterface#getConditionalVaR()
+	/**
+	 * Returns the expectation over a quantile, see {@link RandomVariableInterface#getQuantileExpectation(double, double)}.
+	 *
+	 * The first order statistic requested from a random variable is computed by two selections, in linear expected time.
+	 * Subsequent requests (quantiles or quantile expectations) sort the realizations once and then read the sorted realizations.
+	 *
+	 * @param quantileStart Lower bound of the integral.
+	 * @param quantileEnd  Upper bound of the integral.
+	 * @return The (conditional) expectation of the values between two quantile levels assuming equi-distribution.
 	 */
 	@Override
 	public double getQuantileExpectation(double quantileStart, double quantileEnd) {
@@ -431,21 +522,53 @@ public class RandomVariable implements RandomVariableInterface {
 			return getQuantileExpectation(quantileEnd, quantileStart);
 		}
 
-		double[] realizationsSorted = realizations.clone();
-		java.util.Arrays.sort(realizationsSorted);
-
 		int indexOfQuantileValueStart	= Math.min(Math.max((int)Math.round((size()+1) * quantileStart - 1), 0), size()-1);
 		int indexOfQuantileValueEnd		= Math.min(Math.max((int)Math.round((size()+1) * quantileEnd - 1), 0), size()-1);
 
+		double[] realizationsSorted = getRealizationsSortedOnRepeatedRequest();
+		int offset = 0;
+		if(realizationsSorted == null) {
+			/*
+			 * After the first selection the values from indexOfQuantileValueStart on are the ones of the larger ranks,
+			 * after the second one the values of the ranks in between are the first ones of the remaining array.
+			 */
+			double[] values = realizations.clone();
+			OrderStatistics.select(values, indexOfQuantileValueStart);
+			realizationsSorted = java.util.Arrays.copyOfRange(values, indexOfQuantileValueStart, values.length);
+			OrderStatistics.select(realizationsSorted, indexOfQuantileValueEnd - indexOfQuantileValueStart);
+			offset = indexOfQuantileValueStart;
+		}
+
 		double quantileExpectation = 0.0;
 		for (int i=indexOfQuantileValueStart; i<=indexOfQuantileValueEnd;i++) {
-			quantileExpectation += realizationsSorted[i];
+			quantileExpectation += realizationsSorted[i-offset];
 		}
 		quantileExpectation /= indexOfQuantileValueEnd-indexOfQuantileValueStart+1;
 
 		return quantileExpectation;
 	}
 
+	/**
+	 * Returns the sorted realizations if an order statistic has already been requested from this random variable, otherwise null.
+	 * The sorted realizations are computed once and kept along with the random variable.
+	 * Note that the realizations must not be modified after they have been passed to the constructor.
+	 *
+	 * @return The sorted realizations or null.
+	 */
+	private double[] getRealizationsSortedOnRepeatedRequest() {
+		double[] sorted = realizationsSorted;
+		if(sorted == null) {
+			if(!isOrderStatisticRequested) {
+				isOrderStatisticRequested = true;
+				return null;
+			}
+			sorted = realizations.clone();
+			java.util.Arrays.sort(sorted);
+			realizationsSorted = sorted;
+		}
+		return sorted;
+	}
+
 	/* (non-Javadoc)
 	 * @see net.finmath.stochastic.RandomVariableInterface#getHistogram()
 	 */
@@ -475,28 +598,29 @@ public class RandomVariable implements RandomVariableInterface {
 			 * representing a density, where the sum of the entries is one.
 			 * There is one exception:
 			 * If the size of the random variable is 0, all entries will be zero.
+			 *
+			 * The interval of every realization is found by a binary search, i.e., the first interval point
+			 * greater or equal to the realization (NaN realizations are counted in the last interval).
 			 */
-			double[] realizationsSorted = realizations.clone();
-			java.util.Arrays.sort(realizationsSorted);
-
-			int sampleIndex=0;
-			for (int intervalIndex=0; intervalIndex<intervalPoints.length; intervalIndex++)
-			{
-				int sampleCount = 0;
-				while (sampleIndex < realizationsSorted.length &&
-						realizationsSorted[sampleIndex] <= intervalPoints[intervalIndex])
-				{
-					sampleIndex++;
-					sampleCount++;
+			for(double realization : realizations) {
+				int lower = 0;
+				int upper = intervalPoints.length;
+				while(lower < upper) {
+					int middle = (lower + upper) >>> 1;
+					if(realization <= intervalPoints[middle]) {
+						upper = middle;
+					}
+					else {
+						lower = middle + 1;
+					}
 				}
-				histogramValues[intervalIndex] = sampleCount;
+				histogramValues[lower]++;
 			}
-			histogramValues[intervalPoints.length] = realizationsSorted.length-sampleIndex;
 
 			// Normalize histogramValues
-			if(realizationsSorted.length > 0) {
+			if(realizations.length > 0) {
 				for(int i=0; i<histogramValues.length; i++) {
-					histogramValues[i] /= realizationsSorted.length;
+					histogramValues[i] /= realizations.length;
 				}
 			}
 		}
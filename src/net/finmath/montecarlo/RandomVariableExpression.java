@@ -0,0 +1,1156 @@
+package net.finmath.montecarlo;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.IntToDoubleFunction;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+
+import org.apache.commons.math3.util.FastMath;
+
+import net.finmath.functions.DoubleTernaryOperator;
+import net.finmath.stochastic.RandomVariableInterface;
+
+/**
+ * Implements a Monte-Carlo random variable (like <code>RandomVariable</code>) using deferred evaluation of an expression graph.
+ *
+ * Every operator on a stochastic random variable only records a node (the operator, its parameter and its arguments),
+ * such that a chain of operations builds a directed acyclic graph whose leafs are the arrays of realizations.
+ * The graph is evaluated when the realizations are requested (<code>getRealizations</code>, <code>get</code>, <code>cache</code>, the statistics),
+ * or, without storing the realizations, when <code>getAverage</code> is requested.
+ * The evaluation compiles the graph into a flat program, in which a node reachable along several paths of the graph
+ * as well as nodes applying the same operator to the same arguments are evaluated only once,
+ * and runs the program on chunks of paths: every instruction is a tight loop over the chunk, the intermediate results living in
+ * buffers of the size of a chunk which are reused once their last reader has been run.
+ * For large numbers of paths the chunks are processed in parallel. The result does not depend on the number of threads,
+ * the average being the compensated (Kahan) sum of the chunks added in the order of the chunks.
+ *
+ * Operations on non-stochastic random variables are evaluated immediately. The realizations of an evaluated random variable
+ * are cached and it becomes a leaf of the graphs built upon it. Graphs deeper than a maximum depth are evaluated at construction
+ * to bound the memory held by pending expressions.
+ *
+ * Accesses performed exclusively through the interface
+ * <code>RandomVariableInterface</code> are thread safe (and do not mutate the class, except for the caching of the realizations).
+ *
+ * @author Szulda Guillaume
+ * @version 1.0
+ */
+public class RandomVariableExpression implements RandomVariableInterface {
+
+	private static final long serialVersionUID = -2719432671573924081L;
+
+	private static final int CHUNK_SIZE = 1024;
+	private static final int CHUNKS_PER_TASK = 16;
+	private static final int MINIMUM_SIZE_FOR_PARALLEL_EVALUATION = 65536;
+	private static final int MAXIMUM_DEPTH = 256;
+
+	private enum Operator {
+		/* Unary operators */
+		ADD_SCALAR, SUB_SCALAR, MULT_SCALAR, DIV_SCALAR, POW, CAP_SCALAR, FLOOR_SCALAR,
+		SQUARED, SQRT, EXP, LOG, SIN, COS, INVERT, ABS, IS_NAN, UNARY_FUNCTION,
+		/* Binary operators */
+		ADD, SUB, MULT, DIV, CAP, FLOOR, ACCRUE, DISCOUNT, ADD_PRODUCT_SCALAR, BINARY_FUNCTION,
+		/* Ternary operators */
+		ADD_PRODUCT, ADD_RATIO, SUB_RATIO, BARRIER, TERNARY_FUNCTION
+	}
+
+	/**
+	 * A node of the expression graph: an operator with its parameter (or function) and its arguments.
+	 */
+	private static final class Expression {
+		private final Operator operator;
+		private final double parameter;
+		private final Object function;
+		private final RandomVariableExpression[] arguments;
+
+		private Expression(Operator operator, double parameter, Object function, RandomVariableExpression[] arguments) {
+			this.operator = operator;
+			this.parameter = parameter;
+			this.function = function;
+			this.arguments = arguments;
+		}
+	}
+
+	private final double      time;	                // Time (filtration)
+	private final int         size;
+	private volatile int      depth;					// 0 for a leaf, including an evaluated node
+	private final boolean     isDeterministic;
+
+	// Data model for the stochastic case: the pending expression or, once evaluated, the realizations
+	private transient volatile Expression expression;
+	private volatile double[] realizations;
+
+	// View used for the statistics, keeping the sorted realizations of the order statistics
+	private transient volatile RandomVariable randomVariable = null;
+
+	// Data model for the non-stochastic case (if realizations==null and expression==null)
+	private final double      valueIfNonStochastic;
+
+	/**
+	 * Create a random variable from a given other implementation of <code>RandomVariableInterface</code>.
+	 *
+	 * The view used for the statistics is shared with value if value is a <code>RandomVariable</code>, a <code>RandomVariableVectorized</code>
+	 * or an evaluated <code>RandomVariableExpression</code>,
+	 * such that order statistics already requested from value do not sort the realizations again.
+	 *
+	 * @param value Object implementing <code>RandomVariableInterface</code>.
+	 */
+	public RandomVariableExpression(RandomVariableInterface value) {
+		super();
+		this.time = value.getFiltrationTime();
+		this.size = value.size();
+		this.isDeterministic = value.isDeterministic();
+		if(value instanceof RandomVariableExpression) {
+			RandomVariableExpression other = (RandomVariableExpression)value;
+			this.valueIfNonStochastic = other.valueIfNonStochastic;
+			/* The realizations of other are set before its expression is released. */
+			double[] otherRealizations = other.realizations;
+			Expression otherExpression = otherRealizations == null ? other.expression : null;
+			this.expression = otherExpression;
+			this.realizations = otherExpression == null ? other.realizations : null;
+			this.depth = otherExpression == null ? 0 : other.depth;
+			this.randomVariable = otherExpression == null ? other.randomVariable : null;
+		}
+		else {
+			this.depth = 0;
+			this.valueIfNonStochastic = value.isDeterministic() ? value.get(0) : Double.NaN;
+			this.realizations = value.isDeterministic() ? null : value.getRealizations();
+			this.expression = null;
+			if(value instanceof RandomVariable && !value.isDeterministic()) {
+				this.randomVariable = (RandomVariable)value;
+			}
+			else if(value instanceof RandomVariableVectorized && !value.isDeterministic()) {
+				this.randomVariable = ((RandomVariableVectorized)value).getRandomVariable();
+			}
+		}
+	}
+
+	/**
+	 * Create a non stochastic random variable, i.e. a constant.
+	 *
+	 * @param value the value, a constant.
+	 */
+	public RandomVariableExpression(double value) {
+		this(-Double.MAX_VALUE, value);
+	}
+
+	/**
+	 * Create a non stochastic random variable, i.e. a constant.
+	 *
+	 * @param time the filtration time, set to 0.0 if not used.
+	 * @param value the value, a constant.
+	 */
+	public RandomVariableExpression(double time, double value) {
+		super();
+		this.time = time;
+		this.size = 1;
+		this.depth = 0;
+		this.isDeterministic = true;
+		this.realizations = null;
+		this.expression = null;
+		this.valueIfNonStochastic = value;
+	}
+
+	/**
+	 * Create a stochastic random variable.
+	 *
+	 * Important: The realizations array is not cloned (no defensive copy is made).
+	 *
+	 * @param time the filtration time, set to 0.0 if not used.
+	 * @param realisations the vector of realizations.
+	 */
+	public RandomVariableExpression(double time, double[] realisations) {
+		super();
+		this.time = time;
+		this.size = realisations.length;
+		this.depth = 0;
+		this.isDeterministic = false;
+		this.realizations = realisations;
+		this.expression = null;
+		this.valueIfNonStochastic = Double.NaN;
+	}
+
+	/**
+	 * Creates a stochastic random variable with the given filtration time and the realizations (or the expression) of the given one.
+	 */
+	private RandomVariableExpression(double time, RandomVariableExpression value) {
+		super();
+		this.time = time;
+		this.size = value.size;
+		this.isDeterministic = false;
+		this.valueIfNonStochastic = Double.NaN;
+		double[] valueRealizations = value.realizations;
+		Expression valueExpression = valueRealizations == null ? value.expression : null;
+		this.expression = valueExpression;
+		this.realizations = valueExpression == null ? value.realizations : null;
+		this.depth = valueExpression == null ? 0 : value.depth;
+	}
+
+	/**
+	 * Creates the node applying the operator to the arguments. If all arguments are non-stochastic the node is evaluated immediately.
+	 */
+	private RandomVariableExpression(double minimumTime, Operator operator, double parameter, Object function, RandomVariableExpression... arguments) {
+		super();
+		double newTime = minimumTime;
+		int newSize = 1;
+		int maximumDepth = 0;
+		boolean isDeterministic = true;
+		for(RandomVariableExpression argument : arguments) {
+			newTime = Math.max(newTime, argument.time);
+			newSize = Math.max(newSize, argument.size);
+			maximumDepth = Math.max(maximumDepth, argument.realizations != null ? 0 : argument.depth);
+			isDeterministic &= argument.isDeterministic();
+		}
+		this.time = newTime;
+		this.isDeterministic = isDeterministic;
+
+		if(isDeterministic) {
+			double[][] values = new double[3][];
+			for(int k = 0; k < arguments.length; k++) {
+				values[k] = new double[] { arguments[k].valueIfNonStochastic };
+			}
+			double[] result = new double[1];
+			apply(operator, parameter, function, result, 0, 1, values[0], 0, values[1], 0, values[2], 0);
+			this.size = 1;
+			this.depth = 0;
+			this.realizations = null;
+			this.expression = null;
+			this.valueIfNonStochastic = result[0];
+		}
+		else {
+			this.size = newSize;
+			this.depth = maximumDepth + 1;
+			this.realizations = null;
+			this.expression = new Expression(operator, parameter, function, arguments);
+			this.valueIfNonStochastic = Double.NaN;
+		}
+	}
+
+	private RandomVariableInterface newExpression(Operator operator, double parameter, Object function, RandomVariableInterface... arguments) {
+		RandomVariableExpression[] expressions = new RandomVariableExpression[arguments.length];
+		for(int k = 0; k < arguments.length; k++) {
+			expressions[k] = arguments[k] instanceof RandomVariableExpression ? (RandomVariableExpression)arguments[k] : new RandomVariableExpression(arguments[k]);
+		}
+		RandomVariableExpression result = new RandomVariableExpression(time, operator, parameter, function, expressions);
+		if(result.depth > MAXIMUM_DEPTH) {
+			result.getRealizationsArray();
+		}
+		return result;
+	}
+
+	private RandomVariableInterface newExpression(Operator operator, double parameter, RandomVariableInterface... arguments) {
+		return newExpression(operator, parameter, null, arguments);
+	}
+
+	@Override
+	public boolean equals(RandomVariableInterface randomVariable) {
+		if(this.time != randomVariable.getFiltrationTime()) {
+			return false;
+		}
+		if(this.isDeterministic() && randomVariable.isDeterministic()) {
+			return this.valueIfNonStochastic == randomVariable.get(0);
+		}
+		if(this.isDeterministic() != randomVariable.isDeterministic()) {
+			return false;
+		}
+		double[] otherRealizations = randomVariable instanceof RandomVariableExpression ? ((RandomVariableExpression)randomVariable).getRealizationsArray() : randomVariable.getRealizations();
+		return Arrays.equals(getRealizationsArray(), otherRealizations);
+	}
+
+	@Override
+	public double getFiltrationTime() {
+		return time;
+	}
+
+	@Override
+	public double get(int pathOrState) {
+		if(isDeterministic()) {
+			return valueIfNonStochastic;
+		} else {
+			return getRealizationsArray()[pathOrState];
+		}
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean isDeterministic() {
+		return isDeterministic;
+	}
+
+	@Override
+	public double[] getRealizations() {
+		if(isDeterministic()) {
+			return new double[] { valueIfNonStochastic };
+		}
+		else {
+			return getRealizationsArray().clone();
+		}
+	}
+
+	@Override
+	public Double doubleValue() {
+		if(isDeterministic()) {
+			return valueIfNonStochastic;
+		} else {
+			throw new UnsupportedOperationException("The random variable is non-deterministic");
+		}
+	}
+
+	@Override
+	public IntToDoubleFunction getOperator() {
+		if(isDeterministic()) {
+			return i -> valueIfNonStochastic;
+		}
+		else {
+			double[] values = getRealizationsArray();
+			return i -> values[i];
+		}
+	}
+
+	@Override
+	public DoubleStream getRealizationsStream() {
+		if(isDeterministic()) {
+			return DoubleStream.generate(() -> valueIfNonStochastic);
+		}
+		else {
+			return Arrays.stream(getRealizationsArray());
+		}
+	}
+
+	/**
+	 * Returns the evaluated random variable as a <code>RandomVariable</code> sharing the realizations, used for the statistics.
+	 * The view is created once and kept along with the random variable, such that the sorted realizations of the order statistics
+	 * (quantiles, quantile expectations) are computed only once.
+	 *
+	 * @return The evaluated random variable.
+	 */
+	public RandomVariable getRandomVariable() {
+		RandomVariable value = randomVariable;
+		if(value == null) {
+			value = isDeterministic() ? new RandomVariable(time, valueIfNonStochastic) : new RandomVariable(time, getRealizationsArray());
+			randomVariable = value;
+		}
+		return value;
+	}
+
+	@Override
+	public double getMin() {
+		return getRandomVariable().getMin();
+	}
+
+	@Override
+	public double getMax() {
+		return getRandomVariable().getMax();
+	}
+
+	/**
+	 * Returns the average of the realizations. If the random variable has not been evaluated yet,
+	 * the expression is evaluated chunk by chunk and the realizations are added without being stored.
+	 *
+	 * @return The average.
+	 */
+	@Override
+	public double getAverage() {
+		if(isDeterministic()) {
+			return valueIfNonStochastic;
+		}
+		if(realizations != null) {
+			return getRandomVariable().getAverage();
+		}
+
+		Program program = compile();
+		if(program == null) {
+			return getRandomVariable().getAverage();
+		}
+		int numberOfChunks = (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		double[] sums = new double[numberOfChunks];
+		double[] errorsOfSums = new double[numberOfChunks];
+		runChunks(program, (chunk, buffers) -> {
+			int start = chunk * CHUNK_SIZE;
+			int length = Math.min(CHUNK_SIZE, size - start);
+			double[] values = program.execute(start, length, buffers, null, 0);
+			double sum = 0.0;
+			double errorOfSum = 0.0;
+			for(int i = 0; i < length; i++) {
+				double value = values[i] - errorOfSum;
+				double newSum = sum + value;
+				errorOfSum = (newSum - sum) - value;
+				sum = newSum;
+			}
+			sums[chunk] = sum;
+			errorsOfSums[chunk] = errorOfSum;
+		});
+
+		double sum = 0.0;
+		double errorOfSum = 0.0;
+		for(int chunk = 0; chunk < numberOfChunks; chunk++) {
+			double value = sums[chunk] - (errorOfSum + errorsOfSums[chunk]);
+			double newSum = sum + value;
+			errorOfSum = (newSum - sum) - value;
+			sum = newSum;
+		}
+		return sum / size;
+	}
+
+	@Override
+	public double getAverage(RandomVariableInterface probabilities) {
+		return getRandomVariable().getAverage(probabilities);
+	}
+
+	@Override
+	public double getVariance() {
+		return getRandomVariable().getVariance();
+	}
+
+	@Override
+	public double getVariance(RandomVariableInterface probabilities) {
+		return getRandomVariable().getVariance(probabilities);
+	}
+
+	@Override
+	public double getSampleVariance() {
+		return getRandomVariable().getSampleVariance();
+	}
+
+	@Override
+	public double getStandardDeviation() {
+		return getRandomVariable().getStandardDeviation();
+	}
+
+	@Override
+	public double getStandardDeviation(RandomVariableInterface probabilities) {
+		return getRandomVariable().getStandardDeviation(probabilities);
+	}
+
+	@Override
+	public double getStandardError() {
+		return getRandomVariable().getStandardError();
+	}
+
+	@Override
+	public double getStandardError(RandomVariableInterface probabilities) {
+		return getRandomVariable().getStandardError(probabilities);
+	}
+
+	@Override
+	public double getQuantile(double quantile) {
+		return getRandomVariable().getQuantile(quantile);
+	}
+
+	@Override
+	public double getQuantile(double quantile, RandomVariableInterface probabilities) {
+		return getRandomVariable().getQuantile(quantile, probabilities);
+	}
+
+	@Override
+	public double getQuantileExpectation(double quantileStart, double quantileEnd) {
+		return getRandomVariable().getQuantileExpectation(quantileStart, quantileEnd);
+	}
+
+	@Override
+	public double[] getHistogram(double[] intervalPoints) {
+		return getRandomVariable().getHistogram(intervalPoints);
+	}
+
+	@Override
+	public double[][] getHistogram(int numberOfPoints, double standardDeviations) {
+		return getRandomVariable().getHistogram(numberOfPoints, standardDeviations);
+	}
+
+	/**
+	 * Evaluates the expression and stores the realizations.
+	 *
+	 * @return This random variable.
+	 */
+	@Override
+	public RandomVariableInterface cache() {
+		if(!isDeterministic()) {
+			getRealizationsArray();
+		}
+		return this;
+	}
+
+	@Override
+	public RandomVariableInterface apply(DoubleUnaryOperator operator) {
+		return newExpression(Operator.UNARY_FUNCTION, 0.0, operator, this);
+	}
+
+	@Override
+	public RandomVariableInterface apply(DoubleBinaryOperator operator, RandomVariableInterface argument) {
+		return newExpression(Operator.BINARY_FUNCTION, 0.0, operator, this, argument);
+	}
+
+	@Override
+	public RandomVariableInterface apply(DoubleTernaryOperator operator, RandomVariableInterface argument1, RandomVariableInterface argument2) {
+		return newExpression(Operator.TERNARY_FUNCTION, 0.0, operator, this, argument1, argument2);
+	}
+
+	@Override
+	public RandomVariableInterface cap(double cap) {
+		return newExpression(Operator.CAP_SCALAR, cap, this);
+	}
+
+	@Override
+	public RandomVariableInterface floor(double floor) {
+		return newExpression(Operator.FLOOR_SCALAR, floor, this);
+	}
+
+	@Override
+	public RandomVariableInterface add(double value) {
+		return newExpression(Operator.ADD_SCALAR, value, this);
+	}
+
+	@Override
+	public RandomVariableInterface sub(double value) {
+		return newExpression(Operator.SUB_SCALAR, value, this);
+	}
+
+	@Override
+	public RandomVariableInterface mult(double value) {
+		return newExpression(Operator.MULT_SCALAR, value, this);
+	}
+
+	@Override
+	public RandomVariableInterface div(double value) {
+		return newExpression(Operator.DIV_SCALAR, value, this);
+	}
+
+	@Override
+	public RandomVariableInterface pow(double exponent) {
+		return newExpression(Operator.POW, exponent, this);
+	}
+
+	@Override
+	public RandomVariableInterface average() {
+		return new RandomVariableExpression(getAverage());
+	}
+
+	@Override
+	public RandomVariableInterface squared() {
+		return newExpression(Operator.SQUARED, 0.0, this);
+	}
+
+	@Override
+	public RandomVariableInterface sqrt() {
+		return newExpression(Operator.SQRT, 0.0, this);
+	}
+
+	@Override
+	public RandomVariableInterface exp() {
+		return newExpression(Operator.EXP, 0.0, this);
+	}
+
+	@Override
+	public RandomVariableInterface log() {
+		return newExpression(Operator.LOG, 0.0, this);
+	}
+
+	@Override
+	public RandomVariableInterface sin() {
+		return newExpression(Operator.SIN, 0.0, this);
+	}
+
+	@Override
+	public RandomVariableInterface cos() {
+		return newExpression(Operator.COS, 0.0, this);
+	}
+
+	@Override
+	public RandomVariableInterface invert() {
+		return newExpression(Operator.INVERT, 0.0, this);
+	}
+
+	@Override
+	public RandomVariableInterface abs() {
+		return newExpression(Operator.ABS, 0.0, this);
+	}
+
+	@Override
+	public RandomVariableInterface isNaN() {
+		return newExpression(Operator.IS_NAN, 0.0, this);
+	}
+
+	/*
+	 * Operators with random variable arguments. A non-stochastic argument is passed as the parameter of the corresponding scalar operator.
+	 */
+
+	@Override
+	public RandomVariableInterface add(RandomVariableInterface randomVariable) {
+		if(randomVariable.isDeterministic() && !isDeterministic()) {
+			return withTime(add(randomVariable.get(0)), randomVariable.getFiltrationTime());
+		}
+		return newExpression(Operator.ADD, 0.0, this, randomVariable);
+	}
+
+	@Override
+	public RandomVariableInterface sub(RandomVariableInterface randomVariable) {
+		if(randomVariable.isDeterministic() && !isDeterministic()) {
+			return withTime(sub(randomVariable.get(0)), randomVariable.getFiltrationTime());
+		}
+		return newExpression(Operator.SUB, 0.0, this, randomVariable);
+	}
+
+	@Override
+	public RandomVariableInterface mult(RandomVariableInterface randomVariable) {
+		if(randomVariable.isDeterministic() && !isDeterministic()) {
+			return withTime(mult(randomVariable.get(0)), randomVariable.getFiltrationTime());
+		}
+		return newExpression(Operator.MULT, 0.0, this, randomVariable);
+	}
+
+	@Override
+	public RandomVariableInterface div(RandomVariableInterface randomVariable) {
+		if(randomVariable.isDeterministic() && !isDeterministic()) {
+			return withTime(div(randomVariable.get(0)), randomVariable.getFiltrationTime());
+		}
+		return newExpression(Operator.DIV, 0.0, this, randomVariable);
+	}
+
+	@Override
+	public RandomVariableInterface cap(RandomVariableInterface cap) {
+		if(cap.isDeterministic() && !isDeterministic()) {
+			return withTime(cap(cap.get(0)), cap.getFiltrationTime());
+		}
+		return newExpression(Operator.CAP, 0.0, this, cap);
+	}
+
+	@Override
+	public RandomVariableInterface floor(RandomVariableInterface floor) {
+		if(floor.isDeterministic() && !isDeterministic()) {
+			return withTime(floor(floor.get(0)), floor.getFiltrationTime());
+		}
+		return newExpression(Operator.FLOOR, 0.0, this, floor);
+	}
+
+	@Override
+	public RandomVariableInterface accrue(RandomVariableInterface rate, double periodLength) {
+		return newExpression(Operator.ACCRUE, periodLength, this, rate);
+	}
+
+	@Override
+	public RandomVariableInterface discount(RandomVariableInterface rate, double periodLength) {
+		return newExpression(Operator.DISCOUNT, periodLength, this, rate);
+	}
+
+	@Override
+	public RandomVariableInterface barrier(RandomVariableInterface trigger, RandomVariableInterface valueIfTriggerNonNegative, RandomVariableInterface valueIfTriggerNegative) {
+		return newExpression(Operator.BARRIER, 0.0, trigger, valueIfTriggerNonNegative, valueIfTriggerNegative);
+	}
+
+	@Override
+	public RandomVariableInterface barrier(RandomVariableInterface trigger, RandomVariableInterface valueIfTriggerNonNegative, double valueIfTriggerNegative) {
+		return this.barrier(trigger, valueIfTriggerNonNegative, new RandomVariableExpression(valueIfTriggerNonNegative.getFiltrationTime(), valueIfTriggerNegative));
+	}
+
+	@Override
+	public RandomVariableInterface addProduct(RandomVariableInterface factor1, double factor2) {
+		return newExpression(Operator.ADD_PRODUCT_SCALAR, factor2, this, factor1);
+	}
+
+	@Override
+	public RandomVariableInterface addProduct(RandomVariableInterface factor1, RandomVariableInterface factor2) {
+		if(factor2.isDeterministic()) {
+			return withTime(addProduct(factor1, factor2.get(0)), factor2.getFiltrationTime());
+		}
+		return newExpression(Operator.ADD_PRODUCT, 0.0, this, factor1, factor2);
+	}
+
+	@Override
+	public RandomVariableInterface addRatio(RandomVariableInterface numerator, RandomVariableInterface denominator) {
+		return newExpression(Operator.ADD_RATIO, 0.0, this, numerator, denominator);
+	}
+
+	@Override
+	public RandomVariableInterface subRatio(RandomVariableInterface numerator, RandomVariableInterface denominator) {
+		return newExpression(Operator.SUB_RATIO, 0.0, this, numerator, denominator);
+	}
+
+	/**
+	 * Returns a random variable with the same value (or expression) and a filtration time at least the given one.
+	 */
+	private static RandomVariableInterface withTime(RandomVariableInterface randomVariable, double time) {
+		RandomVariableExpression value = (RandomVariableExpression)randomVariable;
+		if(value.time >= time) {
+			return value;
+		}
+		if(value.isDeterministic()) {
+			return new RandomVariableExpression(time, value.valueIfNonStochastic);
+		}
+		return new RandomVariableExpression(time, value);
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		/* The pending expression is not serialized, hence it is evaluated first. */
+		if(!isDeterministic()) {
+			getRealizationsArray();
+		}
+		out.defaultWriteObject();
+	}
+
+	@Override
+	public String toString() {
+		return super.toString()
+				+ "\n" + "time: " + time
+				+ "\n" + "realizations: " +
+				(isDeterministic() ? valueIfNonStochastic : Arrays.toString(getRealizationsArray()));
+	}
+
+	/*
+	 * Evaluation of the expression graph.
+	 */
+
+	/**
+	 * Returns the realizations of the stochastic random variable, evaluating the expression on first call. The array must not be modified.
+	 */
+	private double[] getRealizationsArray() {
+		double[] values = realizations;
+		if(values != null) {
+			return values;
+		}
+		synchronized (this) {
+			if(realizations == null) {
+				Program program = compile();
+				if(program != null) {
+					double[] result = new double[size];
+					runChunks(program, (chunk, buffers) -> {
+						int start = chunk * CHUNK_SIZE;
+						program.execute(start, Math.min(CHUNK_SIZE, size - start), buffers, result, start);
+					});
+					realizations = result;
+				}
+				/* The evaluated node is a leaf of the graphs built upon it from now on. */
+				depth = 0;
+				expression = null;
+			}
+			return realizations;
+		}
+	}
+
+	private interface ChunkEvaluation {
+		void evaluate(int chunk, double[][] buffers);
+	}
+
+	/**
+	 * Runs the evaluation of all chunks of paths, by tasks of consecutive chunks which own their buffers.
+	 */
+	private void runChunks(Program program, ChunkEvaluation evaluation) {
+		int numberOfChunks = (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		int numberOfTasks = (numberOfChunks + CHUNKS_PER_TASK - 1) / CHUNKS_PER_TASK;
+		IntStream tasks = IntStream.range(0, numberOfTasks);
+		if(size >= MINIMUM_SIZE_FOR_PARALLEL_EVALUATION) {
+			tasks = tasks.parallel();
+		}
+		tasks.forEach(task -> {
+			double[][] buffers = new double[program.numberOfBuffers][CHUNK_SIZE];
+			for(int chunk = task * CHUNKS_PER_TASK; chunk < Math.min((task + 1) * CHUNKS_PER_TASK, numberOfChunks); chunk++) {
+				evaluation.evaluate(chunk, buffers);
+			}
+		});
+	}
+
+	/**
+	 * Compiles the expression graph of this random variable into a program, visiting the graph in post order without recursion.
+	 * Returns null if the random variable has been evaluated in the meantime.
+	 */
+	private Program compile() {
+		Expression rootExpression = expression;
+		if(rootExpression == null) {
+			return null;
+		}
+
+		ProgramBuilder builder = new ProgramBuilder();
+		Map<RandomVariableExpression, Integer> registerOfNode = new IdentityHashMap<>();
+		Map<RandomVariableExpression, Expression> expressionOfNode = new IdentityHashMap<>();
+		expressionOfNode.put(this, rootExpression);
+
+		Deque<RandomVariableExpression> stack = new ArrayDeque<>();
+		stack.push(this);
+		while(!stack.isEmpty()) {
+			RandomVariableExpression node = stack.peek();
+			if(registerOfNode.containsKey(node)) {
+				stack.pop();
+				continue;
+			}
+
+			Expression nodeExpression = expressionOfNode.get(node);
+			if(nodeExpression == null) {
+				if(node.isDeterministic()) {
+					registerOfNode.put(node, builder.addConstant(node.valueIfNonStochastic));
+					stack.pop();
+					continue;
+				}
+				/* Snapshot of the node: the realizations are set before the expression is released. */
+				double[] values = node.realizations;
+				nodeExpression = values == null ? node.expression : null;
+				if(nodeExpression == null) {
+					registerOfNode.put(node, builder.addLeaf(values != null ? values : node.realizations));
+					stack.pop();
+					continue;
+				}
+				expressionOfNode.put(node, nodeExpression);
+			}
+
+			boolean isReady = true;
+			for(RandomVariableExpression argument : nodeExpression.arguments) {
+				if(!registerOfNode.containsKey(argument)) {
+					stack.push(argument);
+					isReady = false;
+				}
+			}
+			if(isReady) {
+				int[] argumentRegisters = new int[nodeExpression.arguments.length];
+				for(int k = 0; k < argumentRegisters.length; k++) {
+					argumentRegisters[k] = registerOfNode.get(nodeExpression.arguments[k]);
+				}
+				registerOfNode.put(node, builder.addInstruction(nodeExpression.operator, nodeExpression.parameter, nodeExpression.function, argumentRegisters));
+				stack.pop();
+			}
+		}
+
+		return builder.build(registerOfNode.get(this));
+	}
+
+	/**
+	 * Builds a program from the nodes of the graph, merging the leafs with the same array, the equal constants
+	 * and the instructions applying the same operator to the same arguments.
+	 */
+	private static final class ProgramBuilder {
+		private final List<double[]> registerArrays = new ArrayList<>();
+		private final List<Boolean> registerIsLeaf = new ArrayList<>();
+		private final List<Integer> instructionOfRegister = new ArrayList<>();
+
+		private final List<Operator> operators = new ArrayList<>();
+		private final List<Double> parameters = new ArrayList<>();
+		private final List<Object> functions = new ArrayList<>();
+		private final List<int[]> arguments = new ArrayList<>();
+
+		private final Map<double[], Integer> registerOfLeaf = new IdentityHashMap<>();
+		private final Map<Double, Integer> registerOfConstant = new HashMap<>();
+		private final Map<List<Object>, Integer> registerOfInstruction = new HashMap<>();
+
+		private int addLeaf(double[] values) {
+			return registerOfLeaf.computeIfAbsent(values, v -> addRegister(v, true, -1));
+		}
+
+		private int addConstant(double value) {
+			return registerOfConstant.computeIfAbsent(value, v -> {
+				double[] values = new double[CHUNK_SIZE];
+				Arrays.fill(values, v);
+				return addRegister(values, false, -1);
+			});
+		}
+
+		private int addInstruction(Operator operator, double parameter, Object function, int[] argumentRegisters) {
+			List<Object> key = new ArrayList<>();
+			key.add(operator);
+			key.add(parameter);
+			key.add(function);
+			for(int argumentRegister : argumentRegisters) {
+				key.add(argumentRegister);
+			}
+			return registerOfInstruction.computeIfAbsent(key, k -> {
+				operators.add(operator);
+				parameters.add(parameter);
+				functions.add(function);
+				arguments.add(argumentRegisters);
+				return addRegister(null, false, operators.size() - 1);
+			});
+		}
+
+		private int addRegister(double[] values, boolean isLeaf, int instruction) {
+			registerArrays.add(values);
+			registerIsLeaf.add(isLeaf);
+			instructionOfRegister.add(instruction);
+			return registerArrays.size() - 1;
+		}
+
+		/**
+		 * Assigns a buffer to the result of every instruction, a buffer being released after the last instruction reading it.
+		 */
+		private Program build(int resultRegister) {
+			int numberOfInstructions = operators.size();
+			int numberOfRegisters = registerArrays.size();
+
+			int[] lastUse = new int[numberOfRegisters];
+			Arrays.fill(lastUse, -1);
+			for(int k = 0; k < numberOfInstructions; k++) {
+				for(int argumentRegister : arguments.get(k)) {
+					lastUse[argumentRegister] = k;
+				}
+			}
+
+			int[] bufferOfRegister = new int[numberOfRegisters];
+			Arrays.fill(bufferOfRegister, -1);
+			Deque<Integer> freeBuffers = new ArrayDeque<>();
+			int numberOfBuffers = 0;
+			int[] outputRegister = new int[numberOfInstructions];
+			for(int register = 0; register < numberOfRegisters; register++) {
+				if(instructionOfRegister.get(register) >= 0) {
+					outputRegister[instructionOfRegister.get(register)] = register;
+				}
+			}
+			for(int k = 0; k < numberOfInstructions; k++) {
+				/* The operators are element-wise, hence the result may overwrite an argument read for the last time. */
+				for(int argumentRegister : arguments.get(k)) {
+					if(lastUse[argumentRegister] == k && bufferOfRegister[argumentRegister] >= 0 && !freeBuffers.contains(bufferOfRegister[argumentRegister])) {
+						freeBuffers.push(bufferOfRegister[argumentRegister]);
+					}
+				}
+				bufferOfRegister[outputRegister[k]] = freeBuffers.isEmpty() ? numberOfBuffers++ : freeBuffers.pop();
+			}
+
+			Program program = new Program();
+			program.operators = operators.toArray(new Operator[numberOfInstructions]);
+			program.parameters = new double[numberOfInstructions];
+			program.functions = functions.toArray();
+			program.arguments = arguments.toArray(new int[numberOfInstructions][]);
+			program.outputRegisters = outputRegister;
+			for(int k = 0; k < numberOfInstructions; k++) {
+				program.parameters[k] = parameters.get(k);
+			}
+			program.registerArrays = registerArrays.toArray(new double[numberOfRegisters][]);
+			program.registerIsLeaf = new boolean[numberOfRegisters];
+			for(int register = 0; register < numberOfRegisters; register++) {
+				program.registerIsLeaf[register] = registerIsLeaf.get(register);
+			}
+			program.bufferOfRegister = bufferOfRegister;
+			program.numberOfBuffers = numberOfBuffers;
+			return program;
+		}
+	}
+
+	/**
+	 * A compiled expression: a list of instructions reading registers, which are leafs (arrays of realizations),
+	 * constants (arrays of the size of a chunk) or the results of previous instructions (buffers of the size of a chunk).
+	 * The last instruction computes the result.
+	 */
+	private static final class Program {
+		private Operator[] operators;
+		private double[] parameters;
+		private Object[] functions;
+		private int[][] arguments;
+		private int[] outputRegisters;
+
+		private double[][] registerArrays;
+		private boolean[] registerIsLeaf;
+		private int[] bufferOfRegister;
+		private int numberOfBuffers;
+
+		/**
+		 * Evaluates the paths start, ..., start+length-1 and writes the result to target (at targetOffset) or, if target is null,
+		 * to a buffer, which is returned (the result starting at index 0).
+		 */
+		private double[] execute(int start, int length, double[][] buffers, double[] target, int targetOffset) {
+			double[][] argumentArrays = new double[3][];
+			int[] argumentOffsets = new int[3];
+			double[] result = null;
+			for(int k = 0; k < operators.length; k++) {
+				int[] argumentRegisters = arguments[k];
+				for(int j = 0; j < argumentRegisters.length; j++) {
+					int register = argumentRegisters[j];
+					if(bufferOfRegister[register] >= 0) {
+						argumentArrays[j] = buffers[bufferOfRegister[register]];
+						argumentOffsets[j] = 0;
+					}
+					else {
+						argumentArrays[j] = registerArrays[register];
+						argumentOffsets[j] = registerIsLeaf[register] ? start : 0;
+					}
+				}
+				boolean isLast = k == operators.length - 1;
+				double[] output = isLast && target != null ? target : buffers[bufferOfRegister[outputRegisters[k]]];
+				int outputOffset = isLast && target != null ? targetOffset : 0;
+				apply(operators[k], parameters[k], functions[k], output, outputOffset, length,
+						argumentArrays[0], argumentOffsets[0], argumentArrays[1], argumentOffsets[1], argumentArrays[2], argumentOffsets[2]);
+				result = output;
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Applies the operator to the realizations x[xOffset], ..., x[xOffset+length-1] (and those of y and z, if used)
+	 * and writes the result to result[resultOffset], ..., result[resultOffset+length-1].
+	 */
+	private static void apply(Operator operator, double parameter, Object function, double[] result, int resultOffset, int length,
+			double[] x, int xOffset, double[] y, int yOffset, double[] z, int zOffset) {
+		switch(operator) {
+		case ADD_SCALAR:
+			for(int i = 0; i < length; i++) {
+				result[resultOffset+i] = x[xOffset+i] + parameter;
+			}
+			break;
+		case SUB_SCALAR:
+			for(int i = 0; i < length; i++) {
+				result[resultOffset+i] = x[xOffset+i] - parameter;
+			}
+			break;
+		case MULT_SCALAR:
+			for(int i = 0; i < length; i++) {
+				result[resultOffset+i] = x[xOffset+i] * parameter;
+			}
+			break;
+		case DIV_SCALAR:
+			for(int i = 0; i < length; i++) {
+				result[resultOffset+i] = x[xOffset+i] / parameter;
+			}
+			break;
+		case POW:
+			for(int i = 0; i < length; i++) {
+				result[resultOffset+i] = Math.pow(x[xOffset+i], parameter);
+			}
+			break;
+		case CAP_SCALAR:
+			for(int i = 0; i < length; i++) {
+				result[resultOffset+i] = Math.min(x[xOffset+i], parameter);
+			}
+			break;
+		case FLOOR_SCALAR:
+			for(int i = 0; i < length; i++) {
+				result[resultOffset+i] = Math.max(x[xOffset+i], parameter);
+			}
+			break;
+		case SQUARED:
+			for(int i = 0; i < length; i++) {
+				result[resultOffset+i] = x[xOffset+i] * x[xOffset+i];
+			}
+			break;
+		case SQRT:
+			for(int i = 0; i < length; i++) {
+				result[resultOffset+i] = FastMath.sqrt(x[xOffset+i]);
+			}
+			break;
+		case EXP:
+			for(int i = 0; i < length; i++) {
+				result[resultOffset+i] = FastMath.exp(x[xOffset+i]);
+			}
+			break;
+		case LOG:
+			for(int i = 0; i < length; i++) {
+				result[resultOffset+i] = FastMath.log(x[xOffset+i]);
+			}
+			break;
+		case SIN:
+			for(int i = 0; i < length; i++) {
+				result[resultOffset+i] = FastMath.sin(x[xOffset+i]);
+			}
+			break;
+		case COS:
+			for(int i = 0; i < length; i++) {
+				result[resultOffset+i] = FastMath.cos(x[xOffset+i]);
+			}
+			break;
+		case INVERT:
+			for(int i = 0; i < length; i++) {
+				result[resultOffset+i] = 1.0 / x[xOffset+i];
+			}
+			break;
+		case ABS:
+			for(int i = 0; i < length; i++) {
+				result[resultOffset+i] = Math.abs(x[xOffset+i]);
+			}
+			break;
+		case IS_NAN:
+			for(int i = 0; i < length; i++) {
+				result[resultOffset+i] = Double.isNaN(x[xOffset+i]) ? 1.0 : 0.0;
+			}
+			break;
+		case UNARY_FUNCTION:
+			for(int i = 0; i < length; i++) {
+				result[resultOffset+i] = ((DoubleUnaryOperator)function).applyAsDouble(x[xOffset+i]);
+			}
+			break;
+		case ADD:
+			for(int i = 0; i < length; i++) {
+				result[resultOffset+i] = x[xOffset+i] + y[yOffset+i];
+			}
+			break;
+		case SUB:
+			for(int i = 0; i < length; i++) {
+				result[resultOffset+i] = x[xOffset+i] - y[yOffset+i];
+			}
+			break;
+		case MULT:
+			for(int i = 0; i < length; i++) {
+				result[resultOffset+i] = x[xOffset+i] * y[yOffset+i];
+			}
+			break;
+		case DIV:
+			for(int i = 0; i < length; i++) {
+				result[resultOffset+i] = x[xOffset+i] / y[yOffset+i];
+			}
+			break;
+		case CAP:
+			for(int i = 0; i < length; i++) {
+				result[resultOffset+i] = Math.min(x[xOffset+i], y[yOffset+i]);
+			}
+			break;
+		case FLOOR:
+			for(int i = 0; i < length; i++) {
+				result[resultOffset+i] = Math.max(x[xOffset+i], y[yOffset+i]);
+			}
+			break;
+		case ACCRUE:
+			for(int i = 0; i < length; i++) {
+				result[resultOffset+i] = x[xOffset+i] * (1 + y[yOffset+i] * parameter);
+			}
+			break;
+		case DISCOUNT:
+			for(int i = 0; i < length; i++) {
+				result[resultOffset+i] = x[xOffset+i] / (1.0 + y[yOffset+i] * parameter);
+			}
+			break;
+		case ADD_PRODUCT_SCALAR:
+			for(int i = 0; i < length; i++) {
+				result[resultOffset+i] = x[xOffset+i] + y[yOffset+i] * parameter;
+			}
+			break;
+		case BINARY_FUNCTION:
+			for(int i = 0; i < length; i++) {
+				result[resultOffset+i] = ((DoubleBinaryOperator)function).applyAsDouble(x[xOffset+i], y[yOffset+i]);
+			}
+			break;
+		case ADD_PRODUCT:
+			for(int i = 0; i < length; i++) {
+				result[resultOffset+i] = x[xOffset+i] + y[yOffset+i] * z[zOffset+i];
+			}
+			break;
+		case ADD_RATIO:
+			for(int i = 0; i < length; i++) {
+				result[resultOffset+i] = x[xOffset+i] + y[yOffset+i] / z[zOffset+i];
+			}
+			break;
+		case SUB_RATIO:
+			for(int i = 0; i < length; i++) {
+				result[resultOffset+i] = x[xOffset+i] - y[yOffset+i] / z[zOffset+i];
+			}
+			break;
+		case BARRIER:
+			for(int i = 0; i < length; i++) {
+				result[resultOffset+i] = x[xOffset+i] >= 0.0 ? y[yOffset+i] : z[zOffset+i];
+			}
+			break;
+		case TERNARY_FUNCTION:
+			for(int i = 0; i < length; i++) {
+				result[resultOffset+i] = ((DoubleTernaryOperator)function).applyAsDouble(x[xOffset+i], y[yOffset+i], z[zOffset+i]);
+			}
+			break;
+		default:
+			throw new UnsupportedOperationException("Operator " + operator + " not supported.");
+		}
+	}
+}
@@ -0,0 +1,25 @@
+package net.finmath.montecarlo;
+
+import net.finmath.stochastic.RandomVariableInterface;
+
+/**
+ *
+ * @author Szulda Guillaume
+ */
+public class RandomVariableExpressionFactory extends AbstractRandomVariableFactory {
+
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = -3318209435163807346L;
+
+	@Override
+	public RandomVariableInterface createRandomVariable(double time, double value) {
+		return new RandomVariableExpression(time, value);
+	}
+
+	@Override
+	public RandomVariableInterface createRandomVariable(double time, double[] values) {
+		return new RandomVariableExpression(time, values);
+	}
+}
@@ -0,0 +1,641 @@
+package net.finmath.montecarlo;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.IntToDoubleFunction;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+
+import net.finmath.functions.DoubleTernaryOperator;
+import net.finmath.stochastic.RandomVariableInterface;
+
+/**
+ * The class RandomVariableOffHeap is an implementation of a stochastic <code>RandomVariableInterface</code> whose realizations are stored
+ * outside of the Java heap, in a <code>DoubleBuffer</code> view of a direct <code>ByteBuffer</code> or of a memory-mapped file,
+ * such that large simulations neither consume heap memory nor burden the garbage collector.
+ *
+ * The realizations are read in place by <code>get</code> and by the reductions (minimum, maximum, averages, variances and histograms),
+ * which give the same results as the ones of a <code>RandomVariable</code> holding the same realizations.
+ * The order statistics (quantiles and quantile expectations) select in a temporary copy of the realizations, which is not kept.
+ * The other operators read the realizations by one bulk copy into a <code>RandomVariable</code>, on which the operator is applied,
+ * hence their results are (temporary) random variables on the heap, while the stored values remain off-heap.
+ * A serialized RandomVariableOffHeap is deserialized as a <code>RandomVariable</code>.
+ *
+ * Accesses performed exclusively through the interface
+ * <code>RandomVariableInterface</code> are thread safe (and do not mutate the class).
+ *
+ * @author Szulda Guillaume
+ * @version 1.0
+ */
+public class RandomVariableOffHeap implements RandomVariableInterface {
+
+	private static final long serialVersionUID = 4615312907468201153L;
+
+	/*
+	 * Reductions (averages and variances) of at least MINIMUM_SIZE_FOR_PARALLEL_REDUCTION realizations are split into chunks of
+	 * REDUCTION_CHUNK_SIZE realizations, summed in parallel, as by RandomVariable.
+	 */
+	private static final int REDUCTION_CHUNK_SIZE = 16384;
+	private static final int MINIMUM_SIZE_FOR_PARALLEL_REDUCTION = 131072;
+
+	private final double      time;	                // Time (filtration)
+
+	// Data model: the realizations, a read-only view starting at index 0
+	private final transient DoubleBuffer realizations;
+
+	/**
+	 * Create a stochastic random variable from a buffer of realizations.
+	 * The realizations are the remaining elements of the buffer, which is not copied: the random variable keeps a read-only view of it.
+	 *
+	 * @param time the filtration time, set to 0.0 if not used.
+	 * @param realizations the buffer of realizations, e.g. a view of a direct or memory-mapped <code>ByteBuffer</code>.
+	 */
+	public RandomVariableOffHeap(double time, DoubleBuffer realizations) {
+		super();
+		this.time = time;
+		this.realizations = realizations.slice().asReadOnlyBuffer();
+	}
+
+	/**
+	 * Create a stochastic random variable by copying the given realizations to a direct (off-heap) buffer.
+	 *
+	 * @param time the filtration time, set to 0.0 if not used.
+	 * @param realisations the vector of realizations.
+	 */
+	public RandomVariableOffHeap(double time, double[] realisations) {
+		this(time, (DoubleBuffer)allocateDirect(realisations.length).put(realisations).flip());
+	}
+
+	/**
+	 * Allocates a buffer of doubles outside of the Java heap, in the native byte order.
+	 *
+	 * @param size The number of doubles.
+	 * @return The buffer.
+	 */
+	public static DoubleBuffer allocateDirect(int size) {
+		return ByteBuffer.allocateDirect(Math.multiplyExact(size, Double.BYTES)).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+	}
+
+	/**
+	 * Returns the realizations copied to a <code>RandomVariable</code> on the heap.
+	 *
+	 * @return The random variable on the heap.
+	 */
+	public RandomVariable getRandomVariable() {
+		return new RandomVariable(time, getRealizationsCopy());
+	}
+
+	private double[] getRealizationsCopy() {
+		double[] values = new double[realizations.capacity()];
+		realizations.duplicate().get(values);
+		return values;
+	}
+
+	private Object writeReplace() {
+		return getRandomVariable();
+	}
+
+	@Override
+	public boolean equals(RandomVariableInterface randomVariable) {
+		return getRandomVariable().equals(randomVariable);
+	}
+
+	@Override
+	public double getFiltrationTime() {
+		return time;
+	}
+
+	@Override
+	public double get(int pathOrState) {
+		return realizations.get(pathOrState);
+	}
+
+	@Override
+	public int size() {
+		return realizations.capacity();
+	}
+
+	@Override
+	public boolean isDeterministic() {
+		return false;
+	}
+
+	@Override
+	public double[] getRealizations() {
+		return getRandomVariable().getRealizations();
+	}
+
+	@Override
+	public Double doubleValue() {
+		throw new UnsupportedOperationException("The random variable is non-deterministic");
+	}
+
+	@Override
+	public IntToDoubleFunction getOperator() {
+		return realizations::get;
+	}
+
+	@Override
+	public DoubleStream getRealizationsStream() {
+		return IntStream.range(0, size()).mapToDouble(realizations::get);
+	}
+
+	@Override
+	public double getMin() {
+		double min = size() > 0 ? realizations.get(0) : Double.MAX_VALUE;
+		for(int i=0; i<size(); i++) {
+			min = Math.min(realizations.get(i), min);
+		}
+		return min;
+	}
+
+	@Override
+	public double getMax() {
+		double max = size() > 0 ? realizations.get(0) : -Double.MAX_VALUE;
+		for(int i=0; i<size(); i++) {
+			max = Math.max(realizations.get(i), max);
+		}
+		return max;
+	}
+
+	@Override
+	public double getAverage() {
+		if(size() == 0) {
+			return Double.NaN;
+		}
+
+		return getSum(null, 1.0, false, 0.0)/size();
+	}
+
+	@Override
+	public double getAverage(RandomVariableInterface probabilities) {
+		if(size() == 0) {
+			return Double.NaN;
+		}
+
+		return getSum(getRealizationsBuffer(probabilities), probabilities.get(0), false, 0.0) / size();
+	}
+
+	@Override
+	public double getVariance() {
+		if(size() == 1) {
+			return 0.0;
+		}
+		if(size() == 0) {
+			return Double.NaN;
+		}
+
+		double average = getAverage();
+
+		return getSum(null, 1.0, true, average)/size();
+	}
+
+	@Override
+	public double getVariance(RandomVariableInterface probabilities) {
+		if(size() == 0) {
+			return Double.NaN;
+		}
+
+		double average = getAverage(probabilities);
+
+		return getSum(getRealizationsBuffer(probabilities), probabilities.get(0), true, average);
+	}
+
+	/**
+	 * Returns the realizations of a stochastic random variable as a buffer (without copy if it is a RandomVariableOffHeap) or null for a deterministic one.
+	 */
+	private static DoubleBuffer getRealizationsBuffer(RandomVariableInterface randomVariable) {
+		if(randomVariable.isDeterministic()) {
+			return null;
+		}
+		if(randomVariable instanceof RandomVariableOffHeap) {
+			return ((RandomVariableOffHeap)randomVariable).realizations;
+		}
+		return DoubleBuffer.wrap(randomVariable.getRealizations());
+	}
+
+	/**
+	 * Returns the Kahan sum of the terms x[i] * w[i] or, if isSquaredDeviation is true, (x[i] - average)^2 * w[i],
+	 * where x are the realizations and w the weights (the constant weight if weights is null), reading the buffers in place.
+	 * The terms are summed as by RandomVariable: by chunks of REDUCTION_CHUNK_SIZE terms, summed in parallel and added in the order of the chunks,
+	 * for at least MINIMUM_SIZE_FOR_PARALLEL_REDUCTION realizations, otherwise by a plain Kahan summation.
+	 */
+	private double getSum(DoubleBuffer weights, double weight, boolean isSquaredDeviation, double average) {
+		if(size() < MINIMUM_SIZE_FOR_PARALLEL_REDUCTION) {
+			double[] sumAndError = new double[2];
+			getSum(weights, weight, isSquaredDeviation, average, 0, size(), sumAndError);
+			return sumAndError[0];
+		}
+
+		int numberOfChunks = (size() + REDUCTION_CHUNK_SIZE - 1) / REDUCTION_CHUNK_SIZE;
+		double[][] sumsAndErrors = new double[numberOfChunks][2];
+		IntStream.range(0, numberOfChunks).parallel().forEach(chunk ->
+		getSum(weights, weight, isSquaredDeviation, average, chunk * REDUCTION_CHUNK_SIZE, Math.min((chunk + 1) * REDUCTION_CHUNK_SIZE, size()), sumsAndErrors[chunk])
+				);
+
+		/*
+		 * Kahan summation of the sums of the chunks, also compensating their errors
+		 */
+		double sum = 0.0;
+		double error = 0.0;
+		for(int chunk = 0; chunk < numberOfChunks; chunk++) {
+			double value = sumsAndErrors[chunk][0] - (error + sumsAndErrors[chunk][1]);
+			double newSum = sum + value;
+			error = (newSum - sum) - value;
+			sum = newSum;
+		}
+		return sum;
+	}
+
+	private void getSum(DoubleBuffer weights, double weight, boolean isSquaredDeviation, double average, int from, int to, double[] sumAndError) {
+		/*
+		 * Kahan summation on the terms
+		 */
+		double sum = 0.0;								// Running sum
+		double error = 0.0;								// Running error compensation
+		for(int i=from; i<to; i++)  {
+			double realization = realizations.get(i);
+			double term = isSquaredDeviation ? (realization - average) * (realization - average) : realization;
+			double value = (weights == null && weight == 1.0 ? term : term * (weights != null ? weights.get(i) : weight)) - error;
+			double newSum = sum + value;				// New sum
+			error = (newSum - sum) - value;				// New numerical error
+			sum	= newSum;
+		}
+		sumAndError[0] = sum;
+		sumAndError[1] = error;
+	}
+
+	@Override
+	public double getSampleVariance() {
+		if(size() == 1) {
+			return 0.0;
+		}
+		if(size() == 0) {
+			return Double.NaN;
+		}
+
+		return getVariance() * size()/(size()-1);
+	}
+
+	@Override
+	public double getStandardDeviation() {
+		if(size() == 0) {
+			return Double.NaN;
+		}
+
+		return Math.sqrt(getVariance());
+	}
+
+	@Override
+	public double getStandardDeviation(RandomVariableInterface probabilities) {
+		if(size() == 0) {
+			return Double.NaN;
+		}
+
+		return Math.sqrt(getVariance(probabilities));
+	}
+
+	@Override
+	public double getStandardError() {
+		if(size() == 0) {
+			return Double.NaN;
+		}
+
+		return getStandardDeviation()/Math.sqrt(size());
+	}
+
+	@Override
+	public double getStandardError(RandomVariableInterface probabilities) {
+		if(size() == 0) {
+			return Double.NaN;
+		}
+
+		return getStandardDeviation(probabilities)/Math.sqrt(size());
+	}
+
+	/**
+	 * Returns the quantile value, see {@link RandomVariableInterface#getQuantile(double)}, computed by selection in a temporary copy of the realizations.
+	 *
+	 * @param quantile The quantile level.
+	 * @return The quantile value assuming equi-distribution.
+	 */
+	@Override
+	public double getQuantile(double quantile) {
+		if(size() == 0) {
+			return Double.NaN;
+		}
+
+		int indexOfQuantileValue = Math.min(Math.max((int)Math.round((size()+1) * quantile - 1), 0), size()-1);
+
+		return OrderStatistics.select(getRealizationsCopy(), indexOfQuantileValue);
+	}
+
+	/**
+	 * Returns the quantile value assuming the given probability weights, see {@link RandomVariable#getQuantile(double, RandomVariableInterface)},
+	 * computed by a weighted selection in a temporary copy of the realizations.
+	 *
+	 * @param quantile The quantile level.
+	 * @param probabilities The probability weights.
+	 * @return The quantile value assuming the given probability weights.
+	 */
+	@Override
+	public double getQuantile(double quantile, RandomVariableInterface probabilities) {
+		if(size() == 0) {
+			return Double.NaN;
+		}
+
+		double[] weights;
+		if(probabilities.isDeterministic()) {
+			weights = new double[size()];
+			java.util.Arrays.fill(weights, probabilities.get(0));
+		}
+		else {
+			weights = probabilities.getRealizations();
+		}
+
+		return OrderStatistics.selectWeighted(getRealizationsCopy(), weights, quantile);
+	}
+
+	/**
+	 * Returns the expectation over a quantile, see {@link RandomVariableInterface#getQuantileExpectation(double, double)},
+	 * computed by two selections in a temporary copy of the realizations.
+	 *
+	 * @param quantileStart Lower bound of the integral.
+	 * @param quantileEnd  Upper bound of the integral.
+	 * @return The (conditional) expectation of the values between two quantile levels assuming equi-distribution.
+	 */
+	@Override
+	public double getQuantileExpectation(double quantileStart, double quantileEnd) {
+		if(size() == 0) {
+			return Double.NaN;
+		}
+		if(quantileStart > quantileEnd) {
+			return getQuantileExpectation(quantileEnd, quantileStart);
+		}
+
+		int indexOfQuantileValueStart	= Math.min(Math.max((int)Math.round((size()+1) * quantileStart - 1), 0), size()-1);
+		int indexOfQuantileValueEnd		= Math.min(Math.max((int)Math.round((size()+1) * quantileEnd - 1), 0), size()-1);
+
+		/*
+		 * After the first selection the values from indexOfQuantileValueStart on are the ones of the larger ranks,
+		 * after the second one the values of the ranks in between are the first ones of the remaining array.
+		 */
+		double[] values = getRealizationsCopy();
+		OrderStatistics.select(values, indexOfQuantileValueStart);
+		double[] valuesOfLargerRanks = java.util.Arrays.copyOfRange(values, indexOfQuantileValueStart, values.length);
+		OrderStatistics.select(valuesOfLargerRanks, indexOfQuantileValueEnd - indexOfQuantileValueStart);
+
+		double quantileExpectation = 0.0;
+		for (int i=indexOfQuantileValueStart; i<=indexOfQuantileValueEnd;i++) {
+			quantileExpectation += valuesOfLargerRanks[i-indexOfQuantileValueStart];
+		}
+		quantileExpectation /= indexOfQuantileValueEnd-indexOfQuantileValueStart+1;
+
+		return quantileExpectation;
+	}
+
+	@Override
+	public double[] getHistogram(double[] intervalPoints) {
+		/*
+		 * The interval of every realization is found by a binary search, as by RandomVariable
+		 * (NaN realizations are counted in the last interval).
+		 */
+		double[] histogramValues = new double[intervalPoints.length+1];
+		for(int i=0; i<size(); i++) {
+			double realization = realizations.get(i);
+			int lower = 0;
+			int upper = intervalPoints.length;
+			while(lower < upper) {
+				int middle = (lower + upper) >>> 1;
+				if(realization <= intervalPoints[middle]) {
+					upper = middle;
+				}
+				else {
+					lower = middle + 1;
+				}
+			}
+			histogramValues[lower]++;
+		}
+
+		// Normalize histogramValues
+		if(size() > 0) {
+			for(int i=0; i<histogramValues.length; i++) {
+				histogramValues[i] /= size();
+			}
+		}
+
+		return histogramValues;
+	}
+
+	@Override
+	public double[][] getHistogram(int numberOfPoints, double standardDeviations) {
+		double[] intervalPoints = new double[numberOfPoints];
+		double[] anchorPoints	= new double[numberOfPoints+1];
+		double center	= getAverage();
+		double radius	= standardDeviations * getStandardDeviation();
+		double stepSize	= (numberOfPoints-1) / 2.0;
+		for(int i=0; i<numberOfPoints;i++) {
+			double alpha = (-(double)(numberOfPoints-1) / 2.0 + i) / stepSize;
+			intervalPoints[i]	= center + alpha * radius;
+			anchorPoints[i]		= center + alpha * radius - radius / (2 * stepSize);
+		}
+		anchorPoints[numberOfPoints] = center + 1 * radius + radius / (2 * stepSize);
+
+		double[][] result = new double[2][];
+		result[0] = anchorPoints;
+		result[1] = getHistogram(intervalPoints);
+
+		return result;
+	}
+
+	/**
+	 * Returns the realizations copied to a <code>RandomVariable</code> on the heap.
+	 *
+	 * @return The random variable on the heap.
+	 */
+	@Override
+	public RandomVariableInterface cache() {
+		return getRandomVariable();
+	}
+
+	@Override
+	public RandomVariableInterface apply(DoubleUnaryOperator operator) {
+		return getRandomVariable().apply(operator);
+	}
+
+	@Override
+	public RandomVariableInterface apply(DoubleBinaryOperator operator, RandomVariableInterface argument) {
+		return getRandomVariable().apply(operator, argument);
+	}
+
+	@Override
+	public RandomVariableInterface apply(DoubleTernaryOperator operator, RandomVariableInterface argument1, RandomVariableInterface argument2) {
+		return getRandomVariable().apply(operator, argument1, argument2);
+	}
+
+	@Override
+	public RandomVariableInterface cap(double cap) {
+		return getRandomVariable().cap(cap);
+	}
+
+	@Override
+	public RandomVariableInterface floor(double floor) {
+		return getRandomVariable().floor(floor);
+	}
+
+	@Override
+	public RandomVariableInterface add(double value) {
+		return getRandomVariable().add(value);
+	}
+
+	@Override
+	public RandomVariableInterface sub(double value) {
+		return getRandomVariable().sub(value);
+	}
+
+	@Override
+	public RandomVariableInterface mult(double value) {
+		return getRandomVariable().mult(value);
+	}
+
+	@Override
+	public RandomVariableInterface div(double value) {
+		return getRandomVariable().div(value);
+	}
+
+	@Override
+	public RandomVariableInterface pow(double exponent) {
+		return getRandomVariable().pow(exponent);
+	}
+
+	@Override
+	public RandomVariableInterface average() {
+		return new RandomVariable(getAverage());
+	}
+
+	@Override
+	public RandomVariableInterface squared() {
+		return getRandomVariable().squared();
+	}
+
+	@Override
+	public RandomVariableInterface sqrt() {
+		return getRandomVariable().sqrt();
+	}
+
+	@Override
+	public RandomVariableInterface exp() {
+		return getRandomVariable().exp();
+	}
+
+	@Override
+	public RandomVariableInterface log() {
+		return getRandomVariable().log();
+	}
+
+	@Override
+	public RandomVariableInterface sin() {
+		return getRandomVariable().sin();
+	}
+
+	@Override
+	public RandomVariableInterface cos() {
+		return getRandomVariable().cos();
+	}
+
+	@Override
+	public RandomVariableInterface add(RandomVariableInterface randomVariable) {
+		return getRandomVariable().add(randomVariable);
+	}
+
+	@Override
+	public RandomVariableInterface sub(RandomVariableInterface randomVariable) {
+		return getRandomVariable().sub(randomVariable);
+	}
+
+	@Override
+	public RandomVariableInterface mult(RandomVariableInterface randomVariable) {
+		return getRandomVariable().mult(randomVariable);
+	}
+
+	@Override
+	public RandomVariableInterface div(RandomVariableInterface randomVariable) {
+		return getRandomVariable().div(randomVariable);
+	}
+
+	@Override
+	public RandomVariableInterface cap(RandomVariableInterface cap) {
+		return getRandomVariable().cap(cap);
+	}
+
+	@Override
+	public RandomVariableInterface floor(RandomVariableInterface floor) {
+		return getRandomVariable().floor(floor);
+	}
+
+	@Override
+	public RandomVariableInterface accrue(RandomVariableInterface rate, double periodLength) {
+		return getRandomVariable().accrue(rate, periodLength);
+	}
+
+	@Override
+	public RandomVariableInterface discount(RandomVariableInterface rate, double periodLength) {
+		return getRandomVariable().discount(rate, periodLength);
+	}
+
+	@Override
+	public RandomVariableInterface barrier(RandomVariableInterface trigger, RandomVariableInterface valueIfTriggerNonNegative, RandomVariableInterface valueIfTriggerNegative) {
+		return getRandomVariable().barrier(trigger, valueIfTriggerNonNegative, valueIfTriggerNegative);
+	}
+
+	@Override
+	public RandomVariableInterface barrier(RandomVariableInterface trigger, RandomVariableInterface valueIfTriggerNonNegative, double valueIfTriggerNegative) {
+		return getRandomVariable().barrier(trigger, valueIfTriggerNonNegative, valueIfTriggerNegative);
+	}
+
+	@Override
+	public RandomVariableInterface invert() {
+		return getRandomVariable().invert();
+	}
+
+	@Override
+	public RandomVariableInterface abs() {
+		return getRandomVariable().abs();
+	}
+
+	@Override
+	public RandomVariableInterface addProduct(RandomVariableInterface factor1, double factor2) {
+		return getRandomVariable().addProduct(factor1, factor2);
+	}
+
+	@Override
+	public RandomVariableInterface addProduct(RandomVariableInterface factor1, RandomVariableInterface factor2) {
+		return getRandomVariable().addProduct(factor1, factor2);
+	}
+
+	@Override
+	public RandomVariableInterface addRatio(RandomVariableInterface numerator, RandomVariableInterface denominator) {
+		return getRandomVariable().addRatio(numerator, denominator);
+	}
+
+	@Override
+	public RandomVariableInterface subRatio(RandomVariableInterface numerator, RandomVariableInterface denominator) {
+		return getRandomVariable().subRatio(numerator, denominator);
+	}
+
+	@Override
+	public RandomVariableInterface isNaN() {
+		return getRandomVariable().isNaN();
+	}
+
+	@Override
+	public String toString() {
+		return super.toString()
+				+ "\n" + "time: " + time
+				+ "\n" + "size: " + size()
+				+ "\n" + "direct: " + realizations.isDirect();
+	}
+}
@@ -0,0 +1,1027 @@
+package net.finmath.montecarlo;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.IntToDoubleFunction;
+import java.util.stream.DoubleStream;
+
+import org.apache.commons.math3.util.FastMath;
+
+import net.finmath.functions.DoubleTernaryOperator;
+import net.finmath.stochastic.RandomVariableInterface;
+
+/**
+ * The class RandomVariableVectorized is an implementation of <code>RandomVariableInterface</code> which stores the realizations
+ * in a primitive array, like <code>RandomVariable</code>, and whose operators are written as plain counted loops over primitive arrays,
+ * without any lambda or virtual call per realization, so that they can be compiled to SIMD instructions by the JIT.
+ *
+ * If an argument of an operator is a RandomVariableVectorized, its array is read directly, otherwise its realizations are fetched once.
+ * In addition, the class provides fused operators evaluating a compound expression in a single pass (e.g. <code>subAndFloor</code>
+ * for max(X - Y, floor), <code>addSumProduct</code>, <code>accrue</code>, <code>discount</code>),
+ * which avoids the allocation and the traversal of the arrays of the intermediate results.
+ * The statistics (average, variance, quantiles, histograms) are the ones of <code>RandomVariable</code>.
+ *
+ * Accesses performed exclusively through the interface
+ * <code>RandomVariableInterface</code> are thread safe (and do not mutate the class).
+ *
+ * @author Szulda Guillaume
+ * @version 1.0
+ */
+public class RandomVariableVectorized implements RandomVariableInterface {
+
+	private static final long serialVersionUID = 2877262410539785310L;
+
+	private final double      time;	                // Time (filtration)
+
+	// Data model for the stochastic case (otherwise null)
+	private final double[]    realizations;           // Realizations
+
+	// Data model for the non-stochastic case (if realizations==null)
+	private final double      valueIfNonStochastic;
+
+	// View used for the statistics, keeping the sorted realizations of the order statistics
+	private transient volatile RandomVariable randomVariable = null;
+
+	/**
+	 * Create a random variable from a given other implementation of <code>RandomVariableInterface</code>.
+	 *
+	 * The view used for the statistics is shared with value if value is a <code>RandomVariable</code>, a <code>RandomVariableExpression</code>
+	 * or a <code>RandomVariableVectorized</code>, such that order statistics already requested from value do not sort the realizations again.
+	 *
+	 * @param value Object implementing <code>RandomVariableInterface</code>.
+	 */
+	public RandomVariableVectorized(RandomVariableInterface value) {
+		super();
+		this.time = value.getFiltrationTime();
+		this.valueIfNonStochastic = value.isDeterministic() ? value.get(0) : Double.NaN;
+		if(value.isDeterministic()) {
+			this.realizations = null;
+		}
+		else if(value instanceof RandomVariableVectorized) {
+			RandomVariableVectorized other = (RandomVariableVectorized)value;
+			this.realizations = other.realizations;
+			this.randomVariable = other.randomVariable;
+		}
+		else {
+			this.realizations = value.getRealizations();
+			if(value instanceof RandomVariable) {
+				this.randomVariable = (RandomVariable)value;
+			}
+			else if(value instanceof RandomVariableExpression) {
+				this.randomVariable = ((RandomVariableExpression)value).getRandomVariable();
+			}
+		}
+	}
+
+	/**
+	 * Create a non stochastic random variable, i.e. a constant.
+	 *
+	 * @param value the value, a constant.
+	 */
+	public RandomVariableVectorized(double value) {
+		this(-Double.MAX_VALUE, value);
+	}
+
+	/**
+	 * Create a non stochastic random variable, i.e. a constant.
+	 *
+	 * @param time the filtration time, set to 0.0 if not used.
+	 * @param value the value, a constant.
+	 */
+	public RandomVariableVectorized(double time, double value) {
+		super();
+		this.time = time;
+		this.realizations = null;
+		this.valueIfNonStochastic = value;
+	}
+
+	/**
+	 * Create a non stochastic random variable, i.e. a constant, stored as a vector of the given number of paths.
+	 *
+	 * @param time the filtration time, set to 0.0 if not used.
+	 * @param numberOfPath The number of paths.
+	 * @param value the value, a constant.
+	 */
+	public RandomVariableVectorized(double time, int numberOfPath, double value) {
+		super();
+		this.time = time;
+		this.realizations = new double[numberOfPath];
+		Arrays.fill(this.realizations, value);
+		this.valueIfNonStochastic = Double.NaN;
+	}
+
+	/**
+	 * Create a stochastic random variable.
+	 *
+	 * Important: The realizations array is not cloned (no defensive copy is made).
+	 *
+	 * @param time the filtration time, set to 0.0 if not used.
+	 * @param realisations the vector of realizations.
+	 */
+	public RandomVariableVectorized(double time, double[] realisations) {
+		super();
+		this.time = time;
+		this.realizations = realisations;
+		this.valueIfNonStochastic = Double.NaN;
+	}
+
+	/**
+	 * Returns the realizations of a stochastic random variable, without copy if it is a RandomVariableVectorized.
+	 * The array must not be modified.
+	 */
+	private static double[] getRealizationsArray(RandomVariableInterface randomVariable) {
+		if(randomVariable instanceof RandomVariableVectorized) {
+			return ((RandomVariableVectorized)randomVariable).realizations;
+		}
+		return randomVariable.getRealizations();
+	}
+
+	/**
+	 * Returns this random variable as a <code>RandomVariable</code> sharing the same array, used for the statistics.
+	 * The view is created once and kept along with the random variable, such that the sorted realizations of the order statistics
+	 * (quantiles, quantile expectations) are computed only once.
+	 *
+	 * @return The random variable used for the statistics.
+	 */
+	public RandomVariable getRandomVariable() {
+		RandomVariable value = randomVariable;
+		if(value == null) {
+			value = isDeterministic() ? new RandomVariable(time, valueIfNonStochastic) : new RandomVariable(time, realizations);
+			randomVariable = value;
+		}
+		return value;
+	}
+
+	@Override
+	public boolean equals(RandomVariableInterface randomVariable) {
+		if(this.time != randomVariable.getFiltrationTime()) {
+			return false;
+		}
+		if(this.isDeterministic() && randomVariable.isDeterministic()) {
+			return this.valueIfNonStochastic == randomVariable.get(0);
+		}
+
+		if(this.isDeterministic() != randomVariable.isDeterministic()) {
+			return false;
+		}
+
+		return Arrays.equals(realizations, getRealizationsArray(randomVariable));
+	}
+
+	@Override
+	public double getFiltrationTime() {
+		return time;
+	}
+
+	@Override
+	public double get(int pathOrState) {
+		if(isDeterministic()) {
+			return valueIfNonStochastic;
+		} else {
+			return realizations[pathOrState];
+		}
+	}
+
+	@Override
+	public int size() {
+		if(isDeterministic()) {
+			return 1;
+		} else {
+			return realizations.length;
+		}
+	}
+
+	@Override
+	public boolean isDeterministic() {
+		return realizations == null;
+	}
+
+	@Override
+	public double[] getRealizations() {
+		if(isDeterministic()) {
+			return new double[] { valueIfNonStochastic };
+		}
+		else {
+			return realizations.clone();
+		}
+	}
+
+	@Override
+	public Double doubleValue() {
+		if(isDeterministic()) {
+			return valueIfNonStochastic;
+		} else {
+			throw new UnsupportedOperationException("The random variable is non-deterministic");
+		}
+	}
+
+	@Override
+	public IntToDoubleFunction getOperator() {
+		if(isDeterministic()) {
+			return i -> valueIfNonStochastic;
+		}
+		else {
+			return i -> realizations[i];
+		}
+	}
+
+	@Override
+	public DoubleStream getRealizationsStream() {
+		if(isDeterministic()) {
+			return DoubleStream.generate(() -> valueIfNonStochastic);
+		}
+		else {
+			return Arrays.stream(realizations);
+		}
+	}
+
+	@Override
+	public double getMin() {
+		if(isDeterministic()) {
+			return valueIfNonStochastic;
+		}
+		double min = realizations.length > 0 ? realizations[0] : Double.MAX_VALUE;
+		for(int i=0; i<realizations.length; i++) {
+			min = Math.min(realizations[i], min);
+		}
+		return min;
+	}
+
+	@Override
+	public double getMax() {
+		if(isDeterministic()) {
+			return valueIfNonStochastic;
+		}
+		double max = realizations.length > 0 ? realizations[0] : -Double.MAX_VALUE;
+		for(int i=0; i<realizations.length; i++) {
+			max = Math.max(realizations[i], max);
+		}
+		return max;
+	}
+
+	@Override
+	public double getAverage() {
+		return getRandomVariable().getAverage();
+	}
+
+	@Override
+	public double getAverage(RandomVariableInterface probabilities) {
+		return getRandomVariable().getAverage(probabilities);
+	}
+
+	@Override
+	public double getVariance() {
+		return getRandomVariable().getVariance();
+	}
+
+	@Override
+	public double getVariance(RandomVariableInterface probabilities) {
+		return getRandomVariable().getVariance(probabilities);
+	}
+
+	@Override
+	public double getSampleVariance() {
+		return getRandomVariable().getSampleVariance();
+	}
+
+	@Override
+	public double getStandardDeviation() {
+		return getRandomVariable().getStandardDeviation();
+	}
+
+	@Override
+	public double getStandardDeviation(RandomVariableInterface probabilities) {
+		return getRandomVariable().getStandardDeviation(probabilities);
+	}
+
+	@Override
+	public double getStandardError() {
+		return getRandomVariable().getStandardError();
+	}
+
+	@Override
+	public double getStandardError(RandomVariableInterface probabilities) {
+		return getRandomVariable().getStandardError(probabilities);
+	}
+
+	@Override
+	public double getQuantile(double quantile) {
+		return getRandomVariable().getQuantile(quantile);
+	}
+
+	@Override
+	public double getQuantile(double quantile, RandomVariableInterface probabilities) {
+		return getRandomVariable().getQuantile(quantile, probabilities);
+	}
+
+	@Override
+	public double getQuantileExpectation(double quantileStart, double quantileEnd) {
+		return getRandomVariable().getQuantileExpectation(quantileStart, quantileEnd);
+	}
+
+	@Override
+	public double[] getHistogram(double[] intervalPoints) {
+		return getRandomVariable().getHistogram(intervalPoints);
+	}
+
+	@Override
+	public double[][] getHistogram(int numberOfPoints, double standardDeviations) {
+		return getRandomVariable().getHistogram(numberOfPoints, standardDeviations);
+	}
+
+	@Override
+	public RandomVariableInterface cache() {
+		return this;
+	}
+
+	/*
+	 * Operators with a function argument. The function is called once per realization.
+	 */
+
+	@Override
+	public RandomVariableInterface apply(DoubleUnaryOperator operator) {
+		if(isDeterministic()) {
+			return new RandomVariableVectorized(time, operator.applyAsDouble(valueIfNonStochastic));
+		}
+		double[] result = new double[realizations.length];
+		for(int i=0; i<result.length; i++) {
+			result[i] = operator.applyAsDouble(realizations[i]);
+		}
+		return new RandomVariableVectorized(time, result);
+	}
+
+	@Override
+	public RandomVariableInterface apply(DoubleBinaryOperator operator, RandomVariableInterface argument) {
+		double newTime = Math.max(time, argument.getFiltrationTime());
+		if(isDeterministic() && argument.isDeterministic()) {
+			return new RandomVariableVectorized(newTime, operator.applyAsDouble(valueIfNonStochastic, argument.get(0)));
+		}
+		double[] result = new double[Math.max(size(), argument.size())];
+		if(argument.isDeterministic()) {
+			double y = argument.get(0);
+			for(int i=0; i<result.length; i++) {
+				result[i] = operator.applyAsDouble(realizations[i], y);
+			}
+		}
+		else if(isDeterministic()) {
+			double[] y = getRealizationsArray(argument);
+			for(int i=0; i<result.length; i++) {
+				result[i] = operator.applyAsDouble(valueIfNonStochastic, y[i]);
+			}
+		}
+		else {
+			double[] y = getRealizationsArray(argument);
+			for(int i=0; i<result.length; i++) {
+				result[i] = operator.applyAsDouble(realizations[i], y[i]);
+			}
+		}
+		return new RandomVariableVectorized(newTime, result);
+	}
+
+	@Override
+	public RandomVariableInterface apply(DoubleTernaryOperator operator, RandomVariableInterface argument1, RandomVariableInterface argument2) {
+		double newTime = Math.max(Math.max(time, argument1.getFiltrationTime()), argument2.getFiltrationTime());
+		if(isDeterministic() && argument1.isDeterministic() && argument2.isDeterministic()) {
+			return new RandomVariableVectorized(newTime, operator.applyAsDouble(valueIfNonStochastic, argument1.get(0), argument2.get(0)));
+		}
+		double[] result = new double[Math.max(Math.max(size(), argument1.size()), argument2.size())];
+		for(int i=0; i<result.length; i++) {
+			result[i] = operator.applyAsDouble(get(i), argument1.get(i), argument2.get(i));
+		}
+		return new RandomVariableVectorized(newTime, result);
+	}
+
+	/*
+	 * Operators with scalar arguments.
+	 */
+
+	@Override
+	public RandomVariableInterface cap(double cap) {
+		if(isDeterministic()) {
+			return new RandomVariableVectorized(time, Math.min(valueIfNonStochastic, cap));
+		}
+		double[] result = new double[realizations.length];
+		for(int i=0; i<result.length; i++) {
+			result[i] = Math.min(realizations[i], cap);
+		}
+		return new RandomVariableVectorized(time, result);
+	}
+
+	@Override
+	public RandomVariableInterface floor(double floor) {
+		if(isDeterministic()) {
+			return new RandomVariableVectorized(time, Math.max(valueIfNonStochastic, floor));
+		}
+		double[] result = new double[realizations.length];
+		for(int i=0; i<result.length; i++) {
+			result[i] = Math.max(realizations[i], floor);
+		}
+		return new RandomVariableVectorized(time, result);
+	}
+
+	@Override
+	public RandomVariableInterface add(double value) {
+		if(isDeterministic()) {
+			return new RandomVariableVectorized(time, valueIfNonStochastic + value);
+		}
+		double[] result = new double[realizations.length];
+		for(int i=0; i<result.length; i++) {
+			result[i] = realizations[i] + value;
+		}
+		return new RandomVariableVectorized(time, result);
+	}
+
+	@Override
+	public RandomVariableInterface sub(double value) {
+		if(isDeterministic()) {
+			return new RandomVariableVectorized(time, valueIfNonStochastic - value);
+		}
+		double[] result = new double[realizations.length];
+		for(int i=0; i<result.length; i++) {
+			result[i] = realizations[i] - value;
+		}
+		return new RandomVariableVectorized(time, result);
+	}
+
+	@Override
+	public RandomVariableInterface mult(double value) {
+		if(isDeterministic()) {
+			return new RandomVariableVectorized(time, valueIfNonStochastic * value);
+		}
+		double[] result = new double[realizations.length];
+		for(int i=0; i<result.length; i++) {
+			result[i] = realizations[i] * value;
+		}
+		return new RandomVariableVectorized(time, result);
+	}
+
+	@Override
+	public RandomVariableInterface div(double value) {
+		if(isDeterministic()) {
+			return new RandomVariableVectorized(time, valueIfNonStochastic / value);
+		}
+		double[] result = new double[realizations.length];
+		for(int i=0; i<result.length; i++) {
+			result[i] = realizations[i] / value;
+		}
+		return new RandomVariableVectorized(time, result);
+	}
+
+	@Override
+	public RandomVariableInterface pow(double exponent) {
+		if(isDeterministic()) {
+			return new RandomVariableVectorized(time, Math.pow(valueIfNonStochastic, exponent));
+		}
+		double[] result = new double[realizations.length];
+		for(int i=0; i<result.length; i++) {
+			result[i] = Math.pow(realizations[i], exponent);
+		}
+		return new RandomVariableVectorized(time, result);
+	}
+
+	@Override
+	public RandomVariableInterface average() {
+		return new RandomVariableVectorized(getAverage());
+	}
+
+	@Override
+	public RandomVariableInterface squared() {
+		if(isDeterministic()) {
+			return new RandomVariableVectorized(time, valueIfNonStochastic * valueIfNonStochastic);
+		}
+		double[] result = new double[realizations.length];
+		for(int i=0; i<result.length; i++) {
+			result[i] = realizations[i] * realizations[i];
+		}
+		return new RandomVariableVectorized(time, result);
+	}
+
+	@Override
+	public RandomVariableInterface sqrt() {
+		if(isDeterministic()) {
+			return new RandomVariableVectorized(time, Math.sqrt(valueIfNonStochastic));
+		}
+		double[] result = new double[realizations.length];
+		for(int i=0; i<result.length; i++) {
+			result[i] = Math.sqrt(realizations[i]);
+		}
+		return new RandomVariableVectorized(time, result);
+	}
+
+	@Override
+	public RandomVariableInterface exp() {
+		if(isDeterministic()) {
+			return new RandomVariableVectorized(time, FastMath.exp(valueIfNonStochastic));
+		}
+		double[] result = new double[realizations.length];
+		for(int i=0; i<result.length; i++) {
+			result[i] = FastMath.exp(realizations[i]);
+		}
+		return new RandomVariableVectorized(time, result);
+	}
+
+	@Override
+	public RandomVariableInterface log() {
+		if(isDeterministic()) {
+			return new RandomVariableVectorized(time, FastMath.log(valueIfNonStochastic));
+		}
+		double[] result = new double[realizations.length];
+		for(int i=0; i<result.length; i++) {
+			result[i] = FastMath.log(realizations[i]);
+		}
+		return new RandomVariableVectorized(time, result);
+	}
+
+	@Override
+	public RandomVariableInterface sin() {
+		if(isDeterministic()) {
+			return new RandomVariableVectorized(time, FastMath.sin(valueIfNonStochastic));
+		}
+		double[] result = new double[realizations.length];
+		for(int i=0; i<result.length; i++) {
+			result[i] = FastMath.sin(realizations[i]);
+		}
+		return new RandomVariableVectorized(time, result);
+	}
+
+	@Override
+	public RandomVariableInterface cos() {
+		if(isDeterministic()) {
+			return new RandomVariableVectorized(time, FastMath.cos(valueIfNonStochastic));
+		}
+		double[] result = new double[realizations.length];
+		for(int i=0; i<result.length; i++) {
+			result[i] = FastMath.cos(realizations[i]);
+		}
+		return new RandomVariableVectorized(time, result);
+	}
+
+	@Override
+	public RandomVariableInterface invert() {
+		if(isDeterministic()) {
+			return new RandomVariableVectorized(time, 1.0 / valueIfNonStochastic);
+		}
+		double[] result = new double[realizations.length];
+		for(int i=0; i<result.length; i++) {
+			result[i] = 1.0 / realizations[i];
+		}
+		return new RandomVariableVectorized(time, result);
+	}
+
+	@Override
+	public RandomVariableInterface abs() {
+		if(isDeterministic()) {
+			return new RandomVariableVectorized(time, Math.abs(valueIfNonStochastic));
+		}
+		double[] result = new double[realizations.length];
+		for(int i=0; i<result.length; i++) {
+			result[i] = Math.abs(realizations[i]);
+		}
+		return new RandomVariableVectorized(time, result);
+	}
+
+	@Override
+	public RandomVariableInterface isNaN() {
+		if(isDeterministic()) {
+			return new RandomVariableVectorized(time, Double.isNaN(valueIfNonStochastic) ? 1.0 : 0.0);
+		}
+		double[] result = new double[realizations.length];
+		for(int i=0; i<result.length; i++) {
+			result[i] = Double.isNaN(realizations[i]) ? 1.0 : 0.0;
+		}
+		return new RandomVariableVectorized(time, result);
+	}
+
+	/*
+	 * Operators with random variable arguments.
+	 * The deterministic arguments are handled by the scalar operators, the stochastic ones are read as arrays.
+	 */
+
+	@Override
+	public RandomVariableInterface add(RandomVariableInterface randomVariable) {
+		double newTime = Math.max(time, randomVariable.getFiltrationTime());
+		if(randomVariable.isDeterministic()) {
+			return withTime(add(randomVariable.get(0)), newTime);
+		}
+		double[] y = getRealizationsArray(randomVariable);
+		double[] result = new double[y.length];
+		if(isDeterministic()) {
+			for(int i=0; i<result.length; i++) {
+				result[i] = valueIfNonStochastic + y[i];
+			}
+		}
+		else {
+			for(int i=0; i<result.length; i++) {
+				result[i] = realizations[i] + y[i];
+			}
+		}
+		return new RandomVariableVectorized(newTime, result);
+	}
+
+	@Override
+	public RandomVariableInterface sub(RandomVariableInterface randomVariable) {
+		double newTime = Math.max(time, randomVariable.getFiltrationTime());
+		if(randomVariable.isDeterministic()) {
+			return withTime(sub(randomVariable.get(0)), newTime);
+		}
+		double[] y = getRealizationsArray(randomVariable);
+		double[] result = new double[y.length];
+		if(isDeterministic()) {
+			for(int i=0; i<result.length; i++) {
+				result[i] = valueIfNonStochastic - y[i];
+			}
+		}
+		else {
+			for(int i=0; i<result.length; i++) {
+				result[i] = realizations[i] - y[i];
+			}
+		}
+		return new RandomVariableVectorized(newTime, result);
+	}
+
+	@Override
+	public RandomVariableInterface mult(RandomVariableInterface randomVariable) {
+		double newTime = Math.max(time, randomVariable.getFiltrationTime());
+		if(randomVariable.isDeterministic()) {
+			return withTime(mult(randomVariable.get(0)), newTime);
+		}
+		double[] y = getRealizationsArray(randomVariable);
+		double[] result = new double[y.length];
+		if(isDeterministic()) {
+			for(int i=0; i<result.length; i++) {
+				result[i] = valueIfNonStochastic * y[i];
+			}
+		}
+		else {
+			for(int i=0; i<result.length; i++) {
+				result[i] = realizations[i] * y[i];
+			}
+		}
+		return new RandomVariableVectorized(newTime, result);
+	}
+
+	@Override
+	public RandomVariableInterface div(RandomVariableInterface randomVariable) {
+		double newTime = Math.max(time, randomVariable.getFiltrationTime());
+		if(randomVariable.isDeterministic()) {
+			return withTime(div(randomVariable.get(0)), newTime);
+		}
+		double[] y = getRealizationsArray(randomVariable);
+		double[] result = new double[y.length];
+		if(isDeterministic()) {
+			for(int i=0; i<result.length; i++) {
+				result[i] = valueIfNonStochastic / y[i];
+			}
+		}
+		else {
+			for(int i=0; i<result.length; i++) {
+				result[i] = realizations[i] / y[i];
+			}
+		}
+		return new RandomVariableVectorized(newTime, result);
+	}
+
+	@Override
+	public RandomVariableInterface cap(RandomVariableInterface randomVariable) {
+		double newTime = Math.max(time, randomVariable.getFiltrationTime());
+		if(randomVariable.isDeterministic()) {
+			return withTime(cap(randomVariable.get(0)), newTime);
+		}
+		double[] y = getRealizationsArray(randomVariable);
+		double[] result = new double[y.length];
+		if(isDeterministic()) {
+			for(int i=0; i<result.length; i++) {
+				result[i] = Math.min(valueIfNonStochastic, y[i]);
+			}
+		}
+		else {
+			for(int i=0; i<result.length; i++) {
+				result[i] = Math.min(realizations[i], y[i]);
+			}
+		}
+		return new RandomVariableVectorized(newTime, result);
+	}
+
+	@Override
+	public RandomVariableInterface floor(RandomVariableInterface randomVariable) {
+		double newTime = Math.max(time, randomVariable.getFiltrationTime());
+		if(randomVariable.isDeterministic()) {
+			return withTime(floor(randomVariable.get(0)), newTime);
+		}
+		double[] y = getRealizationsArray(randomVariable);
+		double[] result = new double[y.length];
+		if(isDeterministic()) {
+			for(int i=0; i<result.length; i++) {
+				result[i] = Math.max(valueIfNonStochastic, y[i]);
+			}
+		}
+		else {
+			for(int i=0; i<result.length; i++) {
+				result[i] = Math.max(realizations[i], y[i]);
+			}
+		}
+		return new RandomVariableVectorized(newTime, result);
+	}
+
+	@Override
+	public RandomVariableInterface accrue(RandomVariableInterface rate, double periodLength) {
+		double newTime = Math.max(time, rate.getFiltrationTime());
+		if(rate.isDeterministic()) {
+			return withTime(mult(1 + rate.get(0) * periodLength), newTime);
+		}
+		double[] r = getRealizationsArray(rate);
+		double[] result = new double[r.length];
+		if(isDeterministic()) {
+			for(int i=0; i<result.length; i++) {
+				result[i] = valueIfNonStochastic * (1 + r[i] * periodLength);
+			}
+		}
+		else {
+			for(int i=0; i<result.length; i++) {
+				result[i] = realizations[i] * (1 + r[i] * periodLength);
+			}
+		}
+		return new RandomVariableVectorized(newTime, result);
+	}
+
+	@Override
+	public RandomVariableInterface discount(RandomVariableInterface rate, double periodLength) {
+		double newTime = Math.max(time, rate.getFiltrationTime());
+		if(rate.isDeterministic()) {
+			return withTime(div(1 + rate.get(0) * periodLength), newTime);
+		}
+		double[] r = getRealizationsArray(rate);
+		double[] result = new double[r.length];
+		if(isDeterministic()) {
+			for(int i=0; i<result.length; i++) {
+				result[i] = valueIfNonStochastic / (1.0 + r[i] * periodLength);
+			}
+		}
+		else {
+			for(int i=0; i<result.length; i++) {
+				result[i] = realizations[i] / (1.0 + r[i] * periodLength);
+			}
+		}
+		return new RandomVariableVectorized(newTime, result);
+	}
+
+	@Override
+	public RandomVariableInterface barrier(RandomVariableInterface trigger, RandomVariableInterface valueIfTriggerNonNegative, RandomVariableInterface valueIfTriggerNegative) {
+		double newTime = Math.max(time, trigger.getFiltrationTime());
+		newTime = Math.max(newTime, valueIfTriggerNonNegative.getFiltrationTime());
+		newTime = Math.max(newTime, valueIfTriggerNegative.getFiltrationTime());
+
+		if(trigger.isDeterministic()) {
+			RandomVariableInterface value = trigger.get(0) >= 0 ? valueIfTriggerNonNegative : valueIfTriggerNegative;
+			return value.isDeterministic() ? new RandomVariableVectorized(newTime, value.get(0)) : new RandomVariableVectorized(newTime, value.getRealizations());
+		}
+		double[] t = getRealizationsArray(trigger);
+		double[] result = new double[t.length];
+		for(int i=0; i<result.length; i++) {
+			result[i] = t[i] >= 0.0 ? valueIfTriggerNonNegative.get(i) : valueIfTriggerNegative.get(i);
+		}
+		return new RandomVariableVectorized(newTime, result);
+	}
+
+	@Override
+	public RandomVariableInterface barrier(RandomVariableInterface trigger, RandomVariableInterface valueIfTriggerNonNegative, double valueIfTriggerNegative) {
+		return this.barrier(trigger, valueIfTriggerNonNegative, new RandomVariableVectorized(valueIfTriggerNonNegative.getFiltrationTime(), valueIfTriggerNegative));
+	}
+
+	/*
+	 * Fused operators.
+	 */
+
+	@Override
+	public RandomVariableInterface addProduct(RandomVariableInterface factor1, double factor2) {
+		double newTime = Math.max(time, factor1.getFiltrationTime());
+		if(factor1.isDeterministic()) {
+			return withTime(add(factor1.get(0) * factor2), newTime);
+		}
+		double[] x1 = getRealizationsArray(factor1);
+		double[] result = new double[x1.length];
+		if(isDeterministic()) {
+			for(int i=0; i<result.length; i++) {
+				result[i] = valueIfNonStochastic + x1[i] * factor2;
+			}
+		}
+		else {
+			for(int i=0; i<result.length; i++) {
+				result[i] = realizations[i] + x1[i] * factor2;
+			}
+		}
+		return new RandomVariableVectorized(newTime, result);
+	}
+
+	@Override
+	public RandomVariableInterface addProduct(RandomVariableInterface factor1, RandomVariableInterface factor2) {
+		if(factor2.isDeterministic()) {
+			return withTime(addProduct(factor1, factor2.get(0)), Math.max(Math.max(time, factor1.getFiltrationTime()), factor2.getFiltrationTime()));
+		}
+		if(factor1.isDeterministic()) {
+			return withTime(addProduct(factor2, factor1.get(0)), Math.max(Math.max(time, factor1.getFiltrationTime()), factor2.getFiltrationTime()));
+		}
+		double newTime = Math.max(Math.max(time, factor1.getFiltrationTime()), factor2.getFiltrationTime());
+		double[] x1 = getRealizationsArray(factor1);
+		double[] x2 = getRealizationsArray(factor2);
+		double[] result = new double[x1.length];
+		if(isDeterministic()) {
+			for(int i=0; i<result.length; i++) {
+				result[i] = valueIfNonStochastic + x1[i] * x2[i];
+			}
+		}
+		else {
+			for(int i=0; i<result.length; i++) {
+				result[i] = realizations[i] + x1[i] * x2[i];
+			}
+		}
+		return new RandomVariableVectorized(newTime, result);
+	}
+
+	/**
+	 * Applies x &rarr; x + sum_k factor1[k] * factor2[k] in a single pass, the terms being added in the order of the lists.
+	 *
+	 * @param factor1 The list of the first factors.
+	 * @param factor2 The list of the second factors.
+	 * @return New random variable with the result of the function.
+	 */
+	@Override
+	public RandomVariableInterface addSumProduct(List<RandomVariableInterface> factor1, List<RandomVariableInterface> factor2) {
+		double newTime = time;
+		int size = size();
+		for(int k=0; k<factor1.size(); k++) {
+			newTime = Math.max(newTime, Math.max(factor1.get(k).getFiltrationTime(), factor2.get(k).getFiltrationTime()));
+			size = Math.max(size, Math.max(factor1.get(k).size(), factor2.get(k).size()));
+		}
+		if(size == 1) {
+			double value = valueIfNonStochastic;
+			for(int k=0; k<factor1.size(); k++) {
+				value += factor1.get(k).get(0) * factor2.get(k).get(0);
+			}
+			return new RandomVariableVectorized(newTime, value);
+		}
+
+		double[] result = new double[size];
+		if(isDeterministic()) {
+			Arrays.fill(result, valueIfNonStochastic);
+		}
+		else {
+			System.arraycopy(realizations, 0, result, 0, size);
+		}
+		for(int k=0; k<factor1.size(); k++) {
+			RandomVariableInterface x1 = factor1.get(k);
+			RandomVariableInterface x2 = factor2.get(k);
+			if(x1.isDeterministic() && x2.isDeterministic()) {
+				double product = x1.get(0) * x2.get(0);
+				for(int i=0; i<size; i++) {
+					result[i] += product;
+				}
+			}
+			else if(x1.isDeterministic() || x2.isDeterministic()) {
+				double scalar = x1.isDeterministic() ? x1.get(0) : x2.get(0);
+				double[] y = getRealizationsArray(x1.isDeterministic() ? x2 : x1);
+				for(int i=0; i<size; i++) {
+					result[i] += y[i] * scalar;
+				}
+			}
+			else {
+				double[] y1 = getRealizationsArray(x1);
+				double[] y2 = getRealizationsArray(x2);
+				for(int i=0; i<size; i++) {
+					result[i] += y1[i] * y2[i];
+				}
+			}
+		}
+		return new RandomVariableVectorized(newTime, result);
+	}
+
+	@Override
+	public RandomVariableInterface addRatio(RandomVariableInterface numerator, RandomVariableInterface denominator) {
+		double newTime = Math.max(Math.max(time, numerator.getFiltrationTime()), denominator.getFiltrationTime());
+		if(isDeterministic() && numerator.isDeterministic() && denominator.isDeterministic()) {
+			return new RandomVariableVectorized(newTime, valueIfNonStochastic + numerator.get(0) / denominator.get(0));
+		}
+		if(!isDeterministic() && !numerator.isDeterministic() && !denominator.isDeterministic()) {
+			double[] n = getRealizationsArray(numerator);
+			double[] d = getRealizationsArray(denominator);
+			double[] result = new double[realizations.length];
+			for(int i=0; i<result.length; i++) {
+				result[i] = realizations[i] + n[i] / d[i];
+			}
+			return new RandomVariableVectorized(newTime, result);
+		}
+		double[] result = new double[Math.max(Math.max(size(), numerator.size()), denominator.size())];
+		for(int i=0; i<result.length; i++) {
+			result[i] = get(i) + numerator.get(i) / denominator.get(i);
+		}
+		return new RandomVariableVectorized(newTime, result);
+	}
+
+	@Override
+	public RandomVariableInterface subRatio(RandomVariableInterface numerator, RandomVariableInterface denominator) {
+		double newTime = Math.max(Math.max(time, numerator.getFiltrationTime()), denominator.getFiltrationTime());
+		if(isDeterministic() && numerator.isDeterministic() && denominator.isDeterministic()) {
+			return new RandomVariableVectorized(newTime, valueIfNonStochastic - numerator.get(0) / denominator.get(0));
+		}
+		if(!isDeterministic() && !numerator.isDeterministic() && !denominator.isDeterministic()) {
+			double[] n = getRealizationsArray(numerator);
+			double[] d = getRealizationsArray(denominator);
+			double[] result = new double[realizations.length];
+			for(int i=0; i<result.length; i++) {
+				result[i] = realizations[i] - n[i] / d[i];
+			}
+			return new RandomVariableVectorized(newTime, result);
+		}
+		double[] result = new double[Math.max(Math.max(size(), numerator.size()), denominator.size())];
+		for(int i=0; i<result.length; i++) {
+			result[i] = get(i) - numerator.get(i) / denominator.get(i);
+		}
+		return new RandomVariableVectorized(newTime, result);
+	}
+
+	/**
+	 * Applies x &rarr; max(x - y, floor) in a single pass, i.e., the same as <code>sub(randomVariable).floor(floor)</code>
+	 * without the intermediate random variable.
+	 *
+	 * @param randomVariable The random variable y to subtract.
+	 * @param floor The floor.
+	 * @return New random variable with the result of the function.
+	 */
+	public RandomVariableInterface subAndFloor(RandomVariableInterface randomVariable, double floor) {
+		double newTime = Math.max(time, randomVariable.getFiltrationTime());
+		if(randomVariable.isDeterministic()) {
+			double y = randomVariable.get(0);
+			if(isDeterministic()) {
+				return new RandomVariableVectorized(newTime, Math.max(valueIfNonStochastic - y, floor));
+			}
+			double[] result = new double[realizations.length];
+			for(int i=0; i<result.length; i++) {
+				result[i] = Math.max(realizations[i] - y, floor);
+			}
+			return new RandomVariableVectorized(newTime, result);
+		}
+		double[] y = getRealizationsArray(randomVariable);
+		double[] result = new double[y.length];
+		if(isDeterministic()) {
+			for(int i=0; i<result.length; i++) {
+				result[i] = Math.max(valueIfNonStochastic - y[i], floor);
+			}
+		}
+		else {
+			for(int i=0; i<result.length; i++) {
+				result[i] = Math.max(realizations[i] - y[i], floor);
+			}
+		}
+		return new RandomVariableVectorized(newTime, result);
+	}
+
+	/**
+	 * Applies x &rarr; max(x - factor1 * factor2, floor) in a single pass, e.g. the payoff (S - P (1 + K delta))^+ of a caplet,
+	 * i.e., the same as <code>sub(factor1.mult(factor2)).floor(floor)</code> without the intermediate random variables.
+	 *
+	 * @param factor1 The random variable to multiply and subtract.
+	 * @param factor2 The scalar factor.
+	 * @param floor The floor.
+	 * @return New random variable with the result of the function.
+	 */
+	public RandomVariableInterface subProductAndFloor(RandomVariableInterface factor1, double factor2, double floor) {
+		double newTime = Math.max(time, factor1.getFiltrationTime());
+		if(factor1.isDeterministic()) {
+			return subAndFloor(new RandomVariableVectorized(newTime, factor1.get(0) * factor2), floor);
+		}
+		double[] x1 = getRealizationsArray(factor1);
+		double[] result = new double[x1.length];
+		if(isDeterministic()) {
+			for(int i=0; i<result.length; i++) {
+				result[i] = Math.max(valueIfNonStochastic - x1[i] * factor2, floor);
+			}
+		}
+		else {
+			for(int i=0; i<result.length; i++) {
+				result[i] = Math.max(realizations[i] - x1[i] * factor2, floor);
+			}
+		}
+		return new RandomVariableVectorized(newTime, result);
+	}
+
+	/**
+	 * Returns a random variable with the same realizations (not copied) and the given filtration time.
+	 */
+	private static RandomVariableInterface withTime(RandomVariableInterface randomVariable, double time) {
+		RandomVariableVectorized value = (RandomVariableVectorized)randomVariable;
+		if(value.time == time) {
+			return value;
+		}
+		return value.isDeterministic() ? new RandomVariableVectorized(time, value.valueIfNonStochastic) : new RandomVariableVectorized(time, value.realizations);
+	}
+
+	@Override
+	public String toString() {
+		return super.toString()
+				+ "\n" + "time: " + time
+				+ "\n" + "realizations: " +
+				(isDeterministic() ? valueIfNonStochastic : Arrays.toString(realizations));
+	}
+}
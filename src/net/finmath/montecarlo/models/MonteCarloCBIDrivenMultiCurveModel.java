@@ -234,6 +234,26 @@ public class MonteCarloCBIDrivenMultiCurveModel implements MonteCarloCBIDrivenMu
 	    return (this.tenors[i]).getTenorLength();
 	}
 	
+	/**
+	 * This provides the deterministic function c fitting the spread of the t-th tenor to the initial curves at time (0 <= t <= getDimension()-1).
+	 * @param time
+	 * @param t
+	 * @return
+	 */
+	public double getFunctionC(double time, int t) {
+		return this.functionsC[t].applyAsDouble(time);
+	}
+	
+	/**
+	 * This provides the integral over [firstTime, lastTime] of the deterministic function l fitting the model to the initial discount curve.
+	 * @param firstTime
+	 * @param lastTime
+	 * @return
+	 */
+	public double getIntegralOfFunctionL(double firstTime, double lastTime) {
+		return this.integralOfFunctionL.applyAsDouble(firstTime, lastTime);
+	}
+	
 	@Override
 	public AnalyticModelInterface getAnalyticModel() {
 		return this.curves;
@@ -332,11 +352,7 @@ public class MonteCarloCBIDrivenMultiCurveModel implements MonteCarloCBIDrivenMu
 	public RandomVariableInterface getNumeraire(double time) {
 		RandomVariableInterface s = new RandomVariable(time, this.mcCBIProcess.getNumberOfPaths(), 0);
 		for(int factor = 0; factor < getDimension(); factor++) {
-			RandomVariableInterface sum = new RandomVariable(time, this.mcCBIProcess.getNumberOfPaths(), 0);
-			for(int index = 0; index < getTimeIndex(time); index++) {
-				sum = sum.add(this.mcCBIProcess.getCBIProcessValue(index, factor).mult(this.mcCBIProcess.getTimeDiscretization().getTimeStep(index)));
-			}
-			s = s.add(sum.mult(this.mcCBIProcess.getCBIProcess().getLambda()[factor]));
+			s = s.add(this.mcCBIProcess.getIntegratedCBIProcessValue(getTimeIndex(time), factor).mult(this.mcCBIProcess.getCBIProcess().getLambda()[factor]));
 		}
 		return (s.add(this.integralOfFunctionL.applyAsDouble(0, time))).exp();
 	}
@@ -0,0 +1,103 @@
+package net.finmath.montecarlo.process;
+
+import net.finmath.time.TimeDiscretizationInterface;
+
+/**
+ * This class stands for a block of consecutive paths of a Monte Carlo simulation of a CBI process (or a family of CBI processes),
+ * as produced by the streaming mode of the simulation.
+ * The increments, the values, the integrals over time and the diffusion martingale parts of the components are stored by time index and component,
+ * every array containing one value per path of the block, the first one being the path of index getFirstPath() of the whole simulation.
+ * @author Szulda Guillaume
+ */
+public class MonteCarloCBIPathBlock {
+	
+	private final int blockIndex;
+	private final int firstPath;
+	private final TimeDiscretizationInterface timeDiscretization;
+	private final double[][][] increments;
+	private final double[][][] processValues;
+	private final double[][][] integratedProcessValues;
+	private final double[][][] diffusionMartingaleValues;
+	
+	/**
+	 * Creates the block of paths from its simulated arrays, the first index standing for the component,
+	 * the second one for the time index and the third one for the path inside the block.
+	 * @param blockIndex
+	 * @param firstPath
+	 * @param timeDiscretization
+	 * @param increments
+	 * @param processValues
+	 * @param integratedProcessValues
+	 * @param diffusionMartingaleValues The diffusion martingale parts, or null if they have not been computed.
+	 */
+	public MonteCarloCBIPathBlock(int blockIndex, int firstPath, TimeDiscretizationInterface timeDiscretization, double[][][] increments, double[][][] processValues, double[][][] integratedProcessValues, double[][][] diffusionMartingaleValues) {
+		this.blockIndex = blockIndex;
+		this.firstPath = firstPath;
+		this.timeDiscretization = timeDiscretization;
+		this.increments = increments;
+		this.processValues = processValues;
+		this.integratedProcessValues = integratedProcessValues;
+		this.diffusionMartingaleValues = diffusionMartingaleValues;
+	}
+	
+	public int getBlockIndex() {
+		return this.blockIndex;
+	}
+	
+	public int getFirstPath() {
+		return this.firstPath;
+	}
+	
+	public int getNumberOfPaths() {
+		return this.processValues[0][0].length;
+	}
+	
+	public int getNumberOfComponents() {
+		return this.processValues.length;
+	}
+	
+	public TimeDiscretizationInterface getTimeDiscretization() {
+		return this.timeDiscretization;
+	}
+	
+	/**
+	 * Returns the increments of the component between the time indices timeIndex and timeIndex+1 for every path of the block.
+	 * @param timeIndex
+	 * @param factor
+	 * @return The increments (the array is not copied).
+	 */
+	public double[] getIncrements(int timeIndex, int factor) {
+		return this.increments[factor][timeIndex];
+	}
+	
+	/**
+	 * Returns the values of the component at the time index timeIndex for every path of the block.
+	 * @param timeIndex
+	 * @param factor
+	 * @return The values (the array is not copied).
+	 */
+	public double[] getProcessValues(int timeIndex, int factor) {
+		return this.processValues[factor][timeIndex];
+	}
+	
+	/**
+	 * Returns the integrals of the component from 0 to the time of index timeIndex for every path of the block.
+	 * @param timeIndex
+	 * @param factor
+	 * @return The integrals (the array is not copied).
+	 */
+	public double[] getIntegratedProcessValues(int timeIndex, int factor) {
+		return this.integratedProcessValues[factor][timeIndex];
+	}
+	
+	/**
+	 * Returns the sums of the Gaussian parts sigma sqrt(x dt) Z of the increments of the component from 0 to the time of index timeIndex for every path of the block.
+	 * @param timeIndex
+	 * @param factor
+	 * @return The diffusion martingale parts (the array is not copied).
+	 */
+	public double[] getDiffusionMartingaleValues(int timeIndex, int factor) {
+		return this.diffusionMartingaleValues[factor][timeIndex];
+	}
+	
+}
@@ -0,0 +1,26 @@
+package net.finmath.montecarlo.process;
+
+/**
+ * This interface has to be implemented by every consumer of the blocks of paths of a streamed Monte Carlo simulation of a CBI process,
+ * typically the accumulator of the payoffs of some products.
+ * The blocks may be passed concurrently by several threads and in any order, 
+ * hence an implementation should store its partial results by block index and combine them in the order of the blocks,
+ * which makes the results independent of the number of threads.
+ * @author Szulda Guillaume
+ *
+ */
+public interface MonteCarloCBIPathBlockAccumulator {
+	
+	/**
+	 * Called once before the simulation.
+	 * @param numberOfBlocks The number of blocks of paths that will be passed to the accumulator.
+	 */
+	public void initialize(int numberOfBlocks);
+	
+	/**
+	 * Called once for every block of paths.
+	 * @param block The block of paths, which is discarded afterwards.
+	 */
+	public void accumulate(MonteCarloCBIPathBlock block);
+	
+}
@@ -24,6 +24,16 @@ public interface MonteCarloCBIProcessInterface extends ProcessInterface {
 	public RandomVariableInterface getCBIProcessValue(double time, int factorIndex);
 	
 	public RandomVariableInterface getCBIProcessValue(int timeIndex, int factorIndex);
+	
+	/**
+	 * Returns the integral of the given component of the process from 0 to the time of index timeIndex,
+	 * computed along the time discretization with the value at the left point of every time step,
+	 * that is the sum of X(t_k)(t_{k+1}-t_k) over k lower than timeIndex.
+	 * @param timeIndex
+	 * @param factorIndex
+	 * @return The integral of the component of the process.
+	 */
+	public RandomVariableInterface getIntegratedCBIProcessValue(int timeIndex, int factorIndex);
 
 	public int getNumberOfPaths();
 	
@@ -4,9 +4,18 @@ import org.apache.commons.math3.distribution.*;
 
 import cern.jet.stat.Gamma;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.Math;
-import java.util.function.DoubleUnaryOperator;
+import java.nio.DoubleBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
+import net.finmath.functions.PoissonDistribution;
 import net.finmath.montecarlo.*;
 import net.finmath.stochastic.*;
 import net.finmath.randomnumbers.*;
@@ -14,39 +23,239 @@ import net.finmath.time.TimeDiscretizationInterface;
 
 /**
  * This class stands for a Monte Carlo simulation of a flow of tempered alpha-stable CBI processes.
+ * The paths are simulated by blocks of PATH_BLOCK_SIZE paths, distributed among the threads of a ForkJoinPool.
+ * Every block has its own random number stream, a Mersenne Twister initialized with the seed and the index of the block,
+ * hence the simulation only depends on the seed and the number of paths and is bit-identical for any number of threads.
+ * The values of the processes at every time of the discretization are stored along with the increments during the simulation,
+ * so that they are obtained without any computation, and so are their integrals over time, accumulated path by path (used e.g. by the numeraire),
+ * The diffusion martingale parts of the processes, the sums of the Gaussian terms of the increments, whose expectation is exactly zero (used e.g. as control variates),
+ * are not stored by the simulation: they are generated on the first call of getDiffusionMartingaleValue by simulating the same paths again, and then stored in the precision of the storage mode.
+ * In float storage mode they are stored in single precision, which halves the memory, and they are converted to random variables on request.
+ * In off-heap storage mode they are stored in double precision outside of the Java heap, in direct buffers or in a memory-mapped file,
+ * and they are returned as RandomVariableOffHeap objects reading the buffers in place. A simulation stored in a file can be reopened by open
+ * in order to reprice without simulating the paths again.
+ * In quasi Monte Carlo mode, the Gaussian and Poisson draws of the path of index n are obtained by inversion from the n-th point of an Owen-scrambled
+ * SobolSequence, whose dimensions are allocated in chronological order, the jump sizes being still drawn from the Mersenne Twister of the block.
+ * In antithetic mode, the paths are simulated by pairs (2j, 2j+1), the Gaussian draws of the second path of a pair being the opposite of the ones of the first path
+ * (with quasi random numbers, the second path uses the reflected point 1-u of the first one).
+ * Alternatively, simulatePathBlocks streams the blocks of paths to MonteCarloCBIPathBlockAccumulator objects without storing the whole simulation.
  * @author Szulda Guillaume
  */
 public class MonteCarloFlowOfTemperedCBIProcess implements MonteCarloCBIProcessInterface {
 	
+	/**
+	 * The number of paths sharing the same random number stream.
+	 */
+	public static final int PATH_BLOCK_SIZE = 1024;
+	
+	/**
+	 * The truncation level of the jumps of the simulation scheme: the jumps below it are replaced by their compensator.
+	 */
+	static final double JUMP_TRUNCATION_LEVEL = 0.001d;
+
 	private FlowOfTemperedAlphaStableCBIprocess cbiProcess;
 	private int numberOfPaths;
 	private int seed;
+	private int numberOfThreads;
 	private TimeDiscretizationInterface timeDiscretization;
+	private boolean isFloatStorage;
+	private boolean isQuasiMonteCarlo;
+	private boolean isAntithetic;
 	private RandomVariableInterface[][] increments;
+	private RandomVariableInterface[][] processValues;
+	private RandomVariableInterface[][] integratedProcessValues;
+	private volatile RandomVariableInterface[][] diffusionMartingaleValues;
+	private float[][][] incrementsFloatValues;
+	private float[][][] processFloatValues;
+	private float[][][] integratedProcessFloatValues;
+	private volatile float[][][] diffusionMartingaleFloatValues;
+	private volatile DoubleBuffer[][] diffusionMartingaleBuffers;
+	private OffHeapPathStorage offHeapStorage;
+	private final AtomicLong numberOfJumpCandidates = new AtomicLong();
+	private final AtomicLong numberOfAcceptedJumpCandidates = new AtomicLong();
 	
 	/**
 	 * First constructor, creates an instance of the MonteCarloFlowOfTemperedCBIProcess class, representing a Monte Carlo simulation
-	 * of some flow denoted by the input paramter cbiProcess.
+	 * of some flow denoted by the input paramter cbiProcess, whose paths are generated by numberOfThreads threads.
 	 * @param seed
 	 * @param numberOfPaths
 	 * @param timeDiscretization
 	 * @param cbiProcess
+	 * @param numberOfThreads
+	 * @param isFloatStorage If true, the simulated increments and values of the processes are stored in single precision.
+	 * @param isQuasiMonteCarlo If true, the Gaussian and Poisson draws are obtained from a scrambled Sobol sequence.
+	 * @param isAntithetic If true, the paths are simulated by antithetic pairs, the number of paths having to be even.
 	 * @throws IllegalArgumentException
 	 */
-	public MonteCarloFlowOfTemperedCBIProcess(int seed, int numberOfPaths, TimeDiscretizationInterface timeDiscretization, FlowOfTemperedAlphaStableCBIprocess cbiProcess) throws IllegalArgumentException {
+	public MonteCarloFlowOfTemperedCBIProcess(int seed, int numberOfPaths, TimeDiscretizationInterface timeDiscretization, FlowOfTemperedAlphaStableCBIprocess cbiProcess, int numberOfThreads, boolean isFloatStorage, boolean isQuasiMonteCarlo, boolean isAntithetic) throws IllegalArgumentException {
+		this(seed, numberOfPaths, timeDiscretization, cbiProcess, numberOfThreads, isFloatStorage, isQuasiMonteCarlo, isAntithetic, false, null);
+	}
+
+	/**
+	 * Creates an instance of the MonteCarloFlowOfTemperedCBIProcess class, representing a Monte Carlo simulation
+	 * of some flow denoted by the input paramter cbiProcess, whose paths are generated by numberOfThreads threads and stored outside of the Java heap:
+	 * in direct buffers if storageFile is null, otherwise in the memory-mapped file storageFile (created or overwritten), which can be reopened by open.
+	 * @param seed
+	 * @param numberOfPaths
+	 * @param timeDiscretization
+	 * @param cbiProcess
+	 * @param numberOfThreads
+	 * @param isQuasiMonteCarlo If true, the Gaussian and Poisson draws are obtained from a scrambled Sobol sequence.
+	 * @param isAntithetic If true, the paths are simulated by antithetic pairs, the number of paths having to be even.
+	 * @param storageFile The file storing the simulation, or null for direct buffers.
+	 * @throws IllegalArgumentException
+	 * @throws UncheckedIOException If the storage file cannot be written.
+	 */
+	public MonteCarloFlowOfTemperedCBIProcess(int seed, int numberOfPaths, TimeDiscretizationInterface timeDiscretization, FlowOfTemperedAlphaStableCBIprocess cbiProcess, int numberOfThreads, boolean isQuasiMonteCarlo, boolean isAntithetic, Path storageFile) throws IllegalArgumentException {
+		this(seed, numberOfPaths, timeDiscretization, cbiProcess, numberOfThreads, false, isQuasiMonteCarlo, isAntithetic, true, storageFile);
+	}
+
+	private MonteCarloFlowOfTemperedCBIProcess(int seed, int numberOfPaths, TimeDiscretizationInterface timeDiscretization, FlowOfTemperedAlphaStableCBIprocess cbiProcess, int numberOfThreads, boolean isFloatStorage, boolean isQuasiMonteCarlo, boolean isAntithetic, boolean isOffHeapStorage, Path storageFile) throws IllegalArgumentException {
 		if(timeDiscretization.getTime(timeDiscretization.getNumberOfTimeSteps()) != cbiProcess.getTimeHorizon() || timeDiscretization.getNumberOfTimeSteps() != cbiProcess.getNumberOfTimeSteps()) {
 			throw new IllegalArgumentException("The Monte Carlo time discretization must be coincide with the validation domain of the CBI process.");
+		} else if(numberOfThreads < 1) {
+			throw new IllegalArgumentException("The number of threads must be positive.");
 		} else {
 			this.numberOfPaths = numberOfPaths;
 			this.seed = seed;
+			this.numberOfThreads = numberOfThreads;
+			this.isFloatStorage = isFloatStorage;
+			this.isQuasiMonteCarlo = isQuasiMonteCarlo;
+			this.isAntithetic = isAntithetic;
 			this.timeDiscretization = timeDiscretization;
 			this.cbiProcess = cbiProcess;
-			// Memory allocation for the simulations of the increments of the processes :
-			this.increments = new RandomVariableInterface[cbiProcess.getDimension()][timeDiscretization.getNumberOfTimeSteps()];
+			if(isOffHeapStorage) {
+				int numberOfTimeSteps = timeDiscretization.getNumberOfTimeSteps();
+				if(storageFile == null) {
+					this.offHeapStorage = OffHeapPathStorage.allocateDirect(seed, numberOfPaths, getNumberOfComponents(), numberOfTimeSteps, isQuasiMonteCarlo, isAntithetic, getTimeHorizon(), getParameterHash(timeDiscretization, cbiProcess));
+				} else {
+					try {
+						this.offHeapStorage = OffHeapPathStorage.create(storageFile, seed, numberOfPaths, getNumberOfComponents(), numberOfTimeSteps, isQuasiMonteCarlo, isAntithetic, getTimeHorizon(), getParameterHash(timeDiscretization, cbiProcess));
+					} catch (IOException e) {
+						throw new UncheckedIOException("The storage file " + storageFile + " cannot be created.", e);
+					}
+				}
+			}
 			// Computation of the variates standing for the increments of the processes, embedding all the paths required for the simulation :
 			generateIncrements();
 		}
 	}
+
+	/**
+	 * Creates an instance of the MonteCarloFlowOfTemperedCBIProcess class from an existing storage, without simulating any path.
+	 */
+	private MonteCarloFlowOfTemperedCBIProcess(OffHeapPathStorage offHeapStorage, TimeDiscretizationInterface timeDiscretization, FlowOfTemperedAlphaStableCBIprocess cbiProcess, int numberOfThreads) throws IllegalArgumentException {
+		if(timeDiscretization.getTime(timeDiscretization.getNumberOfTimeSteps()) != cbiProcess.getTimeHorizon() || timeDiscretization.getNumberOfTimeSteps() != cbiProcess.getNumberOfTimeSteps()) {
+			throw new IllegalArgumentException("The Monte Carlo time discretization must be coincide with the validation domain of the CBI process.");
+		} else if(offHeapStorage.getNumberOfTimeSteps() != timeDiscretization.getNumberOfTimeSteps() || offHeapStorage.getTimeHorizon() != cbiProcess.getTimeHorizon() || offHeapStorage.getDimension() != cbiProcess.getDimension()) {
+			throw new IllegalArgumentException("The stored simulation must coincide with the time discretization and the dimension of the CBI process.");
+		} else if(offHeapStorage.getParameterHash() != getParameterHash(timeDiscretization, cbiProcess)) {
+			throw new IllegalArgumentException("The stored simulation must have been simulated with the parameters of the CBI process and the times of the time discretization.");
+		} else if(numberOfThreads < 1) {
+			throw new IllegalArgumentException("The number of threads must be positive.");
+		} else {
+			this.numberOfPaths = offHeapStorage.getNumberOfPaths();
+			this.seed = offHeapStorage.getSeed();
+			this.numberOfThreads = numberOfThreads;
+			this.isQuasiMonteCarlo = offHeapStorage.isQuasiMonteCarlo();
+			this.isAntithetic = offHeapStorage.isAntithetic();
+			this.timeDiscretization = timeDiscretization;
+			this.cbiProcess = cbiProcess;
+			this.offHeapStorage = offHeapStorage;
+			this.numberOfJumpCandidates.set(offHeapStorage.getNumberOfJumpCandidates());
+			this.numberOfAcceptedJumpCandidates.set(offHeapStorage.getNumberOfAcceptedJumpCandidates());
+		}
+	}
+
+	/**
+	 * Reopens a simulation stored in a file by the off-heap storage constructor, mapping the file read-only instead of simulating the paths again.
+	 * The seed, the number of paths and the simulation features are read from the file, while the flow and the time discretization,
+	 * which are not stored, have to be the ones of the stored simulation: their time horizon, number of time steps and dimension are checked,
+	 * as well as a hash of the parameters of the flow and of the times of the time discretization stored in the file.
+	 * Clones with a modified seed or time discretization are simulated again, in direct buffers.
+	 * @param storageFile
+	 * @param timeDiscretization
+	 * @param cbiProcess
+	 * @param numberOfThreads
+	 * @return The simulation stored in the file.
+	 * @throws IOException If the file cannot be read or is not a complete storage of a simulation.
+	 * @throws IllegalArgumentException
+	 */
+	public static MonteCarloFlowOfTemperedCBIProcess open(Path storageFile, TimeDiscretizationInterface timeDiscretization, FlowOfTemperedAlphaStableCBIprocess cbiProcess, int numberOfThreads) throws IOException, IllegalArgumentException {
+		return new MonteCarloFlowOfTemperedCBIProcess(OffHeapPathStorage.open(storageFile), timeDiscretization, cbiProcess, numberOfThreads);
+	}
+
+	/**
+	 * Returns a hash of the parameters of the flow and of the times of the time discretization, identifying the simulated dynamics in a storage file.
+	 */
+	private static long getParameterHash(TimeDiscretizationInterface timeDiscretization, FlowOfTemperedAlphaStableCBIprocess cbiProcess) {
+		long result = cbiProcess.getDimension();
+		for(double parameter : cbiProcess.getParameters()) {
+			result = 31 * result + Double.doubleToLongBits(parameter);
+		}
+		for(int timeIndex = 0; timeIndex <= timeDiscretization.getNumberOfTimeSteps(); timeIndex++) {
+			result = 31 * result + Double.doubleToLongBits(timeDiscretization.getTime(timeIndex));
+		}
+		return result;
+	}
+
+	/**
+	 * Creates an instance of the MonteCarloFlowOfTemperedCBIProcess class, representing a Monte Carlo simulation without antithetic paths
+	 * of some flow denoted by the input paramter cbiProcess, whose paths are generated by numberOfThreads threads.
+	 * @param seed
+	 * @param numberOfPaths
+	 * @param timeDiscretization
+	 * @param cbiProcess
+	 * @param numberOfThreads
+	 * @param isFloatStorage If true, the simulated increments and values of the processes are stored in single precision.
+	 * @param isQuasiMonteCarlo If true, the Gaussian and Poisson draws are obtained from a scrambled Sobol sequence.
+	 * @throws IllegalArgumentException
+	 */
+	public MonteCarloFlowOfTemperedCBIProcess(int seed, int numberOfPaths, TimeDiscretizationInterface timeDiscretization, FlowOfTemperedAlphaStableCBIprocess cbiProcess, int numberOfThreads, boolean isFloatStorage, boolean isQuasiMonteCarlo) throws IllegalArgumentException {
+		this(seed, numberOfPaths, timeDiscretization, cbiProcess, numberOfThreads, isFloatStorage, isQuasiMonteCarlo, false);
+	}
+
+	/**
+	 * Creates an instance of the MonteCarloFlowOfTemperedCBIProcess class, representing a (pseudo random) Monte Carlo simulation
+	 * of some flow denoted by the input paramter cbiProcess, whose paths are generated by numberOfThreads threads.
+	 * @param seed
+	 * @param numberOfPaths
+	 * @param timeDiscretization
+	 * @param cbiProcess
+	 * @param numberOfThreads
+	 * @param isFloatStorage If true, the simulated increments and values of the processes are stored in single precision.
+	 * @throws IllegalArgumentException
+	 */
+	public MonteCarloFlowOfTemperedCBIProcess(int seed, int numberOfPaths, TimeDiscretizationInterface timeDiscretization, FlowOfTemperedAlphaStableCBIprocess cbiProcess, int numberOfThreads, boolean isFloatStorage) throws IllegalArgumentException {
+		this(seed, numberOfPaths, timeDiscretization, cbiProcess, numberOfThreads, isFloatStorage, false);
+	}
+
+	/**
+	 * Creates an instance of the MonteCarloFlowOfTemperedCBIProcess class, representing a Monte Carlo simulation
+	 * of some flow denoted by the input paramter cbiProcess, whose paths are generated by numberOfThreads threads and stored in double precision.
+	 * @param seed
+	 * @param numberOfPaths
+	 * @param timeDiscretization
+	 * @param cbiProcess
+	 * @param numberOfThreads
+	 * @throws IllegalArgumentException
+	 */
+	public MonteCarloFlowOfTemperedCBIProcess(int seed, int numberOfPaths, TimeDiscretizationInterface timeDiscretization, FlowOfTemperedAlphaStableCBIprocess cbiProcess, int numberOfThreads) throws IllegalArgumentException {
+		this(seed, numberOfPaths, timeDiscretization, cbiProcess, numberOfThreads, false);
+	}
+
+	/**
+	 * Creates an instance of the MonteCarloFlowOfTemperedCBIProcess class, representing a Monte Carlo simulation
+	 * of some flow denoted by the input paramter cbiProcess, whose paths are generated using all the available processors.
+	 * @param seed
+	 * @param numberOfPaths
+	 * @param timeDiscretization
+	 * @param cbiProcess
+	 * @throws IllegalArgumentException
+	 */
+	public MonteCarloFlowOfTemperedCBIProcess(int seed, int numberOfPaths, TimeDiscretizationInterface timeDiscretization, FlowOfTemperedAlphaStableCBIprocess cbiProcess) throws IllegalArgumentException {
+		this(seed, numberOfPaths, timeDiscretization, cbiProcess, Runtime.getRuntime().availableProcessors());
+	}
 	
 	/**
 	 * Second and ultimate constructor, creates an instance of the MonteCarloFlowOfTemperedCBIProcess class, 
@@ -72,9 +281,9 @@ public class MonteCarloFlowOfTemperedCBIProcess implements MonteCarloCBIProcessI
 		} else {
 			this.numberOfPaths = numberOfPaths;
 			this.seed = seed;
+			this.numberOfThreads = Runtime.getRuntime().availableProcessors();
 			this.timeDiscretization = timeDiscretization;
 			this.cbiProcess = new FlowOfTemperedAlphaStableCBIprocess(timeHorizon, numberOfTimeSteps, initialValues, immigrationRates, b, sigma, eta, zeta, alpha, lambda);
-			this.increments = new RandomVariableInterface[initialValues.length][timeDiscretization.getNumberOfTimeSteps()];
 			generateIncrements();
 		}
 	}
@@ -95,6 +304,44 @@ public class MonteCarloFlowOfTemperedCBIProcess implements MonteCarloCBIProcessI
 		return y.longValue();
 	}
 	
+	public int getNumberOfThreads() {
+		return this.numberOfThreads;
+	}
+	
+	public boolean isFloatStorage() {
+		return this.isFloatStorage;
+	}
+	
+	public boolean isOffHeapStorage() {
+		return this.offHeapStorage != null;
+	}
+	
+	/**
+	 * Returns the file storing the simulation in off-heap storage mode.
+	 * @return The storage file, or null if the simulation is not stored in a file.
+	 */
+	public Path getStorageFile() {
+		return this.offHeapStorage != null ? this.offHeapStorage.getFile() : null;
+	}
+	
+	public boolean isQuasiMonteCarlo() {
+		return this.isQuasiMonteCarlo;
+	}
+	
+	public boolean isAntithetic() {
+		return this.isAntithetic;
+	}
+	
+	/**
+	 * Returns the proportion of the candidates of the acceptance rejection method that have been accepted
+	 * while simulating the jumps larger than the truncation level, over all the paths.
+	 * @return The measured acceptance rate of the jump sampler (NaN if no jump has been simulated).
+	 */
+	public double getJumpAcceptanceRate() {
+		long candidates = this.numberOfJumpCandidates.get();
+		return candidates > 0 ? (double)this.numberOfAcceptedJumpCandidates.get() / candidates : Double.NaN;
+	}
+	
 	@Override
 	public int getNumberOfComponents() {
 		return cbiProcess.getDimension();
@@ -126,7 +373,7 @@ public class MonteCarloFlowOfTemperedCBIProcess implements MonteCarloCBIProcessI
 	
 	@Override
 	public MonteCarloCBIProcessInterface getCloneWithModifiedTimeDiscretization(TimeDiscretizationInterface newTimeDiscretization) {
-		return new MonteCarloFlowOfTemperedCBIProcess(seed, numberOfPaths, newTimeDiscretization, cbiProcess);
+		return new MonteCarloFlowOfTemperedCBIProcess(seed, numberOfPaths, newTimeDiscretization, cbiProcess, numberOfThreads, isFloatStorage, isQuasiMonteCarlo, isAntithetic, isOffHeapStorage(), null);
 	}
 	
 	@Override
@@ -136,7 +383,7 @@ public class MonteCarloFlowOfTemperedCBIProcess implements MonteCarloCBIProcessI
 	
 	@Override
 	public MonteCarloCBIProcessInterface getCloneWithModifiedSeed(int newSeed) {
-		return new MonteCarloFlowOfTemperedCBIProcess(newSeed, numberOfPaths, timeDiscretization, cbiProcess);
+		return new MonteCarloFlowOfTemperedCBIProcess(newSeed, numberOfPaths, timeDiscretization, cbiProcess, numberOfThreads, isFloatStorage, isQuasiMonteCarlo, isAntithetic, isOffHeapStorage(), null);
 	}
 	
 	@Override
@@ -146,16 +393,69 @@ public class MonteCarloFlowOfTemperedCBIProcess implements MonteCarloCBIProcessI
 
 	@Override
 	public RandomVariableInterface getIncrement(int timeIndex, int factor) {
+		if(offHeapStorage != null) {
+			return new RandomVariableOffHeap(timeDiscretization.getTime(timeIndex+1), offHeapStorage.get(OffHeapPathStorage.INCREMENTS, factor, timeIndex));
+		}
+		if(isFloatStorage) {
+			return getRandomVariable(timeDiscretization.getTime(timeIndex+1), incrementsFloatValues[factor][timeIndex]);
+		}
 		return increments[factor][timeIndex];
 	}
 	
 	@Override
 	public RandomVariableInterface getCBIProcessValue(int timeIndex, int factorIndex) {
-		RandomVariableInterface x = new RandomVariable(0.0, this.numberOfPaths, (this.cbiProcess).getInitialValues()[factorIndex]);
-		for(int i = 0; i < timeIndex; i++) {
-			x = x.add(increments[factorIndex][i]);
+		if(offHeapStorage != null) {
+			return new RandomVariableOffHeap(timeDiscretization.getTime(timeIndex), offHeapStorage.get(OffHeapPathStorage.PROCESS_VALUES, factorIndex, timeIndex));
+		}
+		if(isFloatStorage) {
+			return getRandomVariable(timeDiscretization.getTime(timeIndex), processFloatValues[factorIndex][timeIndex]);
+		}
+		return processValues[factorIndex][timeIndex];
+	}
+	
+	@Override
+	public RandomVariableInterface getIntegratedCBIProcessValue(int timeIndex, int factorIndex) {
+		if(offHeapStorage != null) {
+			return new RandomVariableOffHeap(timeDiscretization.getTime(timeIndex), offHeapStorage.get(OffHeapPathStorage.INTEGRATED_PROCESS_VALUES, factorIndex, timeIndex));
+		}
+		if(isFloatStorage) {
+			return getRandomVariable(timeDiscretization.getTime(timeIndex), integratedProcessFloatValues[factorIndex][timeIndex]);
+		}
+		return integratedProcessValues[factorIndex][timeIndex];
+	}
+	
+	/**
+	 * Returns the diffusion martingale part of the factor at the given time index, that is the sum of the Gaussian terms sigma sqrt(x dt) Z of its increments,
+	 * whose expectation is exactly zero for the simulation scheme.
+	 * The diffusion martingale parts of all the factors and times are generated on the first call, by simulating the paths again,
+	 * and stored in the precision of the storage mode (in direct buffers in off-heap storage mode).
+	 * @param timeIndex
+	 * @param factorIndex
+	 * @return The diffusion martingale part of the factor.
+	 */
+	public RandomVariableInterface getDiffusionMartingaleValue(int timeIndex, int factorIndex) {
+		if(offHeapStorage != null) {
+			DoubleBuffer[][] buffers = diffusionMartingaleBuffers;
+			if(buffers == null) {
+				generateDiffusionMartingaleValues();
+				buffers = diffusionMartingaleBuffers;
+			}
+			return new RandomVariableOffHeap(timeDiscretization.getTime(timeIndex), buffers[factorIndex][timeIndex]);
+		}
+		if(isFloatStorage) {
+			float[][][] floatValues = diffusionMartingaleFloatValues;
+			if(floatValues == null) {
+				generateDiffusionMartingaleValues();
+				floatValues = diffusionMartingaleFloatValues;
+			}
+			return getRandomVariable(timeDiscretization.getTime(timeIndex), floatValues[factorIndex][timeIndex]);
+		}
+		RandomVariableInterface[][] values = diffusionMartingaleValues;
+		if(values == null) {
+			generateDiffusionMartingaleValues();
+			values = diffusionMartingaleValues;
 		}
-		return x;
+		return values[factorIndex][timeIndex];
 	}
 	
 	@Override
@@ -180,69 +480,428 @@ public class MonteCarloFlowOfTemperedCBIProcess implements MonteCarloCBIProcessI
 
 	@Override
 	public ProcessInterface clone() {
-		return new MonteCarloFlowOfTemperedCBIProcess(seed, numberOfPaths, timeDiscretization, cbiProcess);
+		return new MonteCarloFlowOfTemperedCBIProcess(seed, numberOfPaths, timeDiscretization, cbiProcess, numberOfThreads, isFloatStorage, isQuasiMonteCarlo, isAntithetic, isOffHeapStorage(), null);
+	}
+	
+	/**
+	 * This method simulates the paths of the flow block by block, in parallel, and feeds every block to the accumulators before discarding it,
+	 * so that the memory required only depends on the block size and the number of threads, not on the number of paths.
+	 * The blocks are exactly the ones of the batch simulation with the same seed and number of paths.
+	 * The accumulators may be called concurrently for different blocks, they are initialized with the number of blocks beforehand.
+	 * @param seed
+	 * @param numberOfPaths
+	 * @param timeDiscretization
+	 * @param cbiProcess
+	 * @param numberOfThreads
+	 * @param isQuasiMonteCarlo If true, the Gaussian and Poisson draws are obtained from a scrambled Sobol sequence.
+	 * @param isAntithetic If true, the paths are simulated by antithetic pairs, the number of paths having to be even.
+	 * @param accumulators The consumers of the blocks of paths.
+	 * @throws IllegalArgumentException
+	 */
+	public static void simulatePathBlocks(int seed, int numberOfPaths, TimeDiscretizationInterface timeDiscretization, FlowOfTemperedAlphaStableCBIprocess cbiProcess, int numberOfThreads, boolean isQuasiMonteCarlo, boolean isAntithetic, MonteCarloCBIPathBlockAccumulator... accumulators) throws IllegalArgumentException {
+		if(timeDiscretization.getTime(timeDiscretization.getNumberOfTimeSteps()) != cbiProcess.getTimeHorizon() || timeDiscretization.getNumberOfTimeSteps() != cbiProcess.getNumberOfTimeSteps()) {
+			throw new IllegalArgumentException("The Monte Carlo time discretization must be coincide with the validation domain of the CBI process.");
+		} else if(numberOfThreads < 1) {
+			throw new IllegalArgumentException("The number of threads must be positive.");
+		}
+		PathBlockGenerator generator = new PathBlockGenerator(seed, numberOfPaths, timeDiscretization, cbiProcess, isQuasiMonteCarlo, isAntithetic, true);
+		int numberOfBlocks = getNumberOfBlocks(numberOfPaths);
+		for(MonteCarloCBIPathBlockAccumulator accumulator : accumulators) {
+			accumulator.initialize(numberOfBlocks);
+		}
+		runInParallel(numberOfThreads, numberOfBlocks, block -> {
+			MonteCarloCBIPathBlock pathBlock = generator.generate(block);
+			for(MonteCarloCBIPathBlockAccumulator accumulator : accumulators) {
+				accumulator.accumulate(pathBlock);
+			}
+		});
+	}
+	
+	/**
+	 * This method simulates the paths of the flow block by block without antithetic paths and feeds every block to the accumulators,
+	 * see simulatePathBlocks(int, int, TimeDiscretizationInterface, FlowOfTemperedAlphaStableCBIprocess, int, boolean, boolean, MonteCarloCBIPathBlockAccumulator...).
+	 * @param seed
+	 * @param numberOfPaths
+	 * @param timeDiscretization
+	 * @param cbiProcess
+	 * @param numberOfThreads
+	 * @param isQuasiMonteCarlo If true, the Gaussian and Poisson draws are obtained from a scrambled Sobol sequence.
+	 * @param accumulators The consumers of the blocks of paths.
+	 * @throws IllegalArgumentException
+	 */
+	public static void simulatePathBlocks(int seed, int numberOfPaths, TimeDiscretizationInterface timeDiscretization, FlowOfTemperedAlphaStableCBIprocess cbiProcess, int numberOfThreads, boolean isQuasiMonteCarlo, MonteCarloCBIPathBlockAccumulator... accumulators) throws IllegalArgumentException {
+		simulatePathBlocks(seed, numberOfPaths, timeDiscretization, cbiProcess, numberOfThreads, isQuasiMonteCarlo, false, accumulators);
+	}
+	
+	/**
+	 * This method simulates the paths of the flow block by block with pseudo random numbers and feeds every block to the accumulators,
+	 * see simulatePathBlocks(int, int, TimeDiscretizationInterface, FlowOfTemperedAlphaStableCBIprocess, int, boolean, boolean, MonteCarloCBIPathBlockAccumulator...).
+	 * @param seed
+	 * @param numberOfPaths
+	 * @param timeDiscretization
+	 * @param cbiProcess
+	 * @param numberOfThreads
+	 * @param accumulators The consumers of the blocks of paths.
+	 * @throws IllegalArgumentException
+	 */
+	public static void simulatePathBlocks(int seed, int numberOfPaths, TimeDiscretizationInterface timeDiscretization, FlowOfTemperedAlphaStableCBIprocess cbiProcess, int numberOfThreads, MonteCarloCBIPathBlockAccumulator... accumulators) throws IllegalArgumentException {
+		simulatePathBlocks(seed, numberOfPaths, timeDiscretization, cbiProcess, numberOfThreads, false, false, accumulators);
+	}
+	
+	/**
+	 * Returns the number of blocks of PATH_BLOCK_SIZE paths needed for the given number of paths.
+	 * @param numberOfPaths
+	 * @return The number of blocks.
+	 */
+	public static int getNumberOfBlocks(int numberOfPaths) {
+		return (numberOfPaths + PATH_BLOCK_SIZE - 1) / PATH_BLOCK_SIZE;
 	}
 	
 	/**
 	 * This method is used to generate the random variables representing the increments of the processes to simulate. 
+	 * The blocks of paths are independent from each other and they are simulated in parallel, then copied into the storage of the whole simulation.
+	 * The diffusion martingale parts are neither computed nor stored, see generateDiffusionMartingaleValues.
 	 */
 	private void generateIncrements() {
-		double epsilon = 0.001d;
-		MultiDimensionalMersenneTwister rng = new MultiDimensionalMersenneTwister(seed, 2);
-		double acceptanceLevel = (Math.pow(cbiProcess.getZeta()*epsilon, -cbiProcess.getAlpha())*Math.exp(-cbiProcess.getZeta()*epsilon))/(cbiProcess.getAlpha()*Gamma.incompleteGammaComplement(-cbiProcess.getAlpha(), cbiProcess.getZeta()*epsilon));
-		RandomNumberGenerator arm = new AcceptanceRejectionRandomNumberGenerator(rng, new DoubleUnaryOperator() {
-			@Override
-			public double applyAsDouble(double v) {
-				return (Math.exp(-cbiProcess.getZeta()*v))/(Gamma.incompleteGammaComplement(-cbiProcess.getAlpha(), cbiProcess.getZeta()*epsilon)*v*Math.pow(v*cbiProcess.getZeta(), cbiProcess.getAlpha()));
+		
+		int numberOfTimeSteps = timeDiscretization.getNumberOfTimeSteps();
+		double[][][] incrementsValues = null;
+		double[][][] processValuesArray = null;
+		double[][][] integratedProcessValuesArray = null;
+		if(isFloatStorage) {
+			incrementsFloatValues = new float[getNumberOfComponents()][numberOfTimeSteps][numberOfPaths];
+			processFloatValues = new float[getNumberOfComponents()][numberOfTimeSteps+1][numberOfPaths];
+			integratedProcessFloatValues = new float[getNumberOfComponents()][numberOfTimeSteps+1][numberOfPaths];
+		} else if(offHeapStorage == null) {
+			incrementsValues = new double[getNumberOfComponents()][numberOfTimeSteps][numberOfPaths];
+			processValuesArray = new double[getNumberOfComponents()][numberOfTimeSteps+1][numberOfPaths];
+			integratedProcessValuesArray = new double[getNumberOfComponents()][numberOfTimeSteps+1][numberOfPaths];
+		}
+		double[][][] incrementsDoubleValues = incrementsValues;
+		double[][][] processDoubleValues = processValuesArray;
+		double[][][] integratedProcessDoubleValues = integratedProcessValuesArray;
+		PathBlockGenerator generator = new PathBlockGenerator(seed, numberOfPaths, timeDiscretization, cbiProcess, isQuasiMonteCarlo, isAntithetic, false);
+		
+		runInParallel(numberOfThreads, getNumberOfBlocks(numberOfPaths), block -> {
+			MonteCarloCBIPathBlock pathBlock = generator.generate(block);
+			for(int factor = 0; factor < getNumberOfComponents(); factor++) {
+				for(int timeIndex = 0; timeIndex <= numberOfTimeSteps; timeIndex++) {
+					if(offHeapStorage != null) {
+						if(timeIndex < numberOfTimeSteps) {
+							offHeapStorage.put(OffHeapPathStorage.INCREMENTS, factor, timeIndex, pathBlock.getFirstPath(), pathBlock.getIncrements(timeIndex, factor));
+						}
+						offHeapStorage.put(OffHeapPathStorage.PROCESS_VALUES, factor, timeIndex, pathBlock.getFirstPath(), pathBlock.getProcessValues(timeIndex, factor));
+						offHeapStorage.put(OffHeapPathStorage.INTEGRATED_PROCESS_VALUES, factor, timeIndex, pathBlock.getFirstPath(), pathBlock.getIntegratedProcessValues(timeIndex, factor));
+					} else if(isFloatStorage) {
+						if(timeIndex < numberOfTimeSteps) {
+							copy(pathBlock.getIncrements(timeIndex, factor), incrementsFloatValues[factor][timeIndex], pathBlock.getFirstPath());
+						}
+						copy(pathBlock.getProcessValues(timeIndex, factor), processFloatValues[factor][timeIndex], pathBlock.getFirstPath());
+						copy(pathBlock.getIntegratedProcessValues(timeIndex, factor), integratedProcessFloatValues[factor][timeIndex], pathBlock.getFirstPath());
+					} else {
+						if(timeIndex < numberOfTimeSteps) {
+							System.arraycopy(pathBlock.getIncrements(timeIndex, factor), 0, incrementsDoubleValues[factor][timeIndex], pathBlock.getFirstPath(), pathBlock.getNumberOfPaths());
+						}
+						System.arraycopy(pathBlock.getProcessValues(timeIndex, factor), 0, processDoubleValues[factor][timeIndex], pathBlock.getFirstPath(), pathBlock.getNumberOfPaths());
+						System.arraycopy(pathBlock.getIntegratedProcessValues(timeIndex, factor), 0, integratedProcessDoubleValues[factor][timeIndex], pathBlock.getFirstPath(), pathBlock.getNumberOfPaths());
+					}
+				}
+			}
+		});
+		
+		numberOfJumpCandidates.addAndGet(generator.numberOfJumpCandidates.get());
+		numberOfAcceptedJumpCandidates.addAndGet(generator.numberOfAcceptedJumpCandidates.get());
+		
+		if(offHeapStorage != null) {
+			offHeapStorage.finish(numberOfJumpCandidates.get(), numberOfAcceptedJumpCandidates.get());
+		} else if(!isFloatStorage) {
+			increments = new RandomVariableInterface[getNumberOfComponents()][numberOfTimeSteps];
+			processValues = new RandomVariableInterface[getNumberOfComponents()][numberOfTimeSteps+1];
+			integratedProcessValues = new RandomVariableInterface[getNumberOfComponents()][numberOfTimeSteps+1];
+			for(int factor = 0; factor < getNumberOfComponents(); factor++) {
+				for(int timeIndex = 0; timeIndex < numberOfTimeSteps; timeIndex++) {
+					increments[factor][timeIndex] = new RandomVariable(timeDiscretization.getTime(timeIndex+1), incrementsValues[factor][timeIndex]);
+				}
+				for(int timeIndex = 0; timeIndex <= numberOfTimeSteps; timeIndex++) {
+					processValues[factor][timeIndex] = new RandomVariable(timeDiscretization.getTime(timeIndex), processValuesArray[factor][timeIndex]);
+					integratedProcessValues[factor][timeIndex] = new RandomVariable(timeDiscretization.getTime(timeIndex), integratedProcessValuesArray[factor][timeIndex]);
+				}
+			}
+		}
+			
+	}
+	
+	/**
+	 * This method generates the diffusion martingale parts of the processes by simulating the blocks of paths again,
+	 * with the same random number streams, hence for the same paths, and stores them in the precision of the storage mode.
+	 * It is called once, on the first request of a diffusion martingale part, the storage being published once complete.
+	 */
+	private synchronized void generateDiffusionMartingaleValues() {
+		if(diffusionMartingaleValues != null || diffusionMartingaleFloatValues != null || diffusionMartingaleBuffers != null) {
+			return;
+		}
+		
+		int numberOfTimeSteps = timeDiscretization.getNumberOfTimeSteps();
+		double[][][] diffusionMartingaleValuesArray = null;
+		float[][][] floatValues = null;
+		DoubleBuffer[][] buffers = null;
+		if(offHeapStorage != null) {
+			buffers = new DoubleBuffer[getNumberOfComponents()][numberOfTimeSteps+1];
+			for(int factor = 0; factor < getNumberOfComponents(); factor++) {
+				for(int timeIndex = 0; timeIndex <= numberOfTimeSteps; timeIndex++) {
+					buffers[factor][timeIndex] = RandomVariableOffHeap.allocateDirect(numberOfPaths);
+				}
 			}
-		}, new DoubleUnaryOperator() {
-			@Override
-			public double applyAsDouble(double v) {
-				return (cbiProcess.getAlpha()*Math.pow(epsilon, cbiProcess.getAlpha()))/(Math.pow(v, 1+cbiProcess.getAlpha()));
+		} else if(isFloatStorage) {
+			floatValues = new float[getNumberOfComponents()][numberOfTimeSteps+1][numberOfPaths];
+		} else {
+			diffusionMartingaleValuesArray = new double[getNumberOfComponents()][numberOfTimeSteps+1][numberOfPaths];
+		}
+		double[][][] diffusionMartingaleDoubleValues = diffusionMartingaleValuesArray;
+		float[][][] diffusionMartingaleFloats = floatValues;
+		DoubleBuffer[][] diffusionMartingaleDoubleBuffers = buffers;
+		PathBlockGenerator generator = new PathBlockGenerator(seed, numberOfPaths, timeDiscretization, cbiProcess, isQuasiMonteCarlo, isAntithetic, true);
+		
+		runInParallel(numberOfThreads, getNumberOfBlocks(numberOfPaths), block -> {
+			MonteCarloCBIPathBlock pathBlock = generator.generate(block);
+			for(int factor = 0; factor < getNumberOfComponents(); factor++) {
+				for(int timeIndex = 0; timeIndex <= numberOfTimeSteps; timeIndex++) {
+					double[] blockValues = pathBlock.getDiffusionMartingaleValues(timeIndex, factor);
+					if(diffusionMartingaleDoubleBuffers != null) {
+						/* Every block writes through its own view of the buffer. */
+						DoubleBuffer view = diffusionMartingaleDoubleBuffers[factor][timeIndex].duplicate();
+						view.position(pathBlock.getFirstPath());
+						view.put(blockValues);
+					} else if(diffusionMartingaleFloats != null) {
+						copy(blockValues, diffusionMartingaleFloats[factor][timeIndex], pathBlock.getFirstPath());
+					} else {
+						System.arraycopy(blockValues, 0, diffusionMartingaleDoubleValues[factor][timeIndex], pathBlock.getFirstPath(), pathBlock.getNumberOfPaths());
+					}
+				}
 			}
-		}, new DoubleUnaryOperator() {
-			@Override
-			public double applyAsDouble(double v) {
-				return epsilon*Math.pow(v, -1.0/cbiProcess.getAlpha());
+		});
+		
+		if(buffers != null) {
+			diffusionMartingaleBuffers = buffers;
+		} else if(floatValues != null) {
+			diffusionMartingaleFloatValues = floatValues;
+		} else {
+			RandomVariableInterface[][] values = new RandomVariableInterface[getNumberOfComponents()][numberOfTimeSteps+1];
+			for(int factor = 0; factor < getNumberOfComponents(); factor++) {
+				for(int timeIndex = 0; timeIndex <= numberOfTimeSteps; timeIndex++) {
+					values[factor][timeIndex] = new RandomVariable(timeDiscretization.getTime(timeIndex), diffusionMartingaleValuesArray[factor][timeIndex]);
+				}
 			}
-		}, acceptanceLevel);
+			diffusionMartingaleValues = values;
+		}
+	}
+	
+	/**
+	 * Returns the intensity of the jumps larger than JUMP_TRUNCATION_LEVEL per unit of time and per unit of the process.
+	 */
+	static double getJumpIntensity(FlowOfTemperedAlphaStableCBIprocess cbiProcess) {
+		double alpha = cbiProcess.getAlpha();
+		double zeta = cbiProcess.getZeta();
+		double incompleteGamma = Gamma.incompleteGammaComplement(-alpha, zeta*JUMP_TRUNCATION_LEVEL);
+		return (-Math.pow(zeta, alpha)*incompleteGamma)/(Math.cos(Math.PI*0.5*alpha)*Gamma.gamma(-alpha));
+	}
+	
+	/**
+	 * Returns the coefficient of x in the drift of the simulation scheme, including the compensator of the jumps larger than JUMP_TRUNCATION_LEVEL.
+	 */
+	static double getMeanReversion(FlowOfTemperedAlphaStableCBIprocess cbiProcess) {
+		double alpha = cbiProcess.getAlpha();
+		double zeta = cbiProcess.getZeta();
+		return cbiProcess.getB() + (cbiProcess.getEta()*alpha*Math.pow(zeta, alpha-1)*Gamma.incompleteGammaComplement(1-alpha, zeta*JUMP_TRUNCATION_LEVEL)) / (Gamma.gamma(1-alpha)*Math.cos(Math.PI*alpha*0.5));
+	}
+	
+	/**
+	 * Runs the task for every block on a ForkJoinPool with the given number of threads.
+	 */
+	static void runInParallel(int numberOfThreads, int numberOfBlocks, IntConsumer task) {
+		ForkJoinPool pool = new ForkJoinPool(numberOfThreads);
+		try {
+			pool.submit(() -> IntStream.range(0, numberOfBlocks).parallel().forEach(task)).get();
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException("The simulation of the paths failed.", e);
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	/**
+	 * Copies the values of a block into the single precision storage of the whole simulation.
+	 */
+	private static void copy(double[] blockValues, float[] floatValues, int firstPath) {
+		for(int path = 0; path < blockValues.length; path++) {
+			floatValues[firstPath + path] = (float)blockValues[path];
+		}
+	}
+	
+	/**
+	 * Converts the values stored in single precision to a random variable.
+	 */
+	private static RandomVariableInterface getRandomVariable(double time, float[] floatValues) {
+		double[] values = new double[floatValues.length];
+		for(int path = 0; path < values.length; path++) {
+			values[path] = floatValues[path];
+		}
+		return new RandomVariable(time, values);
+	}
+	
+	/**
+	 * The simulation scheme of the blocks of paths, along with the constants depending on the parameters of the flow only, computed once per simulation.
+	 * The jumps larger than the truncation level are simulated as a compound Poisson process,
+	 * the number of jumps over a time step and the jumps themselves being drawn by allocation-free samplers from the uniform stream of the block,
+	 * the Gaussian draws being obtained by the ziggurat method from the same stream.
+	 * With quasi random numbers, the Gaussian and Poisson draws of the factor f at the time index k use the dimensions 2(k d + f) and 2(k d + f)+1 of the Sobol point of the path,
+	 * d being the number of factors, so that the first time steps get the best distributed dimensions.
+	 * With antithetic paths, the Gaussian draws of the first path of a pair are kept in order to be used with the opposite sign by the second path,
+	 * which draws its own jumps; since PATH_BLOCK_SIZE is even, the two paths of a pair always belong to the same block.
+	 * The value of the process is the initial value plus the sum of the increments,
+	 * and its integral is accumulated with the value at the left point of every time step, as well as the Gaussian terms of the increments if they are requested.
+	 */
+	private static class PathBlockGenerator {
+		
+		private final int seed;
+		private final int numberOfPaths;
+		private final TimeDiscretizationInterface timeDiscretization;
+		private final FlowOfTemperedAlphaStableCBIprocess cbiProcess;
+		private final boolean isQuasiMonteCarlo;
+		private final boolean isAntithetic;
+		private final boolean isDiffusionMartingaleComputed;
+		private final AtomicLong numberOfJumpCandidates = new AtomicLong();
+		private final AtomicLong numberOfAcceptedJumpCandidates = new AtomicLong();
 		
-		NormalDistribution g = new NormalDistribution(rng.getOneDimMersenneTwister(), 0, 1);
+		private final double epsilon = JUMP_TRUNCATION_LEVEL;
+		private final double alpha;
+		private final double zeta;
+		private final double sigma;
+		/* Intensity of the jumps larger than epsilon per unit of time and per unit of the process. */
+		private final double jumpIntensity;
+		/* Coefficient of x in the drift, including the compensator of the jumps larger than epsilon. */
+		private final double meanReversion;
+		private final double[] timeSteps;
 		
-		double[][][] incrementsValues = new double[getNumberOfComponents()][timeDiscretization.getNumberOfTimeSteps()][numberOfPaths];
+		PathBlockGenerator(int seed, int numberOfPaths, TimeDiscretizationInterface timeDiscretization, FlowOfTemperedAlphaStableCBIprocess cbiProcess, boolean isQuasiMonteCarlo, boolean isAntithetic, boolean isDiffusionMartingaleComputed) throws IllegalArgumentException {
+			if(isAntithetic && numberOfPaths % 2 != 0) {
+				throw new IllegalArgumentException("The number of paths must be even for an antithetic simulation.");
+			}
+			if(isQuasiMonteCarlo && 2*cbiProcess.getDimension()*timeDiscretization.getNumberOfTimeSteps() > SobolSequence.getMaximumDimension()) {
+				throw new IllegalArgumentException("The quasi Monte Carlo simulation requires at most " + SobolSequence.getMaximumDimension() + " Sobol dimensions, that is two per factor and time step.");
+			}
+			this.seed = seed;
+			this.isQuasiMonteCarlo = isQuasiMonteCarlo;
+			this.isAntithetic = isAntithetic;
+			this.isDiffusionMartingaleComputed = isDiffusionMartingaleComputed;
+			this.numberOfPaths = numberOfPaths;
+			this.timeDiscretization = timeDiscretization;
+			this.cbiProcess = cbiProcess;
+			this.alpha = cbiProcess.getAlpha();
+			this.zeta = cbiProcess.getZeta();
+			this.sigma = cbiProcess.getSigma();
+			this.jumpIntensity = getJumpIntensity(cbiProcess);
+			this.meanReversion = getMeanReversion(cbiProcess);
+			this.timeSteps = new double[timeDiscretization.getNumberOfTimeSteps()];
+			for(int timeIndex = 0; timeIndex < timeSteps.length; timeIndex++) {
+				timeSteps[timeIndex] = timeDiscretization.getTimeStep(timeIndex);
+			}
+		}
 		
-		for(int path = 0; path < numberOfPaths; path++) {
+		/**
+		 * Simulates the paths of the given block, using the random number stream of this block.
+		 * @param block The index of the block.
+		 * @return The simulated block of paths, without diffusion martingale parts if they are not computed by this generator.
+		 */
+		MonteCarloCBIPathBlock generate(int block) {
+			org.apache.commons.math3.random.RandomGenerator uniforms = new MultiDimensionalMersenneTwister(new int[] { seed, block }, 2).getOneDimMersenneTwister();
+			TemperedStableJumpRandomNumberGenerator jumps = new TemperedStableJumpRandomNumberGenerator(uniforms, epsilon, zeta, alpha);
+			ZigguratNormalRandomNumberGenerator normals = new ZigguratNormalRandomNumberGenerator(uniforms);
 			
-			for(int factor = 0; factor < getNumberOfComponents(); factor++) {
+			int numberOfTimeSteps = timeSteps.length;
+			int numberOfComponents = cbiProcess.getDimension();
+			int firstPath = block*PATH_BLOCK_SIZE;
+			SobolSequence sobol = null;
+			double[] point = null;
+			if(isQuasiMonteCarlo) {
+				sobol = new SobolSequence(2*numberOfComponents*numberOfTimeSteps, seed);
+				sobol.skipTo(isAntithetic ? firstPath / 2 : firstPath);
+				point = new double[sobol.getDimension()];
+			}
+			double[][] gaussians = isAntithetic ? new double[numberOfComponents][numberOfTimeSteps] : null;
+			int numberOfPathsOfBlock = Math.min(PATH_BLOCK_SIZE, numberOfPaths - firstPath);
+			double[][][] incrementsValues = new double[numberOfComponents][numberOfTimeSteps][numberOfPathsOfBlock];
+			double[][][] processValuesArray = new double[numberOfComponents][numberOfTimeSteps+1][numberOfPathsOfBlock];
+			double[][][] integratedProcessValuesArray = new double[numberOfComponents][numberOfTimeSteps+1][numberOfPathsOfBlock];
+			double[][][] diffusionMartingaleValuesArray = isDiffusionMartingaleComputed ? new double[numberOfComponents][numberOfTimeSteps+1][numberOfPathsOfBlock] : null;
+			
+			for(int path = 0; path < numberOfPathsOfBlock; path++) {
 				
-				double x = cbiProcess.getInitialValues()[factor];
-				double dx = 0;
+				/* Second path of an antithetic pair. */
+				boolean isReflected = isAntithetic && path % 2 == 1;
+				if(isQuasiMonteCarlo && !isReflected) {
+					sobol.getNext(point);
+				}
 				
-				for(int timeIndex = 0; timeIndex < timeDiscretization.getNumberOfTimeSteps(); timeIndex++) {
+				for(int factor = 0; factor < numberOfComponents; factor++) {
 					
-					double dt = timeDiscretization.getTimeStep(timeIndex);
-					PoissonDistribution p = new PoissonDistribution(rng.getOneDimMersenneTwister(), (-dt*x*Math.pow(cbiProcess.getZeta(), cbiProcess.getAlpha())*Gamma.incompleteGammaComplement(-cbiProcess.getAlpha(), cbiProcess.getZeta()*epsilon))/(Math.cos(Math.PI*0.5*cbiProcess.getAlpha())*Gamma.gamma(-cbiProcess.getAlpha())), PoissonDistribution.DEFAULT_EPSILON, PoissonDistribution.DEFAULT_MAX_ITERATIONS);
-				    double sum = 0;
-					for(int i = 0; i < p.sample(); i++) {
-				    	sum = sum + arm.getNext()[0];
-				    }
-					dx = sum + cbiProcess.getSigma()*Math.sqrt(Math.abs(x)*dt)*g.sample() + ((cbiProcess.getImmigrationRates()[factor]-cbiProcess.getB()*x)-((cbiProcess.getEta()*cbiProcess.getAlpha()*x*Math.pow(cbiProcess.getZeta(), cbiProcess.getAlpha()-1)*Gamma.incompleteGammaComplement(1-cbiProcess.getAlpha(), cbiProcess.getZeta()*epsilon)) / (Gamma.gamma(1-cbiProcess.getAlpha())*Math.cos(Math.PI*cbiProcess.getAlpha()*0.5))))*dt;
-					incrementsValues[factor][timeIndex][path] = dx;
-					x = x + dx;
-					x = Math.abs(x);
+					double immigrationRate = cbiProcess.getImmigrationRates()[factor];
+					double x = cbiProcess.getInitialValues()[factor];
+					double dx = 0;
+					double value = x;
+					double integratedValue = 0;
+					double diffusionMartingale = 0;
+					processValuesArray[factor][0][path] = value;
+					
+					for(int timeIndex = 0; timeIndex < numberOfTimeSteps; timeIndex++) {
+						
+						double dt = timeSteps[timeIndex];
+						/* The jump sizes are drawn before the Gaussian, which keeps the order of the draws of the pseudo random simulation. */
+						double jumpSum;
+						double gaussian;
+						if(isQuasiMonteCarlo) {
+							int dimension = 2*(timeIndex*numberOfComponents + factor);
+							double uniformOfCount = isReflected ? 1.0 - point[dimension+1] : point[dimension+1];
+							double uniformOfGaussian = isReflected ? 1.0 - point[dimension] : point[dimension];
+							jumpSum = jumps.nextSum(PoissonDistribution.inverseCumulativeDistribution(jumpIntensity*x*dt, uniformOfCount));
+							gaussian = net.finmath.functions.NormalDistribution.inverseCumulativeDistribution(uniformOfGaussian);
+						} else {
+							jumpSum = jumps.nextSum(PoissonDistribution.sample(jumpIntensity*x*dt, uniforms));
+							if(isReflected) {
+								gaussian = -gaussians[factor][timeIndex];
+							} else {
+								gaussian = normals.nextGaussian();
+								if(isAntithetic) {
+									gaussians[factor][timeIndex] = gaussian;
+								}
+							}
+						}
+						double diffusion = sigma*Math.sqrt(Math.abs(x)*dt)*gaussian;
+						dx = jumpSum + diffusion + (immigrationRate - meanReversion*x)*dt;
+						integratedValue = integratedValue + value*dt;
+						diffusionMartingale = diffusionMartingale + diffusion;
+						value = value + dx;
+						incrementsValues[factor][timeIndex][path] = dx;
+						processValuesArray[factor][timeIndex+1][path] = value;
+						integratedProcessValuesArray[factor][timeIndex+1][path] = integratedValue;
+						if(diffusionMartingaleValuesArray != null) {
+							diffusionMartingaleValuesArray[factor][timeIndex+1][path] = diffusionMartingale;
+						}
+						x = x + dx;
+						x = Math.abs(x);
+						
+					}
 					
 				}
 				
 			}
 			
+			numberOfJumpCandidates.addAndGet(jumps.getNumberOfCandidates());
+			numberOfAcceptedJumpCandidates.addAndGet(jumps.getNumberOfAcceptedCandidates());
+			
+			return new MonteCarloCBIPathBlock(block, firstPath, timeDiscretization, incrementsValues, processValuesArray, integratedProcessValuesArray, diffusionMartingaleValuesArray);
 		}
 		
-		for(int factor = 0; factor < getNumberOfComponents(); factor++) {
-			for(int timeIndex = 0; timeIndex < timeDiscretization.getNumberOfTimeSteps(); timeIndex++) {
-				increments[factor][timeIndex] = new RandomVariable(timeDiscretization.getTime(timeIndex+1), incrementsValues[factor][timeIndex]);
-			}
-		}
-			
 	}
 	
 }
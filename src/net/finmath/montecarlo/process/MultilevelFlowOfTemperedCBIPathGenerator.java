@@ -0,0 +1,162 @@
+package net.finmath.montecarlo.process;
+
+import net.finmath.functions.PoissonDistribution;
+import net.finmath.randomnumbers.MultiDimensionalMersenneTwister;
+import net.finmath.randomnumbers.TemperedStableJumpRandomNumberGenerator;
+import net.finmath.randomnumbers.ZigguratNormalRandomNumberGenerator;
+import net.finmath.stochastic.FlowOfTemperedAlphaStableCBIprocess;
+import net.finmath.time.TimeDiscretization;
+import net.finmath.time.TimeDiscretizationInterface;
+
+/**
+ * This class generates the coupled paths of the levels of a multilevel Monte Carlo simulation of a flow of tempered alpha-stable CBI processes,
+ * with the same simulation scheme as MonteCarloFlowOfTemperedCBIProcess.
+ * The level l uses the uniform time discretization of [0, timeHorizon] with coarsestNumberOfTimeSteps 2^l time steps,
+ * and every path of the level l &gt; 0 is simulated on this time discretization (fine path) and on the one of the level l-1 (coarse path) with the same random drivers:
+ * the Gaussian increment of a coarse time step is the sum of the ones of its two fine time steps,
+ * and the jumps larger than the truncation level are the points of a common compound Poisson process with the intensity of the larger of the two states,
+ * thinned independently of the jump sizes so that each path keeps the points at the rate of its own state (the coarse state being frozen over a coarse time step).
+ * Hence the differences between fine and coarse payoffs have a small variance, which decreases with the level.
+ * The paths are generated by blocks of MonteCarloFlowOfTemperedCBIProcess.PATH_BLOCK_SIZE paths, every block of every level having its own random number stream,
+ * and only the values of the processes and of their integrals at the time horizon are returned.
+ *
+ * @author Szulda Guillaume
+ */
+public class MultilevelFlowOfTemperedCBIPathGenerator {
+
+	private final FlowOfTemperedAlphaStableCBIprocess cbiProcess;
+	private final double timeHorizon;
+	private final int coarsestNumberOfTimeSteps;
+	private final int seed;
+
+	private final double epsilon = MonteCarloFlowOfTemperedCBIProcess.JUMP_TRUNCATION_LEVEL;
+	private final double jumpIntensity;
+	private final double meanReversion;
+
+	/**
+	 * Creates the generator of the coupled paths of the flow cbiProcess over [0, timeHorizon].
+	 * @param cbiProcess
+	 * @param timeHorizon The time at which the values of the processes are returned.
+	 * @param coarsestNumberOfTimeSteps The number of time steps of the level 0.
+	 * @param seed
+	 * @throws IllegalArgumentException
+	 */
+	public MultilevelFlowOfTemperedCBIPathGenerator(FlowOfTemperedAlphaStableCBIprocess cbiProcess, double timeHorizon, int coarsestNumberOfTimeSteps, int seed) throws IllegalArgumentException {
+		if(timeHorizon <= 0 || coarsestNumberOfTimeSteps < 1) {
+			throw new IllegalArgumentException("The time horizon and the number of time steps of the coarsest level must be positive.");
+		}
+		this.cbiProcess = cbiProcess;
+		this.timeHorizon = timeHorizon;
+		this.coarsestNumberOfTimeSteps = coarsestNumberOfTimeSteps;
+		this.seed = seed;
+		this.jumpIntensity = MonteCarloFlowOfTemperedCBIProcess.getJumpIntensity(cbiProcess);
+		this.meanReversion = MonteCarloFlowOfTemperedCBIProcess.getMeanReversion(cbiProcess);
+	}
+
+	public FlowOfTemperedAlphaStableCBIprocess getCBIProcess() {
+		return this.cbiProcess;
+	}
+
+	public double getTimeHorizon() {
+		return this.timeHorizon;
+	}
+
+	public int getNumberOfTimeSteps(int level) {
+		return this.coarsestNumberOfTimeSteps << level;
+	}
+
+	/**
+	 * Returns the time discretization of the fine paths of the given level.
+	 * @param level
+	 * @return The time discretization of the level.
+	 */
+	public TimeDiscretizationInterface getTimeDiscretization(int level) {
+		return new TimeDiscretization(0.0, getNumberOfTimeSteps(level), this.timeHorizon / getNumberOfTimeSteps(level));
+	}
+
+	/**
+	 * Simulates the paths of the given block of the given level and writes the values of the processes and of their integrals at the time horizon,
+	 * the first index of the arrays standing for the factor and the second one for the path inside the block.
+	 * @param level The level, the coarse paths being simulated for positive levels only.
+	 * @param block The index of the block, which determines its random number stream.
+	 * @param numberOfPaths The number of paths of the block, at most MonteCarloFlowOfTemperedCBIProcess.PATH_BLOCK_SIZE.
+	 * @param fineProcessValues
+	 * @param fineIntegratedProcessValues
+	 * @param coarseProcessValues Not used (and may be null) at the level 0.
+	 * @param coarseIntegratedProcessValues Not used (and may be null) at the level 0.
+	 */
+	public void generate(int level, int block, int numberOfPaths, double[][] fineProcessValues, double[][] fineIntegratedProcessValues, double[][] coarseProcessValues, double[][] coarseIntegratedProcessValues) {
+		org.apache.commons.math3.random.RandomGenerator uniforms = new MultiDimensionalMersenneTwister(new int[] { seed, level, block }, 2).getOneDimMersenneTwister();
+		TemperedStableJumpRandomNumberGenerator jumps = new TemperedStableJumpRandomNumberGenerator(uniforms, epsilon, cbiProcess.getZeta(), cbiProcess.getAlpha());
+		ZigguratNormalRandomNumberGenerator normals = new ZigguratNormalRandomNumberGenerator(uniforms);
+
+		boolean isCoupled = level > 0;
+		int numberOfCoarseTimeSteps = isCoupled ? getNumberOfTimeSteps(level - 1) : getNumberOfTimeSteps(0);
+		int numberOfSubSteps = isCoupled ? 2 : 1;
+		double fineTimeStep = this.timeHorizon / getNumberOfTimeSteps(level);
+		double coarseTimeStep = fineTimeStep * numberOfSubSteps;
+		double sqrtOfFineTimeStep = Math.sqrt(fineTimeStep);
+		double sigma = cbiProcess.getSigma();
+
+		for(int path = 0; path < numberOfPaths; path++) {
+			for(int factor = 0; factor < cbiProcess.getDimension(); factor++) {
+
+				double immigrationRate = cbiProcess.getImmigrationRates()[factor];
+				double fineX = cbiProcess.getInitialValues()[factor];
+				double fineValue = fineX;
+				double fineIntegratedValue = 0;
+				double coarseX = fineX;
+				double coarseValue = fineX;
+				double coarseIntegratedValue = 0;
+
+				for(int coarseTimeIndex = 0; coarseTimeIndex < numberOfCoarseTimeSteps; coarseTimeIndex++) {
+
+					double coarseJumpSum = 0;
+					double coarseBrownianIncrement = 0;
+
+					for(int subStep = 0; subStep < numberOfSubSteps; subStep++) {
+						/* Common jumps at the largest intensity, thinned by the uniform mark of every jump. */
+						double dominatingX = isCoupled ? Math.max(fineX, coarseX) : fineX;
+						int numberOfJumps = PoissonDistribution.sample(jumpIntensity*dominatingX*fineTimeStep, uniforms);
+						double fineJumpSum = 0;
+						for(int jump = 0; jump < numberOfJumps; jump++) {
+							double size = jumps.nextDouble();
+							if(!isCoupled) {
+								fineJumpSum += size;
+								continue;
+							}
+							double mark = uniforms.nextDouble() * dominatingX;
+							if(mark < fineX) {
+								fineJumpSum += size;
+							}
+							if(mark < coarseX) {
+								coarseJumpSum += size;
+							}
+						}
+						double gaussian = normals.nextGaussian();
+						double dx = fineJumpSum + sigma*Math.sqrt(fineX*fineTimeStep)*gaussian + (immigrationRate - meanReversion*fineX)*fineTimeStep;
+						fineIntegratedValue = fineIntegratedValue + fineValue*fineTimeStep;
+						fineValue = fineValue + dx;
+						fineX = Math.abs(fineX + dx);
+						coarseBrownianIncrement += sqrtOfFineTimeStep*gaussian;
+					}
+
+					if(isCoupled) {
+						double dx = coarseJumpSum + sigma*Math.sqrt(coarseX)*coarseBrownianIncrement + (immigrationRate - meanReversion*coarseX)*coarseTimeStep;
+						coarseIntegratedValue = coarseIntegratedValue + coarseValue*coarseTimeStep;
+						coarseValue = coarseValue + dx;
+						coarseX = Math.abs(coarseX + dx);
+					}
+				}
+
+				fineProcessValues[factor][path] = fineValue;
+				fineIntegratedProcessValues[factor][path] = fineIntegratedValue;
+				if(isCoupled) {
+					coarseProcessValues[factor][path] = coarseValue;
+					coarseIntegratedProcessValues[factor][path] = coarseIntegratedValue;
+				}
+			}
+		}
+	}
+
+}
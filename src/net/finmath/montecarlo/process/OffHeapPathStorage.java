@@ -0,0 +1,262 @@
+package net.finmath.montecarlo.process;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The storage of the increments and of the values of a simulation of a flow of CBI processes outside of the Java heap,
+ * used by MonteCarloFlowOfTemperedCBIProcess in off-heap storage mode.
+ * Every quantity (increments, process values and integrated process values) is stored as one slice of numberOfPaths doubles
+ * per factor and time index, either in a direct ByteBuffer or in a region of a memory-mapped file, such that a slice never exceeds the 2 GB limit of a buffer.
+ * A storage file starts with a header of HEADER_SIZE bytes (the features of the simulation and a hash of the parameters of the flow and of the time discretization),
+ * followed by the slices ordered by quantity, factor and time index, in little endian byte order. The file is mapped in segments of about SEGMENT_SIZE bytes,
+ * each holding a whole number of consecutive slices, the slices being views at offsets inside the segments. Once written and forced to the disk, it can be reopened read-only, e.g. to reprice without simulating the paths again.
+ * The slices are written by disjoint ranges of paths from several threads, every write using its own view of the slice.
+ * @author Szulda Guillaume
+ */
+final class OffHeapPathStorage {
+
+	static final int INCREMENTS = 0;
+	static final int PROCESS_VALUES = 1;
+	static final int INTEGRATED_PROCESS_VALUES = 2;
+	private static final int NUMBER_OF_QUANTITIES = 3;
+
+	private static final long MAGIC_NUMBER = 0x4342495041544853L;	// "CBIPATHS"
+	private static final int VERSION = 3;
+	private static final int HEADER_SIZE = 64;
+	private static final int QUASI_MONTE_CARLO_FLAG = 1;
+	private static final int ANTITHETIC_FLAG = 2;
+	private static final long SEGMENT_SIZE = 1L << 30;
+
+	private final int seed;
+	private final int numberOfPaths;
+	private final int dimension;
+	private final int numberOfTimeSteps;
+	private final boolean isQuasiMonteCarlo;
+	private final boolean isAntithetic;
+	private final double timeHorizon;
+	private final long parameterHash;
+	private final Path file;
+	private final ByteBuffer header;
+	private final DoubleBuffer[][][] slices;
+	private final List<MappedByteBuffer> mappedBuffers = new ArrayList<>();
+	private long numberOfJumpCandidates;
+	private long numberOfAcceptedJumpCandidates;
+
+	private OffHeapPathStorage(int seed, int numberOfPaths, int dimension, int numberOfTimeSteps, boolean isQuasiMonteCarlo, boolean isAntithetic, double timeHorizon, long parameterHash, Path file, ByteBuffer header) {
+		if(numberOfPaths < 1 || (long)numberOfPaths * Double.BYTES > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("The number of paths must be positive and a slice of the storage cannot exceed 2 GB.");
+		}
+		this.seed = seed;
+		this.numberOfPaths = numberOfPaths;
+		this.dimension = dimension;
+		this.numberOfTimeSteps = numberOfTimeSteps;
+		this.isQuasiMonteCarlo = isQuasiMonteCarlo;
+		this.isAntithetic = isAntithetic;
+		this.timeHorizon = timeHorizon;
+		this.parameterHash = parameterHash;
+		this.file = file;
+		this.header = header;
+		this.slices = new DoubleBuffer[NUMBER_OF_QUANTITIES][dimension][];
+		for(int quantity = 0; quantity < NUMBER_OF_QUANTITIES; quantity++) {
+			for(int factor = 0; factor < dimension; factor++) {
+				slices[quantity][factor] = new DoubleBuffer[getNumberOfSlices(quantity)];
+			}
+		}
+	}
+
+	/**
+	 * Allocates the storage in direct buffers, released along with the storage by the garbage collector.
+	 */
+	static OffHeapPathStorage allocateDirect(int seed, int numberOfPaths, int dimension, int numberOfTimeSteps, boolean isQuasiMonteCarlo, boolean isAntithetic, double timeHorizon, long parameterHash) {
+		OffHeapPathStorage storage = new OffHeapPathStorage(seed, numberOfPaths, dimension, numberOfTimeSteps, isQuasiMonteCarlo, isAntithetic, timeHorizon, parameterHash, null, null);
+		for(int quantity = 0; quantity < NUMBER_OF_QUANTITIES; quantity++) {
+			for(int factor = 0; factor < dimension; factor++) {
+				for(int timeIndex = 0; timeIndex < storage.getNumberOfSlices(quantity); timeIndex++) {
+					storage.slices[quantity][factor][timeIndex] = ByteBuffer.allocateDirect(numberOfPaths * Double.BYTES).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+				}
+			}
+		}
+		return storage;
+	}
+
+	/**
+	 * Creates (or overwrites) the storage file and maps it for writing. The header is complete once finish has been called.
+	 */
+	static OffHeapPathStorage create(Path file, int seed, int numberOfPaths, int dimension, int numberOfTimeSteps, boolean isQuasiMonteCarlo, boolean isAntithetic, double timeHorizon, long parameterHash) throws IOException {
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			ByteBuffer header = channel.map(MapMode.READ_WRITE, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			OffHeapPathStorage storage = new OffHeapPathStorage(seed, numberOfPaths, dimension, numberOfTimeSteps, isQuasiMonteCarlo, isAntithetic, timeHorizon, parameterHash, file, header);
+			storage.map(channel, MapMode.READ_WRITE);
+			storage.writeHeader();
+			return storage;
+		}
+	}
+
+	/**
+	 * Maps an existing storage file read-only.
+	 */
+	static OffHeapPathStorage open(Path file) throws IOException {
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if(channel.size() < HEADER_SIZE) {
+				throw new IOException("The file " + file + " is not a storage of a simulation of CBI processes.");
+			}
+			ByteBuffer header = channel.map(MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			if(header.getLong(0) != MAGIC_NUMBER || header.getInt(8) != VERSION) {
+				throw new IOException("The file " + file + " is not a storage of a simulation of CBI processes (version " + VERSION + ").");
+			}
+			int flags = header.getInt(28);
+			OffHeapPathStorage storage = new OffHeapPathStorage(header.getInt(24), header.getInt(20), header.getInt(12), header.getInt(16),
+					(flags & QUASI_MONTE_CARLO_FLAG) != 0, (flags & ANTITHETIC_FLAG) != 0, header.getDouble(32), header.getLong(56), file, header);
+			storage.numberOfJumpCandidates = header.getLong(40);
+			storage.numberOfAcceptedJumpCandidates = header.getLong(48);
+			if(channel.size() != storage.getFileSize()) {
+				throw new IOException("The file " + file + " is incomplete.");
+			}
+			storage.map(channel, MapMode.READ_ONLY);
+			return storage;
+		}
+	}
+
+	/**
+	 * Maps the slices in segments of at most SEGMENT_SIZE bytes (or of one slice if a slice is larger), each slice being a view of its segment.
+	 */
+	private void map(FileChannel channel, MapMode mode) throws IOException {
+		int sliceSize = numberOfPaths * Double.BYTES;
+		int numberOfSlicesPerSegment = (int)Math.max(SEGMENT_SIZE / sliceSize, 1);
+		long position = HEADER_SIZE;
+		long numberOfRemainingSlices = (getFileSize() - HEADER_SIZE) / sliceSize;
+		MappedByteBuffer segment = null;
+		int indexInSegment = numberOfSlicesPerSegment;
+		for(int quantity = 0; quantity < NUMBER_OF_QUANTITIES; quantity++) {
+			for(int factor = 0; factor < dimension; factor++) {
+				for(int timeIndex = 0; timeIndex < getNumberOfSlices(quantity); timeIndex++) {
+					if(indexInSegment == numberOfSlicesPerSegment) {
+						int numberOfSlicesInSegment = (int)Math.min(numberOfSlicesPerSegment, numberOfRemainingSlices);
+						segment = channel.map(mode, position, (long)numberOfSlicesInSegment * sliceSize);
+						mappedBuffers.add(segment);
+						position += (long)numberOfSlicesInSegment * sliceSize;
+						numberOfRemainingSlices -= numberOfSlicesInSegment;
+						indexInSegment = 0;
+					}
+					ByteBuffer slice = segment.duplicate();
+					slice.position(indexInSegment * sliceSize);
+					slice.limit((indexInSegment + 1) * sliceSize);
+					slices[quantity][factor][timeIndex] = slice.slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+					indexInSegment++;
+				}
+			}
+		}
+	}
+
+	private void writeHeader() {
+		header.putLong(0, MAGIC_NUMBER);
+		header.putInt(8, VERSION);
+		header.putInt(12, dimension);
+		header.putInt(16, numberOfTimeSteps);
+		header.putInt(20, numberOfPaths);
+		header.putInt(24, seed);
+		header.putInt(28, (isQuasiMonteCarlo ? QUASI_MONTE_CARLO_FLAG : 0) | (isAntithetic ? ANTITHETIC_FLAG : 0));
+		header.putDouble(32, timeHorizon);
+		header.putLong(40, numberOfJumpCandidates);
+		header.putLong(48, numberOfAcceptedJumpCandidates);
+		header.putLong(56, parameterHash);
+	}
+
+	private int getNumberOfSlices(int quantity) {
+		return quantity == INCREMENTS ? numberOfTimeSteps : numberOfTimeSteps + 1;
+	}
+
+	private long getFileSize() {
+		long numberOfSlices = 0;
+		for(int quantity = 0; quantity < NUMBER_OF_QUANTITIES; quantity++) {
+			numberOfSlices += (long)dimension * getNumberOfSlices(quantity);
+		}
+		return HEADER_SIZE + numberOfSlices * numberOfPaths * Double.BYTES;
+	}
+
+	/**
+	 * Copies the values of a block of paths, starting at the path firstPath, into the slice of the quantity.
+	 */
+	void put(int quantity, int factor, int timeIndex, int firstPath, double[] values) {
+		DoubleBuffer slice = slices[quantity][factor][timeIndex].duplicate();
+		slice.position(firstPath);
+		slice.put(values);
+	}
+
+	/**
+	 * Returns the slice of the quantity, holding the values of all the paths.
+	 */
+	DoubleBuffer get(int quantity, int factor, int timeIndex) {
+		return slices[quantity][factor][timeIndex].duplicate();
+	}
+
+	/**
+	 * Completes the storage once all the paths have been written: the statistics of the jump sampler are written to the header
+	 * and a storage file is forced to the disk.
+	 */
+	void finish(long numberOfJumpCandidates, long numberOfAcceptedJumpCandidates) {
+		this.numberOfJumpCandidates = numberOfJumpCandidates;
+		this.numberOfAcceptedJumpCandidates = numberOfAcceptedJumpCandidates;
+		if(file != null) {
+			writeHeader();
+			for(MappedByteBuffer buffer : mappedBuffers) {
+				buffer.force();
+			}
+			((MappedByteBuffer)header).force();
+		}
+	}
+
+	Path getFile() {
+		return file;
+	}
+
+	int getSeed() {
+		return seed;
+	}
+
+	int getNumberOfPaths() {
+		return numberOfPaths;
+	}
+
+	int getDimension() {
+		return dimension;
+	}
+
+	int getNumberOfTimeSteps() {
+		return numberOfTimeSteps;
+	}
+
+	boolean isQuasiMonteCarlo() {
+		return isQuasiMonteCarlo;
+	}
+
+	boolean isAntithetic() {
+		return isAntithetic;
+	}
+
+	double getTimeHorizon() {
+		return timeHorizon;
+	}
+
+	long getParameterHash() {
+		return parameterHash;
+	}
+
+	long getNumberOfJumpCandidates() {
+		return numberOfJumpCandidates;
+	}
+
+	long getNumberOfAcceptedJumpCandidates() {
+		return numberOfAcceptedJumpCandidates;
+	}
+}
@@ -0,0 +1,189 @@
+package net.finmath.montecarlo.products;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import net.finmath.montecarlo.models.*;
+import net.finmath.montecarlo.process.MonteCarloCBIProcessInterface;
+import net.finmath.stochastic.*;
+
+/**
+ * This class represents a book of caplets in a multi-curve setting, each of them having its own strike, maturity and tenor,
+ * which is priced by a single Monte-Carlo simulation of a multiple yield curve model driven by a CBI process.
+ *
+ * The caplets are grouped by the time index of their maturity, and, inside a group, by their maturity and tenor (legs).
+ * For every path, the quantities depending on the state of the CBI process are computed only once:
+ * the numeraire once per group, the spread and the zero coupon bond once per leg, the payoffs of all the strikes of a leg being then deduced from them.
+ * The prices are returned along with their Monte Carlo standard errors.
+ *
+ * @author Szulda Guillaume
+ */
+public class MonteCarloMultiCurveCapletPortfolioPricer {
+
+	private final double[] strikes;
+	private final double[] maturities;
+	private final String[] tenorNames;
+
+	/**
+	 * Creates the book of caplets, the p-th caplet having the strike strikes[p], the maturity maturities[p] and the tenor tenorNames[p].
+	 * @param strikes
+	 * @param maturities
+	 * @param tenorNames
+	 * @throws IllegalArgumentException
+	 */
+	public MonteCarloMultiCurveCapletPortfolioPricer(double[] strikes, double[] maturities, String[] tenorNames) throws IllegalArgumentException {
+		if(strikes.length != maturities.length || strikes.length != tenorNames.length) {
+			throw new IllegalArgumentException("There must be as many strikes as maturities and tenors.");
+		} else {
+			this.strikes = strikes;
+			this.maturities = maturities;
+			this.tenorNames = tenorNames;
+		}
+	}
+
+	public int getNumberOfCaplets() {
+		return this.strikes.length;
+	}
+
+	/**
+	 * This method provides the Monte Carlo prices of the caplets of the book.
+	 * @param model
+	 * @return The prices of the caplets, in the order of the book.
+	 */
+	public double[] getPrices(MonteCarloCBIDrivenMultiCurveModel model) {
+		return (double[])getValues(model).get("value");
+	}
+
+	/**
+	 * This method provides the Monte Carlo prices of the caplets of the book along with their standard errors,
+	 * stored in a key-value map under the keys "value" and "error" (both arrays in the order of the book).
+	 * @param model
+	 * @return The prices and the standard errors of the caplets.
+	 * @throws IllegalArgumentException
+	 */
+	public Map<String, Object> getValues(MonteCarloCBIDrivenMultiCurveModel model) throws IllegalArgumentException {
+
+		MonteCarloCBIProcessInterface mcCBIProcess = model.getMonteCarloCBIProcess();
+		CBIProcessInterface cbiProcess = mcCBIProcess.getCBIProcess();
+		int dimension = model.getDimension();
+		int numberOfPaths = mcCBIProcess.getNumberOfPaths();
+		int numberOfCaplets = this.strikes.length;
+
+		/* Grouping of the caplets by time index, then by leg (maturity and tenor). */
+		TreeMap<Integer, Map<String, List<Integer>>> groups = new TreeMap<>();
+		for(int p = 0; p < numberOfCaplets; p++) {
+			int timeIndex = model.getTimeIndex(this.maturities[p]);
+			String leg = this.maturities[p] + "/" + getTenorIndex(this.tenorNames[p]);
+			groups.computeIfAbsent(timeIndex, k -> new HashMap<>()).computeIfAbsent(leg, k -> new ArrayList<>()).add(p);
+		}
+
+		double[] means = new double[numberOfCaplets];
+		double[] sumsOfSquares = new double[numberOfCaplets];
+		RandomVariableInterface initialWeights = model.getMonteCarloWeights(0);
+		double initialNumeraire = Math.exp(model.getIntegralOfFunctionL(0, 0));
+
+		for(Map.Entry<Integer, Map<String, List<Integer>>> group : groups.entrySet()) {
+
+			int timeIndex = group.getKey();
+
+			RandomVariableInterface[] processValues = new RandomVariableInterface[dimension];
+			RandomVariableInterface[] integratedProcessValues = new RandomVariableInterface[dimension];
+			for(int i = 0; i < dimension; i++) {
+				processValues[i] = mcCBIProcess.getCBIProcessValue(timeIndex, i);
+				integratedProcessValues[i] = mcCBIProcess.getIntegratedCBIProcessValue(timeIndex, i);
+			}
+
+			/* Deterministic quantities of every leg of the group. */
+			int numberOfLegs = group.getValue().size();
+			int[] legTenors = new int[numberOfLegs];
+			double[] legTenorLengths = new double[numberOfLegs];
+			double[] spreadShifts = new double[numberOfLegs];
+			double[] bondShifts = new double[numberOfLegs];
+			double[] numeraireShifts = new double[numberOfLegs];
+			double[][] legBondCoefficients = new double[numberOfLegs][dimension];
+			RandomVariableInterface[] weights = new RandomVariableInterface[numberOfLegs];
+			int[][] legCaplets = new int[numberOfLegs][];
+
+			int leg = 0;
+			for(List<Integer> caplets : group.getValue().values()) {
+				int first = caplets.get(0);
+				double maturity = this.maturities[first];
+				legTenors[leg] = getTenorIndex(this.tenorNames[first]);
+				legTenorLengths[leg] = model.getTenorLength(legTenors[leg]);
+				spreadShifts[leg] = model.getFunctionC(maturity, legTenors[leg]);
+				bondShifts[leg] = model.getIntegralOfFunctionL(maturity, maturity + legTenorLengths[leg]);
+				numeraireShifts[leg] = model.getIntegralOfFunctionL(0, maturity);
+				for(int i = 0; i < dimension; i++) {
+					legBondCoefficients[leg][i] = cbiProcess.getFunctionsVZero()[i].getValue(legTenorLengths[leg]);
+					bondShifts[leg] += cbiProcess.getImmigrationRates()[i]*cbiProcess.getFunctionsVZero()[i].getIntegral(0, legTenorLengths[leg]);
+				}
+				weights[leg] = model.getMonteCarloWeights(maturity);
+				legCaplets[leg] = new int[caplets.size()];
+				for(int c = 0; c < caplets.size(); c++) {
+					legCaplets[leg][c] = caplets.get(c);
+				}
+				leg++;
+			}
+
+			double[] partialSums = new double[dimension];
+
+			for(int path = 0; path < numberOfPaths; path++) {
+
+				/* State dependent quantities shared by the whole group. */
+				double sum = 0;
+				double numeraireExponent = 0;
+				for(int i = 0; i < dimension; i++) {
+					sum += processValues[i].get(path);
+					partialSums[i] = sum;
+					numeraireExponent += cbiProcess.getLambda()[i]*integratedProcessValues[i].get(path);
+				}
+				double inverseNumeraire = Math.exp(-numeraireExponent) * initialNumeraire / initialWeights.get(path);
+
+				for(leg = 0; leg < numberOfLegs; leg++) {
+
+					/* Quantities shared by all the strikes of the leg. */
+					double bondExponent = -bondShifts[leg];
+					for(int i = 0; i < dimension; i++) {
+						bondExponent -= processValues[i].get(path)*legBondCoefficients[leg][i];
+					}
+					double spread = Math.exp(partialSums[legTenors[leg]] + spreadShifts[leg]);
+					double bond = Math.exp(bondExponent);
+					double discount = Math.exp(-numeraireShifts[leg]) * inverseNumeraire * weights[leg].get(path);
+
+					for(int p : legCaplets[leg]) {
+						double discountedPayoff = Math.max(spread - bond*(1 + this.strikes[p]*legTenorLengths[leg]), 0.0) * discount;
+						/* Welford's update of the mean and of the sum of squared deviations. */
+						double delta = discountedPayoff - means[p];
+						means[p] += delta / (path + 1);
+						sumsOfSquares[p] += delta * (discountedPayoff - means[p]);
+					}
+				}
+			}
+		}
+
+		double[] errors = new double[numberOfCaplets];
+		for(int p = 0; p < numberOfCaplets; p++) {
+			errors[p] = Math.sqrt(sumsOfSquares[p] / numberOfPaths) / Math.sqrt(numberOfPaths);
+		}
+
+		Map<String, Object> results = new HashMap<>();
+		results.put("value", means);
+		results.put("error", errors);
+
+		return results;
+	}
+
+	private static int getTenorIndex(String tenorName) {
+		if(tenorName.equals("forward-EUR-3M")) {
+			return 0;
+		}else if(tenorName.equals("forward-EUR-6M")){
+			return 1;
+		}else {
+			throw new IllegalArgumentException("The curve is not available");
+		}
+	}
+
+}
@@ -1,11 +1,28 @@
 package net.finmath.montecarlo.products;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.LUDecomposition;
+import org.apache.commons.math3.linear.SingularMatrixException;
+
+import net.finmath.montecarlo.RandomVariable;
 import net.finmath.montecarlo.models.*;
+import net.finmath.montecarlo.process.MonteCarloCBIProcessInterface;
+import net.finmath.montecarlo.process.MonteCarloFlowOfTemperedCBIProcess;
 import net.finmath.stochastic.*;
 
 /**
  * This class represents a caplet (interest rate derivative) in a multi-curve setting, 
  * which has to be priced by a Monte-Carlo simulation of a multiple yield curve model.
+ * When the model is a MonteCarloCBIDrivenMultiCurveModel, the discounted payoff is evaluated by a fused kernel
+ * reading the stored values of the CBI process path by path, without any intermediate random variable,
+ * and a whole strip of caplets can be valued in a single pass over the paths.
+ * The price may also be computed with variance reduction, by control variates with known expectation
+ * and by averaging the antithetic pairs of paths of the simulation if there are some.
  * 
  * @author Szulda Guillaume
  */
@@ -50,8 +67,217 @@ public class MonteCarloMultiCurveCapletPricer extends AbstractMonteCarloProduct
 	 * @return Random value of the price of the caplet at evaluationTime
 	 */
 	public RandomVariableInterface getValue(MonteCarloCBIDrivenMultiCurveInterface model) {
+		if(model instanceof MonteCarloCBIDrivenMultiCurveModel) {
+			double[][] discountedPayoffs = getDiscountedPayoffs((MonteCarloCBIDrivenMultiCurveModel)model, new double[] { strike }, new double[] { maturity }, tenorName);
+			return new RandomVariable(maturity, discountedPayoffs[0]);
+		}
 		RandomVariableInterface payoff = (((model.getSpreadValue(maturity, tenorName)).sub((model.getZCBond(maturity, maturity+model.getTenorLength(tenorName))).mult(1+strike*model.getTenorLength(tenorName)))).floor(0)).div(model.getNumeraire(maturity));
 		return ((payoff.mult(model.getMonteCarloWeights(maturity))).div(model.getMonteCarloWeights(0))).mult(model.getNumeraire(0));
 	}
-
+	
+	/**
+	 * This method provides the Monte Carlo price of the caplet computed with variance reduction, along with its standard error,
+	 * stored in a key-value map under the keys "value", "error", "varianceReductionFactor" and "controlVariateCoefficients".
+	 * The control variates are the diffusion martingale parts of the factors at the maturity (see MonteCarloFlowOfTemperedCBIProcess.getDiffusionMartingaleValue),
+	 * whose expectations are exactly zero for the simulation scheme, so that the controls do not bias the price.
+	 * Their coefficients are estimated by least squares on the simulated paths.
+	 * If the CBI process is simulated by antithetic pairs of paths, the samples are the averages of the two paths of every pair.
+	 * The variance reduction factor is the ratio of the variance of the plain Monte Carlo estimator with the same number of paths
+	 * to the variance of this estimator, that is the factor by which the number of paths of the plain estimator would have to be multiplied
+	 * to reach the same standard error.
+	 * 
+	 * @param model
+	 * @return The price, its standard error, the variance reduction factor and the coefficients of the control variates.
+	 * @throws IllegalArgumentException
+	 */
+	public Map<String, Object> getValuesWithVarianceReduction(MonteCarloCBIDrivenMultiCurveModel model) throws IllegalArgumentException {
+		
+		if(!(model.getMonteCarloCBIProcess() instanceof MonteCarloFlowOfTemperedCBIProcess)) {
+			throw new IllegalArgumentException("The variance reduction requires a CBI process simulated by " + MonteCarloFlowOfTemperedCBIProcess.class + ".");
+		}
+		MonteCarloFlowOfTemperedCBIProcess mcCBIProcess = (MonteCarloFlowOfTemperedCBIProcess)model.getMonteCarloCBIProcess();
+		
+		int numberOfControls = model.getDimension();
+		int timeIndex = model.getTimeIndex(maturity);
+		RandomVariableInterface[] controls = new RandomVariableInterface[numberOfControls];
+		for(int c = 0; c < numberOfControls; c++) {
+			controls[c] = mcCBIProcess.getDiffusionMartingaleValue(timeIndex, c);
+		}
+		double[] discountedPayoffs = getDiscountedPayoffs(model, new double[] { strike }, new double[] { maturity }, tenorName)[0];
+		
+		int numberOfPaths = discountedPayoffs.length;
+		int pathsPerSample = mcCBIProcess.isAntithetic() ? 2 : 1;
+		int numberOfSamples = numberOfPaths / pathsPerSample;
+		
+		double meanOfPayoff = 0.0;
+		double[] meansOfControls = new double[numberOfControls];
+		for(int path = 0; path < numberOfPaths; path++) {
+			meanOfPayoff += discountedPayoffs[path];
+			for(int c = 0; c < numberOfControls; c++) {
+				meansOfControls[c] += controls[c].get(path);
+			}
+		}
+		meanOfPayoff /= numberOfPaths;
+		for(int c = 0; c < numberOfControls; c++) {
+			meansOfControls[c] /= numberOfPaths;
+		}
+		
+		/* Variance of the payoff per path, and variance and covariances of the samples. */
+		double varianceOfPayoff = 0.0;
+		double varianceOfSamples = 0.0;
+		double[] covariancesWithControls = new double[numberOfControls];
+		double[][] covariancesOfControls = new double[numberOfControls][numberOfControls];
+		double[] sampleControls = new double[numberOfControls];
+		for(int sample = 0; sample < numberOfSamples; sample++) {
+			double samplePayoff = 0.0;
+			Arrays.fill(sampleControls, 0.0);
+			for(int path = sample*pathsPerSample; path < (sample+1)*pathsPerSample; path++) {
+				double deviation = discountedPayoffs[path] - meanOfPayoff;
+				varianceOfPayoff += deviation*deviation;
+				samplePayoff += deviation / pathsPerSample;
+				for(int c = 0; c < numberOfControls; c++) {
+					sampleControls[c] += (controls[c].get(path) - meansOfControls[c]) / pathsPerSample;
+				}
+			}
+			varianceOfSamples += samplePayoff*samplePayoff;
+			for(int c = 0; c < numberOfControls; c++) {
+				covariancesWithControls[c] += samplePayoff*sampleControls[c];
+				for(int d = 0; d < numberOfControls; d++) {
+					covariancesOfControls[c][d] += sampleControls[c]*sampleControls[d];
+				}
+			}
+		}
+		varianceOfPayoff /= numberOfPaths;
+		
+		/* Least squares coefficients of the controls (no control if they are degenerate, e.g. without diffusion). */
+		double[] coefficients;
+		try {
+			coefficients = new LUDecomposition(new Array2DRowRealMatrix(covariancesOfControls, false)).getSolver().solve(new ArrayRealVector(covariancesWithControls, false)).toArray();
+		} catch(SingularMatrixException e) {
+			coefficients = new double[numberOfControls];
+		}
+		
+		/* The controls have zero expectation. */
+		double value = meanOfPayoff;
+		double residualVariance = varianceOfSamples;
+		for(int c = 0; c < numberOfControls; c++) {
+			value -= coefficients[c]*meansOfControls[c];
+			residualVariance -= coefficients[c]*covariancesWithControls[c];
+		}
+		double variance = Math.max(residualVariance, 0.0) / numberOfSamples / numberOfSamples;
+		double plainVariance = varianceOfPayoff / numberOfPaths;
+		
+		Map<String, Object> results = new HashMap<>();
+		results.put("value", value);
+		results.put("error", Math.sqrt(variance));
+		results.put("varianceReductionFactor", variance > 0 ? plainVariance / variance : Double.POSITIVE_INFINITY);
+		results.put("controlVariateCoefficients", coefficients);
+		return results;
+	}
+	
+	/**
+	 * This method provides the Monte Carlo prices of a strip of caplets on the tenor tenorName, 
+	 * the p-th caplet having the strike strikes[p] and the maturity maturities[p], computed in a single pass over the paths.
+	 * 
+	 * @param model
+	 * @param strikes
+	 * @param maturities
+	 * @param tenorName
+	 * @return The prices of the caplets, in the order of the strikes and maturities.
+	 */
+	public static double[] getPrices(MonteCarloCBIDrivenMultiCurveModel model, double[] strikes, double[] maturities, String tenorName) {
+		double[][] discountedPayoffs = getDiscountedPayoffs(model, strikes, maturities, tenorName);
+		double[] prices = new double[discountedPayoffs.length];
+		for(int p = 0; p < prices.length; p++) {
+			prices[p] = new RandomVariable(maturities[p], discountedPayoffs[p]).getAverage();
+		}
+		return prices;
+	}
+	
+	/**
+	 * This method provides the discounted payoffs of a strip of caplets on the tenor tenorName path by path,
+	 * that is (S(T) - P(T,T+delta)(1+K delta))^+ / N(T), weighted and multiplied by N(0) as in getValue,
+	 * S, P and N standing for the spread, the zero coupon bond and the numeraire.
+	 * All the caplets are evaluated in one loop over the paths, reading the stored values and integrals of the CBI process.
+	 * 
+	 * @param model
+	 * @param strikes
+	 * @param maturities
+	 * @param tenorName
+	 * @return The discounted payoffs, the first index standing for the caplet and the second one for the path.
+	 * @throws IllegalArgumentException
+	 */
+	public static double[][] getDiscountedPayoffs(MonteCarloCBIDrivenMultiCurveModel model, double[] strikes, double[] maturities, String tenorName) throws IllegalArgumentException {
+		
+		int tenor;
+		
+		if(tenorName.equals("forward-EUR-3M")) {
+			tenor = 0;
+		}else if(tenorName.equals("forward-EUR-6M")){
+			tenor = 1;
+		}else {
+			throw new IllegalArgumentException("The curve is not available");
+		}
+		
+		if(strikes.length != maturities.length) {
+			throw new IllegalArgumentException("There must be as many strikes as maturities.");
+		}
+		
+		MonteCarloCBIProcessInterface mcCBIProcess = model.getMonteCarloCBIProcess();
+		CBIProcessInterface cbiProcess = mcCBIProcess.getCBIProcess();
+		int dimension = model.getDimension();
+		int numberOfCaplets = maturities.length;
+		int numberOfPaths = mcCBIProcess.getNumberOfPaths();
+		double tenorLength = model.getTenorLength(tenor);
+		
+		/* Deterministic quantities of every caplet and the random variables it depends on. */
+		double[] spreadShifts = new double[numberOfCaplets];
+		double[] bondShifts = new double[numberOfCaplets];
+		double[] numeraireShifts = new double[numberOfCaplets];
+		double[] bondCoefficients = new double[dimension];
+		RandomVariableInterface[][] processValues = new RandomVariableInterface[numberOfCaplets][dimension];
+		RandomVariableInterface[][] integratedProcessValues = new RandomVariableInterface[numberOfCaplets][dimension];
+		RandomVariableInterface[] weights = new RandomVariableInterface[numberOfCaplets];
+		RandomVariableInterface initialWeights = model.getMonteCarloWeights(0);
+		double initialNumeraire = Math.exp(model.getIntegralOfFunctionL(0, 0));
+		
+		for(int i = 0; i < dimension; i++) {
+			bondCoefficients[i] = cbiProcess.getFunctionsVZero()[i].getValue(tenorLength);
+		}
+		for(int p = 0; p < numberOfCaplets; p++) {
+			int timeIndex = model.getTimeIndex(maturities[p]);
+			spreadShifts[p] = model.getFunctionC(maturities[p], tenor);
+			bondShifts[p] = model.getIntegralOfFunctionL(maturities[p], maturities[p] + tenorLength);
+			numeraireShifts[p] = model.getIntegralOfFunctionL(0, maturities[p]);
+			for(int i = 0; i < dimension; i++) {
+				bondShifts[p] += cbiProcess.getImmigrationRates()[i]*cbiProcess.getFunctionsVZero()[i].getIntegral(0, tenorLength);
+				processValues[p][i] = mcCBIProcess.getCBIProcessValue(timeIndex, i);
+				integratedProcessValues[p][i] = mcCBIProcess.getIntegratedCBIProcessValue(timeIndex, i);
+			}
+			weights[p] = model.getMonteCarloWeights(maturities[p]);
+		}
+		
+		double[][] discountedPayoffs = new double[numberOfCaplets][numberOfPaths];
+		
+		for(int path = 0; path < numberOfPaths; path++) {
+			for(int p = 0; p < numberOfCaplets; p++) {
+				double spreadExponent = spreadShifts[p];
+				double bondExponent = -bondShifts[p];
+				double numeraireExponent = numeraireShifts[p];
+				for(int i = 0; i < dimension; i++) {
+					double x = processValues[p][i].get(path);
+					if(i <= tenor) {
+						spreadExponent += x;
+					}
+					bondExponent -= x*bondCoefficients[i];
+					numeraireExponent += cbiProcess.getLambda()[i]*integratedProcessValues[p][i].get(path);
+				}
+				double payoff = Math.exp(spreadExponent) - Math.exp(bondExponent)*(1 + strikes[p]*tenorLength);
+				discountedPayoffs[p][path] = Math.max(payoff, 0.0) / Math.exp(numeraireExponent) * weights[p].get(path) / initialWeights.get(path) * initialNumeraire;
+			}
+		}
+		
+		return discountedPayoffs;
+	}
+	
 }
@@ -0,0 +1,231 @@
+package net.finmath.montecarlo.products;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import net.finmath.fouriermethod.calibration.models.CBIDrivenMultiCurveModel;
+import net.finmath.montecarlo.QuantileSketch;
+import net.finmath.montecarlo.process.MonteCarloCBIPathBlock;
+import net.finmath.montecarlo.process.MonteCarloCBIPathBlockAccumulator;
+import net.finmath.stochastic.CBIProcessInterface;
+import net.finmath.time.TimeDiscretizationInterface;
+
+/**
+ * This class accumulates the discounted payoffs of a strip of caplets on one tenor over the blocks of paths of a streamed Monte Carlo simulation
+ * (MonteCarloFlowOfTemperedCBIProcess.simulatePathBlocks), so that the caplets are priced without storing the whole simulation.
+ * The deterministic functions fitting the model to the initial curves are taken from a CBIDrivenMultiCurveModel built on the simulated CBI process,
+ * the payoffs being the same as the ones of MonteCarloMultiCurveCapletPricer for the Monte Carlo model with the same seed and number of paths.
+ * The sums of the payoffs are stored by block and added in the order of the blocks, hence the prices do not depend on the number of threads.
+ * The standard errors are obtained from the means and sums of squared deviations of the blocks (Welford's update within a block),
+ * combined in the order of the blocks by the formula of Chan, Golub and LeVeque, avoiding the cancellation of the sum of squares minus the squared mean.
+ * Optionally, the distributions of the discounted payoffs are recorded by QuantileSketch, one per block and caplet, merged in the order of the blocks.
+ *
+ * @author Szulda Guillaume
+ */
+public class MonteCarloMultiCurveCapletStripAccumulator implements MonteCarloCBIPathBlockAccumulator {
+
+	private final CBIDrivenMultiCurveModel model;
+	private final double[] strikes;
+	private final double[] maturities;
+	private final int tenor;
+	private final boolean isPayoffDistributionRecorded;
+
+	/* Sums and compensations of the Kahan summation, means and sums of squared deviations of the payoffs, by block and caplet. */
+	private double[][] sums;
+	private double[][] errorsOfSums;
+	private double[][] means;
+	private double[][] sumsOfSquaredDeviations;
+	private int[] numberOfPaths;
+	private QuantileSketch[][] payoffDistributions;
+
+	/**
+	 * Creates the accumulator of the strip of caplets on the tenor tenorName, the p-th caplet having the strike strikes[p] and the maturity maturities[p].
+	 * @param model The model providing the deterministic functions of the multi-curve model.
+	 * @param strikes
+	 * @param maturities
+	 * @param tenorName
+	 * @throws IllegalArgumentException
+	 */
+	public MonteCarloMultiCurveCapletStripAccumulator(CBIDrivenMultiCurveModel model, double[] strikes, double[] maturities, String tenorName) throws IllegalArgumentException {
+		this(model, strikes, maturities, tenorName, false);
+	}
+
+	/**
+	 * Creates the accumulator of the strip of caplets on the tenor tenorName, the p-th caplet having the strike strikes[p] and the maturity maturities[p].
+	 * @param model The model providing the deterministic functions of the multi-curve model.
+	 * @param strikes
+	 * @param maturities
+	 * @param tenorName
+	 * @param isPayoffDistributionRecorded If true, the distributions of the discounted payoffs are recorded, see getPayoffDistribution.
+	 * @throws IllegalArgumentException
+	 */
+	public MonteCarloMultiCurveCapletStripAccumulator(CBIDrivenMultiCurveModel model, double[] strikes, double[] maturities, String tenorName, boolean isPayoffDistributionRecorded) throws IllegalArgumentException {
+		if(strikes.length != maturities.length) {
+			throw new IllegalArgumentException("There must be as many strikes as maturities.");
+		}
+		if(tenorName.equals("forward-EUR-3M")) {
+			this.tenor = 0;
+		}else if(tenorName.equals("forward-EUR-6M")){
+			this.tenor = 1;
+		}else {
+			throw new IllegalArgumentException("The curve is not available");
+		}
+		this.model = model;
+		this.strikes = strikes;
+		this.maturities = maturities;
+		this.isPayoffDistributionRecorded = isPayoffDistributionRecorded;
+	}
+
+	@Override
+	public void initialize(int numberOfBlocks) {
+		this.sums = new double[numberOfBlocks][this.strikes.length];
+		this.errorsOfSums = new double[numberOfBlocks][this.strikes.length];
+		this.means = new double[numberOfBlocks][this.strikes.length];
+		this.sumsOfSquaredDeviations = new double[numberOfBlocks][this.strikes.length];
+		this.numberOfPaths = new int[numberOfBlocks];
+		this.payoffDistributions = this.isPayoffDistributionRecorded ? new QuantileSketch[numberOfBlocks][this.strikes.length] : null;
+	}
+
+	@Override
+	public void accumulate(MonteCarloCBIPathBlock block) {
+
+		CBIProcessInterface cbiProcess = this.model.getCBIProcess();
+		TimeDiscretizationInterface timeDiscretization = block.getTimeDiscretization();
+		int dimension = block.getNumberOfComponents();
+		double tenorLength = this.model.getTenorLength(this.tenor);
+		double initialNumeraire = Math.exp(this.model.getIntegralOfFunctionL(0, 0));
+		int b = block.getBlockIndex();
+
+		double[] bondCoefficients = new double[dimension];
+		for(int i = 0; i < dimension; i++) {
+			bondCoefficients[i] = cbiProcess.getFunctionsVZero()[i].getValue(tenorLength);
+		}
+
+		for(int p = 0; p < this.strikes.length; p++) {
+			int timeIndex = timeDiscretization.getTimeIndex(this.maturities[p]);
+			if(timeIndex < 0) {
+				timeIndex = timeDiscretization.getTimeIndexNearestLessOrEqual(this.maturities[p]);
+			}
+			double spreadShift = this.model.getFunctionC(this.maturities[p], this.tenor);
+			double bondShift = this.model.getIntegralOfFunctionL(this.maturities[p], this.maturities[p] + tenorLength);
+			double numeraireShift = this.model.getIntegralOfFunctionL(0, this.maturities[p]);
+			for(int i = 0; i < dimension; i++) {
+				bondShift += cbiProcess.getImmigrationRates()[i]*cbiProcess.getFunctionsVZero()[i].getIntegral(0, tenorLength);
+			}
+
+			double sum = 0.0;
+			double errorOfSum = 0.0;
+			double mean = 0.0;
+			double sumOfSquaredDeviations = 0.0;
+			QuantileSketch payoffDistribution = this.isPayoffDistributionRecorded ? new QuantileSketch() : null;
+			for(int path = 0; path < block.getNumberOfPaths(); path++) {
+				double spreadExponent = spreadShift;
+				double bondExponent = -bondShift;
+				double numeraireExponent = numeraireShift;
+				for(int i = 0; i < dimension; i++) {
+					double x = block.getProcessValues(timeIndex, i)[path];
+					if(i <= this.tenor) {
+						spreadExponent += x;
+					}
+					bondExponent -= x*bondCoefficients[i];
+					numeraireExponent += cbiProcess.getLambda()[i]*block.getIntegratedProcessValues(timeIndex, i)[path];
+				}
+				double payoff = Math.exp(spreadExponent) - Math.exp(bondExponent)*(1 + this.strikes[p]*tenorLength);
+				double discountedPayoff = Math.max(payoff, 0.0) / Math.exp(numeraireExponent) * initialNumeraire;
+
+				/* Kahan summation, as in RandomVariable.getAverage. */
+				double value = discountedPayoff - errorOfSum;
+				double newSum = sum + value;
+				errorOfSum = (newSum - sum) - value;
+				sum = newSum;
+				/* Welford's update of the mean and of the sum of squared deviations, as in MonteCarloMultiCurveCapletPortfolioPricer. */
+				double delta = discountedPayoff - mean;
+				mean += delta / (path + 1);
+				sumOfSquaredDeviations += delta * (discountedPayoff - mean);
+				if(payoffDistribution != null) {
+					payoffDistribution.add(discountedPayoff);
+				}
+			}
+			this.sums[b][p] = sum;
+			this.errorsOfSums[b][p] = errorOfSum;
+			this.means[b][p] = mean;
+			this.sumsOfSquaredDeviations[b][p] = sumOfSquaredDeviations;
+			if(payoffDistribution != null) {
+				payoffDistribution.compress();
+				this.payoffDistributions[b][p] = payoffDistribution;
+			}
+		}
+		this.numberOfPaths[b] = block.getNumberOfPaths();
+	}
+
+	/**
+	 * Returns the Monte Carlo prices of the caplets, once all the blocks have been accumulated.
+	 * @return The prices of the caplets, in the order of the strikes and maturities.
+	 */
+	public double[] getPrices() {
+		return (double[])getValues().get("value");
+	}
+
+	/**
+	 * Returns the Monte Carlo prices of the caplets along with their standard errors, once all the blocks have been accumulated,
+	 * stored in a key-value map under the keys "value" and "error".
+	 * @return The prices and the standard errors of the caplets.
+	 */
+	public Map<String, Object> getValues() {
+		int totalNumberOfPaths = 0;
+		for(int b = 0; b < this.numberOfPaths.length; b++) {
+			totalNumberOfPaths += this.numberOfPaths[b];
+		}
+		double[] values = new double[this.strikes.length];
+		double[] errors = new double[this.strikes.length];
+		for(int p = 0; p < this.strikes.length; p++) {
+			double sum = 0.0;
+			double errorOfSum = 0.0;
+			double mean = 0.0;
+			double sumOfSquaredDeviations = 0.0;
+			int numberOfPathsCombined = 0;
+			for(int b = 0; b < this.sums.length; b++) {
+				double value = this.sums[b][p] - (errorOfSum + this.errorsOfSums[b][p]);
+				double newSum = sum + value;
+				errorOfSum = (newSum - sum) - value;
+				sum = newSum;
+
+				/* Pairwise combination of the mean and of the sum of squared deviations (Chan, Golub and LeVeque). */
+				int numberOfPathsOfBlock = this.numberOfPaths[b];
+				if(numberOfPathsOfBlock == 0) {
+					continue;
+				}
+				int numberOfPathsTotal = numberOfPathsCombined + numberOfPathsOfBlock;
+				double delta = this.means[b][p] - mean;
+				mean += delta * numberOfPathsOfBlock / numberOfPathsTotal;
+				sumOfSquaredDeviations += this.sumsOfSquaredDeviations[b][p] + delta * delta * ((double)numberOfPathsCombined * numberOfPathsOfBlock / numberOfPathsTotal);
+				numberOfPathsCombined = numberOfPathsTotal;
+			}
+			values[p] = sum / totalNumberOfPaths;
+			errors[p] = Math.sqrt(sumOfSquaredDeviations / totalNumberOfPaths) / Math.sqrt(totalNumberOfPaths);
+		}
+
+		Map<String, Object> results = new HashMap<>();
+		results.put("value", values);
+		results.put("error", errors);
+		return results;
+	}
+
+	/**
+	 * Returns the distribution of the discounted payoff of a caplet over all paths, once all the blocks have been accumulated,
+	 * e.g. to report its quantiles or expected shortfall. Requires the accumulator to be created with isPayoffDistributionRecorded.
+	 * @param capletIndex The index of the caplet in the strikes and maturities.
+	 * @return The distribution of the discounted payoff.
+	 */
+	public QuantileSketch getPayoffDistribution(int capletIndex) {
+		if(this.payoffDistributions == null) {
+			throw new IllegalStateException("The payoff distributions have not been recorded.");
+		}
+		QuantileSketch payoffDistribution = new QuantileSketch();
+		for(int b = 0; b < this.payoffDistributions.length; b++) {
+			payoffDistribution.merge(this.payoffDistributions[b][capletIndex]);
+		}
+		return payoffDistribution;
+	}
+
+}
@@ -0,0 +1,307 @@
+package net.finmath.montecarlo.products;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import net.finmath.fouriermethod.calibration.models.CBIDrivenMultiCurveModel;
+import net.finmath.montecarlo.process.MonteCarloFlowOfTemperedCBIProcess;
+import net.finmath.montecarlo.process.MultilevelFlowOfTemperedCBIPathGenerator;
+import net.finmath.stochastic.CBIProcessInterface;
+import net.finmath.stochastic.FlowOfTemperedAlphaStableCBIprocess;
+
+/**
+ * This class represents a caplet in a multi-curve setting priced by a multilevel Monte Carlo simulation (M. B. Giles, 2008)
+ * of the multiple yield curve model driven by a flow of tempered alpha-stable CBI processes.
+ *
+ * The price is the sum over the levels l = 0, ..., L of the expectations of the differences between the discounted payoffs of the coupled fine and coarse paths
+ * (MultilevelFlowOfTemperedCBIPathGenerator), the level l having coarsestNumberOfTimeSteps 2^l time steps up to the maturity.
+ * Starting with three levels, the numbers of paths of the levels are chosen from the sample variances V_l and the costs C_l (proportional to the numbers of time steps)
+ * so that the statistical error is below targetRootMeanSquareError / sqrt(2), namely N_l proportional to sqrt(V_l / C_l),
+ * and a level is added as long as the bias, estimated from the means of the differences of the last two levels with a weak order one, is larger than targetRootMeanSquareError / sqrt(2).
+ * The paths are simulated by blocks of MonteCarloFlowOfTemperedCBIProcess.PATH_BLOCK_SIZE paths in parallel. Every block provides the means and the sums of squared deviations
+ * of its differences and fine payoffs (Welford's update), combined in the order of the blocks by the formula of Chan, Golub and LeVeque, as in MonteCarloMultiCurveCapletStripAccumulator,
+ * hence the results only depend on the seed and the variances do not suffer from the cancellation of the sum of squares minus the squared mean.
+ * The deterministic functions fitting the model to the initial curves are taken from the CBIDrivenMultiCurveModel, as in MonteCarloMultiCurveCapletStripAccumulator.
+ *
+ * @author Szulda Guillaume
+ */
+public class MultilevelMonteCarloMultiCurveCapletPricer {
+
+	private static final int NUMBER_OF_INITIAL_LEVELS = 3;
+
+	private final double strike;
+	private final double maturity;
+	private final String tenorName;
+	private final int coarsestNumberOfTimeSteps;
+	private final int maximumLevel;
+
+	/**
+	 * Creates the caplet of the given strike and maturity on the tenor tenorName, priced with the levels 0, ..., maximumLevel at most.
+	 * @param strike
+	 * @param maturity
+	 * @param tenorName
+	 * @param coarsestNumberOfTimeSteps The number of time steps of the level 0 up to the maturity.
+	 * @param maximumLevel The largest level which may be used.
+	 * @throws IllegalArgumentException
+	 */
+	public MultilevelMonteCarloMultiCurveCapletPricer(double strike, double maturity, String tenorName, int coarsestNumberOfTimeSteps, int maximumLevel) throws IllegalArgumentException {
+		if(coarsestNumberOfTimeSteps < 1 || maximumLevel < NUMBER_OF_INITIAL_LEVELS - 1) {
+			throw new IllegalArgumentException("The number of time steps of the coarsest level must be positive and the maximum level at least " + (NUMBER_OF_INITIAL_LEVELS - 1) + ".");
+		}
+		this.strike = strike;
+		this.maturity = maturity;
+		this.tenorName = tenorName;
+		this.coarsestNumberOfTimeSteps = coarsestNumberOfTimeSteps;
+		this.maximumLevel = maximumLevel;
+	}
+
+	/**
+	 * This method provides the multilevel Monte Carlo price of the caplet for the given target root mean square error, stored in a key-value map with the keys
+	 * "value", "error" (statistical standard error), "bias" (estimated discretization bias), "numberOfLevels", "numberOfPaths" (int[], paths per level),
+	 * "cost" (number of simulated time steps, per factor) and "singleLevelCost" (estimated cost of a standard Monte Carlo simulation on the finest level reaching the same error).
+	 * @param model The model providing the CBI process and the deterministic functions of the multi-curve model.
+	 * @param targetRootMeanSquareError
+	 * @param seed
+	 * @param numberOfThreads
+	 * @return The price and the diagnostics of the multilevel estimator.
+	 * @throws IllegalArgumentException
+	 */
+	public Map<String, Object> getValues(CBIDrivenMultiCurveModel model, double targetRootMeanSquareError, int seed, int numberOfThreads) throws IllegalArgumentException {
+
+		int tenor;
+
+		if(this.tenorName.equals("forward-EUR-3M")) {
+			tenor = 0;
+		}else if(this.tenorName.equals("forward-EUR-6M")){
+			tenor = 1;
+		}else {
+			throw new IllegalArgumentException("The curve is not available");
+		}
+
+		if(!(model.getCBIProcess() instanceof FlowOfTemperedAlphaStableCBIprocess)) {
+			throw new IllegalArgumentException("The multilevel simulation requires a flow of tempered alpha-stable CBI processes.");
+		}
+		if(targetRootMeanSquareError <= 0 || numberOfThreads < 1) {
+			throw new IllegalArgumentException("The target error and the number of threads must be positive.");
+		}
+
+		MultilevelFlowOfTemperedCBIPathGenerator generator = new MultilevelFlowOfTemperedCBIPathGenerator((FlowOfTemperedAlphaStableCBIprocess)model.getCBIProcess(), this.maturity, this.coarsestNumberOfTimeSteps, seed);
+		DiscountedPayoff payoff = new DiscountedPayoff(model, tenor);
+
+		/* Number of paths, means and sums of squared deviations of the differences and of the fine payoffs, by level and block. */
+		List<List<double[]>> blockMoments = new ArrayList<>();
+		double[] means = new double[this.maximumLevel + 1];
+		double[] variances = new double[this.maximumLevel + 1];
+		double[] variancesOfPayoffs = new double[this.maximumLevel + 1];
+		int[] numberOfBlocks = new int[this.maximumLevel + 1];
+		int[] additionalBlocks = new int[this.maximumLevel + 1];
+		double variancePart = targetRootMeanSquareError*targetRootMeanSquareError / 2.0;
+		double bias = Double.NaN;
+
+		int numberOfLevels = NUMBER_OF_INITIAL_LEVELS;
+		for(int level = 0; level < numberOfLevels; level++) {
+			blockMoments.add(new ArrayList<>());
+			additionalBlocks[level] = 1;
+		}
+
+		while(true) {
+			for(int level = 0; level < numberOfLevels; level++) {
+				if(additionalBlocks[level] > 0) {
+					simulateBlocks(generator, payoff, level, numberOfBlocks[level], additionalBlocks[level], blockMoments.get(level), numberOfThreads);
+					numberOfBlocks[level] += additionalBlocks[level];
+					additionalBlocks[level] = 0;
+
+					double[] moments = combineBlocks(blockMoments.get(level));
+					means[level] = moments[1];
+					variances[level] = moments[2] / moments[0];
+					variancesOfPayoffs[level] = moments[4] / moments[0];
+				}
+			}
+
+			/* Optimal numbers of paths for the statistical error. */
+			double sumOfSqrtOfVarianceTimesCost = 0.0;
+			for(int level = 0; level < numberOfLevels; level++) {
+				sumOfSqrtOfVarianceTimesCost += Math.sqrt(variances[level] * getCost(level));
+			}
+			boolean isConverged = true;
+			for(int level = 0; level < numberOfLevels; level++) {
+				double optimalNumberOfPaths = Math.sqrt(variances[level] / getCost(level)) * sumOfSqrtOfVarianceTimesCost / variancePart;
+				int optimalNumberOfBlocks = (int)Math.ceil(optimalNumberOfPaths / MonteCarloFlowOfTemperedCBIProcess.PATH_BLOCK_SIZE);
+				additionalBlocks[level] = Math.max(optimalNumberOfBlocks - numberOfBlocks[level], 0);
+				if(additionalBlocks[level] > 0) {
+					isConverged = false;
+				}
+			}
+			if(!isConverged) {
+				continue;
+			}
+
+			/* Bias of the finest level, for a weak order one: the mean of the differences of the next level would be about half of the last one. */
+			int lastLevel = numberOfLevels - 1;
+			bias = Math.max(Math.abs(means[lastLevel]), 0.5 * Math.abs(means[lastLevel - 1]));
+			if(bias <= targetRootMeanSquareError / Math.sqrt(2.0) || numberOfLevels > this.maximumLevel) {
+				break;
+			}
+			blockMoments.add(new ArrayList<>());
+			additionalBlocks[numberOfLevels] = 1;
+			numberOfLevels++;
+		}
+
+		double value = 0.0;
+		double varianceOfValue = 0.0;
+		double cost = 0.0;
+		int[] numberOfPaths = new int[numberOfLevels];
+		for(int level = 0; level < numberOfLevels; level++) {
+			numberOfPaths[level] = numberOfBlocks[level] * MonteCarloFlowOfTemperedCBIProcess.PATH_BLOCK_SIZE;
+			value += means[level];
+			varianceOfValue += variances[level] / numberOfPaths[level];
+			cost += numberOfPaths[level] * getCost(level);
+		}
+		int finestLevel = numberOfLevels - 1;
+		double singleLevelCost = variancesOfPayoffs[finestLevel] / variancePart * generator.getNumberOfTimeSteps(finestLevel);
+
+		Map<String, Object> results = new HashMap<>();
+		results.put("value", value);
+		results.put("error", Math.sqrt(varianceOfValue));
+		results.put("bias", bias);
+		results.put("numberOfLevels", numberOfLevels);
+		results.put("numberOfPaths", numberOfPaths);
+		results.put("cost", cost);
+		results.put("singleLevelCost", singleLevelCost);
+		return results;
+	}
+
+	/**
+	 * Returns the cost of a path of the level, that is the number of fine and coarse time steps.
+	 */
+	private double getCost(int level) {
+		double numberOfTimeSteps = this.coarsestNumberOfTimeSteps << level;
+		return level > 0 ? 1.5 * numberOfTimeSteps : numberOfTimeSteps;
+	}
+
+	/**
+	 * Combines the moments of the blocks in their order by the pairwise formula of Chan, Golub and LeVeque.
+	 * @return The number of paths, the mean and the sum of squared deviations of the differences, the mean and the sum of squared deviations of the fine payoffs.
+	 */
+	private static double[] combineBlocks(List<double[]> blockMoments) {
+		double[] moments = new double[5];
+		for(double[] blockMoment : blockMoments) {
+			double numberOfPathsCombined = moments[0];
+			double numberOfPathsOfBlock = blockMoment[0];
+			double numberOfPathsTotal = numberOfPathsCombined + numberOfPathsOfBlock;
+			for(int k = 1; k < 5; k += 2) {
+				double delta = blockMoment[k] - moments[k];
+				moments[k] += delta * numberOfPathsOfBlock / numberOfPathsTotal;
+				moments[k + 1] += blockMoment[k + 1] + delta * delta * (numberOfPathsCombined * numberOfPathsOfBlock / numberOfPathsTotal);
+			}
+			moments[0] = numberOfPathsTotal;
+		}
+		return moments;
+	}
+
+	/**
+	 * Simulates the blocks firstBlock, ..., firstBlock+numberOfBlocks-1 of the level in parallel and appends their moments, in the order of the blocks:
+	 * the number of paths, the mean and the sum of squared deviations of the differences, the mean and the sum of squared deviations of the fine payoffs.
+	 */
+	private static void simulateBlocks(MultilevelFlowOfTemperedCBIPathGenerator generator, DiscountedPayoff payoff, int level, int firstBlock, int numberOfBlocks, List<double[]> blockMoments, int numberOfThreads) {
+		int dimension = generator.getCBIProcess().getDimension();
+		int blockSize = MonteCarloFlowOfTemperedCBIProcess.PATH_BLOCK_SIZE;
+		double[][] moments = new double[numberOfBlocks][];
+		ForkJoinPool pool = new ForkJoinPool(numberOfThreads);
+		try {
+			pool.submit(() -> IntStream.range(0, numberOfBlocks).parallel().forEach(b -> {
+				double[][] fineValues = new double[dimension][blockSize];
+				double[][] fineIntegratedValues = new double[dimension][blockSize];
+				double[][] coarseValues = new double[dimension][blockSize];
+				double[][] coarseIntegratedValues = new double[dimension][blockSize];
+				generator.generate(level, firstBlock + b, blockSize, fineValues, fineIntegratedValues, coarseValues, coarseIntegratedValues);
+				double[] x = new double[dimension];
+				double[] integratedX = new double[dimension];
+				double meanOfDifferences = 0.0;
+				double sumOfSquaredDeviationsOfDifferences = 0.0;
+				double meanOfPayoffs = 0.0;
+				double sumOfSquaredDeviationsOfPayoffs = 0.0;
+				for(int path = 0; path < blockSize; path++) {
+					for(int i = 0; i < dimension; i++) {
+						x[i] = fineValues[i][path];
+						integratedX[i] = fineIntegratedValues[i][path];
+					}
+					double finePayoff = payoff.getValue(x, integratedX);
+					double difference = finePayoff;
+					if(level > 0) {
+						for(int i = 0; i < dimension; i++) {
+							x[i] = coarseValues[i][path];
+							integratedX[i] = coarseIntegratedValues[i][path];
+						}
+						difference -= payoff.getValue(x, integratedX);
+					}
+					/* Welford's update of the means and of the sums of squared deviations. */
+					double delta = difference - meanOfDifferences;
+					meanOfDifferences += delta / (path + 1);
+					sumOfSquaredDeviationsOfDifferences += delta * (difference - meanOfDifferences);
+					delta = finePayoff - meanOfPayoffs;
+					meanOfPayoffs += delta / (path + 1);
+					sumOfSquaredDeviationsOfPayoffs += delta * (finePayoff - meanOfPayoffs);
+				}
+				moments[b] = new double[] { blockSize, meanOfDifferences, sumOfSquaredDeviationsOfDifferences, meanOfPayoffs, sumOfSquaredDeviationsOfPayoffs };
+			})).get();
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException("The simulation of the paths failed.", e);
+		} finally {
+			pool.shutdown();
+		}
+		for(double[] blockMoment : moments) {
+			blockMoments.add(blockMoment);
+		}
+	}
+
+	/**
+	 * The discounted payoff of the caplet as a function of the values of the factors and of their integrals at the maturity.
+	 */
+	private class DiscountedPayoff {
+
+		private final CBIProcessInterface cbiProcess;
+		private final int tenor;
+		private final double tenorLength;
+		private final double spreadShift;
+		private final double bondShift;
+		private final double numeraireShift;
+		private final double[] bondCoefficients;
+
+		DiscountedPayoff(CBIDrivenMultiCurveModel model, int tenor) {
+			this.cbiProcess = model.getCBIProcess();
+			this.tenor = tenor;
+			this.tenorLength = model.getTenorLength(tenor);
+			this.spreadShift = model.getFunctionC(maturity, tenor);
+			this.numeraireShift = model.getIntegralOfFunctionL(0, maturity) - model.getIntegralOfFunctionL(0, 0);
+			double shift = model.getIntegralOfFunctionL(maturity, maturity + tenorLength);
+			this.bondCoefficients = new double[cbiProcess.getDimension()];
+			for(int i = 0; i < cbiProcess.getDimension(); i++) {
+				this.bondCoefficients[i] = cbiProcess.getFunctionsVZero()[i].getValue(tenorLength);
+				shift += cbiProcess.getImmigrationRates()[i]*cbiProcess.getFunctionsVZero()[i].getIntegral(0, tenorLength);
+			}
+			this.bondShift = shift;
+		}
+
+		double getValue(double[] x, double[] integratedX) {
+			double spreadExponent = spreadShift;
+			double bondExponent = -bondShift;
+			double numeraireExponent = numeraireShift;
+			for(int i = 0; i < x.length; i++) {
+				if(i <= tenor) {
+					spreadExponent += x[i];
+				}
+				bondExponent -= x[i]*bondCoefficients[i];
+				numeraireExponent += cbiProcess.getLambda()[i]*integratedX[i];
+			}
+			double payoff = Math.exp(spreadExponent) - Math.exp(bondExponent)*(1 + strike*tenorLength);
+			return Math.max(payoff, 0.0) / Math.exp(numeraireExponent);
+		}
+	}
+
+}
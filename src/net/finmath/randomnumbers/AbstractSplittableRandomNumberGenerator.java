@@ -0,0 +1,71 @@
+package net.finmath.randomnumbers;
+
+import org.apache.commons.math3.random.BitsStreamGenerator;
+
+/**
+ * Base class of the splittable generators, which are also commons-math <code>RandomGenerator</code> objects,
+ * so that they may replace the Mersenne Twister wherever a uniform stream is consumed (e.g. by <code>TemperedStableJumpRandomNumberGenerator</code>).
+ * All the numbers are derived from nextLong(): nextDouble() from its 53 upper bits and the other methods of <code>BitsStreamGenerator</code> from its upper bits.
+ *
+ * @author Szulda Guillaume
+ */
+public abstract class AbstractSplittableRandomNumberGenerator extends BitsStreamGenerator implements SplittableRandomNumberGenerator {
+
+	private static final long serialVersionUID = 4096837524170286133L;
+
+	@Override
+	public abstract long nextLong();
+
+	@Override
+	protected int next(int bits) {
+		return (int)(nextLong() >>> (64 - bits));
+	}
+
+	@Override
+	public double nextDouble() {
+		return ((nextLong() >>> 11) + 0.5) * 0x1.0p-53;
+	}
+
+	@Override
+	public void nextDoubles(double[] target, int offset, int length) {
+		if(offset < 0 || length < 0 || offset > target.length - length) {
+			throw new IllegalArgumentException("The range of the target must lie inside the array.");
+		}
+		for(int i = offset; i < offset + length; i++) {
+			target[i] = ((nextLong() >>> 11) + 0.5) * 0x1.0p-53;
+		}
+	}
+
+	@Override
+	public void setSeed(int seed) {
+		setSeed((long)seed);
+	}
+
+	@Override
+	public void setSeed(int[] seed) {
+		long combinedSeed = 0;
+		for(int i = 0; i < seed.length; i++) {
+			combinedSeed = mix(combinedSeed + seed[i]);
+		}
+		setSeed(combinedSeed);
+	}
+
+	/**
+	 * The SplitMix64 mixing function (the finalizer of MurmurHash3 with the constants of D. Stafford), used to derive the states from the seeds.
+	 *
+	 * @param value The value to mix.
+	 * @return The mixed value.
+	 */
+	static long mix(long value) {
+		long z = value + 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	static void checkNumberOfSubstreams(long n) {
+		if(n < 0) {
+			throw new IllegalArgumentException("The number of substreams to skip must be non-negative.");
+		}
+	}
+}
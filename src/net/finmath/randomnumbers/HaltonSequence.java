@@ -5,16 +5,41 @@
  */
 package net.finmath.randomnumbers;
 
+import java.util.Random;
+
 /**
  * Implements a multi-dimensional Halton sequence (quasi random numbers) with the given bases.
  *
+ * The points are generated incrementally: for every dimension the digits of the index in the base are kept along with the
+ * integer obtained by reversing them, such that going to the next index only updates the digits changed by the carry
+ * (an amortized constant number of operations) and the Halton number is this integer divided by a power of the base,
+ * that is the correctly rounded value of the radical inverse. Indices are supported as long as the power of the base stays below 2^53.
+ *
+ * Optionally, the sequence is randomized by a random start (every dimension starts at its own random index)
+ * and by a Faure-Tezuka scrambling (the digits of the index are multiplied by a random non-singular upper triangular matrix modulo the base
+ * before being reversed), the random choices being derived from the scrambling seed.
+ *
  * @author Christian Fries
  */
 public class HaltonSequence implements RandomNumberGenerator {
 
 	private final int base[];
 
-	private int currentIndex = 0;
+	/* The number of digits of every dimension and the weights base^(numberOfDigits-1-i) of the digits of the reversed integer. */
+	private final int[] numberOfDigits;
+	private final long[][] weights;
+	private final double[] denominators;
+
+	/* Random start and Faure-Tezuka matrices (null if not scrambled). */
+	private final long[] startIndices;
+	private final int[][][] scramblingMatrices;
+
+	/* State of the incremental generation: the digits of the index, the scrambled digits and the reversed integer, per dimension. */
+	private final int[][] digits;
+	private final int[][] scrambledDigits;
+	private final long[] reversedIntegers;
+
+	private long currentIndex = 0;
 
 	/**
 	 * Constructs a Halton sequence with the given bases.
@@ -24,6 +49,22 @@ public class HaltonSequence implements RandomNumberGenerator {
 	 * @param base The array of base integers. The length of the array defines the dimension of the sequence.
 	 */
 	public HaltonSequence(int[] base) {
+		this(base, false, 0L);
+	}
+
+	/**
+	 * Constructs a Halton sequence with the given bases, randomized by a random start and a Faure-Tezuka scrambling.
+	 *
+	 * The bases should be integers without common divisor greater than 1, for example, prime numbers.
+	 *
+	 * @param base The array of base integers. The length of the array defines the dimension of the sequence.
+	 * @param scramblingSeed The seed of the randomization.
+	 */
+	public HaltonSequence(int[] base, long scramblingSeed) {
+		this(base, true, scramblingSeed);
+	}
+
+	private HaltonSequence(int[] base, boolean isScrambled, long scramblingSeed) {
 		for(int i=0; i<base.length; i++) {
 			if(base[i] <= 1) {
 				throw new IllegalArgumentException("base needs to be larger than 1");
@@ -31,11 +72,114 @@ public class HaltonSequence implements RandomNumberGenerator {
 		}
 
 		this.base = base;
+
+		int dimension = base.length;
+		numberOfDigits = new int[dimension];
+		weights = new long[dimension][];
+		denominators = new double[dimension];
+		for(int d = 0; d < dimension; d++) {
+			numberOfDigits[d] = getMaximumNumberOfDigits(base[d]);
+			weights[d] = new long[numberOfDigits[d]];
+			long power = 1;
+			for(int i = numberOfDigits[d] - 1; i >= 0; i--) {
+				weights[d][i] = power;
+				power *= base[d];
+			}
+			denominators[d] = power;
+		}
+
+		if(isScrambled) {
+			Random random = new Random(scramblingSeed);
+			startIndices = new long[dimension];
+			scramblingMatrices = new int[dimension][][];
+			for(int d = 0; d < dimension; d++) {
+				/* The start uses the lower half of the digits, such that the indices of the sequence remain far from the largest one. */
+				long startRange = 1;
+				for(int i = 0; i < numberOfDigits[d] / 2; i++) {
+					startRange *= base[d];
+				}
+				startIndices[d] = (long)(random.nextDouble() * startRange);
+				scramblingMatrices[d] = new int[numberOfDigits[d]][numberOfDigits[d]];
+				for(int i = 0; i < numberOfDigits[d]; i++) {
+					scramblingMatrices[d][i][i] = 1 + random.nextInt(base[d] - 1);
+					for(int k = i + 1; k < numberOfDigits[d]; k++) {
+						scramblingMatrices[d][i][k] = random.nextInt(base[d]);
+					}
+				}
+			}
+		}
+		else {
+			startIndices = null;
+			scramblingMatrices = null;
+		}
+
+		digits = new int[dimension][];
+		scrambledDigits = new int[dimension][];
+		reversedIntegers = new long[dimension];
+		for(int d = 0; d < dimension; d++) {
+			digits[d] = new int[numberOfDigits[d]];
+			scrambledDigits[d] = new int[numberOfDigits[d]];
+		}
+		skipTo(0);
 	}
 
 	@Override
 	public double[] getNext() {
-		return getHaltonNumber(currentIndex++);
+		double[] x = new double[base.length];
+		getNext(x);
+		return x;
+	}
+
+	/**
+	 * Writes the next point of the sequence to the given array, without allocating it.
+	 *
+	 * @param x The array receiving the point, of length getDimension().
+	 */
+	public void getNext(double[] x) {
+		if(x.length != base.length) {
+			throw new IllegalArgumentException("The length of the array must be the dimension of the sequence.");
+		}
+		for(int dimension = 0; dimension<base.length; dimension++) {
+			x[dimension] = reversedIntegers[dimension] / denominators[dimension];
+			increment(dimension);
+		}
+		currentIndex++;
+	}
+
+	/**
+	 * Writes the next points.length points of the sequence to the rows of the given array.
+	 *
+	 * @param points The array receiving the points, every row having the length getDimension().
+	 */
+	public void fill(double[][] points) {
+		for(double[] point : points) {
+			getNext(point);
+		}
+	}
+
+	/**
+	 * Sets the index of the next point of the sequence.
+	 *
+	 * @param index The index of the next point, starting at 0.
+	 */
+	public void skipTo(long index) {
+		if(index < 0) {
+			throw new IllegalArgumentException("The index must be non-negative.");
+		}
+		for(int dimension = 0; dimension<base.length; dimension++) {
+			setDigits(index, dimension, digits[dimension], scrambledDigits[dimension]);
+			reversedIntegers[dimension] = getReversedInteger(scrambledDigits[dimension], dimension);
+		}
+		currentIndex = index;
+	}
+
+	/**
+	 * Returns the index of the next point of the sequence.
+	 *
+	 * @return The index of the next point.
+	 */
+	public long getCurrentIndex() {
+		return currentIndex;
 	}
 
 	@Override
@@ -46,17 +190,21 @@ public class HaltonSequence implements RandomNumberGenerator {
 	public double[] getHaltonNumber(long index) {
 		double[] x = new double[base.length];
 		for(int dimension = 0; dimension<base.length; dimension++) {
-			x[dimension] = getHaltonNumberForGivenBase(index, base[dimension]);
+			x[dimension] = getHaltonNumber(index, dimension);
 		}
 		return x;
 	}
 
 	public double getHaltonNumber(long index, int dimension) {
-		return getHaltonNumberForGivenBase(index, base[dimension]);
+		int[] indexDigits = new int[numberOfDigits[dimension]];
+		int[] indexScrambledDigits = new int[numberOfDigits[dimension]];
+		setDigits(index, dimension, indexDigits, indexScrambledDigits);
+		return getReversedInteger(indexScrambledDigits, dimension) / denominators[dimension];
 	}
 
 	/**
 	 * Return a Halton number, sequence starting at index = 0, base &gt; 1.
+	 * The value is the correctly rounded radical inverse as long as index+1 is lower than the largest power of the base below 2^53.
 	 *
 	 * @param index The index of the sequence.
 	 * @param base The base of the sequence. Has to be greater than one (this is not checked).
@@ -65,14 +213,107 @@ public class HaltonSequence implements RandomNumberGenerator {
 	public static double getHaltonNumberForGivenBase(long index, int base) {
 		index += 1;
 
-		double x = 0.0;
-		double factor = 1.0 / base;
+		long reversedInteger = 0;
+		long power = 1;
+		int maximumNumberOfDigits = getMaximumNumberOfDigits(base);
+		for(int digit = 0; digit < maximumNumberOfDigits && index > 0; digit++) {
+			reversedInteger = reversedInteger * base + index % base;
+			power *= base;
+			index /= base;
+		}
+		if(index == 0) {
+			return reversedInteger / (double)power;
+		}
+
+		/* Beyond the digits represented exactly: the higher digits are added as fractions. */
+		double x = reversedInteger / (double)power;
+		double factor = 1.0 / power / base;
 		while(index > 0) {
 			x += (index % base) * factor;
 			factor /= base;
 			index /= base;
 		}
-
 		return x;
 	}
+
+	/**
+	 * Returns the largest number of digits D such that base^D does not exceed 2^53.
+	 */
+	private static int getMaximumNumberOfDigits(int base) {
+		int numberOfDigits = 0;
+		long power = 1;
+		while(power <= (1L << 53) / base) {
+			power *= base;
+			numberOfDigits++;
+		}
+		return numberOfDigits;
+	}
+
+	/**
+	 * Sets the digits of index+1 (shifted by the random start) and the scrambled digits.
+	 */
+	private void setDigits(long index, int dimension, int[] indexDigits, int[] indexScrambledDigits) {
+		long value = index + 1 + (startIndices != null ? startIndices[dimension] : 0);
+		for(int i = 0; i < indexDigits.length; i++) {
+			indexDigits[i] = (int)(value % base[dimension]);
+			value /= base[dimension];
+		}
+		if(scramblingMatrices == null) {
+			System.arraycopy(indexDigits, 0, indexScrambledDigits, 0, indexDigits.length);
+		}
+		else {
+			int[][] matrix = scramblingMatrices[dimension];
+			for(int i = 0; i < indexDigits.length; i++) {
+				long sum = 0;
+				for(int k = i; k < indexDigits.length; k++) {
+					sum += (long)matrix[i][k] * indexDigits[k];
+				}
+				indexScrambledDigits[i] = (int)(sum % base[dimension]);
+			}
+		}
+	}
+
+	private long getReversedInteger(int[] indexScrambledDigits, int dimension) {
+		long reversedInteger = 0;
+		for(int i = 0; i < indexScrambledDigits.length; i++) {
+			reversedInteger += indexScrambledDigits[i] * weights[dimension][i];
+		}
+		return reversedInteger;
+	}
+
+	/**
+	 * Adds one to the index of the given dimension: the digits equal to base-1 become 0 and the next digit is increased,
+	 * the scrambled digits i &le; k being updated for every changed digit k (the matrix being upper triangular).
+	 */
+	private void increment(int dimension) {
+		int b = base[dimension];
+		int[] indexDigits = digits[dimension];
+		int[] indexScrambledDigits = scrambledDigits[dimension];
+		long[] digitWeights = weights[dimension];
+		int[][] matrix = scramblingMatrices != null ? scramblingMatrices[dimension] : null;
+
+		int k = 0;
+		while(k < indexDigits.length) {
+			/* The change of the digit k modulo b: +1, that is -(b-1) with a carry. */
+			boolean isCarry = indexDigits[k] == b - 1;
+			indexDigits[k] = isCarry ? 0 : indexDigits[k] + 1;
+			if(matrix == null) {
+				int oldDigit = indexScrambledDigits[k];
+				indexScrambledDigits[k] = indexDigits[k];
+				reversedIntegers[dimension] += (indexScrambledDigits[k] - oldDigit) * digitWeights[k];
+			}
+			else {
+				for(int i = 0; i <= k; i++) {
+					int oldDigit = indexScrambledDigits[i];
+					int newDigit = (oldDigit + matrix[i][k]) % b;
+					indexScrambledDigits[i] = newDigit;
+					reversedIntegers[dimension] += (newDigit - oldDigit) * digitWeights[i];
+				}
+			}
+			if(!isCarry) {
+				break;
+			}
+			k++;
+		}
+	}
 }
@@ -30,4 +30,20 @@ public class MersenneTwister implements Serializable {
 	public double nextDouble() {
 		return mersenneTwister.nextDouble();
 	}
+
+	/**
+	 * Writes the next length random numbers of the sequence to target, starting at offset.
+	 *
+	 * @param target The array receiving the numbers.
+	 * @param offset The index of the first number in target.
+	 * @param length The number of numbers.
+	 */
+	public void nextDoubles(double[] target, int offset, int length) {
+		if(offset < 0 || length < 0 || offset > target.length - length) {
+			throw new IllegalArgumentException("The range of the target must lie inside the array.");
+		}
+		for(int i = offset; i < offset + length; i++) {
+			target[i] = mersenneTwister.nextDouble();
+		}
+	}
 }
@@ -15,6 +15,18 @@ public class MultiDimensionalMersenneTwister implements Serializable, RandomNumb
 		mersenneTwister	= new org.apache.commons.math3.random.MersenneTwister(seed);
 	}
 
+	/**
+	 * Creates a Mersenne Twister initialized with an array of seeds, e.g. a global seed followed by the index of a stream,
+	 * which allows for creating many reproducible and independent streams out of one seed.
+	 *
+	 * @param seed The array of seeds.
+	 * @param dimension The dimension of the generator.
+	 */
+	public MultiDimensionalMersenneTwister(int[] seed, int dimension) {
+		this.dimension = dimension;
+		mersenneTwister	= new org.apache.commons.math3.random.MersenneTwister(seed);
+	}
+
 	public int getDimension() {
 		return this.dimension;
 	}
@@ -31,4 +43,18 @@ public class MultiDimensionalMersenneTwister implements Serializable, RandomNumb
 		return next;
 	}
 
+	/**
+	 * Writes the next vector of the sequence to the given array, without allocating it.
+	 *
+	 * @param next The array receiving the vector, of length getDimension().
+	 */
+	public void getNext(double[] next) {
+		if(next.length != dimension) {
+			throw new IllegalArgumentException("The length of the array must be the dimension of the generator.");
+		}
+		for(int i = 0; i < dimension; i++) {
+			next[i] = mersenneTwister.nextDouble();
+		}
+	}
+
 }
@@ -0,0 +1,186 @@
+package net.finmath.randomnumbers;
+
+/**
+ * Implements the counter-based generator Philox4x32-10 of J. K. Salmon, M. A. Moraes, R. O. Dror and D. E. Shaw (Parallel random numbers: as easy as 1, 2, 3, 2011):
+ * the n-th block of 128 random bits is a keyed bijection (ten rounds of multiplications and exclusive ors) of the counter n,
+ * so that any position of the stream is obtained in constant time and the generator has no state besides its key and its counter.
+ *
+ * The key (64 bits) is the seed. The counter (128 bits) consists of the index of the substream (upper 64 bits) and of the index of the block in the substream (lower 64 bits),
+ * every block giving two numbers, hence the substreams have the length 2^65 and jump(n), as well as the constructor with a stream index, cost nothing.
+ * Typically, the generator of the block of paths b of a simulation with the seed s is new Philox4x32(s, b).
+ *
+ * @author Szulda Guillaume
+ */
+public class Philox4x32 extends AbstractSplittableRandomNumberGenerator {
+
+	private static final long serialVersionUID = 3217305164923184772L;
+
+	private static final long MULTIPLIER_0 = 0xD2511F53L;
+	private static final long MULTIPLIER_1 = 0xCD9E8D57L;
+	private static final int WEYL_0 = 0x9E3779B9;
+	private static final int WEYL_1 = 0xBB67AE85;
+	private static final int NUMBER_OF_ROUNDS = 10;
+
+	private long key;
+	private long stream;
+	private long counter;
+
+	/* The current block and its second number, if not consumed yet. */
+	private final long[] block = new long[2];
+	private long buffer;
+	private boolean isBuffered;
+
+	/**
+	 * Creates the generator of the first substream of the given seed.
+	 *
+	 * @param seed The seed, used as key.
+	 */
+	public Philox4x32(long seed) {
+		this(seed, 0L);
+	}
+
+	/**
+	 * Creates the generator of the given substream of the given seed.
+	 *
+	 * @param seed The seed, used as key.
+	 * @param stream The index of the substream, e.g. the index of a block of paths.
+	 */
+	public Philox4x32(long seed, long stream) {
+		super();
+		this.key = seed;
+		this.stream = stream;
+	}
+
+	private Philox4x32(Philox4x32 generator) {
+		super();
+		key = generator.key;
+		stream = generator.stream;
+		counter = generator.counter;
+		buffer = generator.buffer;
+		isBuffered = generator.isBuffered;
+	}
+
+	@Override
+	public void setSeed(long seed) {
+		key = seed;
+		stream = 0;
+		counter = 0;
+		isBuffered = false;
+		clear();
+	}
+
+	@Override
+	public long nextLong() {
+		if(isBuffered) {
+			isBuffered = false;
+			return buffer;
+		}
+		generateBlock(key, stream, counter++, block, 0);
+		buffer = block[1];
+		isBuffered = true;
+		return block[0];
+	}
+
+	@Override
+	public void nextDoubles(double[] target, int offset, int length) {
+		if(offset < 0 || length < 0 || offset > target.length - length) {
+			throw new IllegalArgumentException("The range of the target must lie inside the array.");
+		}
+		int end = offset + length;
+		int i = offset;
+		if(isBuffered && i < end) {
+			isBuffered = false;
+			target[i++] = ((buffer >>> 11) + 0.5) * 0x1.0p-53;
+		}
+		/* The rounds are inlined with the key schedule in local variables, the counter of the substream being constant. */
+		int c2Initial = (int)stream;
+		int c3Initial = (int)(stream >>> 32);
+		int k0Initial = (int)key;
+		int k1Initial = (int)(key >>> 32);
+		while(i < end) {
+			long counterLow = counter++;
+			int c0 = (int)counterLow;
+			int c1 = (int)(counterLow >>> 32);
+			int c2 = c2Initial;
+			int c3 = c3Initial;
+			int k0 = k0Initial;
+			int k1 = k1Initial;
+			for(int round = 0; round < NUMBER_OF_ROUNDS; round++) {
+				long product0 = MULTIPLIER_0 * (c0 & 0xFFFFFFFFL);
+				long product1 = MULTIPLIER_1 * (c2 & 0xFFFFFFFFL);
+				c0 = (int)(product1 >>> 32) ^ c1 ^ k0;
+				c1 = (int)product1;
+				c2 = (int)(product0 >>> 32) ^ c3 ^ k1;
+				c3 = (int)product0;
+				k0 += WEYL_0;
+				k1 += WEYL_1;
+			}
+			long first = (c0 & 0xFFFFFFFFL) | ((long)c1 << 32);
+			long second = (c2 & 0xFFFFFFFFL) | ((long)c3 << 32);
+			target[i++] = ((first >>> 11) + 0.5) * 0x1.0p-53;
+			if(i < end) {
+				target[i++] = ((second >>> 11) + 0.5) * 0x1.0p-53;
+			}
+			else {
+				buffer = second;
+				isBuffered = true;
+			}
+		}
+	}
+
+	@Override
+	public Philox4x32 split() {
+		Philox4x32 generator = new Philox4x32(this);
+		/* The buffered number and the cached Gaussian belong to the substream continued by the returned generator. */
+		stream++;
+		isBuffered = false;
+		clear();
+		return generator;
+	}
+
+	@Override
+	public Philox4x32 jump(long n) {
+		checkNumberOfSubstreams(n);
+		Philox4x32 generator = new Philox4x32(this);
+		generator.stream += n;
+		if(n > 0) {
+			generator.isBuffered = false;
+		}
+		return generator;
+	}
+
+	/**
+	 * Applies the Philox4x32-10 bijection to the counter (counterLow, counterHigh) with the given key,
+	 * the first output word being the lower 32 bits of target[offset] and the fourth one the upper 32 bits of target[offset+1].
+	 *
+	 * @param key The key.
+	 * @param counterHigh The upper 64 bits of the counter.
+	 * @param counterLow The lower 64 bits of the counter.
+	 * @param target The array receiving the two words of 64 bits.
+	 * @param offset The index of the first word in target.
+	 */
+	public static void generateBlock(long key, long counterHigh, long counterLow, long[] target, int offset) {
+		int c0 = (int)counterLow;
+		int c1 = (int)(counterLow >>> 32);
+		int c2 = (int)counterHigh;
+		int c3 = (int)(counterHigh >>> 32);
+		int k0 = (int)key;
+		int k1 = (int)(key >>> 32);
+		for(int round = 0; round < NUMBER_OF_ROUNDS; round++) {
+			long product0 = MULTIPLIER_0 * (c0 & 0xFFFFFFFFL);
+			long product1 = MULTIPLIER_1 * (c2 & 0xFFFFFFFFL);
+			int d0 = (int)(product1 >>> 32) ^ c1 ^ k0;
+			int d1 = (int)product1;
+			int d2 = (int)(product0 >>> 32) ^ c3 ^ k1;
+			int d3 = (int)product0;
+			c0 = d0;
+			c1 = d1;
+			c2 = d2;
+			c3 = d3;
+			k0 += WEYL_0;
+			k1 += WEYL_1;
+		}
+		target[offset] = (c0 & 0xFFFFFFFFL) | ((long)c1 << 32);
+		target[offset + 1] = (c2 & 0xFFFFFFFFL) | ((long)c3 << 32);
+	}
+}
@@ -0,0 +1,212 @@
+package net.finmath.randomnumbers;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Implements a multi-dimensional Sobol sequence (quasi random numbers) with 32 bits of precision,
+ * using the direction numbers of S. Joe and F. Y. Kuo (new-joe-kuo-6, shipped with commons-math for the first 1000 dimensions).
+ *
+ * The points are generated in Gray code order, so that the next point only requires one exclusive or per dimension,
+ * and the sequence may be started at any index, which allows for splitting it among independent blocks of paths.
+ *
+ * Optionally, the sequence is randomized by a nested uniform (Owen) scrambling, implemented by the hash-based permutation of
+ * S. Laine and T. Karras as proposed by B. Burley (2020), every dimension having its own seed derived from the scrambling seed.
+ * Without scrambling, the sequence starts at index 1 in order to skip the origin.
+ * The numbers returned are the centres of the dyadic intervals of length 2^{-32}, hence they lie strictly inside (0,1).
+ *
+ * @author Szulda Guillaume
+ */
+public class SobolSequence implements RandomNumberGenerator {
+
+	private static final int BITS = 32;
+	private static final String DIRECTION_NUMBERS_RESOURCE = "/assets/org/apache/commons/math3/random/new-joe-kuo-6.1000";
+
+	private final int dimension;
+	private final int[][] directionNumbers;
+	private final boolean isScrambled;
+	private final int[] scramblingSeeds;
+	private final int[] state;
+	private long currentIndex;
+
+	/**
+	 * Constructs the (non-scrambled) Sobol sequence of the given dimension, starting at index 1.
+	 *
+	 * @param dimension The dimension of the sequence, at most getMaximumDimension().
+	 * @throws IllegalArgumentException
+	 */
+	public SobolSequence(int dimension) throws IllegalArgumentException {
+		this(dimension, false, 0L);
+		skipTo(1);
+	}
+
+	/**
+	 * Constructs the Owen-scrambled Sobol sequence of the given dimension, starting at index 0.
+	 *
+	 * @param dimension The dimension of the sequence, at most getMaximumDimension().
+	 * @param scramblingSeed The seed of the random scrambling.
+	 * @throws IllegalArgumentException
+	 */
+	public SobolSequence(int dimension, long scramblingSeed) throws IllegalArgumentException {
+		this(dimension, true, scramblingSeed);
+	}
+
+	private SobolSequence(int dimension, boolean isScrambled, long scramblingSeed) throws IllegalArgumentException {
+		if(dimension < 1 || dimension > getMaximumDimension()) {
+			throw new IllegalArgumentException("The dimension of the Sobol sequence must be between 1 and " + getMaximumDimension() + ".");
+		}
+		this.dimension = dimension;
+		this.directionNumbers = DirectionNumbers.VALUES;
+		this.isScrambled = isScrambled;
+		this.scramblingSeeds = new int[dimension];
+		long z = scramblingSeed;
+		for(int d = 0; d < dimension; d++) {
+			/* SplitMix64 */
+			z += 0x9E3779B97F4A7C15L;
+			long s = z;
+			s = (s ^ (s >>> 30)) * 0xBF58476D1CE4E5B9L;
+			s = (s ^ (s >>> 27)) * 0x94D049BB133111EBL;
+			s = s ^ (s >>> 31);
+			this.scramblingSeeds[d] = (int)s;
+		}
+		this.state = new int[dimension];
+		this.currentIndex = 0;
+	}
+
+	/**
+	 * Returns the largest dimension for which direction numbers are available.
+	 * @return The maximum dimension.
+	 */
+	public static int getMaximumDimension() {
+		return DirectionNumbers.VALUES.length;
+	}
+
+	/**
+	 * Moves the sequence to the given index, the next point returned being the point of this index (in Gray code order).
+	 *
+	 * @param index The index of the next point.
+	 */
+	public void skipTo(long index) {
+		long grayCode = index ^ (index >>> 1);
+		for(int d = 0; d < dimension; d++) {
+			int x = 0;
+			for(int k = 0; k < BITS; k++) {
+				if(((grayCode >>> k) & 1L) != 0) {
+					x ^= directionNumbers[d][k];
+				}
+			}
+			state[d] = x;
+		}
+		currentIndex = index;
+	}
+
+	/**
+	 * Returns the index of the next point.
+	 * @return The index of the next point.
+	 */
+	public long getCurrentIndex() {
+		return currentIndex;
+	}
+
+	@Override
+	public double[] getNext() {
+		double[] point = new double[dimension];
+		getNext(point);
+		return point;
+	}
+
+	/**
+	 * Writes the next point of the sequence into the given array, without any allocation.
+	 *
+	 * @param point The array receiving the point, of length at least getDimension().
+	 */
+	public void getNext(double[] point) {
+		for(int d = 0; d < dimension; d++) {
+			int x = isScrambled ? nestedUniformScramble(state[d], scramblingSeeds[d]) : state[d];
+			point[d] = ((x & 0xFFFFFFFFL) + 0.5) / 4294967296.0;
+		}
+		/* Gray code update: flip the direction number of the lowest zero bit of the current index. */
+		int c = Long.numberOfTrailingZeros(~currentIndex);
+		if(c < BITS) {
+			for(int d = 0; d < dimension; d++) {
+				state[d] ^= directionNumbers[d][c];
+			}
+		}
+		currentIndex++;
+	}
+
+	@Override
+	public int getDimension() {
+		return dimension;
+	}
+
+	private static int nestedUniformScramble(int x, int seed) {
+		x = Integer.reverse(x);
+		x += seed;
+		x ^= x * 0x6c50b47c;
+		x ^= x * 0xb82f1e52;
+		x ^= x * 0xc7afe638;
+		x ^= x * 0x8d22f6e6;
+		return Integer.reverse(x);
+	}
+
+	/**
+	 * Holder of the direction numbers, read once from the resource of commons-math.
+	 */
+	private static class DirectionNumbers {
+
+		private static final int[][] VALUES = readDirectionNumbers();
+
+		private static int[][] readDirectionNumbers() {
+			List<int[]> values = new ArrayList<>();
+
+			/* The first dimension is the van der Corput sequence in base 2. */
+			int[] first = new int[BITS];
+			for(int k = 0; k < BITS; k++) {
+				first[k] = 1 << (BITS - 1 - k);
+			}
+			values.add(first);
+
+			try(InputStream stream = org.apache.commons.math3.random.SobolSequenceGenerator.class.getResourceAsStream(DIRECTION_NUMBERS_RESOURCE)) {
+				if(stream == null) {
+					throw new IllegalStateException("The direction numbers " + DIRECTION_NUMBERS_RESOURCE + " are not available.");
+				}
+				BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.US_ASCII));
+				/* Header line. */
+				reader.readLine();
+				String line;
+				while((line = reader.readLine()) != null) {
+					String[] tokens = line.trim().split("\\s+");
+					if(tokens.length < 3) {
+						continue;
+					}
+					int s = Integer.parseInt(tokens[1]);
+					int a = Integer.parseInt(tokens[2]);
+					int[] v = new int[BITS];
+					for(int k = 0; k < BITS; k++) {
+						if(k < s) {
+							int m = Integer.parseInt(tokens[3 + k]);
+							v[k] = m << (BITS - 1 - k);
+						} else {
+							v[k] = v[k-s] ^ (v[k-s] >>> s);
+							for(int i = 1; i < s; i++) {
+								if(((a >>> (s - 1 - i)) & 1) != 0) {
+									v[k] ^= v[k-i];
+								}
+							}
+						}
+					}
+					values.add(v);
+				}
+			} catch (IOException e) {
+				throw new IllegalStateException("The direction numbers " + DIRECTION_NUMBERS_RESOURCE + " cannot be read.", e);
+			}
+			return values.toArray(new int[values.size()][]);
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package net.finmath.randomnumbers;
+
+/**
+ * Interface for a one-dimensional generator of uniform random numbers whose stream can be split into independent substreams,
+ * e.g. one per thread or per block of paths of a Monte Carlo simulation, in a reproducible way and without allocation.
+ *
+ * The stream of a generator is divided into consecutive substreams of a length defined by the implementation (at least 2^64 numbers).
+ * jump(n) returns a new generator at the same position in the substream n further on, split() returns a new generator at the current position
+ * and moves this generator to the next substream, so that the generators returned by successive calls of split() never overlap.
+ *
+ * Instances are not thread-safe: every thread has to use its own generator.
+ *
+ * @author Szulda Guillaume
+ */
+public interface SplittableRandomNumberGenerator {
+
+	/**
+	 * Returns the next 64 random bits of the stream.
+	 *
+	 * @return The next 64 random bits.
+	 */
+	long nextLong();
+
+	/**
+	 * Returns the next uniform random number of the stream, with 53 bits of precision.
+	 * The numbers are the centres of the intervals of length 2^{-53}, hence they lie strictly inside (0,1) and may be inverted by any distribution function.
+	 *
+	 * @return The next uniform random number in (0,1).
+	 */
+	double nextDouble();
+
+	/**
+	 * Writes the next length uniform random numbers of the stream to target, starting at offset,
+	 * the numbers being the ones that length calls of nextDouble() would return.
+	 *
+	 * @param target The array receiving the numbers.
+	 * @param offset The index of the first number in target.
+	 * @param length The number of numbers.
+	 */
+	void nextDoubles(double[] target, int offset, int length);
+
+	/**
+	 * Returns a new generator starting at the current position of this generator and moves this generator to its next substream.
+	 *
+	 * @return The generator of the current substream.
+	 */
+	SplittableRandomNumberGenerator split();
+
+	/**
+	 * Returns a new generator at the same position as this generator, n substreams further on. This generator is not modified.
+	 *
+	 * @param n The number of substreams to skip, non-negative.
+	 * @return The new generator.
+	 */
+	SplittableRandomNumberGenerator jump(long n);
+}
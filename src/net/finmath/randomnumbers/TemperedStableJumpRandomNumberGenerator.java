@@ -0,0 +1,113 @@
+package net.finmath.randomnumbers;
+
+/**
+ * Class implementing <code>RandomNumberGenerator</code> for the jumps larger than some truncation level epsilon of a tempered alpha-stable process,
+ * whose law has the density proportional to exp(-zeta v) v^{-1-alpha} on (epsilon, infinity).
+ *
+ * The jumps are drawn by the acceptance rejection method with the Pareto envelope of density alpha epsilon^alpha v^{-1-alpha},
+ * for which the acceptance test reduces to u &le; exp(-zeta (v - epsilon)), all the other constants cancelling out.
+ * Every candidate consumes two uniforms of the underlying stream (the first one for the test, the second one for the Pareto variate),
+ * in the same order as <code>AcceptanceRejectionRandomNumberGenerator</code> with a two dimensional uniform generator,
+ * but no array is allocated and the numbers of candidates and of accepted jumps are recorded.
+ *
+ * Instances are not thread-safe: every thread has to use its own generator with its own uniform stream.
+ *
+ * @author Szulda Guillaume
+ */
+public class TemperedStableJumpRandomNumberGenerator implements RandomNumberGenerator {
+
+	private final org.apache.commons.math3.random.RandomGenerator uniforms;
+	private final double epsilon;
+	private final double zeta;
+	private final double alpha;
+
+	/* Envelope constants. */
+	private final double inverseAlpha;
+	private final double zetaEpsilon;
+
+	private long numberOfCandidates;
+	private long numberOfAcceptedCandidates;
+
+	/**
+	 * Creates the generator of the jumps larger than epsilon of the tempered alpha-stable process of parameters zeta and alpha.
+	 *
+	 * @param uniforms The stream of uniform random numbers.
+	 * @param epsilon The truncation level, has to be positive.
+	 * @param zeta The tempering parameter, has to be non-negative.
+	 * @param alpha The stability parameter, has to be positive.
+	 * @throws IllegalArgumentException
+	 */
+	public TemperedStableJumpRandomNumberGenerator(org.apache.commons.math3.random.RandomGenerator uniforms, double epsilon, double zeta, double alpha) throws IllegalArgumentException {
+		if(epsilon <= 0 || zeta < 0 || alpha <= 0) {
+			throw new IllegalArgumentException("The truncation level and alpha must be positive and zeta must be non-negative.");
+		}
+		this.uniforms = uniforms;
+		this.epsilon = epsilon;
+		this.zeta = zeta;
+		this.alpha = alpha;
+		this.inverseAlpha = 1.0 / alpha;
+		this.zetaEpsilon = zeta * epsilon;
+	}
+
+	/**
+	 * Returns the next jump.
+	 *
+	 * @return The next jump, a number larger than epsilon.
+	 */
+	public double nextDouble() {
+		while(true) {
+			double u = uniforms.nextDouble();
+			double v = epsilon * Math.pow(uniforms.nextDouble(), -inverseAlpha);
+			numberOfCandidates++;
+			if(u <= Math.exp(zetaEpsilon - zeta * v)) {
+				numberOfAcceptedCandidates++;
+				return v;
+			}
+		}
+	}
+
+	/**
+	 * Returns the sum of the next numberOfJumps jumps.
+	 *
+	 * @param numberOfJumps The number of jumps.
+	 * @return The sum of the jumps (0 if numberOfJumps is not positive).
+	 */
+	public double nextSum(int numberOfJumps) {
+		double sum = 0.0;
+		for(int i = 0; i < numberOfJumps; i++) {
+			sum += nextDouble();
+		}
+		return sum;
+	}
+
+	@Override
+	public double[] getNext() {
+		return new double[] { nextDouble() };
+	}
+
+	@Override
+	public int getDimension() {
+		return 1;
+	}
+
+	public double getTruncationLevel() {
+		return epsilon;
+	}
+
+	public long getNumberOfCandidates() {
+		return numberOfCandidates;
+	}
+
+	public long getNumberOfAcceptedCandidates() {
+		return numberOfAcceptedCandidates;
+	}
+
+	/**
+	 * Returns the proportion of the candidates drawn so far that have been accepted.
+	 *
+	 * @return The measured acceptance rate (NaN if no candidate has been drawn).
+	 */
+	public double getAcceptanceRate() {
+		return numberOfCandidates > 0 ? (double)numberOfAcceptedCandidates / numberOfCandidates : Double.NaN;
+	}
+}
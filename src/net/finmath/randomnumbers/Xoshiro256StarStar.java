@@ -0,0 +1,167 @@
+package net.finmath.randomnumbers;
+
+/**
+ * Implements the generator xoshiro256** of D. Blackman and S. Vigna (Scrambled linear pseudorandom number generators, 2021),
+ * whose state of 256 bits gives a period of 2^256 - 1 and passes the usual statistical test suites, at the cost of a few shifts, rotations and multiplications per number.
+ *
+ * The state is initialized from the seed by SplitMix64. The substreams have the length 2^128: jump(n) applies n times the jump polynomial of the authors,
+ * hence its cost is proportional to n (about a thousand operations per substream). For a large number of substreams created by index,
+ * e.g. one per block of paths, either split() them one after the other or use <code>Philox4x32</code>, whose substreams are obtained in constant time.
+ *
+ * @author Szulda Guillaume
+ */
+public class Xoshiro256StarStar extends AbstractSplittableRandomNumberGenerator {
+
+	private static final long serialVersionUID = -6338201470921567345L;
+
+	private static final long[] JUMP = { 0x180EC6D33CFD0ABAL, 0xD5A61266F0C9392CL, 0xA9582618E03FC9AAL, 0x39ABDC4529B1661CL };
+
+	private long s0;
+	private long s1;
+	private long s2;
+	private long s3;
+
+	/**
+	 * Creates the generator with the state derived from the given seed.
+	 *
+	 * @param seed The seed.
+	 */
+	public Xoshiro256StarStar(long seed) {
+		super();
+		setSeed(seed);
+	}
+
+	/**
+	 * Creates the generator of the given substream of the stream of the given seed, that is new Xoshiro256StarStar(seed).jump(stream).
+	 *
+	 * @param seed The seed.
+	 * @param stream The index of the substream, non-negative.
+	 */
+	public Xoshiro256StarStar(long seed, long stream) {
+		this(seed);
+		checkNumberOfSubstreams(stream);
+		for(long i = 0; i < stream; i++) {
+			jump();
+		}
+	}
+
+	/**
+	 * Creates the generator with the given state, which must not be zero.
+	 *
+	 * @param state The four words of the state.
+	 */
+	public Xoshiro256StarStar(long[] state) {
+		super();
+		if(state.length != 4 || (state[0] | state[1] | state[2] | state[3]) == 0) {
+			throw new IllegalArgumentException("The state must consist of four words, not all zero.");
+		}
+		s0 = state[0];
+		s1 = state[1];
+		s2 = state[2];
+		s3 = state[3];
+	}
+
+	private Xoshiro256StarStar(Xoshiro256StarStar generator) {
+		super();
+		s0 = generator.s0;
+		s1 = generator.s1;
+		s2 = generator.s2;
+		s3 = generator.s3;
+	}
+
+	@Override
+	public void setSeed(long seed) {
+		long z = seed;
+		s0 = mix(z);
+		z += 0x9E3779B97F4A7C15L;
+		s1 = mix(z);
+		z += 0x9E3779B97F4A7C15L;
+		s2 = mix(z);
+		z += 0x9E3779B97F4A7C15L;
+		s3 = mix(z);
+		clear();
+	}
+
+	@Override
+	public long nextLong() {
+		long result = Long.rotateLeft(s1 * 5, 7) * 9;
+		long t = s1 << 17;
+		s2 ^= s0;
+		s3 ^= s1;
+		s1 ^= s2;
+		s0 ^= s3;
+		s2 ^= t;
+		s3 = Long.rotateLeft(s3, 45);
+		return result;
+	}
+
+	@Override
+	public void nextDoubles(double[] target, int offset, int length) {
+		if(offset < 0 || length < 0 || offset > target.length - length) {
+			throw new IllegalArgumentException("The range of the target must lie inside the array.");
+		}
+		/* The state is kept in local variables for the loop. */
+		long x0 = s0;
+		long x1 = s1;
+		long x2 = s2;
+		long x3 = s3;
+		for(int i = offset; i < offset + length; i++) {
+			long result = Long.rotateLeft(x1 * 5, 7) * 9;
+			long t = x1 << 17;
+			x2 ^= x0;
+			x3 ^= x1;
+			x1 ^= x2;
+			x0 ^= x3;
+			x2 ^= t;
+			x3 = Long.rotateLeft(x3, 45);
+			target[i] = ((result >>> 11) + 0.5) * 0x1.0p-53;
+		}
+		s0 = x0;
+		s1 = x1;
+		s2 = x2;
+		s3 = x3;
+	}
+
+	@Override
+	public Xoshiro256StarStar split() {
+		Xoshiro256StarStar generator = new Xoshiro256StarStar(this);
+		jump();
+		return generator;
+	}
+
+	@Override
+	public Xoshiro256StarStar jump(long n) {
+		checkNumberOfSubstreams(n);
+		Xoshiro256StarStar generator = new Xoshiro256StarStar(this);
+		for(long i = 0; i < n; i++) {
+			generator.jump();
+		}
+		return generator;
+	}
+
+	/**
+	 * Advances the state by 2^128 numbers.
+	 */
+	private void jump() {
+		long t0 = 0;
+		long t1 = 0;
+		long t2 = 0;
+		long t3 = 0;
+		for(long jump : JUMP) {
+			for(int bit = 0; bit < 64; bit++) {
+				if((jump & (1L << bit)) != 0) {
+					t0 ^= s0;
+					t1 ^= s1;
+					t2 ^= s2;
+					t3 ^= s3;
+				}
+				nextLong();
+			}
+		}
+		s0 = t0;
+		s1 = t1;
+		s2 = t2;
+		s3 = t3;
+		clear();
+	}
+}
@@ -0,0 +1,108 @@
+package net.finmath.randomnumbers;
+
+/**
+ * Generator of standard normal random numbers by the ziggurat method of G. Marsaglia and W. W. Tsang (2000),
+ * in the version of J. A. Doornik (An improved ziggurat method to generate normal random samples, 2005), which uses 128 layers and uniform numbers of 53 bits.
+ *
+ * The density is covered by 128 layers of equal area; a sample is drawn from a random layer and it is accepted without further computation
+ * if it lies inside the rectangle below the density, which happens about 98.8% of the times, so that most of the numbers
+ * cost one draw of 64 bits of the uniform stream, one multiplication and one comparison (no logarithm, square root or exponential).
+ * The wedges and the tail beyond R = 3.4426 are sampled exactly (by rejection and by the method of Marsaglia respectively), hence the numbers are exactly normal.
+ *
+ * Every attempt consumes one nextLong() of the uniform stream: its 53 upper bits give the abscissa and its 7 lower bits the layer.
+ * Instances are not thread-safe: every thread has to use its own generator with its own uniform stream.
+ *
+ * @author Szulda Guillaume
+ */
+public class ZigguratNormalRandomNumberGenerator {
+
+	private static final int NUMBER_OF_LAYERS = 128;
+	private static final double R = 3.442619855899;
+	private static final double V = 9.91256303526217e-3;
+
+	/* The abscissas of the layers, X[0] being V / f(R) (the width of the base layer including the tail) and X[128] = 0. */
+	private static final double[] X = new double[NUMBER_OF_LAYERS + 1];
+	/* The ratios X[i+1] / X[i], below which a sample of the layer i lies inside the rectangle. */
+	private static final double[] RATIOS = new double[NUMBER_OF_LAYERS];
+
+	static {
+		double f = Math.exp(-0.5 * R * R);
+		X[0] = V / f;
+		X[1] = R;
+		X[NUMBER_OF_LAYERS] = 0.0;
+		for(int i = 2; i < NUMBER_OF_LAYERS; i++) {
+			X[i] = Math.sqrt(-2 * Math.log(V / X[i - 1] + f));
+			f = Math.exp(-0.5 * X[i] * X[i]);
+		}
+		for(int i = 0; i < NUMBER_OF_LAYERS; i++) {
+			RATIOS[i] = X[i + 1] / X[i];
+		}
+	}
+
+	private final org.apache.commons.math3.random.RandomGenerator uniforms;
+
+	/**
+	 * Creates the generator drawing from the given stream of uniform random numbers.
+	 *
+	 * @param uniforms The stream of uniform random numbers.
+	 */
+	public ZigguratNormalRandomNumberGenerator(org.apache.commons.math3.random.RandomGenerator uniforms) {
+		super();
+		this.uniforms = uniforms;
+	}
+
+	/**
+	 * Returns the next standard normal random number.
+	 *
+	 * @return The next standard normal random number.
+	 */
+	public double nextGaussian() {
+		while(true) {
+			long bits = uniforms.nextLong();
+			/* Uniform in (-1,1) from the 53 upper bits, layer from the 7 lower bits. */
+			double u = ((bits >>> 11) + 0.5) * 0x1.0p-52 - 1.0;
+			int layer = (int)(bits & (NUMBER_OF_LAYERS - 1));
+			if(Math.abs(u) < RATIOS[layer]) {
+				return u * X[layer];
+			}
+			if(layer == 0) {
+				return nextTail(u < 0);
+			}
+			double x = u * X[layer];
+			double f0 = Math.exp(-0.5 * (X[layer] * X[layer] - x * x));
+			double f1 = Math.exp(-0.5 * (X[layer + 1] * X[layer + 1] - x * x));
+			if(f1 + uniforms.nextDouble() * (f0 - f1) < 1.0) {
+				return x;
+			}
+		}
+	}
+
+	/**
+	 * Writes the next length standard normal random numbers to target, starting at offset.
+	 *
+	 * @param target The array receiving the numbers.
+	 * @param offset The index of the first number in target.
+	 * @param length The number of numbers.
+	 */
+	public void nextGaussians(double[] target, int offset, int length) {
+		if(offset < 0 || length < 0 || offset > target.length - length) {
+			throw new IllegalArgumentException("The range of the target must lie inside the array.");
+		}
+		for(int i = offset; i < offset + length; i++) {
+			target[i] = nextGaussian();
+		}
+	}
+
+	/**
+	 * Samples the tail beyond R by the method of Marsaglia (1964).
+	 */
+	private double nextTail(boolean isNegative) {
+		double x;
+		double y;
+		do {
+			x = Math.log(1.0 - uniforms.nextDouble()) / R;
+			y = Math.log(1.0 - uniforms.nextDouble());
+		} while(-2 * y < x * x);
+		return isNegative ? x - R : R - x;
+	}
+}
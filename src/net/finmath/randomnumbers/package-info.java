@@ -5,6 +5,9 @@
  * native implementation of quasi random number gerantors (e.g. Halton sequence) and algorithm to sample other distributions
  * (like the Acceptance-Rejection method).
  *
+ * Splittable generators (<code>Xoshiro256StarStar</code> and the counter-based <code>Philox4x32</code>) provide reproducible, non-overlapping substreams
+ * for the threads or the blocks of paths of a simulation, and fill arrays of uniform random numbers without allocation.
+ *
  * @author Christian Fries
  */
 package net.finmath.randomnumbers;
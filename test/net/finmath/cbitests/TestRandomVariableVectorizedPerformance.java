@@ -0,0 +1,76 @@
+package net.finmath.cbitests;
+
+import java.util.Random;
+
+import net.finmath.montecarlo.RandomVariable;
+import net.finmath.montecarlo.RandomVariableVectorized;
+import net.finmath.stochastic.RandomVariableInterface;
+
+/**
+ * Compares the running times of RandomVariable and RandomVariableVectorized on the operations of a caplet payoff
+ * (max(S - P (1 + K delta), 0) / N), evaluated with the elementary operators and, for RandomVariableVectorized, with the fused ones.
+ * Every measurement is preceded by warm-up rounds so that the JIT has compiled the loops, and the averages are printed to check that the results agree.
+ *
+ * @author Szulda Guillaume
+ */
+public class TestRandomVariableVectorizedPerformance {
+
+	private static final int NUMBER_OF_PATHS = 1000000;
+	private static final int NUMBER_OF_WARM_UP_ROUNDS = 20;
+	private static final int NUMBER_OF_ROUNDS = 50;
+
+	public static void main(String[] args) {
+
+		Random random = new Random(3141);
+		double[] spreads = new double[NUMBER_OF_PATHS];
+		double[] bonds = new double[NUMBER_OF_PATHS];
+		double[] numeraires = new double[NUMBER_OF_PATHS];
+		for(int i = 0; i < NUMBER_OF_PATHS; i++) {
+			spreads[i] = Math.exp(0.1*random.nextGaussian());
+			bonds[i] = Math.exp(-0.01 + 0.05*random.nextGaussian());
+			numeraires[i] = Math.exp(0.02 + 0.05*random.nextGaussian());
+		}
+		double strike = 0.01;
+		double tenorLength = 0.25;
+
+		RandomVariableInterface spread = new RandomVariable(1.0, spreads);
+		RandomVariableInterface bond = new RandomVariable(1.0, bonds);
+		RandomVariableInterface numeraire = new RandomVariable(1.0, numeraires);
+
+		RandomVariableVectorized spreadVectorized = new RandomVariableVectorized(1.0, spreads);
+		RandomVariableVectorized bondVectorized = new RandomVariableVectorized(1.0, bonds);
+		RandomVariableVectorized numeraireVectorized = new RandomVariableVectorized(1.0, numeraires);
+
+		System.out.println("Caplet payoff on " + NUMBER_OF_PATHS + " paths, average time of " + NUMBER_OF_ROUNDS + " rounds:");
+
+		double[] result = new double[1];
+		double time = measure(() -> result[0] = spread.sub(bond.mult(1 + strike*tenorLength)).floor(0.0).div(numeraire).getAverage());
+		System.out.println("RandomVariable, elementary operators:           " + String.format("%8.3f", time) + " ms, value " + result[0]);
+
+		time = measure(() -> result[0] = spreadVectorized.sub(bondVectorized.mult(1 + strike*tenorLength)).floor(0.0).div(numeraireVectorized).getAverage());
+		System.out.println("RandomVariableVectorized, elementary operators: " + String.format("%8.3f", time) + " ms, value " + result[0]);
+
+		time = measure(() -> result[0] = ((RandomVariableVectorized)spreadVectorized.subProductAndFloor(bondVectorized, 1 + strike*tenorLength, 0.0)).div(numeraireVectorized).getAverage());
+		System.out.println("RandomVariableVectorized, fused operators:      " + String.format("%8.3f", time) + " ms, value " + result[0]);
+
+		System.out.println("\nAccrual and discounting on " + NUMBER_OF_PATHS + " paths:");
+
+		time = measure(() -> result[0] = bond.accrue(spread, tenorLength).discount(numeraire, tenorLength).addProduct(spread, bond).getAverage());
+		System.out.println("RandomVariable:           " + String.format("%8.3f", time) + " ms, value " + result[0]);
+
+		time = measure(() -> result[0] = bondVectorized.accrue(spreadVectorized, tenorLength).discount(numeraireVectorized, tenorLength).addProduct(spreadVectorized, bondVectorized).getAverage());
+		System.out.println("RandomVariableVectorized: " + String.format("%8.3f", time) + " ms, value " + result[0]);
+	}
+
+	private static double measure(Runnable calculation) {
+		for(int round = 0; round < NUMBER_OF_WARM_UP_ROUNDS; round++) {
+			calculation.run();
+		}
+		long start = System.nanoTime();
+		for(int round = 0; round < NUMBER_OF_ROUNDS; round++) {
+			calculation.run();
+		}
+		long end = System.nanoTime();
+		return (end - start) / 1E6 / NUMBER_OF_ROUNDS;
+	}
+}
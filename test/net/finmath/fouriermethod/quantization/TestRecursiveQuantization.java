@@ -0,0 +1,113 @@
+package net.finmath.fouriermethod.quantization;
+
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.finmath.exception.CalculationException;
+import net.finmath.fouriermethod.calibration.BoundConstraint;
+import net.finmath.fouriermethod.calibration.PositivityConstraint;
+import net.finmath.fouriermethod.calibration.ScalarParameterInformation;
+import net.finmath.fouriermethod.calibration.ScalarParameterInformationInterface;
+import net.finmath.fouriermethod.calibration.models.CBIDrivenMultiCurveModel;
+import net.finmath.fouriermethod.products.CapletByCarrMadan;
+import net.finmath.interpolation.RationalFunctionInterpolation.ExtrapolationMethod;
+import net.finmath.interpolation.RationalFunctionInterpolation.InterpolationMethod;
+import net.finmath.marketdata.model.AnalyticModel;
+import net.finmath.marketdata.model.AnalyticModelInterface;
+import net.finmath.marketdata.model.curves.CurveInterface;
+import net.finmath.marketdata.model.curves.DiscountCurve;
+import net.finmath.marketdata.model.curves.ForwardCurve;
+import net.finmath.stochastic.CBIProcessInterface;
+import net.finmath.stochastic.FlowOfTemperedAlphaStableCBIprocess;
+import net.finmath.stochastic.MultiCurveTenor;
+import net.finmath.time.TimeDiscretization;
+
+public class TestRecursiveQuantization {
+
+	private static final double timeHorizon = 10.0;
+	private static final int numberOfTimeSteps = 150;
+
+	private static final double[] initialValues = {0.02, 0.04};
+	private static final double[] immigrationRates = {0.02, 0.04};
+	private static final double[] lambda = {0.2, 0.4};
+	private static final double sigma = 0.5;
+	private static final double eta = 0.2;
+	private static final double zeta = 0.2;
+	private static final double alpha = 1.8;
+
+	private static final double[] maturities = {1.0, 2.0, 3.0};
+	private static final double[] strikes = {0.0, 0.01, 0.02};
+
+	@Test
+	public void testCapletStripAgainstFourierPricer() throws CalculationException {
+		assertCapletStripAgainstFourierPricer(0.5);
+	}
+
+	@Test
+	public void testCapletStripWithoutMeanReversionAgainstFourierPricer() throws CalculationException {
+		assertCapletStripAgainstFourierPricer(0.0);
+	}
+
+	private static void assertCapletStripAgainstFourierPricer(double b) throws CalculationException {
+
+		CBIDrivenMultiCurveModel model = new CBIDrivenMultiCurveModel(getCurves(), getCBIProcess(b),
+				new MultiCurveTenor[] { new MultiCurveTenor(0.25, "3M"), new MultiCurveTenor(0.5, "6M") });
+
+		RecursiveQuantizableCBIDrivenMultiCurveModel quantizedModel = new RecursiveQuantizableCBIDrivenMultiCurveModel(new TimeDiscretization(0.0, 30, 0.1), 20, model);
+
+		double[] stripStrikes = new double[maturities.length*strikes.length];
+		double[] stripMaturities = new double[maturities.length*strikes.length];
+		for(int i = 0; i < maturities.length; i++) {
+			for(int j = 0; j < strikes.length; j++) {
+				stripStrikes[i*strikes.length + j] = strikes[j];
+				stripMaturities[i*strikes.length + j] = maturities[i];
+			}
+		}
+
+		double[] values = new RecursiveQuantizationMultiCurveCapletStripPricer(stripStrikes, stripMaturities, "forward-EUR-6M").getValue(quantizedModel);
+
+		for(int i = 0; i < maturities.length; i++) {
+			Map<Double, Double> valuesFourier = new CapletByCarrMadan("forward-EUR-6M", maturities[i], strikes, 4096, 0.01, InterpolationMethod.HARMONIC_SPLINE, ExtrapolationMethod.CONSTANT).getValue(model);
+			for(int j = 0; j < strikes.length; j++) {
+				double value = values[i*strikes.length + j];
+				double valueFourier = valuesFourier.get(strikes[j]);
+				Assert.assertTrue(!Double.isNaN(value) && !Double.isInfinite(value));
+				Assert.assertEquals("Caplet maturity " + maturities[i] + " strike " + strikes[j], valueFourier, value, 0.05*valueFourier);
+			}
+		}
+	}
+
+	private static CBIProcessInterface getCBIProcess(double b) {
+
+		ScalarParameterInformationInterface[] lambdaInfo = {
+				new ScalarParameterInformation(false, new PositivityConstraint()),
+				new ScalarParameterInformation(false, new PositivityConstraint()) };
+		ScalarParameterInformationInterface[] immigrationRatesInfo = {
+				new ScalarParameterInformation(true, new BoundConstraint(1E-5, 10.0)),
+				new ScalarParameterInformation(true, new BoundConstraint(1E-5, 10.0)) };
+		ScalarParameterInformationInterface[] initialValuesInfo = {
+				new ScalarParameterInformation(true, new PositivityConstraint()),
+				new ScalarParameterInformation(true, new PositivityConstraint()) };
+
+		/* Without the constraint on the functions V, b = 0 is kept as it is. */
+		return new FlowOfTemperedAlphaStableCBIprocess(timeHorizon, numberOfTimeSteps, initialValues, immigrationRates, b, sigma, eta, zeta, alpha, lambda,
+				lambdaInfo, immigrationRatesInfo,
+				new ScalarParameterInformation(true, new BoundConstraint(0.0, 10.0)),
+				new ScalarParameterInformation(true, new PositivityConstraint()),
+				new ScalarParameterInformation(true, new PositivityConstraint()),
+				new ScalarParameterInformation(true, new PositivityConstraint()),
+				new ScalarParameterInformation(true, new BoundConstraint(1, 2)),
+				initialValuesInfo, false, true);
+	}
+
+	private static AnalyticModelInterface getCurves() {
+		double[] times = {0.0, 1.0, 2.0, 5.0, 10.0, 20.0};
+		DiscountCurve discountCurve = DiscountCurve.createDiscountCurveFromZeroRates("discount-EUR-OIS", times, new double[] {0.01, 0.01, 0.012, 0.015, 0.018, 0.02});
+		ForwardCurve forwardCurve3M = ForwardCurve.createForwardCurveFromForwards("forward-EUR-3M", times, new double[] {0.012, 0.013, 0.015, 0.018, 0.02, 0.022}, 0.25);
+		ForwardCurve forwardCurve6M = ForwardCurve.createForwardCurveFromForwards("forward-EUR-6M", times, new double[] {0.014, 0.015, 0.017, 0.02, 0.022, 0.024}, 0.5);
+		return new AnalyticModel(new CurveInterface[] { discountCurve, forwardCurve3M, forwardCurve6M });
+	}
+
+}
@@ -0,0 +1,188 @@
+package net.finmath.interpolation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.commons.math3.analysis.interpolation.AkimaSplineInterpolator;
+import org.apache.commons.math3.analysis.polynomials.PolynomialSplineFunction;
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.finmath.interpolation.RationalFunctionInterpolation.ExtrapolationMethod;
+import net.finmath.interpolation.RationalFunctionInterpolation.InterpolationMethod;
+
+public class TestRationalFunctionInterpolation {
+
+	private static final double[] points = { 0.1, 0.5, 1.0, 2.0, 3.5, 5.0, 7.0, 10.0, 15.0, 20.0 };
+
+	@Test
+	public void testSamplePointsAndGetValuesAgainstGetValue() {
+		double[] values = getValues(1);
+		double[] arguments = getArguments(new Random(2));
+		double[] sortedArguments = arguments.clone();
+		Arrays.sort(sortedArguments);
+
+		for(InterpolationMethod interpolationMethod : InterpolationMethod.values()) {
+			for(ExtrapolationMethod extrapolationMethod : ExtrapolationMethod.values()) {
+				RationalFunctionInterpolation interpolation = new RationalFunctionInterpolation(points, values, interpolationMethod, extrapolationMethod);
+				String message = interpolationMethod + " " + extrapolationMethod;
+
+				for(int i = 0; i < points.length; i++) {
+					Assert.assertEquals(message + " sample point " + i, values[i], interpolation.getValue(points[i]), 0.0);
+				}
+
+				// Unsorted arguments (one binary search per argument) and sorted arguments (a single pass)
+				for(double[] x : new double[][] { arguments, sortedArguments }) {
+					double[] interpolatedValues = new double[x.length];
+					interpolation.getValues(x, interpolatedValues);
+					for(int i = 0; i < x.length; i++) {
+						Assert.assertEquals(message + " argument " + x[i], interpolation.getValue(x[i]), interpolatedValues[i], 0.0);
+						Assert.assertEquals(message + " argument " + x[i], interpolation.getValue(x[i]), interpolation.applyAsDouble(x[i]), 0.0);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testLinearAndPiecewiseConstant() {
+		double[] values = getValues(3);
+		RationalFunctionInterpolation linear = new RationalFunctionInterpolation(points, values);
+		RationalFunctionInterpolation leftPoint = new RationalFunctionInterpolation(points, values, InterpolationMethod.PIECEWISE_CONSTANT_LEFTPOINT, ExtrapolationMethod.CONSTANT);
+		RationalFunctionInterpolation rightPoint = new RationalFunctionInterpolation(points, values, InterpolationMethod.PIECEWISE_CONSTANT_RIGHTPOINT, ExtrapolationMethod.CONSTANT);
+		Assert.assertEquals(InterpolationMethod.LINEAR, linear.getInterpolationMethod());
+
+		for(double x : getArguments(new Random(4))) {
+			int interval = Math.min(Math.max(-Arrays.binarySearch(points, x) - 2, 0), points.length - 2);
+			if(Arrays.binarySearch(points, x) >= 0) {
+				continue;
+			}
+			double weight = (x - points[interval]) / (points[interval + 1] - points[interval]);
+			double expected = values[interval] + (values[interval + 1] - values[interval]) * weight;
+			Assert.assertEquals("Linear " + x, expected, linear.getValue(x), 1E-15);
+
+			if(x < points[0]) {
+				Assert.assertEquals("Constant extrapolation " + x, values[0], leftPoint.getValue(x), 0.0);
+			}
+			else if(x > points[points.length - 1]) {
+				Assert.assertEquals("Constant extrapolation " + x, values[points.length - 1], rightPoint.getValue(x), 0.0);
+			}
+			else {
+				Assert.assertEquals("Left point " + x, values[interval], leftPoint.getValue(x), 0.0);
+				Assert.assertEquals("Right point " + x, values[interval + 1], rightPoint.getValue(x), 0.0);
+			}
+		}
+
+		// Linear extrapolation uses the slope of the boundary interval
+		RationalFunctionInterpolation linearExtrapolation = new RationalFunctionInterpolation(points, values, InterpolationMethod.CUBIC_SPLINE, ExtrapolationMethod.LINEAR);
+		double slope = (values[points.length - 1] - values[points.length - 2]) / (points[points.length - 1] - points[points.length - 2]);
+		Assert.assertEquals("Linear extrapolation", values[points.length - 1] + slope * 5.0, linearExtrapolation.getValue(points[points.length - 1] + 5.0), 1E-15);
+	}
+
+	@Test
+	public void testAkimaAgainstCommonsMath() {
+		double[] values = getValues(5);
+		RationalFunctionInterpolation interpolation = new RationalFunctionInterpolation(points, values, InterpolationMethod.AKIMA, ExtrapolationMethod.DEFAULT);
+		PolynomialSplineFunction reference = new AkimaSplineInterpolator().interpolate(points, values);
+
+		// The derivatives at the two first and two last points are defined differently at the boundary
+		for(double x = points[2]; x <= points[points.length - 3]; x += 0.01) {
+			Assert.assertEquals("Akima " + x, reference.value(x), interpolation.getValue(x), 1E-15);
+		}
+	}
+
+	@Test
+	public void testSmoothness() {
+		double[] values = getValues(7);
+		double h = 1E-7;
+		for(InterpolationMethod interpolationMethod : new InterpolationMethod[] { InterpolationMethod.CUBIC_SPLINE, InterpolationMethod.AKIMA, InterpolationMethod.HARMONIC_SPLINE }) {
+			RationalFunctionInterpolation interpolation = new RationalFunctionInterpolation(points, values, interpolationMethod, ExtrapolationMethod.DEFAULT);
+			for(int i = 1; i < points.length - 1; i++) {
+				// The derivatives of the polynomials of the adjacent intervals at the sample point
+				double leftDerivative = (values[i] - interpolation.getValue(points[i] - h)) / h;
+				double rightDerivative = (interpolation.getValue(points[i] + h) - values[i]) / h;
+				Assert.assertEquals(interpolationMethod + " C1 at " + points[i], leftDerivative, rightDerivative, 1E-5);
+				Assert.assertEquals(interpolationMethod + " C0 at " + points[i], values[i], interpolation.getValue(Math.nextDown(points[i])), 1E-14);
+			}
+		}
+
+		// The cubic spline is twice continuously differentiable
+		RationalFunctionInterpolation spline = new RationalFunctionInterpolation(points, values, InterpolationMethod.CUBIC_SPLINE, ExtrapolationMethod.DEFAULT);
+		h = 1E-4;
+		for(int i = 1; i < points.length - 1; i++) {
+			double leftSecondDerivative = (values[i] - 2 * spline.getValue(points[i] - h) + spline.getValue(points[i] - 2 * h)) / (h * h);
+			double rightSecondDerivative = (spline.getValue(points[i] + 2 * h) - 2 * spline.getValue(points[i] + h) + values[i]) / (h * h);
+			Assert.assertEquals("C2 at " + points[i], leftSecondDerivative, rightSecondDerivative, 1E-3);
+		}
+	}
+
+	@Test
+	public void testHarmonicSplinePreservesMonotonicity() {
+		double[] values = new double[points.length];
+		Random random = new Random(9);
+		for(int i = 1; i < points.length; i++) {
+			values[i] = values[i - 1] + (random.nextBoolean() ? 0.0 : random.nextDouble());
+		}
+		// Without the filtering the derivatives at the boundary points may overshoot
+		RationalFunctionInterpolation interpolation = new RationalFunctionInterpolation(points, values, InterpolationMethod.HARMONIC_SPLINE_WITH_MONOTONIC_FILTERING, ExtrapolationMethod.CONSTANT);
+		double previousValue = interpolation.getValue(points[0]);
+		for(double x = points[0]; x <= points[points.length - 1]; x += 0.001) {
+			double value = interpolation.getValue(x);
+			Assert.assertTrue("Monotonicity at " + x, value >= previousValue - 1E-14);
+			previousValue = value;
+		}
+	}
+
+	@Test
+	public void testSerialization() throws IOException, ClassNotFoundException {
+		double[] values = getValues(11);
+		for(InterpolationMethod interpolationMethod : InterpolationMethod.values()) {
+			RationalFunctionInterpolation interpolation = new RationalFunctionInterpolation(points, values, interpolationMethod, ExtrapolationMethod.LINEAR);
+
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			try(ObjectOutputStream stream = new ObjectOutputStream(bytes)) {
+				stream.writeObject(interpolation);
+			}
+			RationalFunctionInterpolation deserialized;
+			try(ObjectInputStream stream = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+				deserialized = (RationalFunctionInterpolation)stream.readObject();
+			}
+
+			for(double x : getArguments(new Random(12))) {
+				Assert.assertEquals(interpolationMethod + " " + x, interpolation.getValue(x), deserialized.getValue(x), 0.0);
+			}
+		}
+	}
+
+	private static double[] getValues(long seed) {
+		Random random = new Random(seed);
+		double[] values = new double[points.length];
+		for(int i = 0; i < points.length; i++) {
+			values[i] = 0.02 + 0.01 * Math.sin(points[i]) + 0.002 * random.nextGaussian();
+		}
+		return values;
+	}
+
+	/**
+	 * Returns arguments inside and outside of the sample points, including the sample points, in random order.
+	 */
+	private static double[] getArguments(Random random) {
+		double[] arguments = new double[500 + points.length];
+		for(int i = 0; i < 500; i++) {
+			arguments[i] = -2.0 + 25.0 * random.nextDouble();
+		}
+		System.arraycopy(points, 0, arguments, 500, points.length);
+		for(int i = arguments.length - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			double argument = arguments[i];
+			arguments[i] = arguments[j];
+			arguments[j] = argument;
+		}
+		return arguments;
+	}
+}
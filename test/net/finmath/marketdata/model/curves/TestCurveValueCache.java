@@ -0,0 +1,251 @@
+package net.finmath.marketdata.model.curves;
+
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.finmath.marketdata.model.curves.Curve.ExtrapolationMethod;
+import net.finmath.marketdata.model.curves.Curve.InterpolationEntity;
+import net.finmath.marketdata.model.curves.Curve.InterpolationMethod;
+
+public class TestCurveValueCache {
+
+	private static final LocalDate referenceDate = LocalDate.of(2018, 9, 3);
+	private static final double[] times = { 0.25, 0.5, 1.0, 2.0, 3.0, 5.0, 7.0, 10.0, 20.0, 30.0 };
+	private static final double[] values = { 0.999, 0.998, 0.995, 0.99, 0.98, 0.96, 0.93, 0.88, 0.75, 0.62 };
+
+	@Test
+	public void testCachedCurveAgainstUncachedCurve() {
+		Random random = new Random(1);
+		double[] arguments = new double[3000];
+		for(int i = 0; i < arguments.length; i++) {
+			// Repeated times, sample times, times outside of the sample times and signed zeros
+			int type = random.nextInt(4);
+			arguments[i] = type == 0 ? times[random.nextInt(times.length)] : type == 1 ? arguments[random.nextInt(i + 1)] : -1.0 + 40.0 * random.nextDouble();
+		}
+		arguments[0] = 0.0;
+		arguments[1] = -0.0;
+
+		for(InterpolationMethod interpolationMethod : InterpolationMethod.values()) {
+			for(InterpolationEntity interpolationEntity : InterpolationEntity.values()) {
+				Curve curve = new Curve("cached", referenceDate, interpolationMethod, ExtrapolationMethod.CONSTANT, interpolationEntity, times, values);
+				Curve uncachedCurve = new Curve("uncached", referenceDate, interpolationMethod, ExtrapolationMethod.CONSTANT, interpolationEntity, times, values);
+				uncachedCurve.setValueCache(new CurveValueCache(0, 1));
+
+				String message = interpolationMethod + " " + interpolationEntity;
+				for(int repetition = 0; repetition < 2; repetition++) {
+					for(double time : arguments) {
+						double expected = uncachedCurve.getValue(time);
+						double value = curve.getValue(time);
+						Assert.assertEquals(message + " at " + time, Double.doubleToLongBits(expected), Double.doubleToLongBits(value));
+					}
+				}
+
+				CurveValueCache cache = curve.getValueCache();
+				Assert.assertEquals(CurveValueCache.Mode.HASHED, cache.getMode());
+				Assert.assertTrue(message + " hits", cache.getNumberOfHits() >= arguments.length);
+				Assert.assertTrue(message + " entries", cache.getNumberOfEntries() <= cache.getCapacity());
+				Assert.assertEquals(message + " bypasses", 2 * arguments.length, uncachedCurve.getValueCache().getNumberOfBypasses());
+			}
+		}
+	}
+
+	@Test
+	public void testNewParametersAreNotReadFromTheCache() throws CloneNotSupportedException {
+		Curve.CurveBuilder builder = new Curve.CurveBuilder("curve", referenceDate);
+		builder.setInterpolationMethod(InterpolationMethod.CUBIC_SPLINE);
+		for(int i = 0; i < times.length; i++) {
+			builder.addPoint(times[i], values[i], true);
+		}
+		Curve curve = (Curve)builder.build();
+		curve.setValueCache(new CurveValueCache(0.0, 0.25, 121));
+
+		double[] valuesBefore = new double[121];
+		for(int i = 0; i < valuesBefore.length; i++) {
+			valuesBefore[i] = curve.getValue(i * 0.25);
+		}
+		Assert.assertEquals("Grid entries", 121, curve.getValueCache().getNumberOfEntries());
+
+		double[] parameter = curve.getParameter();
+		for(int i = 0; i < parameter.length; i++) {
+			parameter[i] *= 0.99;
+		}
+		Curve newCurve = (Curve)curve.getCloneForParameter(parameter);
+		Assert.assertEquals("Configuration of the clone", CurveValueCache.Mode.UNIFORM_GRID, newCurve.getValueCache().getMode());
+		Assert.assertEquals("Entries of the clone", 0, newCurve.getValueCache().getNumberOfEntries());
+
+		Curve uncachedNewCurve = newCurve.clone();
+		uncachedNewCurve.setValueCache(new CurveValueCache(0, 1));
+		for(int i = 0; i < valuesBefore.length; i++) {
+			Assert.assertEquals("Curve at " + i * 0.25, valuesBefore[i], curve.getValue(i * 0.25), 0.0);
+			Assert.assertEquals("New curve at " + i * 0.25, uncachedNewCurve.getValue(i * 0.25), newCurve.getValue(i * 0.25), 0.0);
+			Assert.assertTrue("New curve at " + i * 0.25, i == 0 || newCurve.getValue(i * 0.25) != valuesBefore[i]);
+		}
+	}
+
+	@Test
+	public void testAddPointReplacesTheCache() {
+		Curve curve = new Curve("curve", referenceDate, InterpolationMethod.LINEAR, ExtrapolationMethod.CONSTANT, InterpolationEntity.VALUE, times, values);
+		double valueBefore = curve.getValue(1.5);
+		CurveValueCache cacheBefore = curve.getValueCache();
+
+		curve.addPoint(1.5, 0.5, false);
+		CurveValueCache cache = curve.getValueCache();
+		// The previous cache is not modified, a getValue still using it would not affect the curve
+		Assert.assertTrue("New cache", cache != cacheBefore);
+		Assert.assertEquals("Previous cache", valueBefore, cacheBefore.get(1.5), 0.0);
+		Assert.assertEquals("Entries of the new cache", 0, cache.getNumberOfEntries());
+		Assert.assertEquals("Configuration of the new cache", cacheBefore.getCapacity(), cache.getCapacity());
+		Assert.assertEquals("Value at the new point", 0.5, curve.getValue(1.5), 0.0);
+	}
+
+	@Test
+	public void testUniformGrid() {
+		CurveValueCache cache = new CurveValueCache(1.0, 0.1, 50);
+		double[] gridTimes = new double[50];
+		double time = 1.0;
+		for(int i = 0; i < 50; i++) {
+			// Times accumulated by repeated additions are on the grid up to a small relative error
+			gridTimes[i] = time;
+			cache.put(time, i);
+			time += 0.1;
+		}
+		Assert.assertEquals("Entries", 50, cache.getNumberOfEntries());
+		for(int i = 0; i < 50; i++) {
+			Assert.assertEquals("Grid time " + i, i, cache.get(gridTimes[i]), 0.0);
+		}
+		Assert.assertEquals("Hits", 50, cache.getNumberOfHits());
+		Assert.assertEquals("Hit ratio", 1.0, cache.getHitRatio(), 0.0);
+
+		// A time of the same grid point which differs from the stored one is a miss, its value may differ
+		Assert.assertTrue("Other time of the grid point", gridTimes[2] != 1.0 + 2 * 0.1 - 1E-15 && Double.isNaN(cache.get(1.0 + 2 * 0.1 - 1E-15)));
+		Assert.assertEquals("Misses", 1, cache.getNumberOfMisses());
+
+		// Times off the grid or outside of the grid bypass the cache
+		for(double offGridTime : new double[] { 1.05, 0.9, 1.0 + 50 * 0.1, Double.NaN, Double.POSITIVE_INFINITY }) {
+			cache.put(offGridTime, 1.0);
+			Assert.assertTrue("Off grid " + offGridTime, Double.isNaN(cache.get(offGridTime)));
+		}
+		Assert.assertEquals("Bypasses", 5, cache.getNumberOfBypasses());
+		Assert.assertEquals("Entries", 50, cache.getNumberOfEntries());
+
+		cache.clear();
+		Assert.assertEquals("Entries after clear", 0, cache.getNumberOfEntries());
+		Assert.assertTrue("After clear", Double.isNaN(cache.get(1.0)));
+		cache.resetMetrics();
+		Assert.assertEquals("Misses after reset", 0, cache.getNumberOfMisses());
+	}
+
+	@Test
+	public void testHashedCacheIsBounded() {
+		CurveValueCache cache = new CurveValueCache(60, 4);
+		Assert.assertEquals("Capacity", 64, cache.getCapacity());
+		Random random = new Random(3);
+		for(int i = 0; i < 10000; i++) {
+			double time = 30.0 * random.nextDouble();
+			cache.put(time, -time);
+			Assert.assertEquals("Value just stored", -time, cache.get(time), 0.0);
+		}
+		Assert.assertTrue("Entries", cache.getNumberOfEntries() <= 64);
+		Assert.assertTrue("Evictions", cache.getNumberOfEvictions() > 10000 - 64 - 1);
+
+		// An entry is replaced by put for the same time only if it is not in the cache
+		cache.put(1.5, 2.0);
+		cache.put(1.5, 3.0);
+		Assert.assertEquals("First value kept", 2.0, cache.get(1.5), 0.0);
+
+		// NaN values are not stored, NaN times bypass the cache, signed zeros are distinct times
+		cache.put(2.5, Double.NaN);
+		Assert.assertTrue("NaN value", Double.isNaN(cache.get(2.5)));
+		cache.put(0.0, 1.0);
+		cache.put(-0.0, -1.0);
+		Assert.assertEquals("Zero", 1.0, cache.get(0.0), 0.0);
+		Assert.assertEquals("Negative zero", -1.0, cache.get(-0.0), 0.0);
+		long bypasses = cache.getNumberOfBypasses();
+		Assert.assertTrue("NaN time", Double.isNaN(cache.get(Double.NaN)));
+		Assert.assertEquals("NaN time", bypasses + 1, cache.getNumberOfBypasses());
+
+		CurveValueCache disabled = new CurveValueCache(0, 1);
+		disabled.put(1.0, 1.0);
+		Assert.assertEquals(CurveValueCache.Mode.DISABLED, disabled.getMode());
+		Assert.assertTrue("Disabled", Double.isNaN(disabled.get(1.0)));
+		Assert.assertEquals("Disabled", 0, disabled.getNumberOfEntries());
+		Assert.assertTrue("Disabled", Double.isNaN(disabled.getHitRatio()));
+	}
+
+	@Test
+	public void testConcurrentReads() throws Exception {
+		Curve curve = new Curve("curve", referenceDate, InterpolationMethod.LINEAR, ExtrapolationMethod.CONSTANT, InterpolationEntity.LOG_OF_VALUE_PER_TIME, times, values);
+		// A small cache with many evictions, such that entries are overwritten while they are read
+		curve.setValueCache(new CurveValueCache(32, 2));
+		Curve uncachedCurve = new Curve("uncached", referenceDate, InterpolationMethod.LINEAR, ExtrapolationMethod.CONSTANT, InterpolationEntity.LOG_OF_VALUE_PER_TIME, times, values);
+		uncachedCurve.setValueCache(new CurveValueCache(0, 1));
+
+		double[] arguments = new double[500];
+		double[] expectedValues = new double[arguments.length];
+		for(int i = 0; i < arguments.length; i++) {
+			arguments[i] = 0.1 + i * 0.06;
+			expectedValues[i] = uncachedCurve.getValue(arguments[i]);
+		}
+
+		int numberOfThreads = 8;
+		AtomicLong numberOfWrongValues = new AtomicLong();
+		ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+		try {
+			Future<?>[] futures = new Future<?>[numberOfThreads];
+			for(int thread = 0; thread < numberOfThreads; thread++) {
+				final long seed = thread;
+				futures[thread] = executor.submit(() -> {
+					Random random = new Random(seed);
+					for(int k = 0; k < 200000; k++) {
+						int i = random.nextInt(arguments.length);
+						if(Double.doubleToLongBits(curve.getValue(arguments[i])) != Double.doubleToLongBits(expectedValues[i])) {
+							numberOfWrongValues.incrementAndGet();
+						}
+					}
+				});
+			}
+			for(Future<?> future : futures) {
+				future.get();
+			}
+		}
+		finally {
+			executor.shutdown();
+			executor.awaitTermination(1, TimeUnit.MINUTES);
+		}
+
+		CurveValueCache cache = curve.getValueCache();
+		System.out.println(cache);
+		Assert.assertEquals("Wrong values", 0, numberOfWrongValues.get());
+		Assert.assertTrue("Entries", cache.getNumberOfEntries() <= 32);
+		Assert.assertEquals("Calls", (long)numberOfThreads * 200000, cache.getNumberOfHits() + cache.getNumberOfMisses());
+	}
+
+	@Test
+	public void testInvalidArguments() {
+		int numberOfExceptions = 0;
+		Runnable[] constructors = {
+				() -> new CurveValueCache(-1, 1),
+				() -> new CurveValueCache(16, 0),
+				() -> new CurveValueCache(Double.NaN, 0.1, 10),
+				() -> new CurveValueCache(0.0, 0.0, 10),
+				() -> new CurveValueCache(0.0, 0.1, 0)
+		};
+		for(Runnable constructor : constructors) {
+			try {
+				constructor.run();
+			}
+			catch(IllegalArgumentException e) {
+				numberOfExceptions++;
+			}
+		}
+		Assert.assertEquals("Exceptions", constructors.length, numberOfExceptions);
+	}
+}
@@ -0,0 +1,135 @@
+package net.finmath.montecarlo;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestOrderStatistics {
+
+	@Test
+	public void testSelectAgainstSort() {
+		Random random = new Random(3141);
+		for(int test = 0; test < 200; test++) {
+			double[] values = getValues(random, 1 + random.nextInt(2000));
+			double[] sorted = values.clone();
+			Arrays.sort(sorted);
+			int k = random.nextInt(values.length);
+			Assert.assertEquals("Value of rank " + k, sorted[k], OrderStatistics.select(values.clone(), k), 0.0);
+		}
+	}
+
+	@Test
+	public void testSortCarriesWeights() {
+		Random random = new Random(2718);
+		double[] values = getValues(random, 5000);
+		double[] weights = new double[values.length];
+		for(int i = 0; i < values.length; i++) {
+			// The weight identifies the value
+			weights[i] = Double.isNaN(values[i]) ? -1.0 : values[i] * 2.0;
+		}
+		double[] sorted = values.clone();
+		Arrays.sort(sorted);
+
+		OrderStatistics.sort(values, weights, 0, values.length);
+		for(int i = 0; i < values.length; i++) {
+			Assert.assertEquals("Value " + i, sorted[i], values[i], 0.0);
+			Assert.assertEquals("Weight " + i, Double.isNaN(values[i]) ? -1.0 : values[i] * 2.0, weights[i], 0.0);
+		}
+	}
+
+	@Test
+	public void testSelectWeightedAgainstCumulatedWeights() {
+		Random random = new Random(1618);
+		for(int test = 0; test < 200; test++) {
+			int n = 1 + random.nextInt(500);
+			double[] values = new double[n];
+			double[] weights = new double[n];
+			for(int i = 0; i < n; i++) {
+				values[i] = random.nextInt(50);
+				// Multiples of 1/4, such that the sums of the weights do not depend on the order of the summation
+				weights[i] = 0.25 * random.nextInt(5);
+			}
+			double quantile = random.nextDouble();
+
+			double expected = getWeightedQuantile(values, weights, quantile);
+			double value = OrderStatistics.selectWeighted(values.clone(), weights.clone(), quantile);
+			Assert.assertEquals("Weighted quantile " + quantile, expected, value, 0.0);
+		}
+	}
+
+	@Test
+	public void testSignedZerosAsSorted() {
+		Random random = new Random(1414);
+		for(int test = 0; test < 100; test++) {
+			// Many values -0.0 and 0.0, ordered as by Arrays.sort
+			double[] values = new double[1 + random.nextInt(1000)];
+			double[] weights = new double[values.length];
+			for(int i = 0; i < values.length; i++) {
+				int type = random.nextInt(5);
+				values[i] = type == 0 ? -1.0 : type == 1 ? 1.0 : type == 2 ? -0.0 : 0.0;
+				weights[i] = 1.0;
+			}
+			double[] sorted = values.clone();
+			Arrays.sort(sorted);
+
+			int k = random.nextInt(values.length);
+			Assert.assertEquals("Value of rank " + k, Double.doubleToLongBits(sorted[k]), Double.doubleToLongBits(OrderStatistics.select(values.clone(), k)));
+			double quantile = (k + 0.5) / values.length;
+			Assert.assertEquals("Weighted quantile " + quantile, Double.doubleToLongBits(sorted[k]), Double.doubleToLongBits(OrderStatistics.selectWeighted(values.clone(), weights.clone(), quantile)));
+
+			double[] sortedWithWeights = values.clone();
+			OrderStatistics.sort(sortedWithWeights, weights, 0, values.length);
+			for(int i = 0; i < values.length; i++) {
+				Assert.assertEquals("Value " + i, Double.doubleToLongBits(sorted[i]), Double.doubleToLongBits(sortedWithWeights[i]));
+			}
+		}
+	}
+
+	@Test
+	public void testSelectWeightedEdgeCases() {
+		double[] values = { 3.0, 1.0, 2.0, Double.NaN };
+		double[] weights = { 1.0, 1.0, 1.0, 1.0 };
+
+		Assert.assertEquals("Quantile 0", 1.0, OrderStatistics.selectWeighted(values.clone(), weights.clone(), 0.0), 0.0);
+		Assert.assertEquals("Quantile 0.5", 2.0, OrderStatistics.selectWeighted(values.clone(), weights.clone(), 0.5), 0.0);
+		Assert.assertEquals("Quantile 0.75", 3.0, OrderStatistics.selectWeighted(values.clone(), weights.clone(), 0.75), 0.0);
+		// The weight of the NaN is above the level 0.75
+		Assert.assertTrue("Quantile 1", Double.isNaN(OrderStatistics.selectWeighted(values.clone(), weights.clone(), 1.0)));
+		Assert.assertTrue("Only NaN", Double.isNaN(OrderStatistics.selectWeighted(new double[] { Double.NaN }, new double[] { 1.0 }, 0.5)));
+	}
+
+	/**
+	 * Returns an array with many ties and a few NaN values.
+	 */
+	private static double[] getValues(Random random, int n) {
+		double[] values = new double[n];
+		for(int i = 0; i < n; i++) {
+			int type = random.nextInt(10);
+			values[i] = type == 0 ? Double.NaN : type < 5 ? random.nextInt(10) : random.nextGaussian();
+		}
+		return values;
+	}
+
+	/**
+	 * Reference: the smallest value whose cumulated weight (sorted values) reaches quantile times the total weight.
+	 */
+	private static double getWeightedQuantile(double[] values, double[] weights, double quantile) {
+		Integer[] order = new Integer[values.length];
+		double totalWeight = 0.0;
+		for(int i = 0; i < values.length; i++) {
+			order[i] = i;
+			totalWeight += weights[i];
+		}
+		Arrays.sort(order, (i, j) -> Double.compare(values[i], values[j]));
+		double cumulatedWeight = 0.0;
+		for(int i = 0; i < values.length; i++) {
+			cumulatedWeight += weights[order[i]];
+			if(cumulatedWeight >= quantile * totalWeight) {
+				return values[order[i]];
+			}
+		}
+		return values[order[values.length - 1]];
+	}
+}
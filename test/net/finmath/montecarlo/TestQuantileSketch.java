@@ -0,0 +1,144 @@
+package net.finmath.montecarlo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestQuantileSketch {
+
+	@Test
+	public void testQuantilesAgainstSortedValues() {
+		Random random = new Random(42);
+		double[] values = new double[200000];
+		QuantileSketch sketch = new QuantileSketch();
+		for(int i = 0; i < values.length; i++) {
+			values[i] = random.nextGaussian();
+			sketch.add(values[i]);
+		}
+		Arrays.sort(values);
+
+		Assert.assertEquals("Total weight", values.length, sketch.getTotalWeight(), 0.0);
+		Assert.assertEquals("Quantile 0", values[0], sketch.getQuantile(0.0), 0.0);
+		Assert.assertEquals("Quantile 1", values[values.length - 1], sketch.getQuantile(1.0), 0.0);
+		for(double quantile : new double[] { 0.0001, 0.001, 0.01, 0.1, 0.5, 0.9, 0.99, 0.999, 0.9999 }) {
+			double exact = values[(int)(quantile * values.length)];
+			// The error is measured in quantile levels, the sketch being accurate in the tails
+			double level = (double)getRank(values, sketch.getQuantile(quantile)) / values.length;
+			Assert.assertEquals("Quantile " + quantile + " (exact " + exact + ")", quantile, level, 0.002 * Math.sqrt(quantile * (1 - quantile)) + 1E-5);
+		}
+
+		double expectedShortfall = 0.0;
+		for(int i = (int)(0.99 * values.length); i < values.length; i++) {
+			expectedShortfall += values[i];
+		}
+		expectedShortfall /= values.length - (int)(0.99 * values.length);
+		Assert.assertEquals("Quantile expectation", expectedShortfall, sketch.getQuantileExpectation(0.99, 1.0), 1E-2);
+		Assert.assertTrue("Number of centroids", sketch.getNumberOfCentroids() < 200);
+	}
+
+	@Test
+	public void testMergeAgreesWithSingleSketch() {
+		Random random = new Random(7);
+		QuantileSketch sketch = new QuantileSketch();
+		QuantileSketch[] parts = new QuantileSketch[8];
+		for(int part = 0; part < parts.length; part++) {
+			parts[part] = new QuantileSketch();
+			for(int i = 0; i < 25000; i++) {
+				double value = Math.exp(random.nextGaussian());
+				sketch.add(value);
+				parts[part].add(value, 1.0);
+			}
+		}
+
+		QuantileSketch merged = new QuantileSketch();
+		for(QuantileSketch part : parts) {
+			merged.merge(part);
+		}
+
+		Assert.assertEquals("Total weight", sketch.getTotalWeight(), merged.getTotalWeight(), 0.0);
+		Assert.assertEquals("Min", sketch.getMin(), merged.getMin(), 0.0);
+		Assert.assertEquals("Max", sketch.getMax(), merged.getMax(), 0.0);
+		for(double quantile : new double[] { 0.001, 0.01, 0.5, 0.99, 0.999 }) {
+			Assert.assertEquals("Quantile " + quantile, sketch.getQuantile(quantile), merged.getQuantile(quantile), 1E-2 * sketch.getQuantile(quantile));
+		}
+	}
+
+	@Test
+	public void testMergeDoesNotModifyOther() throws IOException {
+		Random random = new Random(9);
+		QuantileSketch other = new QuantileSketch();
+		for(int i = 0; i < 3333; i++) {
+			other.add(random.nextDouble());
+		}
+		// The sketch has buffered values which are not compressed yet
+		byte[] state = serialize(other);
+
+		QuantileSketch first = new QuantileSketch();
+		QuantileSketch second = new QuantileSketch();
+		first.merge(other);
+		second.merge(other);
+
+		Assert.assertArrayEquals("State of the merged sketch", state, serialize(other));
+		Assert.assertEquals("Quantile", first.getQuantile(0.3), second.getQuantile(0.3), 0.0);
+		Assert.assertEquals("Quantile", other.getQuantile(0.3), first.getQuantile(0.3), 1E-2);
+	}
+
+	@Test
+	public void testEdgeCases() {
+		QuantileSketch sketch = new QuantileSketch();
+		Assert.assertTrue("Empty", Double.isNaN(sketch.getQuantile(0.5)));
+		Assert.assertTrue("Empty", Double.isNaN(sketch.getMin()));
+
+		sketch.add(3.0, 2.0);
+		Assert.assertEquals("Single value", 3.0, sketch.getQuantile(0.1), 0.0);
+		Assert.assertEquals("Single value", 3.0, sketch.getQuantileExpectation(0.2, 0.8), 0.0);
+
+		try {
+			sketch.add(Double.NaN);
+			Assert.fail("NaN value");
+		}
+		catch(IllegalArgumentException e) {
+		}
+		try {
+			sketch.add(1.0, 0.0);
+			Assert.fail("Zero weight");
+		}
+		catch(IllegalArgumentException e) {
+		}
+		try {
+			sketch.merge(sketch);
+			Assert.fail("Merge with itself");
+		}
+		catch(IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void testToStringDoesNotChangeTheState() throws IOException {
+		QuantileSketch sketch = new QuantileSketch();
+		for(int i = 0; i < 100; i++) {
+			sketch.add(i * 0.5);
+		}
+		byte[] state = serialize(sketch);
+		Assert.assertTrue("Buffered values", sketch.toString().contains("number of buffered values: 100"));
+		Assert.assertArrayEquals("State after toString", state, serialize(sketch));
+	}
+
+	private static int getRank(double[] sorted, double value) {
+		int index = Arrays.binarySearch(sorted, value);
+		return index >= 0 ? index : -index - 1;
+	}
+
+	private static byte[] serialize(Object object) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try(ObjectOutputStream stream = new ObjectOutputStream(bytes)) {
+			stream.writeObject(object);
+		}
+		return bytes.toByteArray();
+	}
+}
@@ -0,0 +1,80 @@
+package net.finmath.montecarlo;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.finmath.stochastic.RandomVariableInterface;
+
+public class TestRandomVariableExpression {
+
+	private static final int numberOfPaths = 1000;
+
+	@Test
+	public void testLongChainIsEvaluatedOnce() {
+		int chainLength = 2000;
+		double[] realizations = getRealizations(1);
+
+		AtomicIntegerArray numberOfEvaluations = new AtomicIntegerArray(chainLength);
+		RandomVariableInterface value = new RandomVariableExpression(0.0, realizations.clone());
+		for(int k = 0; k < chainLength; k++) {
+			final int node = k;
+			value = value.apply(x -> {
+				numberOfEvaluations.incrementAndGet(node);
+				return x + 1.0;
+			});
+		}
+
+		// Evaluated nodes become leafs: the chain is not evaluated node by node once it exceeds the maximum depth
+		int numberOfNodesEvaluatedAtConstruction = 0;
+		for(int k = 0; k < chainLength; k++) {
+			if(numberOfEvaluations.get(k) > 0) {
+				numberOfNodesEvaluatedAtConstruction++;
+			}
+		}
+		System.out.println("Nodes evaluated at construction: " + numberOfNodesEvaluatedAtConstruction + " of " + chainLength + ".");
+		for(int k = chainLength - 100; k < chainLength; k++) {
+			Assert.assertEquals("Pending node " + k, 0, numberOfEvaluations.get(k));
+		}
+
+		double[] values = value.getRealizations();
+		for(int k = 0; k < chainLength; k++) {
+			Assert.assertEquals("Evaluations of node " + k, numberOfPaths, numberOfEvaluations.get(k));
+		}
+		for(int i = 0; i < numberOfPaths; i++) {
+			Assert.assertEquals("Realization " + i, realizations[i] + chainLength, values[i], 1E-10);
+		}
+	}
+
+	@Test
+	public void testOperatorsAgainstRandomVariable() {
+		double[] realizations = getRealizations(2);
+		RandomVariableInterface reference = new RandomVariable(0.0, realizations.clone());
+		RandomVariableInterface value = new RandomVariableExpression(0.0, realizations.clone());
+
+		RandomVariableInterface[][] pairs = {
+				{ reference.exp().mult(2.0).add(reference), value.exp().mult(2.0).add(value) },
+				{ reference.abs().log().sin(), value.abs().log().sin() },
+				{ reference.abs().pow(1.7).cos(), value.abs().pow(1.7).cos() },
+				{ reference.abs().sqrt().div(reference.squared().add(1.0)), value.abs().sqrt().div(value.squared().add(1.0)) },
+				{ reference.floor(0.0).addProduct(reference, 3.0), value.floor(0.0).addProduct(value, 3.0) }
+		};
+		for(RandomVariableInterface[] pair : pairs) {
+			for(int i = 0; i < numberOfPaths; i++) {
+				Assert.assertEquals("Realization " + i, pair[0].get(i), pair[1].get(i), 0.0);
+			}
+			Assert.assertEquals("Average", pair[0].getAverage(), pair[1].getAverage(), 1E-14 * Math.abs(pair[0].getAverage()));
+		}
+	}
+
+	private static double[] getRealizations(long seed) {
+		Random random = new Random(seed);
+		double[] realizations = new double[numberOfPaths];
+		for(int i = 0; i < numberOfPaths; i++) {
+			realizations[i] = 4.0 * random.nextDouble() - 2.0;
+		}
+		return realizations;
+	}
+}
@@ -0,0 +1,68 @@
+package net.finmath.montecarlo;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.finmath.stochastic.RandomVariableInterface;
+
+public class TestRandomVariableOffHeap {
+
+	@Test
+	public void testReductionsAgainstRandomVariable() {
+		Random random = new Random(5);
+		// Sizes below and above the size of the parallel reductions
+		for(int size : new int[] { 1, 2, 1001, 300007 }) {
+			double[] realizations = new double[size];
+			double[] weights = new double[size];
+			for(int i = 0; i < size; i++) {
+				realizations[i] = random.nextInt(4) == 0 ? random.nextInt(5) : Math.exp(random.nextGaussian());
+				weights[i] = random.nextDouble();
+			}
+			RandomVariableInterface reference = new RandomVariable(0.0, realizations.clone());
+			RandomVariableInterface randomVariable = new RandomVariableOffHeap(0.0, realizations);
+
+			RandomVariableInterface[] probabilities = {
+					new RandomVariable(0.0, weights.clone()),
+					new RandomVariableOffHeap(0.0, weights),
+					new RandomVariable(0.0, 0.25)
+			};
+
+			String message = "Size " + size;
+			Assert.assertEquals(message, reference.getAverage(), randomVariable.getAverage(), 0.0);
+			Assert.assertEquals(message, reference.getVariance(), randomVariable.getVariance(), 0.0);
+			Assert.assertEquals(message, reference.getSampleVariance(), randomVariable.getSampleVariance(), 0.0);
+			Assert.assertEquals(message, reference.getStandardDeviation(), randomVariable.getStandardDeviation(), 0.0);
+			Assert.assertEquals(message, reference.getStandardError(), randomVariable.getStandardError(), 0.0);
+			for(RandomVariableInterface probability : probabilities) {
+				Assert.assertEquals(message, reference.getAverage(probability), randomVariable.getAverage(probability), 0.0);
+				Assert.assertEquals(message, reference.getVariance(probability), randomVariable.getVariance(probability), 0.0);
+				Assert.assertEquals(message, reference.getStandardError(probability), randomVariable.getStandardError(probability), 0.0);
+				Assert.assertEquals(message, reference.getQuantile(0.3, probability), randomVariable.getQuantile(0.3, probability), 0.0);
+			}
+			for(double quantile : new double[] { 0.0, 0.01, 0.5, 0.99, 1.0 }) {
+				Assert.assertEquals(message, reference.getQuantile(quantile), randomVariable.getQuantile(quantile), 0.0);
+			}
+			// A new random variable computes its first quantile expectation by selection, like RandomVariableOffHeap
+			Assert.assertEquals(message, new RandomVariable(0.0, realizations.clone()).getQuantileExpectation(0.95, 1.0), randomVariable.getQuantileExpectation(0.95, 1.0), 0.0);
+			Assert.assertEquals(message, new RandomVariable(0.0, realizations.clone()).getQuantileExpectation(0.6, 0.1), randomVariable.getQuantileExpectation(0.6, 0.1), 0.0);
+			Assert.assertEquals(message, reference.getQuantileExpectation(0.6, 0.1), randomVariable.getQuantileExpectation(0.6, 0.1), 1E-14 * Math.abs(reference.getQuantileExpectation(0.6, 0.1)));
+			Assert.assertArrayEquals(message, reference.getHistogram(new double[] { 0.0, 1.0, 1.0, 2.5 }), randomVariable.getHistogram(new double[] { 0.0, 1.0, 1.0, 2.5 }), 0.0);
+			Assert.assertArrayEquals(message, reference.getHistogram(7, 2.0)[1], randomVariable.getHistogram(7, 2.0)[1], 0.0);
+		}
+	}
+
+	@Test
+	public void testRealizationsAreNotModified() {
+		double[] realizations = { 3.0, Double.NaN, -1.0, 2.0, 0.5 };
+		RandomVariableOffHeap randomVariable = new RandomVariableOffHeap(1.0, realizations);
+		randomVariable.getQuantile(0.5);
+		randomVariable.getQuantileExpectation(0.2, 0.8);
+		randomVariable.getQuantile(0.5, new RandomVariable(0.0, 1.0));
+
+		Assert.assertArrayEquals("Realizations", realizations, randomVariable.getRealizations(), 0.0);
+		Assert.assertEquals("Filtration time", 1.0, randomVariable.getRandomVariable().getFiltrationTime(), 0.0);
+		Assert.assertTrue("Empty", Double.isNaN(new RandomVariableOffHeap(0.0, new double[0]).getVariance()));
+	}
+}
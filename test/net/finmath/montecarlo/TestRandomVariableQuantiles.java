@@ -0,0 +1,174 @@
+package net.finmath.montecarlo;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.finmath.stochastic.RandomVariableInterface;
+
+public class TestRandomVariableQuantiles {
+
+	private static final double[] quantiles = { 0.0, 1E-6, 0.01, 0.1, 0.25, 0.5, 0.5, 0.75, 0.9, 0.99, 1.0 - 1E-6, 1.0, -0.5, 1.5, Double.NaN };
+
+	@Test
+	public void testQuantilesAgainstSortedRealizations() {
+		double[] realizations = getRealizations(new Random(7), 10001, true);
+		double[] sorted = realizations.clone();
+		Arrays.sort(sorted);
+
+		// The first request is computed by selection, the second one sorts, the following ones read the sorted realizations
+		RandomVariableInterface randomVariable = new RandomVariable(0.0, realizations.clone());
+		for(int repetition = 0; repetition < 3; repetition++) {
+			for(double quantile : quantiles) {
+				Assert.assertEquals("Quantile " + quantile, getQuantile(sorted, quantile), randomVariable.getQuantile(quantile), 0.0);
+			}
+		}
+	}
+
+	@Test
+	public void testQuantileExpectationAgainstSortedRealizations() {
+		double[] realizations = getRealizations(new Random(11), 5000, false);
+		double[] sorted = realizations.clone();
+		Arrays.sort(sorted);
+
+		double[][] levels = { { 0.0, 0.05 }, { 0.95, 1.0 }, { 0.2, 0.7 }, { 0.7, 0.2 }, { 0.5, 0.5 }, { 0.0, 1.0 } };
+		for(double[] level : levels) {
+			// A new random variable, such that the first request is computed by selection
+			RandomVariableInterface randomVariable = new RandomVariable(0.0, realizations.clone());
+			double expected = getQuantileExpectation(sorted, level[0], level[1]);
+			Assert.assertEquals("Quantile expectation (selection)", expected, randomVariable.getQuantileExpectation(level[0], level[1]), 1E-12 * Math.abs(expected));
+			randomVariable.getQuantile(0.5);
+			Assert.assertEquals("Quantile expectation (sorted)", expected, randomVariable.getQuantileExpectation(level[0], level[1]), 1E-12 * Math.abs(expected));
+		}
+	}
+
+	@Test
+	public void testWeightedQuantile() {
+		double[] realizations = getRealizations(new Random(13), 1000, false);
+		double[] sorted = realizations.clone();
+		Arrays.sort(sorted);
+		RandomVariableInterface randomVariable = new RandomVariable(0.0, realizations);
+
+		// Equal weights: the realization of index ceil(quantile * n) - 1 of the sorted realizations
+		RandomVariableInterface equalWeights = new RandomVariable(0.0, 1.0);
+		for(double quantile : new double[] { 0.001, 0.1, 0.5, 0.9, 1.0 }) {
+			int index = (int)Math.ceil(quantile * realizations.length) - 1;
+			Assert.assertEquals("Quantile " + quantile, sorted[index], randomVariable.getQuantile(quantile, equalWeights), 0.0);
+		}
+
+		// All the weight on one realization
+		double[] weights = new double[realizations.length];
+		weights[123] = 1.0;
+		RandomVariableInterface probabilities = new RandomVariable(0.0, weights);
+		for(double quantile : new double[] { 0.01, 0.5, 1.0 }) {
+			Assert.assertEquals("Quantile " + quantile, realizations[123], randomVariable.getQuantile(quantile, probabilities), 0.0);
+		}
+
+		Assert.assertEquals("Deterministic", 2.0, new RandomVariable(0.0, 2.0).getQuantile(0.3, equalWeights), 0.0);
+	}
+
+	@Test
+	public void testHistogramAgainstSortedRealizations() {
+		double[] realizations = getRealizations(new Random(17), 20000, true);
+		double[] intervalPoints = { -2.0, -1.0, 0.0, 0.0, 1.0, 2.5, 3.0 };
+
+		double[] expected = getHistogram(realizations, intervalPoints);
+		double[] histogram = new RandomVariable(0.0, realizations).getHistogram(intervalPoints);
+		Assert.assertArrayEquals("Histogram", expected, histogram, 1E-15);
+
+		double[][] histogramWithAnchors = new RandomVariable(0.0, realizations).getHistogram(9, 3.0);
+		Assert.assertEquals("Number of anchor points", 10, histogramWithAnchors[0].length);
+		Assert.assertEquals("Sum of the histogram", 1.0, Arrays.stream(histogramWithAnchors[1]).sum(), 1E-12);
+	}
+
+	@Test
+	public void testImplementationsAgree() {
+		double[] realizations = getRealizations(new Random(19), 4096, false);
+		RandomVariableInterface reference = new RandomVariable(0.0, realizations.clone());
+		RandomVariableInterface[] randomVariables = {
+				new RandomVariableVectorized(0.0, realizations.clone()),
+				new RandomVariableExpression(0.0, realizations.clone()).mult(1.0)
+		};
+		for(RandomVariableInterface randomVariable : randomVariables) {
+			for(int repetition = 0; repetition < 3; repetition++) {
+				for(double quantile : quantiles) {
+					Assert.assertEquals(randomVariable.getClass().getSimpleName(), reference.getQuantile(quantile), randomVariable.getQuantile(quantile), 0.0);
+				}
+			}
+			Assert.assertEquals(randomVariable.getClass().getSimpleName(), reference.getQuantileExpectation(0.9, 1.0), randomVariable.getQuantileExpectation(0.9, 1.0), 0.0);
+		}
+	}
+
+	@Test
+	public void testStatisticsViewIsReused() {
+		double[] realizations = getRealizations(new Random(23), 100, false);
+
+		RandomVariableVectorized vectorized = new RandomVariableVectorized(0.0, realizations.clone());
+		vectorized.getQuantile(0.5);
+		Assert.assertSame("Vectorized", vectorized.getRandomVariable(), vectorized.getRandomVariable());
+
+		RandomVariableExpression expression = (RandomVariableExpression)new RandomVariableExpression(0.0, realizations.clone()).exp();
+		expression.getQuantile(0.5);
+		Assert.assertSame("Expression", expression.getRandomVariable(), expression.getRandomVariable());
+
+		// Conversions share the view of the converted random variable
+		RandomVariable randomVariable = new RandomVariable(0.0, realizations.clone());
+		Assert.assertSame("Vectorized from RandomVariable", randomVariable, new RandomVariableVectorized(randomVariable).getRandomVariable());
+		Assert.assertSame("Expression from RandomVariable", randomVariable, new RandomVariableExpression(randomVariable).getRandomVariable());
+		Assert.assertSame("Vectorized from Vectorized", vectorized.getRandomVariable(), new RandomVariableVectorized(vectorized).getRandomVariable());
+		Assert.assertSame("Expression from Expression", expression.getRandomVariable(), new RandomVariableExpression(expression).getRandomVariable());
+	}
+
+	private static double[] getRealizations(Random random, int n, boolean isWithNaN) {
+		double[] realizations = new double[n];
+		for(int i = 0; i < n; i++) {
+			int type = random.nextInt(20);
+			realizations[i] = isWithNaN && type == 0 ? Double.NaN : type < 8 ? random.nextInt(7) - 3 : random.nextGaussian();
+		}
+		return realizations;
+	}
+
+	/**
+	 * Reference: the quantile of the sorted realizations as in the original implementation.
+	 */
+	private static double getQuantile(double[] sorted, double quantile) {
+		int indexOfQuantileValue = Math.min(Math.max((int)Math.round((sorted.length+1) * quantile - 1), 0), sorted.length-1);
+		return sorted[indexOfQuantileValue];
+	}
+
+	private static double getQuantileExpectation(double[] sorted, double quantileStart, double quantileEnd) {
+		if(quantileStart > quantileEnd) {
+			return getQuantileExpectation(sorted, quantileEnd, quantileStart);
+		}
+		int indexOfQuantileValueStart	= Math.min(Math.max((int)Math.round((sorted.length+1) * quantileStart - 1), 0), sorted.length-1);
+		int indexOfQuantileValueEnd		= Math.min(Math.max((int)Math.round((sorted.length+1) * quantileEnd - 1), 0), sorted.length-1);
+		double sum = 0.0;
+		for(int i = indexOfQuantileValueStart; i <= indexOfQuantileValueEnd; i++) {
+			sum += sorted[i];
+		}
+		return sum / (indexOfQuantileValueEnd - indexOfQuantileValueStart + 1);
+	}
+
+	/**
+	 * Reference: the histogram of the sorted realizations as in the original implementation (NaN counted in the last interval).
+	 */
+	private static double[] getHistogram(double[] realizations, double[] intervalPoints) {
+		double[] sorted = realizations.clone();
+		Arrays.sort(sorted);
+		double[] histogram = new double[intervalPoints.length + 1];
+		int sampleIndex = 0;
+		for(int intervalIndex = 0; intervalIndex < intervalPoints.length; intervalIndex++) {
+			while(sampleIndex < sorted.length && sorted[sampleIndex] <= intervalPoints[intervalIndex]) {
+				sampleIndex++;
+				histogram[intervalIndex]++;
+			}
+		}
+		histogram[intervalPoints.length] = sorted.length - sampleIndex;
+		for(int i = 0; i < histogram.length; i++) {
+			histogram[i] /= sorted.length;
+		}
+		return histogram;
+	}
+}
@@ -0,0 +1,122 @@
+package net.finmath.montecarlo;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.finmath.stochastic.RandomVariableInterface;
+
+public class TestRandomVariableReductions {
+
+	@Test
+	public void testSmallSizesAgainstSequentialKahanSummation() {
+		Random random = new Random(1);
+		for(int size : new int[] { 1, 2, 1000, 131071 }) {
+			double[] realizations = getRealizations(random, size);
+			double[] weights = new double[size];
+			for(int i = 0; i < size; i++) {
+				weights[i] = random.nextDouble() / size;
+			}
+			RandomVariable randomVariable = new RandomVariable(0.0, realizations);
+			RandomVariable probabilities = new RandomVariable(0.0, weights);
+
+			double average = getKahanSum(realizations, null, Double.NaN) / size;
+			double weightedAverage = getKahanSum(realizations, weights, Double.NaN) / size;
+			Assert.assertEquals("Average", average, randomVariable.getAverage(), 0.0);
+			Assert.assertEquals("Weighted average", weightedAverage, randomVariable.getAverage(probabilities), 0.0);
+			Assert.assertEquals("Variance", getKahanSum(realizations, null, average) / size, randomVariable.getVariance(), 0.0);
+			Assert.assertEquals("Weighted variance", getKahanSum(realizations, weights, weightedAverage), randomVariable.getVariance(probabilities), 0.0);
+		}
+	}
+
+	@Test
+	public void testLargeSizesAgainstExactSum() {
+		Random random = new Random(2);
+		int size = 1000003;
+		double[] realizations = new double[size];
+		BigDecimal exactSum = BigDecimal.ZERO;
+		for(int i = 0; i < size; i++) {
+			// Large values with small increments and heavy tails, where a naive summation loses digits
+			realizations[i] = 1E8 + random.nextGaussian() * (random.nextInt(100) == 0 ? 1E6 : 1.0);
+			exactSum = exactSum.add(new BigDecimal(realizations[i]));
+		}
+		double exactAverage = exactSum.divide(new BigDecimal(size), MathContext.DECIMAL128).doubleValue();
+
+		RandomVariable randomVariable = new RandomVariable(0.0, realizations);
+		Assert.assertEquals("Average", exactAverage, randomVariable.getAverage(), Math.ulp(exactAverage));
+
+		// Deterministic weights are the same as a constant array of weights
+		double[] weights = new double[size];
+		Arrays.fill(weights, 0.5);
+		Assert.assertEquals("Weighted average", randomVariable.getAverage(new RandomVariable(0.0, weights)), randomVariable.getAverage(new RandomVariable(0.0, 0.5)), 0.0);
+		Assert.assertEquals("Weighted variance", randomVariable.getVariance(new RandomVariable(0.0, weights)), randomVariable.getVariance(new RandomVariable(0.0, 0.5)), 0.0);
+	}
+
+	@Test
+	public void testLargeSizesDoNotDependOnTheNumberOfThreads() throws InterruptedException, ExecutionException {
+		Random random = new Random(3);
+		int size = 500000;
+		double[] realizations = getRealizations(random, size);
+		double[] weights = new double[size];
+		for(int i = 0; i < size; i++) {
+			weights[i] = random.nextDouble();
+		}
+		RandomVariableInterface randomVariable = new RandomVariable(0.0, realizations);
+		RandomVariableInterface probabilities = new RandomVariable(0.0, weights);
+
+		double[] statistics = getStatistics(randomVariable, probabilities);
+		for(int parallelism : new int[] { 1, 3 }) {
+			ForkJoinPool pool = new ForkJoinPool(parallelism);
+			try {
+				double[] statisticsOfPool = pool.submit(() -> getStatistics(randomVariable, probabilities)).get();
+				Assert.assertArrayEquals("Parallelism " + parallelism, statistics, statisticsOfPool, 0.0);
+			}
+			finally {
+				pool.shutdown();
+			}
+		}
+
+		Assert.assertEquals("Sample variance", randomVariable.getVariance() * size / (size - 1), randomVariable.getSampleVariance(), 0.0);
+		Assert.assertEquals("Standard error", Math.sqrt(randomVariable.getVariance()) / Math.sqrt(size), randomVariable.getStandardError(), 0.0);
+	}
+
+	private static double[] getStatistics(RandomVariableInterface randomVariable, RandomVariableInterface probabilities) {
+		return new double[] {
+				randomVariable.getAverage(),
+				randomVariable.getAverage(probabilities),
+				randomVariable.getVariance(),
+				randomVariable.getVariance(probabilities),
+				randomVariable.getStandardDeviation()
+		};
+	}
+
+	private static double[] getRealizations(Random random, int size) {
+		double[] realizations = new double[size];
+		for(int i = 0; i < size; i++) {
+			realizations[i] = Math.exp(2.0 * random.nextGaussian());
+		}
+		return realizations;
+	}
+
+	/**
+	 * Reference: the sequential Kahan summation of x[i] * w[i] or, if average is not NaN, (x[i] - average)^2 * w[i], as in the original implementation.
+	 */
+	private static double getKahanSum(double[] realizations, double[] weights, double average) {
+		double sum = 0.0;
+		double error = 0.0;
+		for(int i = 0; i < realizations.length; i++) {
+			double term = Double.isNaN(average) ? realizations[i] : (realizations[i] - average) * (realizations[i] - average);
+			double value = (weights == null ? term : term * weights[i]) - error;
+			double newSum = sum + value;
+			error = (newSum - sum) - value;
+			sum = newSum;
+		}
+		return sum;
+	}
+}
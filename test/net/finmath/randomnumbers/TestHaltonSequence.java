@@ -0,0 +1,135 @@
+package net.finmath.randomnumbers;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestHaltonSequence {
+
+	private static final int[] bases = { 2, 3, 5, 7, 11, 13, 97, 65537 };
+
+	@Test
+	public void testAgainstExactRadicalInverse() {
+		HaltonSequence sequence = new HaltonSequence(bases);
+		for(long index = 0; index < 20000; index++) {
+			double[] point = sequence.getNext();
+			for(int d = 0; d < bases.length; d++) {
+				double expected = getRadicalInverse(index + 1, bases[d]);
+				Assert.assertEquals("Index " + index + " base " + bases[d], expected, point[d], 0.0);
+				Assert.assertEquals("Index " + index + " base " + bases[d], expected, HaltonSequence.getHaltonNumberForGivenBase(index, bases[d]), 0.0);
+			}
+		}
+
+		// Large indices, below the largest power of every base which is exactly represented (65537^3 for the largest base)
+		for(long index : new long[] { 1L << 40, 123456789012345L, 200000000000000L }) {
+			sequence.skipTo(index);
+			double[] point = sequence.getNext();
+			for(int d = 0; d < bases.length; d++) {
+				Assert.assertEquals("Index " + index + " base " + bases[d], getRadicalInverse(index + 1, bases[d]), point[d], 0.0);
+			}
+		}
+	}
+
+	@Test
+	public void testSkipToAndFillAgainstGetNext() {
+		for(HaltonSequence sequence : new HaltonSequence[] { new HaltonSequence(bases), new HaltonSequence(bases, 3L) }) {
+			double[][] points = new double[5000][bases.length];
+			sequence.fill(points);
+			Assert.assertEquals("Current index", points.length, sequence.getCurrentIndex());
+
+			// Indices around the carries of the digits
+			for(int index : new int[] { 0, 1, 7, 8, 26, 27, 4095, 4096, 4999 }) {
+				sequence.skipTo(index);
+				Assert.assertArrayEquals("Point " + index, points[index], sequence.getNext(), 0.0);
+				Assert.assertArrayEquals("Point " + index, points[index], sequence.getHaltonNumber(index), 0.0);
+			}
+
+			sequence.skipTo(2500);
+			double[][] remainingPoints = new double[2500][bases.length];
+			sequence.fill(remainingPoints);
+			for(int i = 0; i < remainingPoints.length; i++) {
+				Assert.assertArrayEquals("Point " + (2500 + i), points[2500 + i], remainingPoints[i], 0.0);
+			}
+		}
+	}
+
+	@Test
+	public void testScrambling() {
+		HaltonSequence sequence = new HaltonSequence(bases, 42L);
+		HaltonSequence sameSeed = new HaltonSequence(bases, 42L);
+		HaltonSequence otherSeed = new HaltonSequence(bases, 43L);
+
+		int numberOfPoints = 3 * 5 * 7 * 11 * 13 * 8;
+		double[] sums = new double[bases.length];
+		int numberOfDifferentPoints = 0;
+		for(int index = 0; index < numberOfPoints; index++) {
+			double[] point = sequence.getNext();
+			Assert.assertArrayEquals("Same seed", point, sameSeed.getNext(), 0.0);
+			if(point[0] != otherSeed.getNext()[0]) {
+				numberOfDifferentPoints++;
+			}
+			for(int d = 0; d < bases.length; d++) {
+				Assert.assertTrue("In [0,1)", point[d] >= 0.0 && point[d] < 1.0);
+				sums[d] += point[d];
+			}
+		}
+		Assert.assertEquals("Other seed", numberOfPoints, numberOfDifferentPoints);
+		// The small bases have many complete cycles of their lowest digits, the means are close to 1/2
+		for(int d = 0; d < 6; d++) {
+			Assert.assertEquals("Mean of base " + bases[d], 0.5, sums[d] / numberOfPoints, 1E-3);
+		}
+
+		// The lowest digit of the index runs through all values, hence base * K consecutive indices have K + 1, K or K - 1 points in every interval of length 1/base
+		int numberOfCycles = 50;
+		for(int d = 0; d < 6; d++) {
+			int base = bases[d];
+			int[] numberOfPointsInInterval = new int[base];
+			for(long index = 1000; index < 1000 + base * numberOfCycles; index++) {
+				numberOfPointsInInterval[(int)(sequence.getHaltonNumber(index, d) * base)]++;
+			}
+			for(int interval = 0; interval < base; interval++) {
+				Assert.assertEquals("Interval " + interval + " of base " + base, numberOfCycles, numberOfPointsInInterval[interval], 1);
+			}
+		}
+	}
+
+	@Test
+	public void testInvalidArguments() {
+		try {
+			new HaltonSequence(new int[] { 2, 1 });
+			Assert.fail("Base 1");
+		}
+		catch(IllegalArgumentException e) {
+		}
+		try {
+			new HaltonSequence(bases).skipTo(-1);
+			Assert.fail("Negative index");
+		}
+		catch(IllegalArgumentException e) {
+		}
+		try {
+			new HaltonSequence(bases).getNext(new double[bases.length - 1]);
+			Assert.fail("Length of the point");
+		}
+		catch(IllegalArgumentException e) {
+		}
+	}
+
+	/**
+	 * Reference: the radical inverse of n in the given base, computed exactly and rounded to double.
+	 */
+	private static double getRadicalInverse(long n, int base) {
+		BigInteger reversedInteger = BigInteger.ZERO;
+		BigInteger power = BigInteger.ONE;
+		BigInteger bigBase = BigInteger.valueOf(base);
+		while(n > 0) {
+			reversedInteger = reversedInteger.multiply(bigBase).add(BigInteger.valueOf(n % base));
+			power = power.multiply(bigBase);
+			n /= base;
+		}
+		return new BigDecimal(reversedInteger).divide(new BigDecimal(power), MathContext.DECIMAL128).doubleValue();
+	}
+}
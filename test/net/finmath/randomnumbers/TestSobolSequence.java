@@ -0,0 +1,88 @@
+package net.finmath.randomnumbers;
+
+import org.apache.commons.math3.random.SobolSequenceGenerator;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestSobolSequence {
+
+	@Test
+	public void testAgainstCommonsMath() {
+		int dimension = 50;
+		SobolSequence sequence = new SobolSequence(dimension);
+		SobolSequenceGenerator reference = new SobolSequenceGenerator(dimension);
+		// The sequence skips the origin and returns the centres of the intervals of length 2^-32
+		reference.nextVector();
+		for(int index = 1; index < 5000; index++) {
+			double[] point = sequence.getNext();
+			double[] referencePoint = reference.nextVector();
+			for(int d = 0; d < dimension; d++) {
+				Assert.assertEquals("Point " + index + " coordinate " + d, referencePoint[d] + 0x1.0p-33, point[d], 0.0);
+			}
+		}
+	}
+
+	@Test
+	public void testSkipToAgainstGetNext() {
+		for(long seed : new long[] { -1L, 17L }) {
+			SobolSequence sequence = seed < 0 ? new SobolSequence(8) : new SobolSequence(8, seed);
+			double[][] points = new double[3000][];
+			for(int index = 0; index < points.length; index++) {
+				if(index == 0) {
+					sequence.skipTo(0);
+				}
+				points[index] = sequence.getNext();
+			}
+			for(int index : new int[] { 0, 1, 2, 1023, 1024, 1025, 2999 }) {
+				sequence.skipTo(index);
+				Assert.assertEquals("Current index", index, sequence.getCurrentIndex());
+				Assert.assertArrayEquals("Point " + index, points[index], sequence.getNext(), 0.0);
+				Assert.assertEquals("Current index", index + 1, sequence.getCurrentIndex());
+			}
+		}
+	}
+
+	@Test
+	public void testScrambling() {
+		int dimension = 20;
+		int m = 12;
+		SobolSequence sequence = new SobolSequence(dimension, 2024L);
+		SobolSequence sameSeed = new SobolSequence(dimension, 2024L);
+		SobolSequence otherSeed = new SobolSequence(dimension, 2025L);
+		Assert.assertEquals("Scrambled sequence starting at 0", 0, sequence.getCurrentIndex());
+
+		// The nested uniform scrambling keeps the net property: the first 2^m points have one coordinate in every interval of length 2^-m
+		boolean[][] isOccupied = new boolean[dimension][1 << m];
+		double[] sums = new double[dimension];
+		for(int index = 0; index < (1 << m); index++) {
+			double[] point = sequence.getNext();
+			Assert.assertArrayEquals("Same seed", point, sameSeed.getNext(), 0.0);
+			Assert.assertTrue("Other seed", point[0] != otherSeed.getNext()[0]);
+			for(int d = 0; d < dimension; d++) {
+				Assert.assertTrue("In (0,1)", point[d] > 0.0 && point[d] < 1.0);
+				int interval = (int)(point[d] * (1 << m));
+				Assert.assertFalse("Interval " + interval + " of coordinate " + d + " occupied twice", isOccupied[d][interval]);
+				isOccupied[d][interval] = true;
+				sums[d] += point[d];
+			}
+		}
+		for(int d = 0; d < dimension; d++) {
+			Assert.assertEquals("Mean of coordinate " + d, 0.5, sums[d] / (1 << m), 1.0 / (1 << m));
+		}
+
+		// The scrambling depends on the coordinate
+		sequence.skipTo(5);
+		double[] point = sequence.getNext();
+		Assert.assertTrue("Coordinates", point[0] != point[1]);
+	}
+
+	@Test
+	public void testInvalidDimension() {
+		try {
+			new SobolSequence(SobolSequence.getMaximumDimension() + 1);
+			Assert.fail("Dimension above the maximum dimension");
+		}
+		catch(IllegalArgumentException e) {
+		}
+	}
+}
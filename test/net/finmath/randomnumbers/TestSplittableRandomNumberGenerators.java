@@ -0,0 +1,155 @@
+package net.finmath.randomnumbers;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.LongFunction;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestSplittableRandomNumberGenerators {
+
+	@Test
+	public void testPhiloxKnownAnswers() {
+		// The test vectors of the Random123 library for Philox4x32-10 (the four words of the counter and the output, the two words of the key)
+		long[] block = new long[2];
+		Philox4x32.generateBlock(0L, 0L, 0L, block, 0);
+		Assert.assertArrayEquals(new long[] { 0xE169C58D6627E8D5L, 0x9B00DBD8BC57AC4CL }, block);
+		Philox4x32.generateBlock(-1L, -1L, -1L, block, 0);
+		Assert.assertArrayEquals(new long[] { 0x41C83B0E408F276DL, 0x6D5451FDA20BC7C6L }, block);
+		Philox4x32.generateBlock(0x299F31D0A4093822L, 0x0370734413198A2EL, 0x85A308D3243F6A88L, block, 0);
+		Assert.assertArrayEquals(new long[] { 0x94FDCCEBD16CFE09L, 0x24126EA15001E420L }, block);
+	}
+
+	@Test
+	public void testXoshiroKnownAnswers() {
+		// The outputs of the reference implementation of D. Blackman and S. Vigna for the state {1, 2, 3, 4}
+		Xoshiro256StarStar generator = new Xoshiro256StarStar(new long[] { 1L, 2L, 3L, 4L });
+		Assert.assertEquals(11520L, generator.nextLong());
+		Assert.assertEquals(0L, generator.nextLong());
+		Assert.assertEquals(1509978240L, generator.nextLong());
+		Assert.assertEquals(1215971899390074240L, generator.nextLong());
+	}
+
+	@Test
+	public void testReproducibility() {
+		for(LongFunction<AbstractSplittableRandomNumberGenerator> factory : getFactories()) {
+			AbstractSplittableRandomNumberGenerator generator = factory.apply(31L);
+			AbstractSplittableRandomNumberGenerator other = factory.apply(31L);
+			for(int i = 0; i < 1000; i++) {
+				Assert.assertEquals("Number " + i, generator.nextLong(), other.nextLong());
+			}
+
+			// setSeed restarts the stream
+			generator.nextDouble();
+			generator.setSeed(31L);
+			Assert.assertEquals("After setSeed", factory.apply(31L).nextLong(), generator.nextLong());
+			Assert.assertTrue("Other seed", factory.apply(31L).nextLong() != factory.apply(32L).nextLong());
+		}
+	}
+
+	@Test
+	public void testNextDoublesAgainstNextDouble() {
+		for(LongFunction<AbstractSplittableRandomNumberGenerator> factory : getFactories()) {
+			AbstractSplittableRandomNumberGenerator generator = factory.apply(5L);
+			AbstractSplittableRandomNumberGenerator reference = factory.apply(5L);
+			// Blocks of odd and even lengths, such that the numbers of a Philox block are split between calls
+			for(int length : new int[] { 1, 2, 3, 0, 7, 4, 1, 10 }) {
+				double[] target = new double[length + 2];
+				generator.nextDoubles(target, 1, length);
+				for(int i = 0; i < length; i++) {
+					double value = reference.nextDouble();
+					Assert.assertEquals("Value", value, target[1 + i], 0.0);
+					Assert.assertTrue("In (0,1)", value > 0.0 && value < 1.0);
+				}
+				Assert.assertEquals("Outside of the range", 0.0, target[0], 0.0);
+				Assert.assertEquals("Outside of the range", 0.0, target[length + 1], 0.0);
+			}
+		}
+	}
+
+	@Test
+	public void testSplitStreamsDoNotOverlap() {
+		for(LongFunction<AbstractSplittableRandomNumberGenerator> factory : getFactories()) {
+			for(int numberOfConsumedNumbers : new int[] { 0, 1, 2, 3 }) {
+				AbstractSplittableRandomNumberGenerator generator = factory.apply(7L);
+				AbstractSplittableRandomNumberGenerator reference = factory.apply(7L);
+				for(int i = 0; i < numberOfConsumedNumbers; i++) {
+					generator.nextLong();
+					reference.nextLong();
+				}
+				String message = generator.getClass().getSimpleName() + " after " + numberOfConsumedNumbers + " numbers";
+
+				// The first generators continue the stream, the parent continues on its next substream
+				SplittableRandomNumberGenerator first = generator.split();
+				SplittableRandomNumberGenerator second = generator.split();
+				Assert.assertEquals(message, reference.nextLong(), first.nextLong());
+
+				Set<Long> values = new HashSet<>();
+				for(SplittableRandomNumberGenerator stream : new SplittableRandomNumberGenerator[] { first, second, generator }) {
+					for(int i = 0; i < 1000; i++) {
+						Assert.assertTrue(message + ": value " + i + " repeated", values.add(stream.nextLong()));
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testJumpedStreamsDoNotOverlap() {
+		for(LongFunction<AbstractSplittableRandomNumberGenerator> factory : getFactories()) {
+			for(int numberOfConsumedNumbers : new int[] { 0, 1, 3 }) {
+				AbstractSplittableRandomNumberGenerator generator = factory.apply(11L);
+				for(int i = 0; i < numberOfConsumedNumbers; i++) {
+					generator.nextLong();
+				}
+				String message = generator.getClass().getSimpleName() + " after " + numberOfConsumedNumbers + " numbers";
+
+				SplittableRandomNumberGenerator sameStream = generator.jump(0);
+				SplittableRandomNumberGenerator jumpedOnce = generator.jump(1);
+				SplittableRandomNumberGenerator jumpedTwice = generator.jump(2);
+				SplittableRandomNumberGenerator jumpedTwiceByOne = generator.jump(1).jump(1);
+
+				Set<Long> values = new HashSet<>();
+				for(int i = 0; i < 1000; i++) {
+					long value = generator.nextLong();
+					Assert.assertEquals(message, value, sameStream.nextLong());
+					Assert.assertTrue(message, values.add(value));
+					Assert.assertTrue(message, values.add(jumpedOnce.nextLong()));
+					long valueOfJumpedTwice = jumpedTwice.nextLong();
+					Assert.assertTrue(message, values.add(valueOfJumpedTwice));
+					Assert.assertEquals(message, valueOfJumpedTwice, jumpedTwiceByOne.nextLong());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testStreamIndices() {
+		// The generator of the substream n is the one obtained by n jumps, at the same position
+		Philox4x32 philox = new Philox4x32(13L);
+		Philox4x32 philoxOfStream = new Philox4x32(13L, 5L);
+		philox.nextLong();
+		Philox4x32 jumped = philox.jump(5);
+		philoxOfStream.nextLong();
+		philoxOfStream.nextLong();
+		Assert.assertEquals("Philox4x32", philoxOfStream.nextLong(), jumped.nextLong());
+
+		Xoshiro256StarStar xoshiro = new Xoshiro256StarStar(13L);
+		Xoshiro256StarStar xoshiroOfStream = new Xoshiro256StarStar(13L, 3L);
+		Assert.assertEquals("Xoshiro256StarStar", xoshiroOfStream.nextLong(), xoshiro.jump(3).nextLong());
+
+		try {
+			philox.jump(-1);
+			Assert.fail("Negative jump");
+		}
+		catch(IllegalArgumentException e) {
+		}
+	}
+
+	private static List<LongFunction<AbstractSplittableRandomNumberGenerator>> getFactories() {
+		return Arrays.asList(Philox4x32::new, Xoshiro256StarStar::new);
+	}
+}